@@ -29,6 +29,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 import java.beans.ConstructorProperties;
+import java.util.Map;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -56,6 +57,11 @@ public class CardinalityInstance extends BucketAggregationInstance<CardinalityBu
         return new DistributedCardinalityInstance(size, extent, method);
     }
 
+    @Override
+    protected Map<String, String> prepareKey(final Map<String, String> key) {
+        return HashedKey.of(key);
+    }
+
     @Override
     protected CardinalityBucket buildBucket(long timestamp) {
         return method.build(timestamp);
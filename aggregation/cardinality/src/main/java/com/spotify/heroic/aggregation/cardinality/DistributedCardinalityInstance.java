@@ -26,6 +26,7 @@ import com.spotify.heroic.aggregation.BucketAggregationInstance;
 import com.spotify.heroic.metric.MetricType;
 import com.spotify.heroic.metric.Payload;
 import java.beans.ConstructorProperties;
+import java.util.Map;
 
 public class DistributedCardinalityInstance extends BucketAggregationInstance<CardinalityBucket> {
     public static final String NAME = "distributed-cardinality";
@@ -40,6 +41,11 @@ public class DistributedCardinalityInstance extends BucketAggregationInstance<Ca
         this.method = method;
     }
 
+    @Override
+    protected Map<String, String> prepareKey(final Map<String, String> key) {
+        return HashedKey.of(key);
+    }
+
     @Override
     protected CardinalityBucket buildBucket(long timestamp) {
         return method.build(timestamp);
@@ -21,8 +21,6 @@
 
 package com.spotify.heroic.aggregation.cardinality;
 
-import com.google.common.base.Charsets;
-import com.google.common.collect.Ordering;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
@@ -44,7 +42,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 @RequiredArgsConstructor
 public class ExactCardinalityBucket implements CardinalityBucket {
     private static final HashFunction HASH_FUNCTION = Hashing.goodFastHash(128);
-    private static final Ordering<String> KEY_ORDER = Ordering.from(String::compareTo);
 
     private final long timestamp;
     private final boolean includeKey;
@@ -61,9 +58,7 @@ public class ExactCardinalityBucket implements CardinalityBucket {
         final Hasher hasher = HASH_FUNCTION.newHasher();
 
         if (includeKey) {
-            for (final String k : KEY_ORDER.sortedCopy(key.keySet())) {
-                hasher.putString(k, Charsets.UTF_8).putString(key.get(k), Charsets.UTF_8);
-            }
+            hasher.putLong(HashedKey.of(key).keyHash());
         }
 
         d.hash(hasher);
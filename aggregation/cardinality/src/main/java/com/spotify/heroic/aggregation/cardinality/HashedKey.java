@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.aggregation.cardinality;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.util.Map;
+
+/**
+ * A group key which carries a hash of its content.
+ * <p>
+ * The hash is computed at most once, and is intended to be shared by all samples and buckets
+ * that are updated with the same key in a single update call.
+ */
+public class HashedKey extends ForwardingMap<String, String> {
+    private static final HashFunction HASH_FUNCTION = Hashing.goodFastHash(128);
+    private static final Ordering<String> KEY_ORDER = Ordering.from(String::compareTo);
+
+    private final Map<String, String> key;
+
+    /* keys are only accessed from the thread doing the update call, so no need for volatile */
+    private boolean hashed = false;
+    private long hash;
+
+    HashedKey(final Map<String, String> key) {
+        this.key = key;
+    }
+
+    @Override
+    protected Map<String, String> delegate() {
+        return key;
+    }
+
+    /**
+     * Get the hash of the content of this key.
+     *
+     * @return a hash of all sorted key-value pairs in this key
+     */
+    public long keyHash() {
+        if (!hashed) {
+            hash = hash(key);
+            hashed = true;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Wrap the given key, unless it is already hashed.
+     */
+    public static HashedKey of(final Map<String, String> key) {
+        if (key instanceof HashedKey) {
+            return (HashedKey) key;
+        }
+
+        return new HashedKey(key);
+    }
+
+    static long hash(final Map<String, String> key) {
+        final Hasher hasher = HASH_FUNCTION.newHasher();
+
+        for (final String k : KEY_ORDER.sortedCopy(key.keySet())) {
+            hasher.putString(k, Charsets.UTF_8).putString(key.get(k), Charsets.UTF_8);
+        }
+
+        return hasher.hash().asLong();
+    }
+}
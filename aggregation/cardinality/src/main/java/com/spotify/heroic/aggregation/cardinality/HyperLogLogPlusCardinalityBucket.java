@@ -21,9 +21,8 @@
 
 package com.spotify.heroic.aggregation.cardinality;
 
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
 import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
-import com.google.common.base.Charsets;
-import com.google.common.collect.Ordering;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
@@ -31,26 +30,32 @@ import com.spotify.heroic.metric.Metric;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Bucket that counts the number of seen events.
+ * <p>
+ * {@link HyperLogLogPlus} is not safe for concurrent updates, so every updating thread gets its
+ * own set of registers which are merged when the result is requested.
  *
  * @author udoprog
  */
 public class HyperLogLogPlusCardinalityBucket implements CardinalityBucket {
     private static final HashFunction HASH_FUNCTION = Hashing.goodFastHash(128);
-    private static final Ordering<String> KEY_ORDER = Ordering.from(String::compareTo);
 
     private final long timestamp;
     private final boolean includeKey;
-    private final HyperLogLogPlus seen;
+    private final int precision;
+
+    private final ConcurrentMap<Long, HyperLogLogPlus> registers = new ConcurrentHashMap<>();
 
     public HyperLogLogPlusCardinalityBucket(
         final long timestamp, final boolean includeKey, final int precision
     ) {
         this.timestamp = timestamp;
         this.includeKey = includeKey;
-        this.seen = new HyperLogLogPlus(precision);
+        this.precision = precision;
     }
 
     public long timestamp() {
@@ -62,27 +67,44 @@ public class HyperLogLogPlusCardinalityBucket implements CardinalityBucket {
         final Hasher hasher = HASH_FUNCTION.newHasher();
 
         if (includeKey) {
-            for (final String k : KEY_ORDER.sortedCopy(key.keySet())) {
-                hasher.putString(k, Charsets.UTF_8).putString(key.get(k), Charsets.UTF_8);
-            }
+            hasher.putLong(HashedKey.of(key).keyHash());
         }
 
         d.hash(hasher);
 
         final long hash = hasher.hash().asLong();
-        seen.offerHashed(hash);
+        local().offerHashed(hash);
     }
 
     @Override
     public long count() {
-        return seen.cardinality();
+        return merged().cardinality();
     }
 
     public byte[] state() {
         try {
-            return seen.getBytes();
+            return merged().getBytes();
         } catch (final IOException e) {
             throw new RuntimeException("Could not persist state", e);
         }
     }
+
+    private HyperLogLogPlus local() {
+        return registers.computeIfAbsent(Thread.currentThread().getId(),
+            id -> new HyperLogLogPlus(precision));
+    }
+
+    private HyperLogLogPlus merged() {
+        final HyperLogLogPlus merged = new HyperLogLogPlus(precision);
+
+        for (final HyperLogLogPlus local : registers.values()) {
+            try {
+                merged.addAll(local);
+            } catch (final CardinalityMergeException e) {
+                throw new RuntimeException("Could not merge state", e);
+            }
+        }
+
+        return merged;
+    }
 }
@@ -4,7 +4,12 @@ import com.google.common.collect.ImmutableMap;
 import com.spotify.heroic.metric.Point;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertTrue;
 
@@ -41,6 +46,34 @@ public abstract class AbstractCardinalityBucketTest {
         assertWithinVariance(200000L, bucket.count());
     }
 
+    @Test
+    public void concurrentStrainTest() throws Exception {
+        final CardinalityBucket bucket = setupBucket(42);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int t = 0; t < 4; t++) {
+                final int offset = t * 50000;
+
+                futures.add(executor.submit(() -> {
+                    for (int i = offset; i < offset + 50000; i++) {
+                        bucket.update(HashedKey.of(t1), new Point(42, 1D * i));
+                    }
+                }));
+            }
+
+            for (final Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertWithinVariance(200000L, bucket.count());
+    }
+
     private void assertWithinVariance(final long expected, final long count) {
         final double allowedError = allowedError();
         final double error = Math.abs(((double) expected / (double) count) - 1.0D);
@@ -0,0 +1,13 @@
+package com.spotify.heroic.aggregation.cardinality;
+
+public class HyperLogLogPlusCardinalityBucketTest extends AbstractCardinalityBucketTest {
+    @Override
+    protected double allowedError() {
+        return 0.05D;
+    }
+
+    @Override
+    protected CardinalityBucket setupBucket(final long timestamp) {
+        return new HyperLogLogPlusCardinalityBucket(42, true, 16);
+    }
+}
@@ -49,4 +49,9 @@ public class AverageInstance extends DistributedBucketInstance<StripedAverageBuc
 
         return new Point(bucket.timestamp(), bucket.value());
     }
+
+    @Override
+    protected boolean summarizesSpreads() {
+        return true;
+    }
 }
@@ -22,6 +22,8 @@
 package com.spotify.heroic.aggregation.simple;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.spotify.heroic.ObjectHasher;
 import com.spotify.heroic.aggregation.AggregationInstance;
 import com.spotify.heroic.aggregation.AggregationOutput;
@@ -30,15 +32,20 @@ import com.spotify.heroic.aggregation.AggregationSession;
 import com.spotify.heroic.aggregation.BucketStrategy;
 import com.spotify.heroic.aggregation.EmptyInstance;
 import com.spotify.heroic.aggregation.RetainQuotaWatcher;
+import com.spotify.heroic.aggregation.TwoPhaseAggregation;
 import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Series;
 import com.spotify.heroic.metric.Event;
+import com.spotify.heroic.metric.MetricCollection;
 import com.spotify.heroic.metric.MetricGroup;
 import com.spotify.heroic.metric.Payload;
 import com.spotify.heroic.metric.Point;
 import com.spotify.heroic.metric.Spread;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.Data;
@@ -82,11 +89,33 @@ public abstract class FilterAggregation implements AggregationInstance {
         return false;
     }
 
+    /**
+     * The same filter is applied to each shard in isolation, and again to the combined candidates.
+     * Shards keep the keys of the groups they discard, so that groups which span shards can be
+     * detected.
+     */
+    @Override
+    public Optional<TwoPhaseAggregation> twoPhase() {
+        return Optional.of(new TwoPhaseAggregation(INNER, new FilterCandidatesInstance(this), this,
+            filterStrategy::covers));
+    }
+
     @Override
     public AggregationSession session(
         DateRange range, RetainQuotaWatcher quotaWatcher, BucketStrategy bucketStrategy
     ) {
-        return new Session(filterStrategy, INNER.session(range, quotaWatcher, bucketStrategy));
+        return session(range, quotaWatcher, bucketStrategy, false);
+    }
+
+    /**
+     * Build a session which optionally emits an empty placeholder for every discarded group.
+     */
+    AggregationSession session(
+        DateRange range, RetainQuotaWatcher quotaWatcher, BucketStrategy bucketStrategy,
+        boolean placeholders
+    ) {
+        return new Session(filterStrategy, INNER.session(range, quotaWatcher, bucketStrategy),
+            placeholders);
     }
 
     protected abstract void filterHashTo(final ObjectHasher hasher);
@@ -102,10 +131,14 @@ public abstract class FilterAggregation implements AggregationInstance {
     private class Session implements AggregationSession {
         private final AggregationSession childSession;
         private final FilterStrategy filterStrategy;
+        private final boolean placeholders;
 
-        public Session(FilterStrategy filterStrategy, AggregationSession childSession) {
+        public Session(
+            FilterStrategy filterStrategy, AggregationSession childSession, boolean placeholders
+        ) {
             this.filterStrategy = filterStrategy;
             this.childSession = childSession;
+            this.placeholders = placeholders;
         }
 
         @Override
@@ -153,7 +186,26 @@ public abstract class FilterAggregation implements AggregationInstance {
                 .map(a -> new FilterableMetrics<>(a, a::getMetrics))
                 .collect(Collectors.toList());
 
-            return new AggregationResult(filterStrategy.filter(filterable), result.getStatistics());
+            final List<AggregationOutput> selected = filterStrategy.filter(filterable);
+
+            if (!placeholders) {
+                return new AggregationResult(selected, result.getStatistics());
+            }
+
+            final Set<AggregationOutput> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+            kept.addAll(selected);
+
+            final ImmutableList.Builder<AggregationOutput> outputs = ImmutableList.builder();
+            outputs.addAll(selected);
+
+            for (final AggregationOutput out : result.getResult()) {
+                if (!kept.contains(out)) {
+                    outputs.add(new AggregationOutput(out.getKey(), ImmutableSet.of(),
+                        MetricCollection.empty()));
+                }
+            }
+
+            return new AggregationResult(outputs.build(), result.getStatistics());
         }
     }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.aggregation.simple;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.spotify.heroic.ObjectHasher;
+import com.spotify.heroic.aggregation.AggregationInstance;
+import com.spotify.heroic.aggregation.AggregationSession;
+import com.spotify.heroic.aggregation.BucketStrategy;
+import com.spotify.heroic.aggregation.RetainQuotaWatcher;
+import com.spotify.heroic.common.DateRange;
+import lombok.Data;
+
+/**
+ * Shard-local phase of a {@link FilterAggregation}.
+ * <p>
+ * Selects the same groups as the filter, and emits an empty placeholder for every discarded group.
+ * The placeholders are what permits the API node to detect groups which span shards.
+ */
+@Data
+public class FilterCandidatesInstance implements AggregationInstance {
+    public static final String NAME = "filter-candidates";
+
+    private final FilterAggregation filter;
+
+    @JsonCreator
+    public FilterCandidatesInstance(@JsonProperty("filter") final FilterAggregation filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public long estimate(final DateRange range) {
+        return filter.estimate(range);
+    }
+
+    @Override
+    public long cadence() {
+        return filter.cadence();
+    }
+
+    @Override
+    public AggregationInstance distributed() {
+        return filter.distributed();
+    }
+
+    @Override
+    public AggregationInstance reducer() {
+        return filter.reducer();
+    }
+
+    @Override
+    public boolean distributable() {
+        return false;
+    }
+
+    @Override
+    public AggregationSession session(
+        final DateRange range, final RetainQuotaWatcher quotaWatcher,
+        final BucketStrategy bucketStrategy
+    ) {
+        return filter.session(range, quotaWatcher, bucketStrategy, true);
+    }
+
+    @Override
+    public void hashTo(final ObjectHasher hasher) {
+        hasher.putObject(getClass(), () -> {
+            hasher.putField("filter", filter, hasher.with(AggregationInstance::hashTo));
+        });
+    }
+}
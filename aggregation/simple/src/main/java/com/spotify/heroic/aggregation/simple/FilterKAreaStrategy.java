@@ -24,7 +24,11 @@ package com.spotify.heroic.aggregation.simple;
 import com.spotify.heroic.ObjectHasher;
 import com.spotify.heroic.metric.MetricCollection;
 import com.spotify.heroic.metric.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.stream.Collectors;
 import lombok.Data;
 
@@ -39,19 +43,108 @@ public class FilterKAreaStrategy implements FilterStrategy {
     private final FilterKAreaType filterType;
     private final long k;
 
+    /**
+     * Select the k best series using a bounded heap, where the head of the heap is the worst
+     * selected series so far.
+     * <p>
+     * Ties are resolved in favor of the series which comes first in the input.
+     */
     @Override
     public <T> List<T> filter(List<FilterableMetrics<T>> metrics) {
-        return metrics
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+
+        final Comparator<Area<T>> order = (a, b) -> {
+            final int c = filterType.compare(a.getValue(), b.getValue());
+            return c != 0 ? c : Integer.compare(a.getIndex(), b.getIndex());
+        };
+
+        final int capacity = (int) Math.min(k, metrics.size()) + 1;
+        final PriorityQueue<Area<T>> heap = new PriorityQueue<>(capacity, order.reversed());
+
+        int index = 0;
+
+        for (final FilterableMetrics<T> m : metrics) {
+            final MetricCollection collection = m.getMetricSupplier().get();
+
+            if (collection.size() <= 0) {
+                continue;
+            }
+
+            final Area<T> area = new Area<>(m, computeArea(collection), index++);
+
+            if (heap.size() < k) {
+                heap.add(area);
+                continue;
+            }
+
+            if (order.compare(area, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(area);
+            }
+        }
+
+        final List<Area<T>> selected = new ArrayList<>(heap);
+        selected.sort(order);
+
+        return selected
             .stream()
-            .filter(m -> m.getMetricSupplier().get().size() > 0)
-            .map(Area::new)
-            .sorted((a, b) -> filterType.compare(a.getValue(), b.getValue()))
-            .limit(k)
             .map(Area::getFilterableMetrics)
             .map(FilterableMetrics::getData)
             .collect(Collectors.toList());
     }
 
+    /**
+     * A shard which discarded groups kept its k best groups, so every group it discarded is at
+     * most as good as the worst group it kept. The candidates cover the final result if no such
+     * bound is better than the k:th best candidate.
+     * <p>
+     * Shards which kept less than k groups only discarded groups without data.
+     */
+    @Override
+    public boolean covers(
+        final List<MetricCollection> candidates, final List<List<MetricCollection>> truncated
+    ) {
+        if (k <= 0) {
+            return true;
+        }
+
+        final List<Double> areas = new ArrayList<>();
+
+        for (final MetricCollection c : candidates) {
+            if (c.size() > 0) {
+                areas.add(computeArea(c));
+            }
+        }
+
+        areas.sort(filterType::compare);
+
+        for (final List<MetricCollection> selected : truncated) {
+            if (selected.size() < k) {
+                continue;
+            }
+
+            if (areas.size() < k) {
+                return false;
+            }
+
+            final double threshold = areas.get((int) k - 1);
+
+            final double worst = selected
+                .stream()
+                .map(FilterKAreaStrategy::computeArea)
+                .max(filterType::compare)
+                .orElse(threshold);
+
+            if (filterType.compare(worst, threshold) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     @Override
     public void hashTo(final ObjectHasher hasher) {
         hasher.putObject(getClass(), () -> {
@@ -60,25 +153,21 @@ public class FilterKAreaStrategy implements FilterStrategy {
         });
     }
 
-    @Data
-    private class Area<T> {
-        private final FilterableMetrics<T> filterableMetrics;
-        private final double value;
+    private static double computeArea(MetricCollection metricCollection) {
+        final List<Point> metrics = metricCollection.getDataAs(Point.class);
 
-        public Area(FilterableMetrics<T> filterableMetrics) {
-            this.filterableMetrics = filterableMetrics;
-            this.value = computeArea(filterableMetrics.getMetricSupplier().get());
+        double area = 0;
+        for (int i = 1; i < metrics.size(); i++) {
+            area += PointPairArea.computeArea(metrics.get(i - 1), metrics.get(i));
         }
 
-        private double computeArea(MetricCollection metricCollection) {
-            final List<Point> metrics = metricCollection.getDataAs(Point.class);
-
-            double area = 0;
-            for (int i = 1; i < metrics.size(); i++) {
-                area += PointPairArea.computeArea(metrics.get(i - 1), metrics.get(i));
-            }
+        return area;
+    }
 
-            return area;
-        }
+    @Data
+    private static class Area<T> {
+        private final FilterableMetrics<T> filterableMetrics;
+        private final double value;
+        private final int index;
     }
 }
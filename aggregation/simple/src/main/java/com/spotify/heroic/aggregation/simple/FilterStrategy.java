@@ -22,10 +22,26 @@
 package com.spotify.heroic.aggregation.simple;
 
 import com.spotify.heroic.ObjectHasher;
+import com.spotify.heroic.metric.MetricCollection;
 import java.util.List;
 
 public interface FilterStrategy {
     <T> List<T> filter(List<FilterableMetrics<T>> metrics);
 
+    /**
+     * Check if filtering the candidates selected on every shard gives the same result as filtering
+     * every group.
+     * <p>
+     * By default every group is judged in isolation, so a group which was discarded on the only
+     * shard it is stored in is never selected globally.
+     *
+     * @see com.spotify.heroic.aggregation.CandidateBound
+     */
+    default boolean covers(
+        List<MetricCollection> candidates, List<List<MetricCollection>> truncated
+    ) {
+        return true;
+    }
+
     void hashTo(ObjectHasher hasher);
 }
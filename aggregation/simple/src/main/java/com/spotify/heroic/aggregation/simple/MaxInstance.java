@@ -49,4 +49,9 @@ public class MaxInstance extends DistributedBucketInstance<StripedMaxBucket> {
 
         return new Point(bucket.timestamp(), value);
     }
+
+    @Override
+    protected boolean summarizesSpreads() {
+        return true;
+    }
 }
@@ -49,4 +49,9 @@ public class MinInstance extends DistributedBucketInstance<StripedMinBucket> {
 
         return new Point(bucket.timestamp(), value);
     }
+
+    @Override
+    protected boolean summarizesSpreads() {
+        return true;
+    }
 }
@@ -129,6 +129,8 @@ public class Module implements HeroicModule {
                 args -> new BelowK(fetchK(args, DoubleExpression.class).getValue(),
                     Optional.empty()));
 
+            c.registerInstance(FilterCandidatesInstance.NAME, FilterCandidatesInstance.class);
+
             c.register(PointsAbove.NAME, PointsAbove.class, PointsAboveInstance.class,
                 args -> new PointsAbove(fetchK(args, DoubleExpression.class).getValue()));
 
@@ -49,4 +49,9 @@ public class SpreadInstance extends DistributedBucketInstance<SpreadBucket> {
     public AggregationInstance distributed() {
         return this;
     }
+
+    @Override
+    protected boolean summarizesSpreads() {
+        return true;
+    }
 }
@@ -54,4 +54,9 @@ public class StdDevInstance extends BucketAggregationInstance<StripedStdDevBucke
 
         return new Point(bucket.timestamp(), value);
     }
+
+    @Override
+    protected boolean summarizesSpreads() {
+        return true;
+    }
 }
@@ -48,4 +48,9 @@ public class Sum2Instance extends DistributedBucketInstance<StripedSum2Bucket> {
     public AggregationInstance distributed() {
         return this;
     }
+
+    @Override
+    protected boolean summarizesSpreads() {
+        return true;
+    }
 }
@@ -48,4 +48,9 @@ public class SumInstance extends DistributedBucketInstance<StripedSumBucket> {
     public AggregationInstance distributed() {
         return this;
     }
+
+    @Override
+    protected boolean summarizesSpreads() {
+        return true;
+    }
 }
@@ -49,6 +49,12 @@ public class FilterAggregationTest {
         verifyRoundtrip("{\"type\":\"topk\",\"k\":0}", new TopKInstance(0), TopKInstance.class);
     }
 
+    @Test
+    public void testFilterCandidatesInstance() throws Exception {
+        verifyRoundtrip("{\"type\":\"filter-candidates\",\"filter\":{\"type\":\"topk\",\"k\":1}}",
+            new FilterCandidatesInstance(new TopKInstance(1)), FilterCandidatesInstance.class);
+    }
+
     private <T> void verifyRoundtrip(
         final String json, final T reference, final Class<T> cls
     ) throws Exception {
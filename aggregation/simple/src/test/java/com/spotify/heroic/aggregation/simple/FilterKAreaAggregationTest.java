@@ -2,6 +2,7 @@ package com.spotify.heroic.aggregation.simple;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.spotify.heroic.aggregation.AggregationInstance;
 import com.spotify.heroic.aggregation.AggregationOutput;
 import com.spotify.heroic.aggregation.AggregationSession;
@@ -23,6 +24,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FilterKAreaAggregationTest {
@@ -71,4 +73,34 @@ public class FilterKAreaAggregationTest {
             Assert.fail("unexpected group: " + first.getKey());
         }
     }
+
+    @Test
+    public void testCandidatesKeepDiscardedKeys() {
+        final GroupingAggregation g =
+            new GroupInstance(Optional.of(ImmutableList.of("site")), EmptyInstance.INSTANCE);
+
+        final AggregationInstance local = ChainInstance.of(g, new TopKInstance(1))
+            .twoPhase()
+            .orElseThrow(IllegalStateException::new)
+            .getLocal();
+
+        final Series s1 = Series.of("foo", ImmutableMap.of("site", "sto"));
+        final Series s2 = Series.of("foo", ImmutableMap.of("site", "ash"));
+
+        final AggregationSession session = local.session(new DateRange(0, 10000));
+
+        session.updatePoints(s1.getTags(), ImmutableSet.of(s1),
+            ImmutableList.of(new Point(1, 1.0), new Point(2, 1.0)));
+        session.updatePoints(s2.getTags(), ImmutableSet.of(s2),
+            ImmutableList.of(new Point(1, 2.0), new Point(2, 2.0)));
+
+        final List<AggregationOutput> result = session.result().getResult();
+
+        assertEquals(2, result.size());
+        assertEquals(ImmutableMap.of("site", "ash"), result.get(0).getKey());
+        assertEquals(ImmutableList.of(new Point(1, 2.0), new Point(2, 2.0)),
+            result.get(0).getMetrics().getData());
+        assertEquals(ImmutableMap.of("site", "sto"), result.get(1).getKey());
+        assertTrue(result.get(1).isEmpty());
+    }
 }
@@ -1,6 +1,7 @@
 package com.spotify.heroic.aggregation.simple;
 
 import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -10,6 +11,8 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FilterKAreaStrategyTest {
@@ -24,4 +27,49 @@ public class FilterKAreaStrategyTest {
         assertEquals(filter.filter(metrics).size(), 0);
 
     }
+
+    @Test
+    public void testSelectsKBest() {
+        final List<FilterableMetrics<Integer>> metrics = Arrays.asList(
+            filterable(1, 1.0), filterable(2, 4.0), filterable(3, 2.0), filterable(4, 3.0),
+            filterable(5, 4.0));
+
+        assertEquals(Arrays.asList(2, 5, 4),
+            new FilterKAreaStrategy(FilterKAreaType.TOP, 3).filter(metrics));
+        assertEquals(Arrays.asList(1, 3),
+            new FilterKAreaStrategy(FilterKAreaType.BOTTOM, 2).filter(metrics));
+        assertEquals(Arrays.asList(1, 3, 4, 2, 5),
+            new FilterKAreaStrategy(FilterKAreaType.BOTTOM, 10).filter(metrics));
+    }
+
+    @Test
+    public void testCovers() {
+        final FilterKAreaStrategy top = new FilterKAreaStrategy(FilterKAreaType.TOP, 2);
+
+        /* the shard kept 3.0 and 2.0, so every group it discarded is at most 2.0 */
+        final List<List<MetricCollection>> truncated =
+            Collections.singletonList(Arrays.asList(points(3.0), points(2.0)));
+
+        assertTrue(top.covers(Arrays.asList(points(4.0), points(2.0)), truncated));
+        assertFalse(top.covers(Arrays.asList(points(4.0), points(1.0)), truncated));
+        assertFalse(top.covers(Collections.singletonList(points(4.0)), truncated));
+
+        /* a shard which kept less than k groups only discarded groups without data */
+        assertTrue(top.covers(Collections.singletonList(points(1.0)),
+            Collections.singletonList(Collections.singletonList(points(5.0)))));
+
+        final FilterKAreaStrategy bottom = new FilterKAreaStrategy(FilterKAreaType.BOTTOM, 2);
+
+        assertTrue(bottom.covers(Arrays.asList(points(1.0), points(3.0)), truncated));
+        assertFalse(bottom.covers(Arrays.asList(points(1.0), points(2.0)),
+            Collections.singletonList(Arrays.asList(points(1.5), points(0.5)))));
+    }
+
+    private FilterableMetrics<Integer> filterable(final int id, final double value) {
+        return new FilterableMetrics<>(id, () -> points(value));
+    }
+
+    private MetricCollection points(final double value) {
+        return MetricCollection.points(Arrays.asList(new Point(0, value), new Point(1000, value)));
+    }
 }
@@ -21,66 +21,120 @@
 
 package com.spotify.heroic.consumer.collectd;
 
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
 import com.spotify.heroic.common.GrokProcessor;
+import com.spotify.heroic.common.Series;
 import com.spotify.heroic.ingestion.Ingestion;
 import com.spotify.heroic.ingestion.IngestionGroup;
+import com.spotify.heroic.metric.Metric;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.DatagramPacket;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
+/**
+ * Handler for collectd packets.
+ * <p>
+ * The handler is shared between all channels bound by the {@link Server}, and must therefore be
+ * thread-safe. All samples in a single packet are batched, so that every distinct series in the
+ * packet results in exactly one ingestion request.
+ */
+@ChannelHandler.Sharable
 @RequiredArgsConstructor
 public class CollectdChannelHandler extends SimpleChannelInboundHandler<DatagramPacket> {
     private final AsyncFramework async;
     private final IngestionGroup ingestion;
     private final Optional<GrokProcessor> hostProcessor;
     private final CollectdTypes types;
+    private final Cache<HostKey, List<Map.Entry<String, String>>> hostTags;
 
     @Override
     protected void channelRead0(final ChannelHandlerContext ctx, final DatagramPacket msg)
         throws Exception {
         final Iterator<CollectdSample> samples = CollectdParser.parse(msg.content());
 
+        final Map<Series, List<Point>> batch = new LinkedHashMap<>();
+
         while (samples.hasNext()) {
             final CollectdSample s = samples.next();
 
-            final Set<Map.Entry<String, String>> base =
-                ImmutableMap.of("host", s.getHost(), "plugin", s.getPlugin()).entrySet();
+            final List<Map.Entry<String, String>> base = hostTags(s.getHost(), s.getPlugin());
 
-            final List<Ingestion.Request> ingestions;
+            for (final Ingestion.Request w : types.convert(s, base)) {
+                final List<Point> points =
+                    batch.computeIfAbsent(w.getSeries(), series -> new ArrayList<>());
 
-            if (hostProcessor.isPresent()) {
-                final Map<String, Object> parts = hostProcessor.get().parse(s.getHost());
+                final Iterator<? extends Metric> it = w.all();
 
-                final Set<Map.Entry<String, String>> tags = ImmutableSet.copyOf(
-                    Iterables.transform(parts.entrySet(),
-                        e -> Pair.of(e.getKey(), e.getValue().toString())));
-
-                ingestions = types.convert(s, Iterables.concat(base, tags));
-            } else {
-                ingestions = types.convert(s, base);
+                while (it.hasNext()) {
+                    points.add((Point) it.next());
+                }
             }
+        }
 
-            final List<AsyncFuture<Ingestion>> futures = new ArrayList<>();
+        if (batch.isEmpty()) {
+            return;
+        }
 
-            for (final Ingestion.Request w : ingestions) {
-                futures.add(ingestion.write(w));
-            }
+        final List<AsyncFuture<Ingestion>> futures = new ArrayList<>(batch.size());
 
-            async.collectAndDiscard(futures);
+        for (final Map.Entry<Series, List<Point>> e : batch.entrySet()) {
+            final List<Point> points = e.getValue();
+            points.sort(Metric.comparator());
+
+            futures.add(ingestion.write(
+                new Ingestion.Request(e.getKey(), MetricCollection.points(points))));
         }
+
+        async.collectAndDiscard(futures);
+    }
+
+    /**
+     * Build the base tags for the given host and plugin, including the tags parsed out of the host
+     * by the configured host processor, if any.
+     * <p>
+     * Results are cached since hosts and plugins are highly repetitive between packets.
+     */
+    List<Map.Entry<String, String>> hostTags(final String host, final String plugin)
+        throws ExecutionException {
+        return hostTags.get(new HostKey(host, plugin), () -> {
+            final ImmutableList.Builder<Map.Entry<String, String>> tags = ImmutableList.builder();
+
+            tags.addAll(ImmutableMap.of("host", host, "plugin", plugin).entrySet());
+
+            if (hostProcessor.isPresent()) {
+                for (final Map.Entry<String, Object> e : hostProcessor
+                    .get()
+                    .parse(host)
+                    .entrySet()) {
+                    tags.add(Pair.of(e.getKey(), e.getValue().toString()));
+                }
+            }
+
+            return tags.build();
+        });
+    }
+
+    @Data
+    static class HostKey {
+        private final String host;
+        private final String plugin;
     }
 }
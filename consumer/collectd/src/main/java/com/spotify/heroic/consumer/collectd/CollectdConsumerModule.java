@@ -23,6 +23,8 @@ package com.spotify.heroic.consumer.collectd;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.spotify.heroic.common.GrokProcessor;
 import com.spotify.heroic.consumer.ConsumerModule;
 import com.spotify.heroic.dagger.PrimaryComponent;
@@ -45,6 +47,8 @@ import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Named;
 import java.net.InetAddress;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -54,12 +58,16 @@ import java.util.concurrent.atomic.LongAdder;
 @Data
 public class CollectdConsumerModule implements ConsumerModule {
     public static final int DEFAULT_PORT = 25826;
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final long DEFAULT_HOST_CACHE_SIZE = 10000;
 
     private final Optional<String> id;
     private final Optional<String> host;
     private final Optional<Integer> port;
     private final Optional<GrokProcessor> hostProcessor;
     private final CollectdTypes types;
+    private final int threads;
+    private final long hostCacheSize;
 
     @Override
     public Exposed module(
@@ -150,8 +158,12 @@ public class CollectdConsumerModule implements ConsumerModule {
                         log.warn("No backends are part of the selected ingestion group");
                     }
 
+                    final Cache<CollectdChannelHandler.HostKey, List<Map.Entry<String, String>>>
+                        hostTags = CacheBuilder.newBuilder().maximumSize(hostCacheSize).build();
+
                     final CollectdChannelHandler handler =
-                        new CollectdChannelHandler(async, ingestion, hostProcessor, types);
+                        new CollectdChannelHandler(async, ingestion, hostProcessor, types,
+                            hostTags);
 
                     final InetAddress h = host.map(host -> {
                         try {
@@ -163,8 +175,8 @@ public class CollectdConsumerModule implements ConsumerModule {
 
                     final int p = port.orElse(DEFAULT_PORT);
 
-                    log.info("Setting up on {}:{}", h, p);
-                    return Server.setup(async, handler, h, p);
+                    log.info("Setting up on {}:{} ({} thread(s))", h, p, threads);
+                    return Server.setup(async, handler, h, p, threads);
                 }
 
                 @Override
@@ -183,19 +195,25 @@ public class CollectdConsumerModule implements ConsumerModule {
         private Optional<Integer> port = Optional.empty();
         private Optional<GrokProcessor> hostProcessor = Optional.empty();
         private Optional<CollectdTypes> types = Optional.empty();
+        private Optional<Integer> threads = Optional.empty();
+        private Optional<Long> hostCacheSize = Optional.empty();
 
         @JsonCreator
         public Builder(
             @JsonProperty("id") Optional<String> id, @JsonProperty("host") Optional<String> host,
             @JsonProperty("port") Optional<Integer> port,
             @JsonProperty("hostPattern") Optional<GrokProcessor> hostPattern,
-            @JsonProperty("types") Optional<CollectdTypes> types
+            @JsonProperty("types") Optional<CollectdTypes> types,
+            @JsonProperty("threads") Optional<Integer> threads,
+            @JsonProperty("hostCacheSize") Optional<Long> hostCacheSize
         ) {
             this.id = id;
             this.host = host;
             this.port = port;
             this.hostProcessor = hostPattern;
             this.types = types;
+            this.threads = threads;
+            this.hostCacheSize = hostCacheSize;
         }
 
         public Builder id(String id) {
@@ -223,6 +241,16 @@ public class CollectdConsumerModule implements ConsumerModule {
             return this;
         }
 
+        public Builder threads(int threads) {
+            this.threads = Optional.of(threads);
+            return this;
+        }
+
+        public Builder hostCacheSize(long hostCacheSize) {
+            this.hostCacheSize = Optional.of(hostCacheSize);
+            return this;
+        }
+
         @Override
         public ConsumerModule build() {
             // @formatter:off
@@ -231,7 +259,9 @@ public class CollectdConsumerModule implements ConsumerModule {
                 host,
                 port,
                 hostProcessor,
-                types.orElseGet(CollectdTypes::supplyDefault)
+                types.orElseGet(CollectdTypes::supplyDefault),
+                threads.orElse(DEFAULT_THREADS),
+                hostCacheSize.orElse(DEFAULT_HOST_CACHE_SIZE)
             );
             // @formatter:on
         }
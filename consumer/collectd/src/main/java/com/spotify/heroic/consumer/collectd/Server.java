@@ -21,58 +21,118 @@
 
 package com.spotify.heroic.consumer.collectd;
 
+import com.google.common.collect.ImmutableList;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.ResolvableFuture;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
 
+@Slf4j
 @Data
 public class Server {
     private final AsyncFramework async;
-    private final Channel channel;
+    private final EventLoopGroup group;
+    private final List<Channel> channels;
 
     public AsyncFuture<Void> start() {
         return async.resolved();
     }
 
     public AsyncFuture<Void> shutdown() {
-        return async.resolved();
+        final List<AsyncFuture<Void>> futures = new ArrayList<>();
+
+        for (final Channel channel : channels) {
+            futures.add(toFuture(async, channel.close()));
+        }
+
+        return async.collectAndDiscard(futures).lazyTransform(ignore -> {
+            final ResolvableFuture<Void> future = async.future();
+
+            group.shutdownGracefully().addListener(f -> {
+                if (f.isSuccess()) {
+                    future.resolve(null);
+                } else {
+                    future.fail(f.cause());
+                }
+            });
+
+            return future;
+        });
     }
 
+    /**
+     * Setup a collectd server.
+     * <p>
+     * When native epoll is available, {@code threads} sockets are bound to the same address using
+     * {@code SO_REUSEPORT}, each served by its own event loop thread so that the kernel distributes
+     * incoming packets between them. Otherwise a single NIO socket is bound.
+     */
     public static AsyncFuture<Server> setup(
         final AsyncFramework async, final CollectdChannelHandler handler, final InetAddress host,
-        final int port
+        final int port, final int threads
     ) {
-        final EventLoopGroup group = new NioEventLoopGroup();
+        final EventLoopGroup group;
         final Bootstrap b = new Bootstrap();
+        final int sockets;
 
-        b
-            .group(group)
-            .channel(NioDatagramChannel.class)
-            .option(ChannelOption.SO_BROADCAST, true)
-            .handler(handler);
+        if (Epoll.isAvailable()) {
+            group = new EpollEventLoopGroup(threads);
+            sockets = threads;
 
-        final ResolvableFuture<Server> future = async.future();
+            b
+                .group(group)
+                .channel(EpollDatagramChannel.class)
+                .option(EpollChannelOption.SO_REUSEPORT, true);
+        } else {
+            log.info("Native epoll not available, binding a single socket");
+            group = new NioEventLoopGroup(1);
+            sockets = 1;
 
-        b.bind(host, port).addListener(new ChannelFutureListener() {
-            @Override
-            public void operationComplete(final ChannelFuture f) throws Exception {
-                if (f.isSuccess()) {
-                    future.resolve(new Server(async, f.channel()));
-                } else {
-                    future.fail(
-                        f.cause() != null ? f.cause() : new RuntimeException("Failed to bind"));
-                }
+            b.group(group).channel(NioDatagramChannel.class);
+        }
+
+        b.option(ChannelOption.SO_BROADCAST, true).handler(handler);
+
+        final List<AsyncFuture<Channel>> binds = new ArrayList<>(sockets);
+
+        for (int i = 0; i < sockets; i++) {
+            final ChannelFuture bind = b.bind(host, port);
+            binds.add(toFuture(async, bind).directTransform(ignore -> bind.channel()));
+        }
+
+        return async
+            .collect(binds)
+            .directTransform(channels -> new Server(async, group, ImmutableList.copyOf(channels)))
+            .onFailed(e -> group.shutdownGracefully());
+    }
+
+    private static AsyncFuture<Void> toFuture(
+        final AsyncFramework async, final ChannelFuture channelFuture
+    ) {
+        final ResolvableFuture<Void> future = async.future();
+
+        channelFuture.addListener(f -> {
+            if (f.isSuccess()) {
+                future.resolve(null);
+            } else {
+                future.fail(f.cause() != null ? f.cause()
+                    : new RuntimeException("Channel operation failed"));
             }
         });
 
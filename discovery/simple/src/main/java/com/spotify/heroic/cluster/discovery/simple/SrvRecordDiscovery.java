@@ -38,6 +38,7 @@ import javax.inject.Named;
 import java.net.URI;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 @ToString
 @Slf4j
@@ -49,18 +50,20 @@ public class SrvRecordDiscovery implements ClusterDiscovery {
     private final List<String> records;
     private final Optional<String> protocol;
     private final Optional<Integer> port;
+    private final ExecutorService blocking;
 
     @Inject
     public SrvRecordDiscovery(
         AsyncFramework async, @Named("records") List<String> records,
         @Named("protocol") Optional<String> protocol,
 
-        @Named("port") Optional<Integer> port
+        @Named("port") Optional<Integer> port, @Named("blocking") ExecutorService blocking
     ) {
         this.async = async;
         this.records = records;
         this.protocol = protocol;
         this.port = port;
+        this.blocking = blocking;
     }
 
     @Override
@@ -91,7 +94,7 @@ public class SrvRecordDiscovery implements ClusterDiscovery {
                 }
 
                 return results.build();
-            }));
+            }, blocking));
         }
 
         return async.collect(lookups.build()).directTransform(all -> {
@@ -42,6 +42,7 @@ public class CollectdConsumerProfile extends HeroicProfileBase {
 
         params.get("host").ifPresent(module::host);
         params.getInteger("port").ifPresent(module::port);
+        params.getInteger("threads").ifPresent(module::threads);
         params
             .get("pattern")
             .map(p -> new GrokProcessor(ImmutableMap.of(), p))
@@ -68,7 +69,9 @@ public class CollectdConsumerProfile extends HeroicProfileBase {
         // @formatter:off
         return ImmutableList.of(
             parameter("host", "Host to bind to", "<host>"),
-            parameter("port", "Port to bind to", "<port>")
+            parameter("port", "Port to bind to", "<port>"),
+            parameter("threads", "Number of sockets and threads to receive packets on " +
+                "(requires native epoll)", "<threads>")
         );
         // @formatter:on
     }
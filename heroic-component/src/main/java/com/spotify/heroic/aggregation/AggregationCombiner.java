@@ -23,15 +23,29 @@ package com.spotify.heroic.aggregation;
 
 import com.google.common.collect.ImmutableList;
 import com.spotify.heroic.metric.ShardedResultGroup;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public interface AggregationCombiner {
-    List<ShardedResultGroup> combine(List<List<ShardedResultGroup>> all);
+    /**
+     * Combine the result groups from all shards.
+     *
+     * @param async Async framework to use.
+     * @param executor Executor to perform expensive combines on.
+     * @param all Result groups from every shard.
+     * @return A future which is resolved with the combined groups.
+     */
+    AsyncFuture<List<ShardedResultGroup>> combine(
+        AsyncFramework async, ExecutorService executor, List<List<ShardedResultGroup>> all
+    );
 
     AggregationCombiner DEFAULT = new AggregationCombiner() {
         @Override
-        public List<ShardedResultGroup> combine(
+        public AsyncFuture<List<ShardedResultGroup>> combine(
+            final AsyncFramework async, final ExecutorService executor,
             final List<List<ShardedResultGroup>> all
         ) {
             final ImmutableList.Builder<ShardedResultGroup> combined = ImmutableList.builder();
@@ -40,7 +54,7 @@ public interface AggregationCombiner {
                 combined.addAll(groups);
             }
 
-            return combined.build();
+            return async.resolved(combined.build());
         }
 
         @Override
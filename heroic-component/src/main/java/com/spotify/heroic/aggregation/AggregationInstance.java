@@ -21,9 +21,12 @@
 
 package com.spotify.heroic.aggregation;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.spotify.heroic.ObjectHasher;
 import com.spotify.heroic.common.DateRange;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -120,6 +123,57 @@ public interface AggregationInstance {
         return true;
     }
 
+    /**
+     * Indicates if input groups can be partitioned by key, and each partition aggregated
+     * separately.
+     * <p>
+     * Aggregations which need to see every group to make a decision (like top-k) must not be
+     * partitioned.
+     */
+    default boolean partitionable() {
+        return distributable();
+    }
+
+    /**
+     * The key of the output group which an input group with the given key is aggregated into.
+     * <p>
+     * Input groups are partitioned by this key, so that every group which is aggregated into the
+     * same output ends up in the same partition. By default every input group is aggregated into
+     * the same output.
+     *
+     * @param key Key of the input group.
+     * @return The key of the output group.
+     */
+    default Map<String, String> partitionKey(final Map<String, String> key) {
+        return ImmutableMap.of();
+    }
+
+    /**
+     * Indicates if this aggregation produces the same result when it is fed rollups, instead of
+     * the raw samples that they summarize.
+     * <p>
+     * Rollups are spreads, one for every aligned period of the given resolution.
+     *
+     * @param resolution Resolution of the rollups in milliseconds.
+     * @return {@code true} if the aggregation can be computed from rollups.
+     */
+    default boolean rollupCompatible(long resolution) {
+        return false;
+    }
+
+    /**
+     * Split this aggregation into a shard-local and a reducing phase.
+     * <p>
+     * Aggregations which filter groups (like top-k) can discard most groups on each shard. This
+     * permits shards to only send the data of their local candidates, instead of every group.
+     *
+     * @return The two-phase representation of this aggregation, or empty if not supported.
+     * @see TwoPhaseAggregation
+     */
+    default Optional<TwoPhaseAggregation> twoPhase() {
+        return Optional.empty();
+    }
+
     /**
      * Hash the aggregation to generate a key suitable for caching.
      */
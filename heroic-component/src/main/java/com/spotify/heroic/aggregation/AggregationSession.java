@@ -22,6 +22,7 @@
 package com.spotify.heroic.aggregation;
 
 import com.spotify.heroic.common.Series;
+import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.metric.Payload;
 import com.spotify.heroic.metric.Event;
 import com.spotify.heroic.metric.MetricGroup;
@@ -31,6 +32,8 @@ import com.spotify.heroic.metric.Spread;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public interface AggregationSession {
     void updatePoints(Map<String, String> key, Set<Series> series, List<Point> values);
@@ -47,4 +50,41 @@ public interface AggregationSession {
      * Get the result of this aggregator.
      */
     AggregationResult result();
+
+    /**
+     * Hand the result of this aggregator to the given consumer, one output at a time.
+     * <p>
+     * Unlike {@link #result()}, the result is never materialized as a whole, and implementations
+     * may release their state as outputs are handed over. The session must not be used after it
+     * has been drained.
+     *
+     * @param consumer Consumer of every output of this aggregator.
+     * @return statistics of the aggregation
+     */
+    default Statistics drain(Consumer<AggregationOutput> consumer) {
+        final AggregationResult result = result();
+        result.getResult().forEach(consumer);
+        return result.getStatistics();
+    }
+
+    /**
+     * Feed the result of this aggregator into another session.
+     * <p>
+     * Implementations which know the next session can fuse both stages, by feeding every sample
+     * they build directly into it instead of building an intermediate collection. The session
+     * must not be used after it has been drained.
+     *
+     * @param next Session to feed with every output of this aggregator.
+     * @param key Maps the key of each output to the key it is fed into the next session with.
+     * @param quota Charged for every sample fed into the next session.
+     * @return statistics of the aggregation
+     */
+    default Statistics drain(
+        AggregationSession next, UnaryOperator<Map<String, String>> key, RetainQuotaWatcher quota
+    ) {
+        return drain(u -> {
+            quota.retainData(u.getMetrics().size());
+            u.getMetrics().updateAggregation(next, key.apply(u.getKey()), u.getSeries());
+        });
+    }
 }
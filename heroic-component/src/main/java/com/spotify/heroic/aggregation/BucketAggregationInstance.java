@@ -38,11 +38,15 @@ import com.spotify.heroic.metric.Payload;
 import com.spotify.heroic.metric.Point;
 import com.spotify.heroic.metric.Spread;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -91,7 +95,8 @@ public abstract class BucketAggregationInstance<B extends Bucket> implements Agg
             Map<String, String> key, Set<Series> s, List<Point> values
         ) {
             series.add(s);
-            feed(MetricType.POINT, values, (bucket, m) -> bucket.updatePoint(key, m));
+            final Map<String, String> k = prepareKey(key);
+            feed(MetricType.POINT, values, (bucket, m) -> bucket.updatePoint(k, m));
         }
 
         @Override
@@ -99,7 +104,8 @@ public abstract class BucketAggregationInstance<B extends Bucket> implements Agg
             Map<String, String> key, Set<Series> s, List<Event> values
         ) {
             series.add(s);
-            feed(MetricType.EVENT, values, (bucket, m) -> bucket.updateEvent(key, m));
+            final Map<String, String> k = prepareKey(key);
+            feed(MetricType.EVENT, values, (bucket, m) -> bucket.updateEvent(k, m));
         }
 
         @Override
@@ -107,7 +113,8 @@ public abstract class BucketAggregationInstance<B extends Bucket> implements Agg
             Map<String, String> key, Set<Series> s, List<Spread> values
         ) {
             series.add(s);
-            feed(MetricType.SPREAD, values, (bucket, m) -> bucket.updateSpread(key, m));
+            final Map<String, String> k = prepareKey(key);
+            feed(MetricType.SPREAD, values, (bucket, m) -> bucket.updateSpread(k, m));
         }
 
         @Override
@@ -115,7 +122,8 @@ public abstract class BucketAggregationInstance<B extends Bucket> implements Agg
             Map<String, String> key, Set<Series> s, List<MetricGroup> values
         ) {
             series.add(s);
-            feed(MetricType.GROUP, values, (bucket, m) -> bucket.updateGroup(key, m));
+            final Map<String, String> k = prepareKey(key);
+            feed(MetricType.GROUP, values, (bucket, m) -> bucket.updateGroup(k, m));
         }
 
         @Override
@@ -123,7 +131,8 @@ public abstract class BucketAggregationInstance<B extends Bucket> implements Agg
             Map<String, String> key, Set<Series> s, List<Payload> values
         ) {
             series.add(s);
-            feed(MetricType.CARDINALITY, values, (bucket, m) -> bucket.updatePayload(key, m));
+            final Map<String, String> k = prepareKey(key);
+            feed(MetricType.CARDINALITY, values, (bucket, m) -> bucket.updatePayload(k, m));
         }
 
         private <T extends Metric> void feed(
@@ -154,6 +163,105 @@ public abstract class BucketAggregationInstance<B extends Bucket> implements Agg
 
         @Override
         public AggregationResult result() {
+            return new AggregationResult(ImmutableList.of(output()), statistics());
+        }
+
+        @Override
+        public Statistics drain(final Consumer<AggregationOutput> consumer) {
+            consumer.accept(output());
+            return release();
+        }
+
+        /**
+         * Fuse this session with the next one if it is also a bucket session. Every bucket is
+         * built and fed directly into the buckets of the next session, so no intermediate
+         * collection is built and the buckets of this session are released right away.
+         */
+        @Override
+        public Statistics drain(
+            final AggregationSession next, final UnaryOperator<Map<String, String>> key,
+            final RetainQuotaWatcher quota
+        ) {
+            if (!(next instanceof BucketAggregationInstance.Session)) {
+                return AggregationSession.super.drain(next, key, quota);
+            }
+
+            final Optional<Consumer<Metric>> sink =
+                ((BucketAggregationInstance<?>.Session) next).sink(out, key.apply(EMPTY_KEY),
+                    series);
+
+            if (sink.isPresent()) {
+                long fed = 0;
+
+                for (final B bucket : buckets) {
+                    final Metric d = build(bucket);
+
+                    if (!d.valid()) {
+                        continue;
+                    }
+
+                    sink.get().accept(d);
+                    fed++;
+                }
+
+                quota.retainData(fed);
+            }
+
+            return release();
+        }
+
+        /**
+         * Build a consumer which feeds samples of the given type directly into the buckets of
+         * this session.
+         *
+         * @return the consumer, or empty if this session ignores samples of the given type
+         */
+        Optional<Consumer<Metric>> sink(
+            final MetricType type, final Map<String, String> key,
+            final Collection<Set<Series>> s
+        ) {
+            series.addAll(s);
+
+            if (!input.contains(type)) {
+                return Optional.empty();
+            }
+
+            final Map<String, String> k = prepareKey(key);
+
+            final BucketConsumer<B, Metric> consumer;
+
+            switch (type) {
+                case POINT:
+                    consumer = (bucket, m) -> bucket.updatePoint(k, (Point) m);
+                    break;
+                case EVENT:
+                    consumer = (bucket, m) -> bucket.updateEvent(k, (Event) m);
+                    break;
+                case SPREAD:
+                    consumer = (bucket, m) -> bucket.updateSpread(k, (Spread) m);
+                    break;
+                case GROUP:
+                    consumer = (bucket, m) -> bucket.updateGroup(k, (MetricGroup) m);
+                    break;
+                case CARDINALITY:
+                    consumer = (bucket, m) -> bucket.updatePayload(k, (Payload) m);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported type: " + type);
+            }
+
+            return Optional.of(m -> {
+                final BucketStrategy.StartEnd startEnd = mapping.map(m.getTimestamp());
+
+                for (int i = startEnd.getStart(); i < startEnd.getEnd(); i++) {
+                    consumer.apply(buckets.get(i), m);
+                }
+
+                sampleSize.increment();
+            });
+        }
+
+        private AggregationOutput output() {
             final List<Metric> result = new ArrayList<>(buckets.size());
 
             for (final B bucket : buckets) {
@@ -168,12 +276,22 @@ public abstract class BucketAggregationInstance<B extends Bucket> implements Agg
 
             final Set<Series> series = ImmutableSet.copyOf(Iterables.concat(this.series));
             final MetricCollection metrics = MetricCollection.build(out, result);
+            return new AggregationOutput(EMPTY_KEY, series, metrics);
+        }
 
-            final Statistics statistics =
-                new Statistics(ImmutableMap.of(AggregationInstance.SAMPLE_SIZE, sampleSize.sum()));
+        private Statistics statistics() {
+            return new Statistics(
+                ImmutableMap.of(AggregationInstance.SAMPLE_SIZE, sampleSize.sum()));
+        }
 
-            final AggregationOutput d = new AggregationOutput(EMPTY_KEY, series, metrics);
-            return new AggregationResult(ImmutableList.of(d), statistics);
+        /**
+         * Release the buckets of a drained session.
+         */
+        private Statistics release() {
+            final Statistics statistics = statistics();
+            buckets.clear();
+            series.clear();
+            return statistics;
         }
     }
 
@@ -206,9 +324,40 @@ public abstract class BucketAggregationInstance<B extends Bucket> implements Agg
         return size;
     }
 
+    /**
+     * Rollups can be used if buckets summarize spreads the same way as raw samples, and every
+     * bucket covers a whole number of rollup periods.
+     */
+    @Override
+    public boolean rollupCompatible(final long resolution) {
+        return summarizesSpreads() && resolution > 0 && size % resolution == 0 &&
+            extent % resolution == 0;
+    }
+
+    /**
+     * Indicates if buckets aggregate a spread the same way as the samples that it summarizes.
+     */
+    protected boolean summarizesSpreads() {
+        return false;
+    }
+
     protected void bucketHashTo(final ObjectHasher hasher) {
     }
 
+    /**
+     * Prepare the group key once for every update call, before it is handed to each bucket that a
+     * sample in that call maps to.
+     * <p>
+     * Implementations can use this to pre-compute expensive derived state (like a hash) of the key,
+     * instead of re-computing it for every sample and bucket.
+     *
+     * @param key The group key of the update call.
+     * @return The key that will be handed to the buckets.
+     */
+    protected Map<String, String> prepareKey(final Map<String, String> key) {
+        return key;
+    }
+
     @Override
     public void hashTo(final ObjectHasher hasher) {
         hasher.putObject(getClass(), () -> {
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.aggregation;
+
+import com.spotify.heroic.metric.MetricCollection;
+import java.util.List;
+
+/**
+ * Decides if the groups which were selected by the shard-local phase of a
+ * {@link TwoPhaseAggregation} are enough to compute the final result.
+ */
+public interface CandidateBound {
+    /**
+     * Bound for aggregations which decide on each group in isolation. A group which is not
+     * selected on the only shard it is stored in can never be selected globally.
+     */
+    CandidateBound EXACT = (candidates, truncated) -> true;
+
+    /**
+     * Check if no group which was discarded by a shard could be part of the final result.
+     *
+     * @param candidates Exact data of every group which is still a candidate. This includes
+     * groups which were selected by a single shard, and groups which span shards after they have
+     * been fetched again from every shard.
+     * @param truncated For every shard which discarded groups, the groups it selected as seen by
+     * that shard.
+     * @return {@code true} if the final result can be computed from the candidates.
+     */
+    boolean covers(List<MetricCollection> candidates, List<List<MetricCollection>> truncated);
+}
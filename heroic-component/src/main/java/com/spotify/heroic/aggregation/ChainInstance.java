@@ -32,11 +32,14 @@ import com.spotify.heroic.metric.MetricGroup;
 import com.spotify.heroic.metric.Payload;
 import com.spotify.heroic.metric.Point;
 import com.spotify.heroic.metric.Spread;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
@@ -70,6 +73,30 @@ public class ChainInstance implements AggregationInstance {
             .orElse(-1L);
     }
 
+    /**
+     * Only the first aggregation in the chain sees the input of the chain.
+     */
+    @Override
+    public boolean rollupCompatible(final long resolution) {
+        return chain.get(0).rollupCompatible(resolution);
+    }
+
+    @Override
+    public boolean partitionable() {
+        return chain.stream().allMatch(AggregationInstance::partitionable);
+    }
+
+    @Override
+    public Map<String, String> partitionKey(final Map<String, String> key) {
+        Map<String, String> current = key;
+
+        for (final AggregationInstance aggregation : chain) {
+            current = aggregation.partitionKey(current);
+        }
+
+        return current;
+    }
+
     @Override
     public AggregationInstance distributed() {
         final Iterator<AggregationInstance> it = chain.iterator();
@@ -135,23 +162,55 @@ public class ChainInstance implements AggregationInstance {
         return last.reducer();
     }
 
+    /**
+     * The last element in the chain which supports two-phase evaluation splits the chain.
+     * <p>
+     * Everything up to and including its local phase is evaluated on the shards, its reducer and
+     * the remainder of the chain is evaluated on the combined result.
+     */
     @Override
-    public AggregationSession session(
-        final DateRange range, final RetainQuotaWatcher watcher, final BucketStrategy bucketStrategy
-    ) {
-        final Iterator<AggregationInstance> it = chain.iterator();
+    public Optional<TwoPhaseAggregation> twoPhase() {
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            final Optional<TwoPhaseAggregation> twoPhase = chain.get(i).twoPhase();
 
-        final AggregationInstance first = it.next();
-        final AggregationSession head = first.session(range, watcher, bucketStrategy);
+            if (!twoPhase.isPresent()) {
+                continue;
+            }
 
-        final List<AggregationSession> tail = new ArrayList<>();
+            final TwoPhaseAggregation split = twoPhase.get();
 
-        while (it.hasNext()) {
-            final AggregationSession s = it.next().session(range, watcher, bucketStrategy);
-            tail.add(s);
+            final ImmutableList.Builder<AggregationInstance> local = ImmutableList.builder();
+            local.addAll(chain.subList(0, i));
+            local.add(split.getLocal());
+
+            final ImmutableList.Builder<AggregationInstance> reducer = ImmutableList.builder();
+            reducer.add(split.getReducer());
+            reducer.addAll(chain.subList(i + 1, chain.size()));
+
+            final AggregationInstance input =
+                i == 0 ? split.getInput() : fromList(chain.subList(0, i));
+
+            return Optional.of(new TwoPhaseAggregation(input, fromList(local.build()),
+                fromList(reducer.build()), split.getBound()));
         }
 
-        return new Session(head, tail);
+        return Optional.empty();
+    }
+
+    /**
+     * Only the session of the first aggregation is created up front. Every following session is
+     * created once the previous one is drained into it, and is charged quota for the data it is
+     * actually fed instead of for the queried range. The quota of each stage is released as soon
+     * as it has been drained into the next.
+     */
+    @Override
+    public AggregationSession session(
+        final DateRange range, final RetainQuotaWatcher watcher, final BucketStrategy bucketStrategy
+    ) {
+        final StageQuota quota = new StageQuota(watcher);
+        final AggregationSession head = chain.get(0).session(range, quota, bucketStrategy);
+        return new Session(head, quota, chain.subList(1, chain.size()), range, watcher,
+            bucketStrategy);
     }
 
     @Override
@@ -206,7 +265,11 @@ public class ChainInstance implements AggregationInstance {
     @RequiredArgsConstructor
     private static final class Session implements AggregationSession {
         private final AggregationSession first;
-        private final Iterable<AggregationSession> rest;
+        private final StageQuota firstQuota;
+        private final List<AggregationInstance> rest;
+        private final DateRange range;
+        private final RetainQuotaWatcher watcher;
+        private final BucketStrategy bucketStrategy;
 
         @Override
         public void updatePoints(
@@ -245,30 +308,106 @@ public class ChainInstance implements AggregationInstance {
 
         @Override
         public AggregationResult result() {
-            final AggregationResult firstResult = first.result();
-            List<AggregationOutput> current = firstResult.getResult();
-            Statistics statistics = firstResult.getStatistics();
-
-            for (final AggregationSession session : rest) {
-                for (final AggregationOutput u : current) {
-                    u.getMetrics().updateAggregation(session, u.getKey(), u.getSeries());
-                }
+            final ImmutableList.Builder<AggregationOutput> result = ImmutableList.builder();
+            final Statistics statistics = drain(result::add);
+            return new AggregationResult(result.build(), statistics);
+        }
 
-                final AggregationResult next = session.result();
-                current = next.getResult();
-                statistics = statistics.merge(next.getStatistics());
+        /**
+         * Every stage is drained directly into the next one, so the intermediate results of the
+         * chain are never materialized as a whole. Stages which support it are fused, like
+         * bucket aggregations which feed every sample they build into the next bucket
+         * aggregation.
+         */
+        @Override
+        public Statistics drain(final Consumer<AggregationOutput> consumer) {
+            AggregationSession current = first;
+            StageQuota currentQuota = firstQuota;
+            Statistics statistics = Statistics.empty();
+
+            for (final AggregationInstance stage : rest) {
+                final StageQuota quota = new StageQuota(watcher);
+                final AggregationSession next =
+                    stage.session(range, quota.fedOnly(), bucketStrategy);
+
+                statistics =
+                    statistics.merge(current.drain(next, UnaryOperator.identity(), quota));
+                currentQuota.release();
+
+                current = next;
+                currentQuota = quota;
             }
 
-            return new AggregationResult(current, statistics);
+            return statistics.merge(current.drain(consumer));
         }
 
         @Override
         public String toString() {
-            if (rest.iterator().hasNext()) {
+            if (!rest.isEmpty()) {
                 return "[" + first + ", " + Joiner.on(", ").join(rest) + "]";
             }
 
             return "[" + first + "]";
         }
     }
+
+    /**
+     * Quota retained by a single stage of a chain, which is released once the stage has been
+     * drained into the next one.
+     * <p>
+     * The first stage is charged for what its sessions retain, since it sees the input of the
+     * chain. Every following stage is created with {@link #fedOnly()}, which ignores the
+     * reservations of its sessions, and is instead charged for the data that the previous stage
+     * feeds into it.
+     */
+    @RequiredArgsConstructor
+    private static final class StageQuota implements RetainQuotaWatcher {
+        private final RetainQuotaWatcher parent;
+
+        private final AtomicLong retained = new AtomicLong();
+
+        @Override
+        public void retainData(final long n) {
+            retained.addAndGet(n);
+            parent.retainData(n);
+        }
+
+        @Override
+        public boolean mayRetainMoreData() {
+            return parent.mayRetainMoreData();
+        }
+
+        @Override
+        public int getRetainQuota() {
+            return parent.getRetainQuota();
+        }
+
+        /**
+         * A view of this quota which ignores everything retained through it.
+         */
+        RetainQuotaWatcher fedOnly() {
+            return new RetainQuotaWatcher() {
+                @Override
+                public void retainData(final long n) {
+                }
+
+                @Override
+                public boolean mayRetainMoreData() {
+                    return parent.mayRetainMoreData();
+                }
+
+                @Override
+                public int getRetainQuota() {
+                    return parent.getRetainQuota();
+                }
+            };
+        }
+
+        /**
+         * Release everything retained by this stage.
+         */
+        void release() {
+            parent.releaseData(retained.getAndSet(0));
+        }
+    }
 }
@@ -25,11 +25,27 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.metric.ShardedResultGroup;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import lombok.Data;
 
 @Data
 public class DistributedAggregationCombiner implements AggregationCombiner {
+    /**
+     * Minimum number of groups before the combine is performed in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 1024;
+
+    /**
+     * Maximum number of partitions to reduce in parallel.
+     */
+    public static final int PARTITIONS = Runtime.getRuntime().availableProcessors() * 4;
+
     private final AggregationInstance reducer;
     private final DateRange range;
     private final BucketStrategy bucketStrategy;
@@ -53,9 +69,86 @@ public class DistributedAggregationCombiner implements AggregationCombiner {
     }
 
     @Override
-    public List<ShardedResultGroup> combine(
+    public AsyncFuture<List<ShardedResultGroup>> combine(
+        final AsyncFramework async, final ExecutorService executor,
         final List<List<ShardedResultGroup>> all
     ) {
+        final int size = all.stream().mapToInt(List::size).sum();
+
+        if (size < PARALLEL_THRESHOLD || !reducer.partitionable()) {
+            return async.resolved(reduce(all));
+        }
+
+        return combineParallel(async, executor, all, size);
+    }
+
+    /**
+     * Partition all groups by the key they are reduced into, and reduce each partition as a
+     * separate task on the given executor.
+     * <p>
+     * Partitions are concatenated in order, so the output is deterministic for a given input. If
+     * the same key is produced by more than one partition, the partitions were not independent and
+     * the combine is performed again serially.
+     */
+    AsyncFuture<List<ShardedResultGroup>> combineParallel(
+        final AsyncFramework async, final ExecutorService executor,
+        final List<List<ShardedResultGroup>> all, final int size
+    ) {
+        final int count = Math.min(PARTITIONS, size / PARALLEL_THRESHOLD + 1);
+
+        final List<List<ShardedResultGroup>> partitions = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            partitions.add(new ArrayList<>());
+        }
+
+        for (final List<ShardedResultGroup> groups : all) {
+            for (final ShardedResultGroup g : groups) {
+                final Map<String, String> key = reducer.partitionKey(g.getKey());
+                partitions.get(Math.floorMod(key.hashCode(), count)).add(g);
+            }
+        }
+
+        final List<AsyncFuture<List<ShardedResultGroup>>> reduced = new ArrayList<>();
+
+        for (final List<ShardedResultGroup> partition : partitions) {
+            if (partition.isEmpty()) {
+                continue;
+            }
+
+            /* every group is reduced into the same key, nothing to parallelize */
+            if (partition.size() == size) {
+                return async.resolved(reduce(all));
+            }
+
+            reduced.add(async.call(() -> reduce(ImmutableList.of(partition)), executor));
+        }
+
+        return async.collect(reduced).directTransform(results -> {
+            final ImmutableList.Builder<ShardedResultGroup> groups = ImmutableList.builder();
+            final Map<Map<String, String>, Integer> seen = new HashMap<>();
+
+            int index = 0;
+
+            for (final List<ShardedResultGroup> partition : results) {
+                for (final ShardedResultGroup g : partition) {
+                    final Integer previous = seen.putIfAbsent(g.getKey(), index);
+
+                    if (previous != null && previous != index) {
+                        return reduce(all);
+                    }
+
+                    groups.add(g);
+                }
+
+                index++;
+            }
+
+            return groups.build();
+        });
+    }
+
+    private List<ShardedResultGroup> reduce(final List<List<ShardedResultGroup>> all) {
         final AggregationSession session =
             reducer.session(range, RetainQuotaWatcher.NO_QUOTA, bucketStrategy);
 
@@ -70,6 +70,14 @@ public class EmptyInstance implements AggregationInstance {
         return this;
     }
 
+    /**
+     * Groups are collected as they are.
+     */
+    @Override
+    public Map<String, String> partitionKey(final Map<String, String> key) {
+        return key;
+    }
+
     @Override
     public void hashTo(final ObjectHasher hasher) {
         hasher.putObject(getClass());
@@ -34,12 +34,15 @@ import com.spotify.heroic.metric.MetricGroup;
 import com.spotify.heroic.metric.Payload;
 import com.spotify.heroic.metric.Point;
 import com.spotify.heroic.metric.Spread;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
@@ -92,6 +95,21 @@ public abstract class GroupingAggregation implements AggregationInstance {
         return each.cadence();
     }
 
+    @Override
+    public boolean partitionable() {
+        return each.partitionable();
+    }
+
+    @Override
+    public Map<String, String> partitionKey(final Map<String, String> key) {
+        return key(key);
+    }
+
+    @Override
+    public boolean rollupCompatible(final long resolution) {
+        return each.rollupCompatible(resolution);
+    }
+
     @Override
     public AggregationInstance distributed() {
         return newInstance(of, each.distributed());
@@ -114,12 +132,53 @@ public abstract class GroupingAggregation implements AggregationInstance {
         return String.format("%s(of=%s, each=%s)", getClass().getSimpleName(), of, each);
     }
 
+    /**
+     * The key of a group, with a pre-computed hash code.
+     */
+    @ToString(of = {"key"})
+    static final class GroupKey {
+        private final Map<String, String> key;
+        private final int hash;
+
+        GroupKey(final Map<String, String> key) {
+            this.key = key;
+            this.hash = key.hashCode();
+        }
+
+        Map<String, String> getKey() {
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof GroupKey)) {
+                return false;
+            }
+
+            final GroupKey other = (GroupKey) o;
+            return hash == other.hash && key.equals(other.key);
+        }
+    }
+
     @ToString
     @RequiredArgsConstructor
     private final class GroupSession implements AggregationSession {
-        private final ConcurrentMap<Map<String, String>, AggregationSession> sessions =
+        private final ConcurrentMap<GroupKey, AggregationSession> sessions =
             new ConcurrentHashMap<>();
-        private final Object lock = new Object();
+
+        /**
+         * Group keys for single series, which are commonly fed more than once into a session.
+         */
+        private final ConcurrentMap<Series, GroupKey> seriesKeys = new ConcurrentHashMap<>();
 
         private final DateRange range;
         private final RetainQuotaWatcher quotaWatcher;
@@ -129,61 +188,69 @@ public abstract class GroupingAggregation implements AggregationInstance {
         public void updatePoints(
             Map<String, String> group, Set<Series> series, List<Point> values
         ) {
-            final Map<String, String> key = key(group);
-            session(key).updatePoints(key, series, values);
+            final GroupKey key = groupKey(group, series);
+            session(key).updatePoints(key.getKey(), series, values);
         }
 
         @Override
         public void updateEvents(
             Map<String, String> group, Set<Series> series, List<Event> values
         ) {
-            final Map<String, String> key = key(group);
-            session(key).updateEvents(key, series, values);
+            final GroupKey key = groupKey(group, series);
+            session(key).updateEvents(key.getKey(), series, values);
         }
 
         @Override
         public void updateSpreads(
             Map<String, String> group, Set<Series> series, List<Spread> values
         ) {
-            final Map<String, String> key = key(group);
-            session(key).updateSpreads(key, series, values);
+            final GroupKey key = groupKey(group, series);
+            session(key).updateSpreads(key.getKey(), series, values);
         }
 
         @Override
         public void updateGroup(
             Map<String, String> group, Set<Series> series, List<MetricGroup> values
         ) {
-            final Map<String, String> key = key(group);
-            session(key).updateGroup(key, series, values);
+            final GroupKey key = groupKey(group, series);
+            session(key).updateGroup(key.getKey(), series, values);
         }
 
         @Override
         public void updatePayload(
             Map<String, String> group, Set<Series> series, List<Payload> values
         ) {
-            final Map<String, String> key = key(group);
-            session(key).updatePayload(key, series, values);
+            final GroupKey key = groupKey(group, series);
+            session(key).updatePayload(key.getKey(), series, values);
         }
 
-        private AggregationSession session(final Map<String, String> key) {
+        /**
+         * Resolve the key for the given group.
+         * <p>
+         * If the group is the tags of a single series, the key is cached for the lifetime of the
+         * session to avoid building a new map for every update.
+         */
+        private GroupKey groupKey(final Map<String, String> group, final Set<Series> series) {
+            if (series.size() == 1) {
+                final Series s = series.iterator().next();
+
+                if (s.getTags() == group) {
+                    return seriesKeys.computeIfAbsent(s, ignore -> new GroupKey(key(group)));
+                }
+            }
+
+            return new GroupKey(key(group));
+        }
+
+        private AggregationSession session(final GroupKey key) {
             final AggregationSession session = sessions.get(key);
 
             if (session != null) {
                 return session;
             }
 
-            synchronized (lock) {
-                final AggregationSession checkSession = sessions.get(key);
-
-                if (checkSession != null) {
-                    return checkSession;
-                }
-
-                final AggregationSession newSession =
-                    each.session(range, quotaWatcher, bucketStrategy);
-                sessions.put(key, newSession);
-                return newSession;
-            }
+            return sessions.computeIfAbsent(key,
+                ignore -> each.session(range, quotaWatcher, bucketStrategy));
         }
 
         @Override
@@ -192,8 +259,8 @@ public abstract class GroupingAggregation implements AggregationInstance {
 
             Statistics statistics = Statistics.empty();
 
-            for (final Map.Entry<Map<String, String>, AggregationSession> e : sessions.entrySet()) {
-                final Map<String, String> key = e.getKey();
+            for (final Map.Entry<GroupKey, AggregationSession> e : sessions.entrySet()) {
+                final Map<String, String> key = e.getKey().getKey();
                 final AggregationResult a = e.getValue().result();
 
                 for (final AggregationOutput d : a.getResult()) {
@@ -205,5 +272,55 @@ public abstract class GroupingAggregation implements AggregationInstance {
 
             return new AggregationResult(result.build(), statistics);
         }
+
+        /**
+         * Drain one group at a time, releasing each group session once it has been drained.
+         */
+        @Override
+        public Statistics drain(final Consumer<AggregationOutput> consumer) {
+            Statistics statistics = Statistics.empty();
+
+            final Iterator<Map.Entry<GroupKey, AggregationSession>> it =
+                sessions.entrySet().iterator();
+
+            while (it.hasNext()) {
+                final Map.Entry<GroupKey, AggregationSession> e = it.next();
+                it.remove();
+
+                final Map<String, String> key = e.getKey().getKey();
+                final Statistics s = e.getValue().drain(d -> consumer.accept(d.withKey(key)));
+                statistics = s.merge(statistics);
+            }
+
+            seriesKeys.clear();
+            return statistics;
+        }
+
+        /**
+         * Drain one group at a time into the next session, keyed by the group. This permits the
+         * session of each group to fuse with the next session.
+         */
+        @Override
+        public Statistics drain(
+            final AggregationSession next, final UnaryOperator<Map<String, String>> key,
+            final RetainQuotaWatcher quota
+        ) {
+            Statistics statistics = Statistics.empty();
+
+            final Iterator<Map.Entry<GroupKey, AggregationSession>> it =
+                sessions.entrySet().iterator();
+
+            while (it.hasNext()) {
+                final Map.Entry<GroupKey, AggregationSession> e = it.next();
+                it.remove();
+
+                final Map<String, String> group = key.apply(e.getKey().getKey());
+                final Statistics s = e.getValue().drain(next, ignore -> group, quota);
+                statistics = s.merge(statistics);
+            }
+
+            seriesKeys.clear();
+            return statistics;
+        }
     }
 }
@@ -32,6 +32,15 @@ public interface RetainQuotaWatcher {
      */
     void retainData(long n);
 
+    /**
+     * Indicates that an aggregation session no longer retains {@code n} datapoints which it
+     * previously retained.
+     *
+     * @param n The number of datapoints released by the aggregation session.
+     */
+    default void releaseData(long n) {
+    }
+
     /**
      * Indicates if quota has been breached or not.
      *
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.aggregation;
+
+import lombok.Data;
+
+/**
+ * An aggregation split into a phase which is evaluated to completion on every shard, and a phase
+ * which merges the shard-local results.
+ * <p>
+ * The local phase returns the groups it selects, and an empty placeholder for every group it
+ * discards. A group which is seen by more than one shard might have been judged on partial data,
+ * so it is fetched again from every shard before the reducer runs. The {@link #bound} then decides
+ * if any discarded group could still be part of the final result.
+ *
+ * @see AggregationInstance#twoPhase()
+ */
+@Data
+public class TwoPhaseAggregation {
+    /**
+     * Aggregation producing the groups which are filtered by the local phase.
+     */
+    private final AggregationInstance input;
+
+    /**
+     * Aggregation to evaluate on every shard.
+     */
+    private final AggregationInstance local;
+
+    /**
+     * Aggregation to evaluate on the combined results of all shards.
+     */
+    private final AggregationInstance reducer;
+
+    /**
+     * Check if the candidates selected by the local phase contain the final result.
+     */
+    private final CandidateBound bound;
+}
@@ -36,6 +36,7 @@ import com.spotify.heroic.suggest.TagSuggest;
 import com.spotify.heroic.suggest.TagValueSuggest;
 import com.spotify.heroic.suggest.TagValuesSuggest;
 import eu.toolchain.async.AsyncFuture;
+import java.util.OptionalLong;
 
 public interface ClusterNode extends UsableGroupManager<ClusterNode.Group> {
     NodeMetadata metadata();
@@ -53,6 +54,15 @@ public interface ClusterNode extends UsableGroupManager<ClusterNode.Group> {
         return true;
     }
 
+    /**
+     * Smoothed round-trip time of recent successful requests to this node.
+     *
+     * @return round-trip time in nanoseconds, or empty if it is not known
+     */
+    default OptionalLong roundTripTime() {
+        return OptionalLong.empty();
+    }
+
     interface Group {
         ClusterNode node();
 
@@ -47,6 +47,16 @@ public enum Feature {
      */
     DISTRIBUTED_AGGREGATIONS("com.spotify.heroic.distributed_aggregations"),
 
+    /**
+     * Enable feature to evaluate filtering aggregations (like top-k) on each shard.
+     * <p>
+     * Requires {@link #DISTRIBUTED_AGGREGATIONS}. Shards only send the data of the groups which
+     * are candidates for the final result, and the keys of every other group. Groups which are
+     * seen from more than one shard are fetched again from every shard. If the candidates do not
+     * bound every discarded group, the query is evaluated again without the shard-local phase.
+     */
+    SHARD_LOCAL_FILTERS("com.spotify.heroic.shard_local_filters"),
+
     /**
      * Enable feature to cause range to be rounded on the current cadence.
      * <p>
@@ -72,7 +82,13 @@ public enum Feature {
     /**
      * Permit caching of the query results.
      */
-    CACHE_QUERY("com.spotify.heroic.cache_query");
+    CACHE_QUERY("com.spotify.heroic.cache_query"),
+
+    /**
+     * Let identical queries which are in flight at the same time share a single execution, both
+     * on the node receiving the query and on every data node.
+     */
+    COALESCE_QUERY("com.spotify.heroic.coalesce_query");
 
     private final String id;
 
@@ -32,6 +32,7 @@ import com.spotify.heroic.lifecycle.LifeCycleManager;
 import com.spotify.heroic.statistics.HeroicReporter;
 
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import javax.inject.Named;
 
 public interface PrimaryComponent extends EarlyComponent {
@@ -57,4 +58,13 @@ public interface PrimaryComponent extends EarlyComponent {
     HeroicContext context();
 
     Optional<ConditionalFeatures> conditionalFeatures();
+
+    @Named("query")
+    ExecutorService queryExecutor();
+
+    @Named("ingestion")
+    ExecutorService ingestionExecutor();
+
+    @Named("blocking")
+    ExecutorService blockingExecutor();
 }
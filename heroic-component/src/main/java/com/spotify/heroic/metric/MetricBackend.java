@@ -24,8 +24,10 @@ package com.spotify.heroic.metric;
 import com.spotify.heroic.QueryOptions;
 import com.spotify.heroic.async.AsyncObservable;
 import com.spotify.heroic.common.Collected;
+import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Grouped;
 import com.spotify.heroic.common.Initializing;
+import com.spotify.heroic.common.Series;
 import com.spotify.heroic.common.Statistics;
 
 import eu.toolchain.async.AsyncFuture;
@@ -130,6 +132,14 @@ public interface MetricBackend extends Initializing, Grouped, Collected {
      */
     AsyncFuture<Long> countKey(BackendKey key, QueryOptions options);
 
+    /**
+     * Compact the data stored for the given series and range into the most compact storage format
+     * supported by the backend.
+     *
+     * @return A future containing the number of stored cells which were compacted.
+     */
+    AsyncFuture<Long> compact(Series series, DateRange range);
+
     /**
      * Fetch a complete row from the backend.
      */
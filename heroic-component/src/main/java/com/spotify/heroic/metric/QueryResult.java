@@ -26,11 +26,14 @@ import com.google.common.collect.ImmutableSet;
 import com.spotify.heroic.aggregation.AggregationCombiner;
 import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.OptionalLimit;
-import eu.toolchain.async.Collector;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.LazyTransform;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import lombok.Data;
 
 @Data
@@ -80,11 +83,13 @@ public class QueryResult {
      * Collect result parts into a complete result.
      *
      * @param range The range which the result represents.
+     * @param async Async framework to use.
+     * @param executor Executor to combine groups on.
      * @return A complete QueryResult.
      */
-    public static Collector<QueryResultPart, QueryResult> collectParts(
+    public static LazyTransform<Collection<QueryResultPart>, QueryResult> collectParts(
         final QueryTrace.Identifier what, final DateRange range, final AggregationCombiner combiner,
-        final OptionalLimit groupLimit
+        final OptionalLimit groupLimit, final AsyncFramework async, final ExecutorService executor
     ) {
         final QueryTrace.NamedWatch w = QueryTrace.watch(what);
 
@@ -108,15 +113,18 @@ public class QueryResult {
                 all.add(part.getGroups());
             }
 
-            final List<ShardedResultGroup> groups = combiner.combine(all);
-            final QueryTrace trace = w.end(queryTraces.build());
+            final long sampleSize = preAggregationSampleSize;
 
-            if (groupLimit.isGreaterOrEqual(groups.size())) {
-                limits.add(ResultLimit.GROUP);
-            }
+            return combiner.combine(async, executor, all).directTransform(groups -> {
+                final QueryTrace trace = w.end(queryTraces.build());
+
+                if (groupLimit.isGreaterOrEqual(groups.size())) {
+                    limits.add(ResultLimit.GROUP);
+                }
 
-            return new QueryResult(range, groupLimit.limitList(groups), errors, trace,
-                new ResultLimits(limits.build()), preAggregationSampleSize, Optional.empty());
+                return new QueryResult(range, groupLimit.limitList(groups), errors, trace,
+                    new ResultLimits(limits.build()), sampleSize, Optional.empty());
+            });
         };
     }
 
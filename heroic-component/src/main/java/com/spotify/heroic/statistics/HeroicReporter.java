@@ -39,5 +39,9 @@ public interface HeroicReporter {
 
     QueryReporter newQueryReporter();
 
+    QueryCacheReporter newQueryCache();
+
+    ExecutorReporter newExecutor(String name);
+
     void registerShards(Set<Map<String, String>> knownShards);
 }
@@ -24,10 +24,12 @@ package com.spotify.heroic.statistics.noop;
 import com.spotify.heroic.statistics.QueryReporter;
 import com.spotify.heroic.statistics.AnalyticsReporter;
 import com.spotify.heroic.statistics.ConsumerReporter;
+import com.spotify.heroic.statistics.ExecutorReporter;
 import com.spotify.heroic.statistics.HeroicReporter;
 import com.spotify.heroic.statistics.IngestionManagerReporter;
 import com.spotify.heroic.statistics.MetadataBackendReporter;
 import com.spotify.heroic.statistics.MetricBackendReporter;
+import com.spotify.heroic.statistics.QueryCacheReporter;
 import com.spotify.heroic.statistics.SuggestBackendReporter;
 
 import java.util.Map;
@@ -69,6 +71,16 @@ public class NoopHeroicReporter implements HeroicReporter {
         return NoopQueryReporter.get();
     }
 
+    @Override
+    public QueryCacheReporter newQueryCache() {
+        return NoopQueryCacheReporter.get();
+    }
+
+    @Override
+    public ExecutorReporter newExecutor(String name) {
+        return NoopExecutorReporter.get();
+    }
+
     @Override
     public void registerShards(Set<Map<String, String>> knownShards) {
     }
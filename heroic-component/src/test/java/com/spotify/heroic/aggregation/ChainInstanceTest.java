@@ -1,10 +1,24 @@
 package com.spotify.heroic.aggregation;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.Point;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ChainInstanceTest {
@@ -20,4 +34,95 @@ public class ChainInstanceTest {
         final AggregationInstance chain = ChainInstance.fromList(ImmutableList.of(a, b, c));
         assertEquals(2, chain.cadence());
     }
+
+    @Test
+    public void createTailSessionsLazily() {
+        final AggregationInstance tail = mock(AggregationInstance.class);
+
+        doAnswer(invocation -> EmptyInstance.INSTANCE.session(
+            (DateRange) invocation.getArguments()[0],
+            (RetainQuotaWatcher) invocation.getArguments()[1],
+            (BucketStrategy) invocation.getArguments()[2]))
+            .when(tail)
+            .session(anyObject(), anyObject(), any(BucketStrategy.class));
+
+        final AggregationSession session = ChainInstance
+            .of(EmptyInstance.INSTANCE, tail)
+            .session(new DateRange(0L, 100L), RetainQuotaWatcher.NO_QUOTA, BucketStrategy.START);
+
+        final Map<String, String> key = ImmutableMap.of("host", "a");
+        final List<Point> points = ImmutableList.of(new Point(10L, 1D), new Point(20L, 2D));
+
+        session.updatePoints(key, ImmutableSet.of(Series.of("foo", key)), points);
+
+        verify(tail, never()).session(anyObject(), anyObject(), any(BucketStrategy.class));
+
+        final AggregationResult result = session.result();
+
+        verify(tail, times(1)).session(anyObject(), anyObject(), any(BucketStrategy.class));
+        assertEquals(1, result.getResult().size());
+        assertEquals(points, result.getResult().get(0).getMetrics().getDataAs(Point.class));
+    }
+
+    @Test
+    public void fuseBucketStages() {
+        final BucketAggregationTest buckets = new BucketAggregationTest();
+
+        final AggregationInstance chain = ChainInstance.of(
+            new GroupInstance(Optional.of(ImmutableList.of("host")), buckets.setup(10L, 10L)),
+            buckets.setup(10L, 10L));
+
+        final RecordingQuota quota = new RecordingQuota();
+
+        final AggregationSession session =
+            chain.session(new DateRange(0L, 30L), quota, BucketStrategy.START);
+
+        for (final String host : ImmutableList.of("a", "b")) {
+            final Map<String, String> key = ImmutableMap.of("host", host);
+            final double value = host.equals("a") ? 1D : 2D;
+
+            session.updatePoints(key, ImmutableSet.of(Series.of("foo", key)), ImmutableList.of(
+                new Point(0L, value), new Point(10L, value), new Point(20L, value)));
+        }
+
+        /* one session with three buckets for each host */
+        assertEquals(6L, quota.retained);
+
+        final AggregationResult result = session.result();
+
+        assertEquals(1, result.getResult().size());
+        assertEquals(
+            ImmutableList.of(new Point(0L, 3D), new Point(10L, 3D), new Point(20L, 3D)),
+            result.getResult().get(0).getMetrics().getDataAs(Point.class));
+
+        /* the head is released, the tail is charged for three samples from each host */
+        assertEquals(6L, quota.released);
+        assertEquals(6L, quota.retained);
+    }
+
+    private static class RecordingQuota implements RetainQuotaWatcher {
+        private long retained;
+        private long released;
+
+        @Override
+        public void retainData(final long n) {
+            retained += n;
+        }
+
+        @Override
+        public void releaseData(final long n) {
+            retained -= n;
+            released += n;
+        }
+
+        @Override
+        public boolean mayRetainMoreData() {
+            return true;
+        }
+
+        @Override
+        public int getRetainQuota() {
+            return Integer.MAX_VALUE;
+        }
+    }
 }
@@ -8,6 +8,7 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.IOException;
+import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.doReturn;
@@ -27,6 +28,15 @@ public class ChainTest {
     @Mock
     private AggregationInstance cred;
 
+    @Mock
+    private AggregationInstance f;
+
+    @Mock
+    private AggregationInstance flocal;
+
+    @Mock
+    private AggregationInstance fred;
+
     @Before
     public void setup() {
         doReturn(false).when(a).distributable();
@@ -36,6 +46,12 @@ public class ChainTest {
         doReturn(true).when(c).distributable();
         doReturn(cdis).when(c).distributed();
         doReturn(cred).when(c).reducer();
+        doReturn(Optional.empty()).when(c).twoPhase();
+
+        doReturn(false).when(f).distributable();
+        doReturn(Optional.of(new TwoPhaseAggregation(a, flocal, fred, CandidateBound.EXACT)))
+            .when(f)
+            .twoPhase();
     }
 
     @Test
@@ -61,6 +77,20 @@ public class ChainTest {
             ChainInstance.of(c, ChainInstance.of(c, c, a, c), ChainInstance.of(c, c)));
     }
 
+    @Test
+    public void testTwoPhase() {
+        assertEquals(Optional.empty(), ChainInstance.of(c, c).twoPhase());
+
+        assertEquals(Optional.of(new TwoPhaseAggregation(c, ChainInstance.of(c, flocal), fred,
+            CandidateBound.EXACT)),
+            ChainInstance.of(c, f).twoPhase());
+
+        assertEquals(Optional.of(
+            new TwoPhaseAggregation(ChainInstance.of(c, f, c), ChainInstance.of(c, f, c, flocal),
+                ChainInstance.of(fred, c), CandidateBound.EXACT)),
+            ChainInstance.of(c, f, c, f, c).twoPhase());
+    }
+
     private void assertDistributed(
         final AggregationInstance distributed, final AggregationInstance reducer,
         final AggregationInstance input
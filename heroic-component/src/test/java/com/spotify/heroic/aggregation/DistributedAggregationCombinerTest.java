@@ -0,0 +1,130 @@
+package com.spotify.heroic.aggregation;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Test;
+
+public class DistributedAggregationCombinerTest {
+    private static final int GROUPS = DistributedAggregationCombiner.PARALLEL_THRESHOLD * 2;
+
+    private final DateRange range = new DateRange(0, 10000);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final AsyncFramework async = TinyAsync.builder().executor(executor).build();
+
+    @After
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testParallelCombine() {
+        final DistributedAggregationCombiner combiner = combiner(ImmutableList.of("host"));
+
+        final List<ShardedResultGroup> result =
+            combine(combiner, shards(i -> ImmutableMap.of("host", "h" + i)));
+
+        assertEquals(GROUPS, result.size());
+
+        for (final ShardedResultGroup g : result) {
+            assertEquals(2, g.getMetrics().getData().size());
+        }
+
+        assertEquals(result, combine(combiner, shards(i -> ImmutableMap.of("host", "h" + i))));
+    }
+
+    /**
+     * Groups with different keys which are reduced into the same key must still be combined.
+     */
+    @Test
+    public void testCombineOverlappingKeys() {
+        final DistributedAggregationCombiner combiner = combiner(ImmutableList.of("site"));
+
+        final List<ShardedResultGroup> result = combine(combiner,
+            shards(i -> ImmutableMap.of("site", "s" + (i % 2), "host", "h" + i)));
+
+        final Map<Map<String, String>, Integer> sizes = result
+            .stream()
+            .collect(Collectors.toMap(ShardedResultGroup::getKey,
+                g -> g.getMetrics().getData().size()));
+
+        assertEquals(
+            ImmutableMap.of(ImmutableMap.of("site", "s0"), GROUPS, ImmutableMap.of("site", "s1"),
+                GROUPS), sizes);
+    }
+
+    /**
+     * Groups are partitioned by the key they are reduced into.
+     */
+    @Test
+    public void testPartitionKey() {
+        final Map<String, String> key = ImmutableMap.of("site", "s", "host", "h");
+
+        final AggregationInstance reducer = ChainInstance.of(group(ImmutableList.of("site", "host")),
+            group(ImmutableList.of("site")));
+
+        assertEquals(key, EmptyInstance.INSTANCE.partitionKey(key));
+        assertEquals(ImmutableMap.of("site", "s"), reducer.partitionKey(key));
+    }
+
+    private List<ShardedResultGroup> combine(
+        final DistributedAggregationCombiner combiner, final List<List<ShardedResultGroup>> all
+    ) {
+        try {
+            return combiner.combine(async, executor, all).get();
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private DistributedAggregationCombiner combiner(final List<String> of) {
+        return new DistributedAggregationCombiner(group(of), range, BucketStrategy.START, 0L);
+    }
+
+    private GroupInstance group(final List<String> of) {
+        return new GroupInstance(Optional.of(of), EmptyInstance.INSTANCE);
+    }
+
+    private List<List<ShardedResultGroup>> shards(
+        final Function<Integer, Map<String, String>> key
+    ) {
+        final List<List<ShardedResultGroup>> shards = new ArrayList<>();
+
+        for (int shard = 0; shard < 2; shard++) {
+            final List<ShardedResultGroup> groups = new ArrayList<>();
+
+            for (int i = 0; i < GROUPS; i++) {
+                final Map<String, String> k = key.apply(i);
+                final Series s = Series.of("foo", k);
+
+                groups.add(new ShardedResultGroup(ImmutableMap.of("shard", "s" + shard), k,
+                    ImmutableSet.of(s),
+                    MetricCollection.points(ImmutableList.of(new Point(shard, (double) i))),
+                    0L));
+            }
+
+            shards.add(groups);
+        }
+
+        return shards;
+    }
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import com.google.common.collect.ImmutableList;
@@ -121,6 +122,32 @@ public class GroupingAggregationTest {
         verify(g).newInstance(of, distributed);
     }
 
+    /**
+     * Checks that the key of a single series is only computed once per session.
+     */
+    @Test
+    public void testSeriesKeyIsCached() {
+        final SimpleGroup g = spy(new SimpleGroup(Optional.empty(), EmptyInstance.INSTANCE));
+
+        final Series s1 = Series.of("foo", ImmutableMap.of("host", "a"));
+        final Series s2 = Series.of("foo", ImmutableMap.of("host", "b"));
+
+        final AggregationSession session = g.session(new DateRange(0, 10000));
+
+        session.updatePoints(s1.getTags(), ImmutableSet.of(s1),
+            ImmutableList.of(new Point(1, 1.0)));
+        session.updatePoints(s1.getTags(), ImmutableSet.of(s1),
+            ImmutableList.of(new Point(2, 2.0)));
+        session.updatePoints(s2.getTags(), ImmutableSet.of(s2),
+            ImmutableList.of(new Point(3, 3.0)));
+
+        verify(g, times(1)).key(s1.getTags());
+        verify(g, times(1)).key(s2.getTags());
+
+        final List<AggregationOutput> result = session.result().getResult();
+        assertEquals(2, result.size());
+    }
+
     public static class SimpleGroup extends GroupingAggregation {
         public SimpleGroup(final Optional<List<String>> of, final AggregationInstance each) {
             super(of, each);
@@ -31,6 +31,7 @@ import com.spotify.heroic.aggregation.AggregationInstance;
 import com.spotify.heroic.aggregation.BucketStrategy;
 import com.spotify.heroic.aggregation.DistributedAggregationCombiner;
 import com.spotify.heroic.aggregation.Empty;
+import com.spotify.heroic.aggregation.TwoPhaseAggregation;
 import com.spotify.heroic.cache.QueryCache;
 import com.spotify.heroic.cluster.ClusterManager;
 import com.spotify.heroic.cluster.ClusterNode;
@@ -59,6 +60,7 @@ import com.spotify.heroic.metadata.FindTags;
 import com.spotify.heroic.metadata.WriteMetadata;
 import com.spotify.heroic.metric.FullQuery;
 import com.spotify.heroic.metric.MetricType;
+import com.spotify.heroic.metric.QueryCoalescer;
 import com.spotify.heroic.metric.QueryResult;
 import com.spotify.heroic.metric.QueryResultPart;
 import com.spotify.heroic.metric.QueryTrace;
@@ -80,12 +82,15 @@ import eu.toolchain.async.Collector;
 import eu.toolchain.async.FutureDone;
 import eu.toolchain.async.Transform;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import javax.inject.Inject;
 import javax.inject.Named;
 import lombok.RequiredArgsConstructor;
@@ -110,9 +115,13 @@ public class CoreQueryManager implements QueryManager {
     private final QueryReporter reporter;
     private final QueryLogger queryLogger;
     private final Optional<ConditionalFeatures> conditionalFeatures;
+    private final ExecutorService queryExecutor;
 
     private final long smallQueryThreshold;
 
+    /* identical queries in flight at the same time share one execution */
+    private final QueryCoalescer<QueryResult> coalescer;
+
     @Inject
     public CoreQueryManager(
         @Named("features") final Features features, final AsyncFramework async, final Clock clock,
@@ -120,7 +129,8 @@ public class CoreQueryManager implements QueryManager {
         final AggregationFactory aggregations, @Named("groupLimit") final OptionalLimit groupLimit,
         @Named("smallQueryThreshold") final long smallQueryThreshold, final QueryReporter reporter,
         final Optional<ConditionalFeatures> conditionalFeatures,
-        final QueryLoggerFactory queryLoggerFactory
+        final QueryLoggerFactory queryLoggerFactory,
+        @Named("query") final ExecutorService queryExecutor
     ) {
         this.features = features;
         this.async = async;
@@ -134,6 +144,8 @@ public class CoreQueryManager implements QueryManager {
         this.smallQueryThreshold = smallQueryThreshold;
         this.conditionalFeatures = conditionalFeatures;
         this.queryLogger = queryLoggerFactory.create("CoreQueryManager");
+        this.queryExecutor = queryExecutor;
+        this.coalescer = new QueryCoalescer<>(async);
     }
 
     @Override
@@ -209,8 +221,6 @@ public class CoreQueryManager implements QueryManager {
 
             queryLogger.logQuery(queryContext, q);
 
-            final List<AsyncFuture<QueryResultPart>> futures = new ArrayList<>();
-
             final MetricType source = q.getSource().orElse(MetricType.POINT);
 
             final Aggregation aggregation = q.getAggregation().orElse(Empty.INSTANCE);
@@ -228,7 +238,17 @@ public class CoreQueryManager implements QueryManager {
 
             boolean isDistributed = features.hasFeature(Feature.DISTRIBUTED_AGGREGATIONS);
 
-            if (isDistributed) {
+            final Optional<TwoPhaseAggregation> twoPhase;
+
+            if (isDistributed && features.hasFeature(Feature.SHARD_LOCAL_FILTERS)) {
+                twoPhase = root.twoPhase();
+            } else {
+                twoPhase = Optional.empty();
+            }
+
+            if (twoPhase.isPresent()) {
+                aggregationInstance = twoPhase.get().getLocal();
+            } else if (isDistributed) {
                 aggregationInstance = root.distributed();
             } else {
                 aggregationInstance = root;
@@ -252,7 +272,10 @@ public class CoreQueryManager implements QueryManager {
 
             final AggregationCombiner combiner;
 
-            if (isDistributed) {
+            if (twoPhase.isPresent()) {
+                combiner = new DistributedAggregationCombiner(twoPhase.get().getReducer(), range,
+                    bucketStrategy, root.cadence());
+            } else if (isDistributed) {
                 combiner = DistributedAggregationCombiner.create(root, range, bucketStrategy);
             } else {
                 combiner = AggregationCombiner.DEFAULT;
@@ -262,32 +285,44 @@ public class CoreQueryManager implements QueryManager {
                 new FullQuery.Request(source, filter, range, aggregationInstance, options,
                     queryContext, features);
 
-            queryLogger.logOutgoingRequestToShards(queryContext, request);
+            final OptionalLimit limit = options.getGroupLimit().orElse(groupLimit);
 
-            final AsyncFuture<QueryResult> query = queryCache.load(request, () -> {
-                for (final ClusterShard shard : shards) {
-                    final QueryTrace.NamedWatch shardLocalWatch =
-                        shardWatch.extendIdentifier(shard.getShard().toString());
-                    final AsyncFuture<QueryResultPart> queryPart = shard
-                        .apply(g -> g.query(request), getStoreTracesTransform(shardLocalWatch))
-                        .catchFailed(FullQuery.shardError(shardLocalWatch, shard))
-                        .directTransform(fullQuery -> {
-                            queryLogger.logIncomingResponseFromShard(queryContext, fullQuery);
-                            return fullQuery;
-                        })
-                        .directTransform(QueryResultPart.fromResultGroup(shard));
-
-                    if (!shard.isDarkload()) {
-                        // Stash the future to be able to gather result from all shards.
-                        // Except if this shard is a darkload shard, then we will just fire & forget
-                        futures.add(queryPart);
-                    }
+            final Supplier<AsyncFuture<QueryResult>> execute = () -> {
+                final AsyncFuture<Collection<QueryResultPart>> parts =
+                    queryShards(request, shardWatch, queryContext);
+
+                if (!twoPhase.isPresent()) {
+                    return parts.lazyTransform(
+                        QueryResult.collectParts(QUERY, range, combiner, limit, async,
+                            queryExecutor));
                 }
 
-                final OptionalLimit limit = options.getGroupLimit().orElse(groupLimit);
+                /* evaluate the query again with every group, without the shard-local phase */
+                final Supplier<AsyncFuture<QueryResult>> fallback = () -> {
+                    final FullQuery.Request distributed =
+                        new FullQuery.Request(source, filter, range, root.distributed(), options,
+                            queryContext, features);
+
+                    final AggregationCombiner distributedCombiner =
+                        DistributedAggregationCombiner.create(root, range, bucketStrategy);
 
-                return async.collect(futures,
-                    QueryResult.collectParts(QUERY, range, combiner, limit));
+                    return queryShards(distributed, shardWatch, queryContext).lazyTransform(
+                        QueryResult.collectParts(QUERY, range, distributedCombiner, limit, async,
+                            queryExecutor));
+                };
+
+                return parts.lazyTransform(
+                    p -> collectCandidates(p, twoPhase.get(), request, bucketStrategy, combiner,
+                        limit, fallback, shardWatch));
+            };
+
+            /* coalesce behind the cache, so that concurrent cache misses share one execution */
+            final AsyncFuture<QueryResult> query = queryCache.load(request, () -> {
+                if (features.hasFeature(Feature.COALESCE_QUERY)) {
+                    return coalescer.coalesce(QueryCoalescer.key(shards, request), execute);
+                }
+
+                return execute.get();
             });
 
             return query.directTransform(result -> {
@@ -296,6 +331,91 @@ public class CoreQueryManager implements QueryManager {
             }).onDone(onDoneQueryReporter);
         }
 
+        private AsyncFuture<Collection<QueryResultPart>> queryShards(
+            final FullQuery.Request request, final QueryTrace.NamedWatch shardWatch,
+            final QueryContext queryContext
+        ) {
+            queryLogger.logOutgoingRequestToShards(queryContext, request);
+
+            final List<AsyncFuture<QueryResultPart>> futures = new ArrayList<>();
+
+            for (final ClusterShard shard : shards) {
+                final QueryTrace.NamedWatch shardLocalWatch =
+                    shardWatch.extendIdentifier(shard.getShard().toString());
+                final AsyncFuture<QueryResultPart> queryPart = shard
+                    .apply(g -> g.query(request), getStoreTracesTransform(shardLocalWatch))
+                    .catchFailed(FullQuery.shardError(shardLocalWatch, shard))
+                    .directTransform(fullQuery -> {
+                        queryLogger.logIncomingResponseFromShard(queryContext, fullQuery);
+                        return fullQuery;
+                    })
+                    .directTransform(QueryResultPart.fromResultGroup(shard));
+
+                if (!shard.isDarkload()) {
+                    // Stash the future to be able to gather result from all shards.
+                    // Except if this shard is a darkload shard, then we will just fire & forget
+                    futures.add(queryPart);
+                }
+            }
+
+            return async.collect(futures);
+        }
+
+        /**
+         * Select the final result of a two-phase aggregation among the candidates of every shard.
+         * <p>
+         * Groups which were seen by more than one shard are fetched again from every shard, this
+         * time without the shard-local phase. If the exact candidates do not bound every group
+         * which was discarded by a shard, the whole query is evaluated again using the fallback.
+         */
+        private AsyncFuture<QueryResult> collectCandidates(
+            final Collection<QueryResultPart> parts, final TwoPhaseAggregation twoPhase,
+            final FullQuery.Request request, final BucketStrategy bucketStrategy,
+            final AggregationCombiner combiner, final OptionalLimit limit,
+            final Supplier<AsyncFuture<QueryResult>> fallback,
+            final QueryTrace.NamedWatch shardWatch
+        ) {
+            final ShardCandidates candidates = ShardCandidates.of(parts);
+            final QueryContext queryContext = request.getContext();
+            final DateRange range = request.getRange();
+
+            final AsyncFuture<List<QueryResultPart>> exact;
+
+            if (candidates.getSpanning().isEmpty()) {
+                exact = async.resolved(candidates.getParts());
+            } else {
+                log.debug("{}: {} group(s) span shards, refining", queryContext.getQueryId(),
+                    candidates.getSpanning().size());
+
+                final AggregationInstance input = twoPhase.getInput();
+
+                final FullQuery.Request refinement =
+                    new FullQuery.Request(request.getSource(),
+                        candidates.refinement(request.getFilter()), range, input.distributed(),
+                        request.getOptions(), queryContext, request.getFeatures());
+
+                final AggregationCombiner inputCombiner =
+                    DistributedAggregationCombiner.create(input, range, bucketStrategy);
+
+                exact = queryShards(refinement, shardWatch, queryContext)
+                    .lazyTransform(QueryResult.collectParts(QUERY, range, inputCombiner,
+                        OptionalLimit.empty(), async, queryExecutor))
+                    .directTransform(candidates::withRefined);
+            }
+
+            return exact.lazyTransform(p -> {
+                if (!candidates.covers(twoPhase.getBound(), p)) {
+                    log.debug("{}: discarded groups might be part of the result, re-evaluating",
+                        queryContext.getQueryId());
+                    return fallback.get();
+                }
+
+                return QueryResult
+                    .collectParts(QUERY, range, combiner, limit, async, queryExecutor)
+                    .transform(p);
+            });
+        }
+
         private void reportCompletedQuery(
             final QueryResult result, final Stopwatch fullQueryWatch
         ) {
@@ -46,6 +46,7 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.GZIPOutputStream;
 
 @RequiredArgsConstructor
@@ -55,6 +56,8 @@ public class CoreShellTasks implements ShellTasks {
     final List<ShellTaskDefinition> available;
     final SortedMap<String, ShellTask> tasks;
     final AsyncFramework async;
+    /* tasks block on their I/O and on results, so they run on the blocking executor */
+    final ExecutorService blocking;
 
     @Override
     public List<CommandDefinition> commands() {
@@ -162,11 +165,7 @@ public class CoreShellTasks implements ShellTasks {
     private AsyncFuture<Void> runTaskWithIO(
         final ShellTask task, final ShellIO io, final TaskParameters params
     ) {
-        try {
-            return task.run(io, params);
-        } catch (Exception e) {
-            return async.failed(e);
-        }
+        return async.call(() -> task.run(io, params), blocking).lazyTransform(run -> run);
     }
 
     ShellTask resolveTask(final String taskName) {
@@ -43,6 +43,7 @@ import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.common.FeatureSet;
 import com.spotify.heroic.conditionalfeatures.ConditionalFeatures;
 import com.spotify.heroic.consumer.ConsumerModule;
+import com.spotify.heroic.executor.ExecutorsConfig;
 import com.spotify.heroic.generator.CoreGeneratorModule;
 import com.spotify.heroic.ingestion.IngestionModule;
 import com.spotify.heroic.jetty.JettyServerConnector;
@@ -116,6 +117,7 @@ public class HeroicConfig {
     private final StatisticsModule statistics;
     private final QueryLoggingModule queryLogging;
     private final Optional<ConditionalFeatures> conditionalFeature;
+    private final ExecutorsConfig executors;
 
     private final String version;
     private final String service;
@@ -197,6 +199,7 @@ public class HeroicConfig {
         private Optional<StatisticsModule> statistics = empty();
         private Optional<QueryLoggingModule> queryLogging = empty();
         private Optional<ConditionalFeatures> conditionalFeatures = empty();
+        private Optional<ExecutorsConfig.Builder> executors = empty();
 
         private Optional<String> version = empty();
         private Optional<String> service = empty();
@@ -297,6 +300,11 @@ public class HeroicConfig {
             return this;
         }
 
+        public Builder executors(ExecutorsConfig.Builder executors) {
+            this.executors = of(executors);
+            return this;
+        }
+
         public Builder merge(Builder o) {
             // @formatter:off
             return new Builder(
@@ -323,6 +331,7 @@ public class HeroicConfig {
                 pickOptional(statistics, o.statistics),
                 pickOptional(queryLogging, o.queryLogging),
                 pickOptional(conditionalFeatures, o.conditionalFeatures),
+                mergeOptional(executors, o.executors, ExecutorsConfig.Builder::merge),
                 pickOptional(service, o.service),
                 pickOptional(version, o.version)
             );
@@ -364,6 +373,7 @@ public class HeroicConfig {
                 statistics.orElseGet(NoopStatisticsModule::new),
                 queryLogging.orElseGet(NoopQueryLoggingModule::new),
                 conditionalFeatures,
+                executors.orElseGet(ExecutorsConfig::builder).build(),
                 version.orElse(defaultVersion),
                 service.orElse(DEFAULT_SERVICE)
             );
@@ -368,10 +368,13 @@ public class HeroicCore implements HeroicConfiguration {
             .builder()
             .coreEarlyComponent(early)
             .primaryModule(new PrimaryModule(instance, config.getFeatures(), reporter,
-                config.getConditionalFeature()))
+                config.getConditionalFeature(), config.getExecutors()))
             .build();
 
+        life.add(primary.executorsLife());
+
         final QueryLoggingComponent queryLogging = config.getQueryLogging().component(primary);
+        life.add(queryLogging.queryLoggingLife());
 
         final Optional<HttpServer> server = setupServer(config, life, primary);
 
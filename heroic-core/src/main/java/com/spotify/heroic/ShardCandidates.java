@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.aggregation.CandidateBound;
+import com.spotify.heroic.filter.AndFilter;
+import com.spotify.heroic.filter.Filter;
+import com.spotify.heroic.filter.MatchTagFilter;
+import com.spotify.heroic.filter.OrFilter;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.QueryResult;
+import com.spotify.heroic.metric.QueryResultPart;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.Data;
+
+/**
+ * Candidates returned by the shard-local phase of a two-phase aggregation.
+ * <p>
+ * Every shard returns the data of the groups it selected, and an empty placeholder for every
+ * group it discarded. A group which was seen by more than one shard was judged on partial data by
+ * each of them, so its exact data has to be fetched again before the final result is selected.
+ * Every other selected group is exact, since the shard which returned it stores all of its series.
+ */
+@Data
+class ShardCandidates {
+    /**
+     * Shard results, only containing the groups which were selected by a single shard.
+     */
+    private final List<QueryResultPart> parts;
+
+    /**
+     * Keys of groups which were seen by more than one shard.
+     */
+    private final Set<Map<String, String>> spanning;
+
+    /**
+     * For every shard which discarded a group, the data of the groups it selected.
+     */
+    private final List<List<MetricCollection>> truncated;
+
+    static ShardCandidates of(final Collection<QueryResultPart> parts) {
+        final Map<Map<String, String>, Integer> seen = new HashMap<>();
+
+        for (final QueryResultPart part : parts) {
+            final Set<Map<String, String>> keys = new HashSet<>();
+
+            for (final ShardedResultGroup g : part.getGroups()) {
+                keys.add(g.getKey());
+            }
+
+            for (final Map<String, String> key : keys) {
+                seen.merge(key, 1, Integer::sum);
+            }
+        }
+
+        final Set<Map<String, String>> spanning = seen
+            .entrySet()
+            .stream()
+            .filter(e -> e.getValue() > 1)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toSet());
+
+        final List<QueryResultPart> exact = new ArrayList<>();
+        final List<List<MetricCollection>> truncated = new ArrayList<>();
+
+        for (final QueryResultPart part : parts) {
+            final List<ShardedResultGroup> groups = new ArrayList<>();
+            final List<MetricCollection> selected = new ArrayList<>();
+            boolean discarded = false;
+
+            for (final ShardedResultGroup g : part.getGroups()) {
+                if (g.isEmpty()) {
+                    discarded = true;
+                    continue;
+                }
+
+                selected.add(g.getMetrics());
+
+                if (!spanning.contains(g.getKey())) {
+                    groups.add(g);
+                }
+            }
+
+            if (discarded) {
+                truncated.add(selected);
+            }
+
+            exact.add(new QueryResultPart(groups, part.getErrors(), part.getQueryTrace(),
+                part.getLimits(), part.getPreAggregationSampleSize()));
+        }
+
+        return new ShardCandidates(exact, spanning, truncated);
+    }
+
+    /**
+     * Build a filter which matches every series of the groups which span shards.
+     * <p>
+     * The key of a group is a subset of the tags of each of its series, so matching every tag in
+     * the key might include other series but never excludes any series of the group.
+     */
+    Filter refinement(final Filter filter) {
+        final List<Filter> keys = new ArrayList<>();
+
+        for (final Map<String, String> key : spanning) {
+            if (key.isEmpty()) {
+                return filter;
+            }
+
+            keys.add(new AndFilter(key
+                .entrySet()
+                .stream()
+                .map(e -> new MatchTagFilter(e.getKey(), e.getValue()))
+                .collect(Collectors.toList())));
+        }
+
+        return new AndFilter(ImmutableList.of(filter, new OrFilter(keys))).optimize();
+    }
+
+    /**
+     * Add the exact groups which span shards, as refined from every shard.
+     */
+    List<QueryResultPart> withRefined(final QueryResult refined) {
+        final List<ShardedResultGroup> groups = refined
+            .getGroups()
+            .stream()
+            .filter(g -> spanning.contains(g.getKey()))
+            .collect(Collectors.toList());
+
+        return ImmutableList.<QueryResultPart>builder()
+            .addAll(parts)
+            .add(new QueryResultPart(groups, refined.getErrors(), refined.getTrace(),
+                refined.getLimits(), refined.getPreAggregationSampleSize()))
+            .build();
+    }
+
+    /**
+     * Check if the given exact candidates cover every group discarded by a shard.
+     */
+    boolean covers(final CandidateBound bound, final List<QueryResultPart> candidates) {
+        final List<MetricCollection> metrics = new ArrayList<>();
+
+        for (final QueryResultPart part : candidates) {
+            for (final ShardedResultGroup g : part.getGroups()) {
+                metrics.add(g.getMetrics());
+            }
+        }
+
+        return bound.covers(metrics, truncated);
+    }
+}
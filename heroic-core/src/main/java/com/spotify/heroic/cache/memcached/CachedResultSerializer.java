@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.cache.memcached;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.MetricType;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.ResultLimit;
+import com.spotify.heroic.metric.ResultLimits;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import com.spotify.heroic.metric.Spread;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import lombok.RequiredArgsConstructor;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Compact binary serialization of cached query results.
+ * <p>
+ * Strings (tags, keys and type identifiers) are written once and then referenced by their
+ * position. Timestamps are delta-encoded in multiples of the group cadence where possible, and
+ * values are written as raw doubles. Points and spreads are encoded natively, other types of
+ * metrics are embedded as JSON. The whole payload is compressed with LZ4.
+ * <p>
+ * The first byte of a serialized result is the format version, results of any other version are
+ * rejected.
+ */
+@RequiredArgsConstructor
+public class CachedResultSerializer {
+    public static final int VERSION = 3;
+
+    /* marks a string which has not been seen before */
+    private static final int NEW_STRING = 0;
+
+    /* least number of encoded bytes of a single point or spread, a delta and the values */
+    private static final int MIN_POINT_SIZE = 1 + 8;
+    private static final int MIN_SPREAD_SIZE = 1 + 1 + 4 * 8;
+
+    /* upper bound of the uncompressed size of a result, anything larger is considered corrupt */
+    static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private final ObjectMapper mapper;
+
+    public byte[] serialize(final MemcachedQueryCache.CachedResult result) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Writer out = new Writer(new DataOutputStream(bytes));
+
+        out.output.writeLong(result.getRange().start());
+        out.output.writeLong(result.getRange().end());
+        out.output.writeLong(result.getExpires());
+        out.writeVarLong(result.getPreAggregationSampleSize());
+
+        final Set<ResultLimit> limits = result.getLimits().getLimits();
+        out.writeVarLong(limits.size());
+
+        for (final ResultLimit limit : limits) {
+            out.writeString(limit.name());
+        }
+
+        out.writeVarLong(result.getGroups().size());
+
+        for (final ShardedResultGroup group : result.getGroups()) {
+            writeGroup(out, group);
+        }
+
+        out.output.flush();
+
+        final byte[] raw = bytes.toByteArray();
+        final LZ4Compressor compressor = LZ4.fastCompressor();
+        final byte[] compressed = new byte[5 + compressor.maxCompressedLength(raw.length)];
+
+        compressed[0] = (byte) VERSION;
+        writeInt(compressed, 1, raw.length);
+
+        final int length = compressor.compress(raw, 0, raw.length, compressed, 5);
+
+        final byte[] output = new byte[5 + length];
+        System.arraycopy(compressed, 0, output, 0, output.length);
+        return output;
+    }
+
+    public MemcachedQueryCache.CachedResult deserialize(final byte[] bytes) throws IOException {
+        if (bytes.length < 5) {
+            throw new IOException("Truncated cached result");
+        }
+
+        if (bytes[0] != VERSION) {
+            throw new IOException("Unsupported cached result version: " + bytes[0]);
+        }
+
+        final int length = readInt(bytes, 1);
+
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid cached result length: " + length);
+        }
+
+        final LZ4SafeDecompressor decompressor = LZ4.safeDecompressor();
+        final byte[] raw = new byte[length];
+        final int decompressed;
+
+        try {
+            decompressed = decompressor.decompress(bytes, 5, bytes.length - 5, raw, 0, length);
+        } catch (final RuntimeException e) {
+            throw new IOException("Corrupt cached result", e);
+        }
+
+        if (decompressed != length) {
+            throw new IOException(
+                "Corrupt cached result, expected " + length + " bytes but got " + decompressed);
+        }
+
+        final Reader in = new Reader(new DataInputStream(new ByteArrayInputStream(raw)));
+
+        final DateRange range = new DateRange(in.input.readLong(), in.input.readLong());
+        final long expires = in.input.readLong();
+        final long preAggregationSampleSize = in.readVarLong();
+
+        final int limitCount = in.readCount(1);
+        final ImmutableSet.Builder<ResultLimit> limits = ImmutableSet.builder();
+
+        for (int i = 0; i < limitCount; i++) {
+            limits.add(ResultLimit.valueOf(in.readString()));
+        }
+
+        final int groupCount = in.readCount(1);
+        final List<ShardedResultGroup> groups = new ArrayList<>();
+
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(readGroup(in));
+        }
+
+        return new MemcachedQueryCache.CachedResult(range, groups, preAggregationSampleSize,
+            new ResultLimits(limits.build()), expires);
+    }
+
+    private void writeGroup(final Writer out, final ShardedResultGroup group)
+        throws IOException {
+        out.writeMap(group.getShard());
+        out.writeMap(group.getKey());
+
+        out.writeVarLong(group.getSeries().size());
+
+        for (final Series series : group.getSeries()) {
+            out.writeString(series.getKey());
+            out.writeMap(series.getTags());
+        }
+
+        out.writeVarLong(group.getCadence());
+
+        final MetricCollection metrics = group.getMetrics();
+        out.writeString(metrics.getType().identifier());
+
+        switch (metrics.getType()) {
+            case POINT:
+                writePoints(out, metrics.getDataAs(Point.class), group.getCadence());
+                break;
+            case SPREAD:
+                writeSpreads(out, metrics.getDataAs(Spread.class), group.getCadence());
+                break;
+            default:
+                final byte[] json = mapper.writeValueAsBytes(metrics);
+                out.writeVarLong(json.length);
+                out.output.write(json);
+                break;
+        }
+    }
+
+    private ShardedResultGroup readGroup(final Reader in) throws IOException {
+        final Map<String, String> shard = in.readMap();
+        final Map<String, String> key = in.readMap();
+
+        final int seriesCount = in.readCount(2);
+        final ImmutableSet.Builder<Series> series = ImmutableSet.builder();
+
+        for (int i = 0; i < seriesCount; i++) {
+            final String seriesKey = in.readString();
+            series.add(Series.of(seriesKey, in.readMap()));
+        }
+
+        final long cadence = in.readVarLong();
+
+        final String identifier = in.readString();
+        final MetricType type = MetricType
+            .fromIdentifier(identifier)
+            .orElseThrow(() -> new IOException("Unknown metric type: " + identifier));
+
+        final MetricCollection metrics;
+
+        switch (type) {
+            case POINT:
+                metrics = MetricCollection.points(readPoints(in, cadence));
+                break;
+            case SPREAD:
+                metrics = MetricCollection.spreads(readSpreads(in, cadence));
+                break;
+            default:
+                final byte[] json = new byte[in.readCount(1)];
+                in.input.readFully(json);
+                metrics = mapper.readValue(json, MetricCollection.class);
+                break;
+        }
+
+        return new ShardedResultGroup(shard, key, series.build(), metrics, cadence);
+    }
+
+    private void writePoints(final Writer out, final List<Point> points, final long cadence)
+        throws IOException {
+        final long[] timestamps = new long[points.size()];
+
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = points.get(i).getTimestamp();
+        }
+
+        writeTimestamps(out, timestamps, cadence);
+
+        for (final Point p : points) {
+            out.output.writeDouble(p.getValue());
+        }
+    }
+
+    private List<Point> readPoints(final Reader in, final long cadence) throws IOException {
+        final long[] timestamps = readTimestamps(in, cadence, MIN_POINT_SIZE);
+        final ImmutableList.Builder<Point> points = ImmutableList.builder();
+
+        for (final long timestamp : timestamps) {
+            points.add(new Point(timestamp, in.input.readDouble()));
+        }
+
+        return points.build();
+    }
+
+    private void writeSpreads(final Writer out, final List<Spread> spreads, final long cadence)
+        throws IOException {
+        final long[] timestamps = new long[spreads.size()];
+
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = spreads.get(i).getTimestamp();
+        }
+
+        writeTimestamps(out, timestamps, cadence);
+
+        for (final Spread s : spreads) {
+            out.writeVarLong(s.getCount());
+            out.output.writeDouble(s.getSum());
+            out.output.writeDouble(s.getSum2());
+            out.output.writeDouble(s.getMin());
+            out.output.writeDouble(s.getMax());
+        }
+    }
+
+    private List<Spread> readSpreads(final Reader in, final long cadence) throws IOException {
+        final long[] timestamps = readTimestamps(in, cadence, MIN_SPREAD_SIZE);
+        final ImmutableList.Builder<Spread> spreads = ImmutableList.builder();
+
+        for (final long timestamp : timestamps) {
+            final long count = in.readVarLong();
+            spreads.add(new Spread(timestamp, count, in.input.readDouble(), in.input.readDouble(),
+                in.input.readDouble(), in.input.readDouble()));
+        }
+
+        return spreads.build();
+    }
+
+    /**
+     * Write timestamps as deltas, which are divided by the cadence if they are all multiples of
+     * it.
+     */
+    private void writeTimestamps(final Writer out, final long[] timestamps, final long cadence)
+        throws IOException {
+        out.writeVarLong(timestamps.length);
+
+        if (timestamps.length == 0) {
+            return;
+        }
+
+        boolean aligned = cadence > 0;
+
+        for (int i = 1; aligned && i < timestamps.length; i++) {
+            final long delta = timestamps[i] - timestamps[i - 1];
+            aligned = delta >= 0 && delta % cadence == 0;
+        }
+
+        final long unit = aligned ? cadence : 1L;
+
+        out.output.writeBoolean(aligned);
+        out.output.writeLong(timestamps[0]);
+
+        for (int i = 1; i < timestamps.length; i++) {
+            out.writeSignedVarLong((timestamps[i] - timestamps[i - 1]) / unit);
+        }
+    }
+
+    private long[] readTimestamps(final Reader in, final long cadence, final int elementSize)
+        throws IOException {
+        final long[] timestamps = new long[in.readCount(elementSize)];
+
+        if (timestamps.length == 0) {
+            return timestamps;
+        }
+
+        final long unit = in.input.readBoolean() ? cadence : 1L;
+        timestamps[0] = in.input.readLong();
+
+        for (int i = 1; i < timestamps.length; i++) {
+            timestamps[i] = timestamps[i - 1] + in.readSignedVarLong() * unit;
+        }
+
+        return timestamps;
+    }
+
+    private static void writeInt(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+            | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+    }
+
+    @RequiredArgsConstructor
+    private static class Writer {
+        private final DataOutputStream output;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        void writeString(final String value) throws IOException {
+            final Integer index = strings.get(value);
+
+            if (index != null) {
+                writeVarLong(index + 1);
+                return;
+            }
+
+            strings.put(value, strings.size());
+            writeVarLong(NEW_STRING);
+
+            /* unlike writeUTF, this is not limited to 64 KiB */
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            output.write(bytes);
+        }
+
+        void writeMap(final Map<String, String> map) throws IOException {
+            writeVarLong(map.size());
+
+            for (final Map.Entry<String, String> e : map.entrySet()) {
+                writeString(e.getKey());
+                writeString(e.getValue());
+            }
+        }
+
+        void writeSignedVarLong(final long value) throws IOException {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7fL) != 0) {
+                output.writeByte((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+
+            output.writeByte((int) value);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Reader {
+        private final DataInputStream input;
+        private final List<String> strings = new ArrayList<>();
+
+        String readString() throws IOException {
+            final int index = readCount();
+
+            if (index == NEW_STRING) {
+                final byte[] bytes = new byte[readCount(1)];
+                input.readFully(bytes);
+                final String value = new String(bytes, StandardCharsets.UTF_8);
+                strings.add(value);
+                return value;
+            }
+
+            if (index > strings.size()) {
+                throw new IOException("Reference to unknown string: " + index);
+            }
+
+            return strings.get(index - 1);
+        }
+
+        Map<String, String> readMap() throws IOException {
+            final int size = readCount(2);
+            final Map<String, String> map = new TreeMap<>();
+
+            for (int i = 0; i < size; i++) {
+                final String key = readString();
+                map.put(key, readString());
+            }
+
+            return map;
+        }
+
+        /**
+         * Read the number of elements which follow, each of which is encoded in at least the given
+         * number of bytes. Counts which can not fit in the remaining input are rejected before
+         * anything is allocated for them.
+         */
+        int readCount(final int elementSize) throws IOException {
+            final int count = readCount();
+
+            if ((long) count * elementSize > input.available()) {
+                throw new IOException("Count exceeds remaining input: " + count);
+            }
+
+            return count;
+        }
+
+        int readCount() throws IOException {
+            final long value = readVarLong();
+
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Invalid count: " + value);
+            }
+
+            return (int) value;
+        }
+
+        long readSignedVarLong() throws IOException {
+            final long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = input.readByte();
+                value |= (long) (b & 0x7f) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IOException("Malformed variable-length integer");
+        }
+    }
+}
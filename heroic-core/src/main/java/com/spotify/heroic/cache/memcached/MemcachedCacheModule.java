@@ -37,6 +37,9 @@ import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.dagger.PrimaryComponent;
 import com.spotify.heroic.lifecycle.LifeCycle;
 import com.spotify.heroic.lifecycle.LifeCycleRegistry;
+import com.spotify.heroic.statistics.HeroicReporter;
+import com.spotify.heroic.statistics.QueryCacheReporter;
+import com.spotify.heroic.time.Clock;
 import dagger.Component;
 import dagger.Module;
 import dagger.Provides;
@@ -61,6 +64,7 @@ public class MemcachedCacheModule implements CacheModule {
 
     private final List<String> addresses;
     private final Optional<Duration> maxTtl;
+    private final Optional<Long> nearCacheSize;
 
     @Override
     public CacheComponent module(PrimaryComponent primary) {
@@ -147,6 +151,20 @@ public class MemcachedCacheModule implements CacheModule {
         return maxTtl;
     }
 
+    @Provides
+    @CacheScope
+    public QueryCacheReporter reporter(final HeroicReporter reporter) {
+        return reporter.newQueryCache();
+    }
+
+    @Provides
+    @CacheScope
+    public Optional<NearQueryCache> nearCache(
+        final Clock clock, final QueryCacheReporter reporter
+    ) {
+        return nearCacheSize.map(size -> new NearQueryCache(clock, reporter, size));
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -155,14 +173,17 @@ public class MemcachedCacheModule implements CacheModule {
     public static class Builder implements CacheModule.Builder {
         private Optional<List<String>> addresses = Optional.empty();
         private Optional<Duration> maxTtl = Optional.empty();
+        private Optional<Long> nearCacheSize = Optional.empty();
 
         @JsonCreator
         public Builder(
             @JsonProperty("addresses") final Optional<List<String>> addresses,
-            @JsonProperty("maxTtl") Optional<Duration> maxTtl
+            @JsonProperty("maxTtl") Optional<Duration> maxTtl,
+            @JsonProperty("nearCacheSize") Optional<Long> nearCacheSize
         ) {
             this.addresses = addresses;
             this.maxTtl = maxTtl;
+            this.nearCacheSize = nearCacheSize;
         }
 
         public Builder addresses(final List<String> addresses) {
@@ -175,11 +196,20 @@ public class MemcachedCacheModule implements CacheModule {
             return this;
         }
 
+        /**
+         * Keep results of up to the given number of serialized bytes in memory, in front of
+         * memcached.
+         */
+        public Builder nearCacheSize(final long nearCacheSize) {
+            this.nearCacheSize = Optional.of(nearCacheSize);
+            return this;
+        }
+
         @Override
         public CacheModule build() {
             final List<String> addresses =
                 this.addresses.orElseGet(() -> Collections.singletonList(DEFAULT_ADDRESS));
-            return new MemcachedCacheModule(addresses, maxTtl);
+            return new MemcachedCacheModule(addresses, maxTtl, nearCacheSize);
         }
     }
 }
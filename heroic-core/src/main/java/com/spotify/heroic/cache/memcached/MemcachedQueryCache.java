@@ -43,6 +43,7 @@ import com.spotify.heroic.metric.QueryResult;
 import com.spotify.heroic.metric.QueryTrace;
 import com.spotify.heroic.metric.ResultLimits;
 import com.spotify.heroic.metric.ShardedResultGroup;
+import com.spotify.heroic.statistics.QueryCacheReporter;
 import com.spotify.heroic.time.Clock;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
@@ -50,15 +51,10 @@ import eu.toolchain.async.Borrowed;
 import eu.toolchain.async.FutureDone;
 import eu.toolchain.async.Managed;
 import eu.toolchain.async.ResolvableFuture;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -68,31 +64,43 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @CacheScope
 public class MemcachedQueryCache implements QueryCache {
-    private static final String PREFIX = "query.gz/";
+    public static final String TIER = "memcached";
+
+    /* entries of other versions are never looked up */
+    private static final String PREFIX = "query.v" + CachedResultSerializer.VERSION + "/";
 
     private static final QueryTrace.Identifier IDENTIFIER =
         QueryTrace.identifier(MemcachedQueryCache.class);
 
     private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
 
+    /* default item size limit of memcached is 1 MiB, which also has to fit the key and the item
+     * header of memcached, leave some headroom for those */
+    private static final int MAX_ITEM_SIZE = 1024 * 1024 - 16 * 1024;
+
     private final Managed<MemcacheClient<byte[]>> client;
-    private final ObjectMapper mapper;
+    private final CachedResultSerializer serializer;
     private final AsyncFramework async;
     private final Clock clock;
     private final Optional<Integer> maxTtlSeconds;
+    private final Optional<NearQueryCache> nearCache;
+    private final QueryCacheReporter reporter;
 
     @Inject
     public MemcachedQueryCache(
         final Managed<MemcacheClient<byte[]>> client,
         @Named(HeroicMappers.APPLICATION_JSON_INTERNAL) final ObjectMapper mapper,
         final AsyncFramework async, final Clock clock,
-        @Named("maxTtl") final Optional<Duration> maxTtl
+        @Named("maxTtl") final Optional<Duration> maxTtl,
+        final Optional<NearQueryCache> nearCache, final QueryCacheReporter reporter
     ) {
         this.client = client;
-        this.mapper = mapper;
+        this.serializer = new CachedResultSerializer(mapper);
         this.async = async;
         this.clock = clock;
         this.maxTtlSeconds = maxTtl.map(d -> (int) d.convert(TimeUnit.SECONDS));
+        this.nearCache = nearCache;
+        this.reporter = reporter;
     }
 
     @Override
@@ -121,6 +129,14 @@ public class MemcachedQueryCache implements QueryCache {
         final QueryTrace.NamedWatch watch =
             request.getOptions().tracing().watch(IDENTIFIER.extend(key));
 
+        if (nearCache.isPresent()) {
+            final Optional<CachedResult> near = nearCache.get().get(key);
+
+            if (near.isPresent()) {
+                return async.resolved(toQueryResult(near.get(), key, watch));
+            }
+        }
+
         log.debug("{}: performing cache lookup", key);
 
         return client.doto(client -> {
@@ -130,15 +146,15 @@ public class MemcachedQueryCache implements QueryCache {
                 @Override
                 public void onSuccess(@Nullable final byte[] result) {
                     if (result == null) {
+                        reporter.reportMiss(TIER);
                         cacheSet(future, loader, key, cadence);
                         return;
                     }
 
                     final CachedResult cachedResult;
 
-                    try (final InputStream input = new GZIPInputStream(
-                        new ByteArrayInputStream(result))) {
-                        cachedResult = mapper.readValue(input, CachedResult.class);
+                    try {
+                        cachedResult = serializer.deserialize(result);
                     } catch (final Exception e) {
                         log.error("{}: failed to deserialize value from cache", key, e);
                         // fallback to regular request
@@ -146,20 +162,19 @@ public class MemcachedQueryCache implements QueryCache {
                         return;
                     }
 
-                    final int ttl = calculateTtl(cadence);
-                    final CacheInfo cache = new CacheInfo(true, ttl, key);
+                    reporter.reportHit(TIER);
 
-                    final QueryResult queryResult =
-                        new QueryResult(cachedResult.getRange(), cachedResult.getGroups(),
-                            ImmutableList.of(), watch.end(), cachedResult.getLimits(),
-                            cachedResult.getPreAggregationSampleSize(), Optional.of(cache));
+                    /* promote to the near cache, so that the next lookup is local. The entry
+                     * keeps the expiry of the memcached entry it was read from */
+                    nearCache.ifPresent(near -> near.put(key, cachedResult));
 
-                    future.resolve(queryResult);
+                    future.resolve(toQueryResult(cachedResult, key, watch));
                 }
 
                 @Override
                 public void onFailure(final Throwable t) {
                     log.error("{}: failed to load value from cache", key, t);
+                    reporter.reportMiss(TIER);
                     // fallback to regular request
                     cacheSet(future, loader, key, cadence);
                 }
@@ -169,6 +184,19 @@ public class MemcachedQueryCache implements QueryCache {
         });
     }
 
+    private QueryResult toQueryResult(
+        final CachedResult cachedResult, final String key, final QueryTrace.NamedWatch watch
+    ) {
+        final long remaining = cachedResult.getExpires() - clock.currentTimeMillis();
+        final int ttl = (int) TimeUnit.SECONDS.convert(Math.max(0L, remaining),
+            TimeUnit.MILLISECONDS);
+        final CacheInfo cache = new CacheInfo(true, ttl, key);
+
+        return new QueryResult(cachedResult.getRange(), cachedResult.getGroups(),
+            ImmutableList.of(), watch.end(), cachedResult.getLimits(),
+            cachedResult.getPreAggregationSampleSize(), Optional.of(cache));
+    }
+
     private void cacheSet(
         final ResolvableFuture<QueryResult> future, final Supplier<AsyncFuture<QueryResult>> loader,
         final String key, final long cadence
@@ -218,18 +246,24 @@ public class MemcachedQueryCache implements QueryCache {
 
         final CachedResult cachedResult =
             new CachedResult(queryResult.getRange(), queryResult.getGroups(),
-                queryResult.getPreAggregationSampleSize(), queryResult.getLimits());
+                queryResult.getPreAggregationSampleSize(), queryResult.getLimits(),
+                clock.currentTimeMillis() + ttl * 1000L);
 
-        final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        final byte[] bytes;
 
-        try (final GZIPOutputStream out = new GZIPOutputStream(bytesOut)) {
-            mapper.writeValue(out, cachedResult);
+        try {
+            bytes = serializer.serialize(cachedResult);
         } catch (final Exception e) {
             log.error("failed to serialize cached results", e);
             return;
         }
 
-        final byte[] bytes = bytesOut.toByteArray();
+        nearCache.ifPresent(near -> near.put(key, cachedResult));
+
+        if (bytes.length > MAX_ITEM_SIZE) {
+            log.warn("{}: not storing due to size ({} bytes)", key, bytes.length);
+            return;
+        }
 
         final Borrowed<MemcacheClient<byte[]>> borrowed = client.borrow();
 
@@ -280,5 +314,7 @@ public class MemcachedQueryCache implements QueryCache {
         private final List<ShardedResultGroup> groups;
         private final long preAggregationSampleSize;
         private final ResultLimits limits;
+        /* when the result expires, in milliseconds since unix epoch */
+        private final long expires;
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.cache.memcached;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import com.spotify.heroic.statistics.QueryCacheReporter;
+import com.spotify.heroic.time.Clock;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * An in-heap cache in front of memcached, which keeps decoded results of popular queries.
+ * <p>
+ * The size of the cache is bounded by the estimated heap size of the decoded results, and every
+ * entry expires at the same time as the memcached entry it was stored or read as.
+ */
+public class NearQueryCache {
+    public static final String TIER = "near";
+
+    /* rough heap sizes of decoded objects in bytes, assuming compressed references */
+    private static final long RESULT_SIZE = 128L;
+    private static final long GROUP_SIZE = 96L;
+    private static final long SERIES_SIZE = 64L;
+    private static final long ENTRY_SIZE = 32L;
+    private static final long STRING_SIZE = 40L;
+    private static final long POINT_SIZE = 32L;
+    private static final long SPREAD_SIZE = 64L;
+    /* other metrics are nested structures, their size is only a coarse guess */
+    private static final long METRIC_SIZE = 128L;
+
+    private final Clock clock;
+    private final QueryCacheReporter reporter;
+    private final Cache<String, Entry> cache;
+
+    public NearQueryCache(
+        final Clock clock, final QueryCacheReporter reporter, final long maxSize
+    ) {
+        this.clock = clock;
+        this.reporter = reporter;
+        this.cache = CacheBuilder
+            .newBuilder()
+            .maximumWeight(maxSize)
+            .<String, Entry>weigher((key, entry) -> entry.weight)
+            .removalListener(notification -> {
+                if (notification.wasEvicted()) {
+                    reporter.reportEviction(TIER);
+                }
+            })
+            .build();
+    }
+
+    /**
+     * Get a result which has not yet expired.
+     */
+    public Optional<MemcachedQueryCache.CachedResult> get(final String key) {
+        final Entry entry = cache.getIfPresent(key);
+
+        if (entry == null) {
+            reporter.reportMiss(TIER);
+            return Optional.empty();
+        }
+
+        if (entry.expires <= clock.currentTimeMillis()) {
+            cache.invalidate(key);
+            reporter.reportMiss(TIER);
+            return Optional.empty();
+        }
+
+        reporter.reportHit(TIER);
+        return Optional.of(entry.result);
+    }
+
+    /**
+     * Store a result until it expires.
+     *
+     * @param key key to store under
+     * @param result result to store
+     */
+    public void put(final String key, final MemcachedQueryCache.CachedResult result) {
+        if (result.getExpires() <= clock.currentTimeMillis()) {
+            return;
+        }
+
+        final int weight = (int) Math.min(Integer.MAX_VALUE, estimateSize(result));
+        cache.put(key, new Entry(result, weight, result.getExpires()));
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Estimate the heap size of a decoded result in bytes.
+     */
+    static long estimateSize(final MemcachedQueryCache.CachedResult result) {
+        long size = RESULT_SIZE;
+
+        for (final ShardedResultGroup group : result.getGroups()) {
+            size += GROUP_SIZE + estimateSize(group.getShard()) + estimateSize(group.getKey());
+
+            for (final Series series : group.getSeries()) {
+                size += SERIES_SIZE + estimateSize(series.getKey());
+                size += estimateSize(series.getTags());
+            }
+
+            final MetricCollection metrics = group.getMetrics();
+            size += metrics.size() * estimateMetricSize(metrics);
+        }
+
+        return size;
+    }
+
+    private static long estimateMetricSize(final MetricCollection metrics) {
+        switch (metrics.getType()) {
+            case POINT:
+                return POINT_SIZE;
+            case SPREAD:
+                return SPREAD_SIZE;
+            default:
+                return METRIC_SIZE;
+        }
+    }
+
+    private static long estimateSize(final Map<String, String> map) {
+        long size = 0L;
+
+        for (final Map.Entry<String, String> e : map.entrySet()) {
+            size += ENTRY_SIZE + estimateSize(e.getKey()) + estimateSize(e.getValue());
+        }
+
+        return size;
+    }
+
+    private static long estimateSize(final String value) {
+        return STRING_SIZE + 2L * value.length();
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final MemcachedQueryCache.CachedResult result;
+        private final int weight;
+        private final long expires;
+    }
+}
@@ -30,6 +30,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.common.ServiceInfo;
 import com.spotify.heroic.dagger.PrimaryComponent;
 import com.spotify.heroic.lifecycle.LifeCycle;
@@ -48,6 +49,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Named;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -62,6 +64,8 @@ import org.apache.commons.lang3.tuple.Pair;
 @Module
 public class ClusterManagerModule {
     public static final boolean DEFAULT_USE_LOCAL = true;
+    public static final int DEFAULT_PROBE_PARALLELISM = 32;
+    public static final Duration DEFAULT_PROBE_MAX_AGE = Duration.of(5, TimeUnit.MINUTES);
 
     private final UUID id;
     private final Map<String, String> tags;
@@ -70,6 +74,8 @@ public class ClusterManagerModule {
     private final List<RpcProtocolModule> protocols;
     private final Set<Map<String, String>> topology;
     private final Optional<NodeMetadataFactory> metadataFactory;
+    private final int probeParallelism;
+    private final Duration probeMaxAge;
 
     @Provides
     @ClusterScope
@@ -106,6 +112,20 @@ public class ClusterManagerModule {
         return topology;
     }
 
+    @Provides
+    @ClusterScope
+    @Named("probeParallelism")
+    public Integer probeParallelism() {
+        return probeParallelism;
+    }
+
+    @Provides
+    @ClusterScope
+    @Named("probeMaxAge")
+    public Duration probeMaxAge() {
+        return probeMaxAge;
+    }
+
     @Provides
     @ClusterScope
     public QueryReporter queryReporter(HeroicReporter heroicReporter) {
@@ -191,6 +211,8 @@ public class ClusterManagerModule {
         private Optional<List<RpcProtocolModule>> protocols = empty();
         private Optional<Set<Map<String, String>>> topology = empty();
         private Optional<NodeMetadataFactory> metadataFactory = empty();
+        private Optional<Integer> probeParallelism = empty();
+        private Optional<Duration> probeMaxAge = empty();
 
         @JsonCreator
         public Builder(
@@ -199,7 +221,9 @@ public class ClusterManagerModule {
             @JsonProperty("useLocal") Optional<Boolean> useLocal,
             @JsonProperty("discovery") Optional<ClusterDiscoveryModule> discovery,
             @JsonProperty("protocols") Optional<List<RpcProtocolModule>> protocols,
-            @JsonProperty("topology") Optional<Set<Map<String, String>>> topology
+            @JsonProperty("topology") Optional<Set<Map<String, String>>> topology,
+            @JsonProperty("probeParallelism") Optional<Integer> probeParallelism,
+            @JsonProperty("probeMaxAge") Optional<Duration> probeMaxAge
         ) {
             this.id = id;
             this.tags = tags;
@@ -207,6 +231,8 @@ public class ClusterManagerModule {
             this.discovery = discovery;
             this.protocols = protocols;
             this.topology = topology;
+            this.probeParallelism = probeParallelism;
+            this.probeMaxAge = probeMaxAge;
         }
 
         public Builder id(UUID id) {
@@ -239,6 +265,23 @@ public class ClusterManagerModule {
             return this;
         }
 
+        /**
+         * Maximum number of nodes to probe for metadata at the same time during a refresh.
+         */
+        public Builder probeParallelism(int probeParallelism) {
+            this.probeParallelism = of(probeParallelism);
+            return this;
+        }
+
+        /**
+         * Nodes which are alive and were probed more recently than this are not probed again
+         * during a refresh. A zero duration probes every node on every refresh.
+         */
+        public Builder probeMaxAge(Duration probeMaxAge) {
+            this.probeMaxAge = of(probeMaxAge);
+            return this;
+        }
+
         /**
          * Set the metadata factory.
          *
@@ -261,7 +304,9 @@ public class ClusterManagerModule {
                 pickOptional(discovery, o.discovery),
                 pickOptional(protocols, o.protocols),
                 pickOptional(topology, o.topology),
-                pickOptional(metadataFactory, o.metadataFactory)
+                pickOptional(metadataFactory, o.metadataFactory),
+                pickOptional(probeParallelism, o.probeParallelism),
+                pickOptional(probeMaxAge, o.probeMaxAge)
             );
             // @formatter:on
         }
@@ -275,7 +320,9 @@ public class ClusterManagerModule {
                 discovery.orElseGet(ClusterDiscoveryModule::nullModule),
                 protocols.orElseGet(ImmutableList::of),
                 topology.orElseGet(ImmutableSet::of),
-                metadataFactory
+                metadataFactory,
+                probeParallelism.orElse(DEFAULT_PROBE_PARALLELISM),
+                probeMaxAge.orElse(DEFAULT_PROBE_MAX_AGE)
             );
             // @formatter:on
         }
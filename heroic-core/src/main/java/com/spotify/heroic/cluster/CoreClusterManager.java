@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.spotify.heroic.HeroicConfiguration;
 import com.spotify.heroic.HeroicContext;
+import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.lifecycle.LifeCycleRegistry;
 import com.spotify.heroic.lifecycle.LifeCycles;
 import com.spotify.heroic.metric.QueryTrace;
@@ -34,6 +35,7 @@ import com.spotify.heroic.statistics.QueryReporter;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.LazyTransform;
+import eu.toolchain.async.StreamCollector;
 import eu.toolchain.async.Transform;
 import java.net.URI;
 import java.util.ArrayList;
@@ -44,8 +46,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -84,6 +91,8 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
     private final HeroicContext context;
     private final Set<Map<String, String>> expectedTopology;
     private final QueryReporter reporter;
+    private final int probeParallelism;
+    private final long probeMaxAge;
 
     final AtomicReference<Set<URI>> staticNodes = new AtomicReference<>(new HashSet<>());
     final AtomicReference<NodeRegistry> registry = new AtomicReference<>();
@@ -91,6 +100,9 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         new AtomicReference<>(Collections.emptyMap());
     final AtomicLong refreshId = new AtomicLong();
 
+    /* when each known node last responded to a metadata probe, in nanoseconds */
+    final ConcurrentMap<URI, Long> lastProbe = new ConcurrentHashMap<>();
+
     final Object updateRegistryLock = new Object();
 
     @Inject
@@ -99,7 +111,8 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         Map<String, RpcProtocol> protocols, Scheduler scheduler,
         @Named("useLocal") Boolean useLocal, HeroicConfiguration options, LocalClusterNode local,
         HeroicContext context, @Named("topology") Set<Map<String, String>> expectedTopology,
-        final QueryReporter reporter
+        final QueryReporter reporter, @Named("probeParallelism") final Integer probeParallelism,
+        @Named("probeMaxAge") final Duration probeMaxAge
     ) {
         this.async = async;
         this.discovery = discovery;
@@ -112,6 +125,8 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         this.context = context;
         this.expectedTopology = expectedTopology;
         this.reporter = reporter;
+        this.probeParallelism = probeParallelism;
+        this.probeMaxAge = probeMaxAge.convert(TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -196,7 +211,8 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
      * </p>
      * <p>
      * The sweep step takes the existing {@link #clients} map and compares it to the updated list of
-     * URIs.
+     * URIs. Only new nodes, nodes which are no longer alive and nodes which have not been probed
+     * for a while are probed, at most {@link #probeParallelism} at a time.
      * </p>
      * <p>
      * The log and prepare step logs information about which operations happened and prepares for
@@ -371,6 +387,9 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         }
 
         return protocol.connect(uri).<Update>lazyTransform(node -> {
+            /* connecting fetches the metadata of the node, which counts as a probe */
+            lastProbe.put(uri, nanoTime());
+
             if (useLocal && localMetadata.getId().equals(node.metadata().getId())) {
                 log.info("{} using local instead of {} (closing old node)", id, node);
 
@@ -420,8 +439,8 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         return uriLists -> {
             final List<URI> uris = ImmutableList.copyOf(Iterables.concat(uriLists));
 
-            final List<AsyncFuture<Update>> updated = new ArrayList<>();
-            final List<RemovedNode> removedNodes = new ArrayList<>();
+            final List<Callable<AsyncFuture<Update>>> updated = new ArrayList<>();
+            final List<RemovedNode> removedNodes = Collections.synchronizedList(new ArrayList<>());
 
             final Map<URI, ClusterNode> oldClients = this.clients.get();
 
@@ -431,6 +450,7 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
             }
 
             final Set<URI> removedUris = new HashSet<>(oldClients.keySet());
+            final long now = nanoTime();
 
             for (final URI uri : uris) {
                 final ClusterNode node = oldClients.get(uri);
@@ -438,14 +458,22 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
 
                 if (node == null) {
                     /* first time URI has been seen, resolve new node */
-                    updated.add(createClusterNode(id, uri));
+                    updated.add(() -> createClusterNode(id, uri));
+                    continue;
+                }
+
+                if (!needsProbe(uri, node, now)) {
+                    /* keep routing to healthy nodes which were probed recently as they are */
+                    updated.add(() -> async.resolved(new SuccessfulUpdate(uri, false, node)));
                     continue;
                 }
 
                 /* re-query metadata for nodes already known and make sure it matches.
                  * if it does not match, create a new cluster node and close the old one.
                  * otherwise, re-use the existing node */
-                updated.add(node.fetchMetadata().lazyTransform(m -> {
+                updated.add(() -> node.fetchMetadata().lazyTransform(m -> {
+                    lastProbe.put(uri, nanoTime());
+
                     if (!node.metadata().equals(m)) {
                         /* add to removedNodes list to make sure it is being closed */
                         removedNodes.add(new RemovedNode(uri, node));
@@ -460,6 +488,7 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
              * and should be closed */
             for (final URI uri : removedUris) {
                 final ClusterNode remove = oldClients.get(uri);
+                lastProbe.remove(uri);
 
                 if (remove != null) {
                     removedNodes.add(new RemovedNode(uri, remove));
@@ -467,11 +496,32 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
             }
 
             return async
-                .collect(updated)
+                .eventuallyCollect(updated, new UpdateCollector(), probeParallelism)
                 .lazyTransform(refreshLogAndPrepare(id, removedNodes, oldClients));
         };
     }
 
+    /**
+     * Check if an already known node needs to be probed for metadata.
+     *
+     * @param uri uri of the node
+     * @param node the node to check
+     * @param now current time in nanoseconds
+     * @return {@code true} if the node is not alive, or has not been probed recently
+     */
+    boolean needsProbe(final URI uri, final ClusterNode node, final long now) {
+        if (!node.isAlive()) {
+            return true;
+        }
+
+        final Long probed = lastProbe.get(uri);
+        return probed == null || now - probed >= probeMaxAge;
+    }
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
     /**
      * Operation the logs all intended operations and prepares for the final step.
      *
@@ -547,6 +597,8 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
                     new NodeRegistry(async, new ArrayList<>(okNodes), okNodes.size()));
             }
 
+            lastProbe.keySet().retainAll(newClients.keySet());
+
             // Close removed nodes
             final List<AsyncFuture<Void>> removals = new ArrayList<>();
             removedNodes.forEach(removedNode -> {
@@ -578,6 +630,32 @@ public class CoreClusterManager implements ClusterManager, LifeCycles {
         return async.collectAndDiscard(removals).lazyTransform(v0 -> refreshDiscovery(id));
     }
 
+    /**
+     * Collects all updates, which never fail since errors are turned into failed updates.
+     */
+    static class UpdateCollector implements StreamCollector<Update, Collection<Update>> {
+        private final Queue<Update> updates = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void resolved(final Update result) {
+            updates.add(result);
+        }
+
+        @Override
+        public void failed(final Throwable cause) {
+            log.error("unexpected failure while probing node", cause);
+        }
+
+        @Override
+        public void cancelled() {
+        }
+
+        @Override
+        public Collection<Update> end(final int resolved, final int failed, final int cancelled) {
+            return ImmutableList.copyOf(updates);
+        }
+    }
+
     /**
      * A container that contains information about a node update.
      */
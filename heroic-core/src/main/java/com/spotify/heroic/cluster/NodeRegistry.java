@@ -28,9 +28,11 @@ import com.google.common.collect.Multimap;
 import eu.toolchain.async.AsyncFramework;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Random;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -90,17 +92,49 @@ public class NodeRegistry {
 
         final Collection<ClusterNode> nodesInShard = shardToNode.get(shard);
 
-        final List<ClusterNode> randomizedList =
-            nodesInShard.stream().filter(ClusterNode::isAlive).collect(Collectors.toList());
-        Collections.shuffle(randomizedList, random);
+        final List<ClusterNode> available =
+            nodesInShard.stream().filter(exclude.negate()).collect(Collectors.toList());
 
-        for (final ClusterNode n : randomizedList) {
-            if (exclude.test(n)) {
-                continue;
-            }
-            return Optional.of(n);
+        if (available.isEmpty()) {
+            return Optional.empty();
         }
 
-        return Optional.empty();
+        Collections.shuffle(available, random);
+
+        final List<ClusterNode> candidates =
+            available.stream().filter(ClusterNode::isAlive).collect(Collectors.toList());
+
+        /* no node in the shard is considered alive, which can happen after a burst of errors.
+         * Rather than failing the shard, fall back to the dead node which responded the fastest */
+        if (candidates.isEmpty()) {
+            return available
+                .stream()
+                .min(Comparator.comparingLong(n -> n.roundTripTime().orElse(Long.MAX_VALUE)));
+        }
+
+        if (candidates.size() == 1) {
+            return Optional.of(candidates.get(0));
+        }
+
+        /* power of two choices, out of two random nodes pick the one which responds faster. This
+         * favors fast nodes without piling all requests onto the fastest one */
+        final ClusterNode a = candidates.get(0);
+        final ClusterNode b = candidates.get(1);
+        return Optional.of(compareRoundTripTime(a, b) <= 0 ? a : b);
+    }
+
+    /**
+     * Compare the round-trip time of two nodes, nodes with an unknown round-trip time are
+     * considered equal to every other node.
+     */
+    static int compareRoundTripTime(final ClusterNode a, final ClusterNode b) {
+        final OptionalLong rttA = a.roundTripTime();
+        final OptionalLong rttB = b.roundTripTime();
+
+        if (!rttA.isPresent() || !rttB.isPresent()) {
+            return 0;
+        }
+
+        return Long.compare(rttA.getAsLong(), rttB.getAsLong());
     }
 }
@@ -37,12 +37,22 @@ import com.spotify.heroic.suggest.TagValueSuggest;
 import com.spotify.heroic.suggest.TagValuesSuggest;
 import eu.toolchain.async.AsyncFuture;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 
 public class TracingClusterNode implements ClusterNode {
     private final ClusterNode delegateNode;
     private final QueryTrace.Identifier queryIdentifier;
 
+    /* weight of a new sample in the smoothed round-trip time */
+    static final double SMOOTHING = 0.2D;
+
+    private final Object lock = new Object();
+
+    /* smoothed round-trip time of successful requests in nanoseconds, negative if unknown */
+    private double roundTripTime = -1D;
+
     public TracingClusterNode(final ClusterNode delegate, final QueryTrace.Identifier identifier) {
         this.delegateNode = delegate;
         this.queryIdentifier = QueryTrace.identifier(identifier + "#query");
@@ -58,6 +68,43 @@ public class TracingClusterNode implements ClusterNode {
         return delegateNode.fetchMetadata();
     }
 
+    @Override
+    public boolean isAlive() {
+        return delegateNode.isAlive();
+    }
+
+    @Override
+    public OptionalLong roundTripTime() {
+        synchronized (lock) {
+            return roundTripTime < 0D ? OptionalLong.empty()
+                : OptionalLong.of((long) roundTripTime);
+        }
+    }
+
+    /**
+     * Record the round-trip time of a single successful request in the smoothed round-trip time.
+     *
+     * @param rtt round-trip time in nanoseconds
+     */
+    void updateRoundTripTime(final long rtt) {
+        synchronized (lock) {
+            if (roundTripTime < 0D) {
+                roundTripTime = rtt;
+                return;
+            }
+
+            roundTripTime = roundTripTime * (1D - SMOOTHING) + rtt * SMOOTHING;
+        }
+    }
+
+    /**
+     * Send a request and record its round-trip time once it has successfully completed.
+     */
+    <T> AsyncFuture<T> timed(final Supplier<AsyncFuture<T>> request) {
+        final long start = System.nanoTime();
+        return request.get().onResolved(r -> updateRoundTripTime(System.nanoTime() - start));
+    }
+
     @Override
     public AsyncFuture<Void> close() {
         return delegateNode.close();
@@ -83,72 +130,73 @@ public class TracingClusterNode implements ClusterNode {
 
         @Override
         public AsyncFuture<Void> ping() {
-            return delegateGroup.ping();
+            return timed(() -> delegateGroup.ping());
         }
 
         @Override
         public AsyncFuture<FullQuery> query(FullQuery.Request request) {
-            return delegateGroup.query(request).directTransform(FullQuery.trace(queryIdentifier));
+            return timed(() -> delegateGroup.query(request)).directTransform(
+                FullQuery.trace(queryIdentifier));
         }
 
         @Override
         public AsyncFuture<FindTags> findTags(FindTags.Request request) {
-            return delegateGroup.findTags(request);
+            return timed(() -> delegateGroup.findTags(request));
         }
 
         @Override
         public AsyncFuture<FindKeys> findKeys(FindKeys.Request request) {
-            return delegateGroup.findKeys(request);
+            return timed(() -> delegateGroup.findKeys(request));
         }
 
         @Override
         public AsyncFuture<FindSeries> findSeries(FindSeries.Request request) {
-            return delegateGroup.findSeries(request);
+            return timed(() -> delegateGroup.findSeries(request));
         }
 
         @Override
         public AsyncFuture<DeleteSeries> deleteSeries(DeleteSeries.Request request) {
-            return delegateGroup.deleteSeries(request);
+            return timed(() -> delegateGroup.deleteSeries(request));
         }
 
         @Override
         public AsyncFuture<CountSeries> countSeries(CountSeries.Request request) {
-            return delegateGroup.countSeries(request);
+            return timed(() -> delegateGroup.countSeries(request));
         }
 
         @Override
         public AsyncFuture<TagKeyCount> tagKeyCount(TagKeyCount.Request request) {
-            return delegateGroup.tagKeyCount(request);
+            return timed(() -> delegateGroup.tagKeyCount(request));
         }
 
         @Override
         public AsyncFuture<TagSuggest> tagSuggest(TagSuggest.Request request) {
-            return delegateGroup.tagSuggest(request);
+            return timed(() -> delegateGroup.tagSuggest(request));
         }
 
         @Override
         public AsyncFuture<KeySuggest> keySuggest(KeySuggest.Request request) {
-            return delegateGroup.keySuggest(request);
+            return timed(() -> delegateGroup.keySuggest(request));
         }
 
         @Override
         public AsyncFuture<TagValuesSuggest> tagValuesSuggest(TagValuesSuggest.Request request) {
-            return delegateGroup.tagValuesSuggest(request);
+            return timed(() -> delegateGroup.tagValuesSuggest(request));
         }
 
         @Override
         public AsyncFuture<TagValueSuggest> tagValueSuggest(TagValueSuggest.Request request) {
-            return delegateGroup.tagValueSuggest(request);
+            return timed(() -> delegateGroup.tagValueSuggest(request));
         }
 
         @Override
         public AsyncFuture<WriteMetadata> writeSeries(final WriteMetadata.Request request) {
-            return delegateGroup.writeSeries(request);
+            return timed(() -> delegateGroup.writeSeries(request));
         }
 
         @Override
         public AsyncFuture<WriteMetric> writeMetric(final WriteMetric.Request request) {
-            return delegateGroup.writeMetric(request);
+            return timed(() -> delegateGroup.writeMetric(request));
         }
 
         public String toString() {
@@ -21,9 +21,13 @@
 
 package com.spotify.heroic.dagger;
 
+import com.spotify.heroic.lifecycle.LifeCycle;
 import dagger.Component;
+import javax.inject.Named;
 
 @PrimaryScope
 @Component(modules = PrimaryModule.class, dependencies = CoreEarlyComponent.class)
 public interface CorePrimaryComponent extends PrimaryComponent {
+    @Named("executors")
+    LifeCycle executorsLife();
 }
@@ -34,9 +34,12 @@ import com.spotify.heroic.aggregation.AggregationRegistry;
 import com.spotify.heroic.common.FeatureSet;
 import com.spotify.heroic.common.Features;
 import com.spotify.heroic.conditionalfeatures.ConditionalFeatures;
+import com.spotify.heroic.executor.CoreExecutors;
+import com.spotify.heroic.executor.ExecutorsConfig;
 import com.spotify.heroic.grammar.CoreQueryParser;
 import com.spotify.heroic.grammar.QueryParser;
 import com.spotify.heroic.lifecycle.CoreLifeCycleManager;
+import com.spotify.heroic.lifecycle.LifeCycle;
 import com.spotify.heroic.lifecycle.LifeCycleManager;
 import com.spotify.heroic.shell.ShellTask;
 import com.spotify.heroic.shell.ShellTaskDefinition;
@@ -46,6 +49,7 @@ import dagger.Module;
 import dagger.Provides;
 import eu.toolchain.async.AsyncFramework;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import lombok.RequiredArgsConstructor;
 
 import javax.inject.Named;
@@ -60,14 +64,18 @@ public class PrimaryModule {
     private final FeatureSet features;
     private final HeroicReporter reporter;
     private final Optional<ConditionalFeatures> conditionalFeatures;
+    private final ExecutorsConfig executors;
 
     @Provides
     @PrimaryScope
-    ShellTasks tasks(AsyncFramework async, HeroicCoreInstance injector) {
+    ShellTasks tasks(
+        AsyncFramework async, HeroicCoreInstance injector,
+        @Named("blocking") ExecutorService blocking
+    ) {
         final List<ShellTaskDefinition> commands = Tasks.available();
 
         try {
-            return new CoreShellTasks(commands, setupTasks(commands, injector), async);
+            return new CoreShellTasks(commands, setupTasks(commands, injector), async, blocking);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -143,6 +151,40 @@ public class PrimaryModule {
         return conditionalFeatures;
     }
 
+    @Provides
+    @PrimaryScope
+    CoreExecutors executors(AsyncFramework async, HeroicReporter reporter) {
+        return new CoreExecutors(async, executors, reporter);
+    }
+
+    @Provides
+    @Named("query")
+    @PrimaryScope
+    ExecutorService queryExecutor(CoreExecutors executors) {
+        return executors.query();
+    }
+
+    @Provides
+    @Named("ingestion")
+    @PrimaryScope
+    ExecutorService ingestionExecutor(CoreExecutors executors) {
+        return executors.ingestion();
+    }
+
+    @Provides
+    @Named("blocking")
+    @PrimaryScope
+    ExecutorService blockingExecutor(CoreExecutors executors) {
+        return executors.blocking();
+    }
+
+    @Provides
+    @Named("executors")
+    @PrimaryScope
+    LifeCycle executorsLife(LifeCycleManager manager, CoreExecutors executors) {
+        return manager.build(executors);
+    }
+
     private SortedMap<String, ShellTask> setupTasks(
         final List<ShellTaskDefinition> commands, final HeroicCoreInstance injector
     ) throws Exception {
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.executor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spotify.heroic.lifecycle.LifeCycleRegistry;
+import com.spotify.heroic.lifecycle.LifeCycles;
+import com.spotify.heroic.statistics.HeroicReporter;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The named executors used by the subsystems of heroic.
+ */
+@Slf4j
+@ToString(of = {"config"})
+public class CoreExecutors implements LifeCycles {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10L;
+
+    private final AsyncFramework async;
+    private final ExecutorsConfig config;
+
+    private final InstrumentedExecutorService query;
+    private final InstrumentedExecutorService ingestion;
+    private final InstrumentedExecutorService blocking;
+
+    public CoreExecutors(
+        final AsyncFramework async, final ExecutorsConfig config, final HeroicReporter reporter
+    ) {
+        this.async = async;
+        this.config = config;
+
+        this.query = setup("query", config.getQuery(), reporter);
+        this.ingestion = setup("ingestion", config.getIngestion(), reporter);
+        this.blocking = setup("blocking", config.getBlocking(), reporter);
+    }
+
+    /**
+     * Executor for CPU-bound query work, like aggregations.
+     */
+    public ExecutorService query() {
+        return query;
+    }
+
+    /**
+     * Executor for work performed while ingesting data.
+     */
+    public ExecutorService ingestion() {
+        return ingestion;
+    }
+
+    /**
+     * Executor for adapting blocking APIs, like shell tasks, SRV record lookups and the disk block
+     * cache.
+     */
+    public ExecutorService blocking() {
+        return blocking;
+    }
+
+    @Override
+    public void register(final LifeCycleRegistry registry) {
+        registry.stop(this::stop);
+    }
+
+    AsyncFuture<Void> stop() {
+        final List<InstrumentedExecutorService> executors =
+            ImmutableList.of(query, ingestion, blocking);
+
+        return async.call(() -> {
+            executors.forEach(ExecutorService::shutdown);
+
+            for (final InstrumentedExecutorService executor : executors) {
+                if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("{}: did not shut down in time, {} task(s) still queued", executor,
+                        executor.queueDepth());
+                    executor.shutdownNow();
+                }
+            }
+
+            return null;
+        }, ForkJoinPool.commonPool());
+    }
+
+    static InstrumentedExecutorService setup(
+        final String name, final ExecutorConfig config, final HeroicReporter reporter
+    ) {
+        final ExecutorService delegate;
+
+        switch (config.getType()) {
+            case FORK_JOIN:
+                delegate = new ForkJoinPool(config.getThreads(), pool -> {
+                    final ForkJoinWorkerThread thread =
+                        ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("heroic-" + name + "-" + thread.getPoolIndex());
+                    return thread;
+                }, null, true);
+                break;
+            case THREAD_POOL:
+                delegate = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 0L,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    new ThreadFactoryBuilder().setNameFormat("heroic-" + name + "-%d").build());
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    "Unsupported executor type: " + config.getType());
+        }
+
+        return new InstrumentedExecutorService(name, delegate, config.getQueueSize(),
+            config.getRejection(), reporter.newExecutor(name));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.executor;
+
+import static com.spotify.heroic.common.Optionals.pickOptional;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import java.util.Optional;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Configuration for a single named executor.
+ */
+@Data
+public class ExecutorConfig {
+    /**
+     * Kind of pool backing the executor.
+     */
+    public enum Type {
+        /**
+         * A work-stealing fork-join pool, suitable for CPU-bound work.
+         */
+        FORK_JOIN,
+        /**
+         * A fixed thread pool, suitable for blocking work.
+         */
+        THREAD_POOL
+    }
+
+    /**
+     * What to do with a task when the queue of the executor is full.
+     */
+    public enum Rejection {
+        /**
+         * Fail the task with a {@link java.util.concurrent.RejectedExecutionException}.
+         */
+        ABORT,
+        /**
+         * Run the task in the submitting thread, providing back-pressure.
+         */
+        CALLER_RUNS
+    }
+
+    private final Type type;
+    private final int threads;
+    private final int queueSize;
+    private final Rejection rejection;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NoArgsConstructor(access = AccessLevel.PRIVATE)
+    @AllArgsConstructor
+    public static class Builder {
+        private Optional<Type> type = empty();
+        private Optional<Integer> threads = empty();
+        private Optional<Integer> queueSize = empty();
+        private Optional<Rejection> rejection = empty();
+
+        public Builder type(final Type type) {
+            this.type = of(type);
+            return this;
+        }
+
+        public Builder threads(final int threads) {
+            this.threads = of(threads);
+            return this;
+        }
+
+        public Builder queueSize(final int queueSize) {
+            this.queueSize = of(queueSize);
+            return this;
+        }
+
+        public Builder rejection(final Rejection rejection) {
+            this.rejection = of(rejection);
+            return this;
+        }
+
+        public Builder merge(final Builder o) {
+            // @formatter:off
+            return new Builder(
+                pickOptional(type, o.type),
+                pickOptional(threads, o.threads),
+                pickOptional(queueSize, o.queueSize),
+                pickOptional(rejection, o.rejection)
+            );
+            // @formatter:on
+        }
+
+        /**
+         * Build the configuration, using the given defaults for anything not configured.
+         */
+        public ExecutorConfig build(final ExecutorConfig defaults) {
+            // @formatter:off
+            return new ExecutorConfig(
+                type.orElse(defaults.type),
+                threads.orElse(defaults.threads),
+                queueSize.orElse(defaults.queueSize),
+                rejection.orElse(defaults.rejection)
+            );
+            // @formatter:on
+        }
+    }
+}
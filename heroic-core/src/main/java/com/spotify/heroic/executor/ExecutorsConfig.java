@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.executor;
+
+import static com.spotify.heroic.common.Optionals.mergeOptional;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import java.util.Optional;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Configuration for the executors used by the different subsystems of heroic.
+ * <p>
+ * Keeping these separate means that a burst of ingestion does not queue up behind aggregation
+ * work, and vice versa.
+ */
+@Data
+public class ExecutorsConfig {
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    public static final ExecutorConfig DEFAULT_QUERY =
+        new ExecutorConfig(ExecutorConfig.Type.FORK_JOIN, PROCESSORS, 100000,
+            ExecutorConfig.Rejection.CALLER_RUNS);
+    public static final ExecutorConfig DEFAULT_INGESTION =
+        new ExecutorConfig(ExecutorConfig.Type.THREAD_POOL, PROCESSORS, 100000,
+            ExecutorConfig.Rejection.CALLER_RUNS);
+    public static final ExecutorConfig DEFAULT_BLOCKING =
+        new ExecutorConfig(ExecutorConfig.Type.THREAD_POOL, PROCESSORS * 4, 10000,
+            ExecutorConfig.Rejection.ABORT);
+
+    /**
+     * CPU-bound work when querying, like aggregations and combining results.
+     */
+    private final ExecutorConfig query;
+
+    /**
+     * Work performed when ingesting data.
+     */
+    private final ExecutorConfig ingestion;
+
+    /**
+     * Adapters for blocking APIs, like shell tasks, SRV record lookups and the disk block cache.
+     */
+    private final ExecutorConfig blocking;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NoArgsConstructor(access = AccessLevel.PRIVATE)
+    @AllArgsConstructor
+    public static class Builder {
+        private Optional<ExecutorConfig.Builder> query = empty();
+        private Optional<ExecutorConfig.Builder> ingestion = empty();
+        private Optional<ExecutorConfig.Builder> blocking = empty();
+
+        public Builder query(final ExecutorConfig.Builder query) {
+            this.query = of(query);
+            return this;
+        }
+
+        public Builder ingestion(final ExecutorConfig.Builder ingestion) {
+            this.ingestion = of(ingestion);
+            return this;
+        }
+
+        public Builder blocking(final ExecutorConfig.Builder blocking) {
+            this.blocking = of(blocking);
+            return this;
+        }
+
+        public Builder merge(final Builder o) {
+            // @formatter:off
+            return new Builder(
+                mergeOptional(query, o.query, ExecutorConfig.Builder::merge),
+                mergeOptional(ingestion, o.ingestion, ExecutorConfig.Builder::merge),
+                mergeOptional(blocking, o.blocking, ExecutorConfig.Builder::merge)
+            );
+            // @formatter:on
+        }
+
+        public ExecutorsConfig build() {
+            // @formatter:off
+            return new ExecutorsConfig(
+                query.orElseGet(ExecutorConfig::builder).build(DEFAULT_QUERY),
+                ingestion.orElseGet(ExecutorConfig::builder).build(DEFAULT_INGESTION),
+                blocking.orElseGet(ExecutorConfig::builder).build(DEFAULT_BLOCKING)
+            );
+            // @formatter:on
+        }
+    }
+}
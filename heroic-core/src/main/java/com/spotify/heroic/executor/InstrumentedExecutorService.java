@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.executor;
+
+import com.spotify.heroic.statistics.ExecutorReporter;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An executor service which bounds the number of queued tasks of a delegate, and reports queue
+ * depth, queue wait time, and rejections.
+ * <p>
+ * Thread pools in the JDK either have unbounded queues, or no visibility into how long tasks have
+ * been waiting. This wraps any pool and keeps track of tasks that have been submitted but not yet
+ * started.
+ */
+@Slf4j
+@ToString(of = {"name", "queueSize", "rejection"})
+public class InstrumentedExecutorService extends AbstractExecutorService {
+    private final String name;
+    private final ExecutorService delegate;
+    private final int queueSize;
+    private final ExecutorConfig.Rejection rejection;
+    private final ExecutorReporter reporter;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public InstrumentedExecutorService(
+        final String name, final ExecutorService delegate, final int queueSize,
+        final ExecutorConfig.Rejection rejection, final ExecutorReporter reporter
+    ) {
+        this.name = name;
+        this.delegate = delegate;
+        this.queueSize = queueSize;
+        this.rejection = rejection;
+        this.reporter = reporter;
+
+        reporter.registerQueueDepth(queued::get);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (queued.incrementAndGet() > queueSize) {
+            queued.decrementAndGet();
+            reporter.reportRejected();
+            reject(command);
+            return;
+        }
+
+        final long queuedAt = System.nanoTime();
+
+        try {
+            delegate.execute(() -> {
+                queued.decrementAndGet();
+                reporter.reportQueueWait(System.nanoTime() - queuedAt);
+                runSafely(command);
+            });
+        } catch (final RejectedExecutionException e) {
+            queued.decrementAndGet();
+            reporter.reportRejected();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of tasks that are queued but not yet running.
+     */
+    public int queueDepth() {
+        return queued.get();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+        throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    private void reject(final Runnable command) {
+        switch (rejection) {
+            case CALLER_RUNS:
+                if (delegate.isShutdown()) {
+                    throw new RejectedExecutionException(name + ": executor is shut down");
+                }
+
+                runSafely(command);
+                return;
+            default:
+                throw new RejectedExecutionException(
+                    name + ": queue is full (" + queueSize + " tasks)");
+        }
+    }
+
+    /**
+     * Tasks submitted to the executor are expected to handle their own errors, anything escaping
+     * is a bug and is logged instead of silently killing the worker.
+     */
+    private void runSafely(final Runnable command) {
+        try {
+            command.run();
+        } catch (final Throwable t) {
+            log.error("{}: unhandled exception in task", name, t);
+        }
+    }
+}
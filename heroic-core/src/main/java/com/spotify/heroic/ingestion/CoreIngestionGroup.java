@@ -41,6 +41,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
@@ -49,6 +50,7 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class CoreIngestionGroup implements IngestionGroup {
     private final AsyncFramework async;
+    private final ExecutorService executor;
     private final Supplier<Filter> filter;
     private final Semaphore writePermits;
     private final IngestionManagerReporter reporter;
@@ -68,7 +70,9 @@ public class CoreIngestionGroup implements IngestionGroup {
     @Override
     public AsyncFuture<Ingestion> write(final Ingestion.Request request) {
         ingested.increment();
-        return syncWrite(request);
+        /* keep filtering and range computations off the thread of the consumer, so that bursts of
+         * ingestion are queued up separately from query work */
+        return async.call(() -> syncWrite(request), executor).lazyTransform(write -> write);
     }
 
     @Override
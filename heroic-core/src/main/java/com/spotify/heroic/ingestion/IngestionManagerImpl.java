@@ -36,6 +36,7 @@ import eu.toolchain.async.AsyncFuture;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
@@ -45,6 +46,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 public class IngestionManagerImpl implements IngestionManager {
     final AsyncFramework async;
+    final ExecutorService executor;
     final MetadataManager metadata;
     final MetricManager metric;
     final SuggestManager suggest;
@@ -65,6 +67,7 @@ public class IngestionManagerImpl implements IngestionManager {
      * @param updateMetadata Ingested metrics will update metadata backends.
      * @param updateSuggestions Ingested metrics will update suggest backends.
      * @param maxConcurrentWrites Limit the number of concurrent writes, 0 means no limit at all
+     * @param executor Executor to perform ingestion work on.
      */
     @Inject
     public IngestionManagerImpl(
@@ -73,9 +76,11 @@ public class IngestionManagerImpl implements IngestionManager {
         @Named("updateMetrics") final boolean updateMetrics,
         @Named("updateMetadata") final boolean updateMetadata,
         @Named("updateSuggestions") final boolean updateSuggestions,
-        @Named("maxConcurrentWrites") final int maxConcurrentWrites, final Filter filter
+        @Named("maxConcurrentWrites") final int maxConcurrentWrites, final Filter filter,
+        @Named("ingestion") final ExecutorService executor
     ) {
         this.async = async;
+        this.executor = executor;
         this.metadata = metadata;
         this.metric = metric;
         this.suggest = suggest;
@@ -119,6 +124,7 @@ public class IngestionManagerImpl implements IngestionManager {
         // @formatter:off
         return new CoreIngestionGroup(
             async,
+            executor,
             () -> filter,
             writePermits,
             reporter,
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import com.spotify.heroic.common.QuotaViolationException;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.FutureDone;
+import eu.toolchain.async.ResolvableFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of concurrent fetches against a single metric backend, adapting the limit to
+ * how the backend responds.
+ * <p>
+ * The limit follows an additive-increase, multiplicative-decrease (AIMD) scheme. While fetches
+ * succeed within the tolerated latency, and the limit is actually being used, it grows by about
+ * one for every limit's worth of completed fetches. When a fetch fails, or the latency of a window
+ * of fetches is much higher than the smoothed latency, the limit is multiplied with the backoff
+ * ratio, at most once per smoothed latency period.
+ * <p>
+ * Latency is compared using the median of each window, so that a few fetches which are slow
+ * because they read a lot of data do not cause a backoff. Failures which are caused by the query
+ * itself, like quota violations, say nothing about the backend and are ignored.
+ * <p>
+ * A single limiter is shared by all queries against the backend, fetches exceeding the limit are
+ * queued in order of arrival.
+ */
+public class AdaptiveFetchLimiter {
+    /* weight of a new window in the smoothed latency */
+    static final double SMOOTHING = 0.2D;
+
+    /* number of latency samples in a window */
+    static final int WINDOW = 20;
+
+    /* avoids deep recursion when fetches complete immediately */
+    private static final ThreadLocal<Deque<Runnable>> DISPATCH = new ThreadLocal<>();
+
+    private final AsyncFramework async;
+    private final FetchLimiterConfig config;
+    private final LongSupplier nanoTime;
+
+    private final Object lock = new Object();
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+
+    private double limit;
+    private int inFlight = 0;
+    private double smoothedLatency = -1D;
+    private long lastBackoff = Long.MIN_VALUE;
+
+    private final long[] window = new long[WINDOW];
+    private int windowSize = 0;
+
+    public AdaptiveFetchLimiter(final AsyncFramework async, final FetchLimiterConfig config) {
+        this(async, config, System::nanoTime);
+    }
+
+    AdaptiveFetchLimiter(
+        final AsyncFramework async, final FetchLimiterConfig config, final LongSupplier nanoTime
+    ) {
+        this.async = async;
+        this.config = config;
+        this.nanoTime = nanoTime;
+        this.limit = config.getInitialLimit();
+    }
+
+    /**
+     * Run the given fetch once the limit permits it.
+     */
+    public <T> AsyncFuture<T> run(final Callable<AsyncFuture<T>> fetch) {
+        final ResolvableFuture<T> future = async.future();
+        final Runnable start = () -> execute(fetch, future);
+
+        synchronized (lock) {
+            if (inFlight >= (int) limit) {
+                pending.add(start);
+                return future;
+            }
+
+            inFlight++;
+        }
+
+        dispatch(start);
+        return future;
+    }
+
+    public int limit() {
+        synchronized (lock) {
+            return (int) limit;
+        }
+    }
+
+    public int inFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    public int pending() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private <T> void execute(
+        final Callable<AsyncFuture<T>> fetch, final ResolvableFuture<T> future
+    ) {
+        /* cancelled while queued */
+        if (future.isDone()) {
+            release(0L, false, false);
+            return;
+        }
+
+        final long started = nanoTime.getAsLong();
+
+        final AsyncFuture<T> result;
+
+        try {
+            result = fetch.call();
+        } catch (final Exception e) {
+            release(started, true, isBackendFailure(e));
+            future.fail(e);
+            return;
+        }
+
+        /* stop the fetch, and free its slot, when the query is cancelled */
+        future.onCancelled(result::cancel);
+
+        result.onDone(new FutureDone<T>() {
+            @Override
+            public void failed(final Throwable cause) throws Exception {
+                release(started, true, isBackendFailure(cause));
+                future.fail(cause);
+            }
+
+            @Override
+            public void resolved(final T value) throws Exception {
+                release(started, false, true);
+                future.resolve(value);
+            }
+
+            @Override
+            public void cancelled() throws Exception {
+                release(started, false, false);
+                future.cancel();
+            }
+        });
+    }
+
+    private void release(final long started, final boolean failed, final boolean sample) {
+        final List<Runnable> ready = new ArrayList<>();
+
+        synchronized (lock) {
+            if (sample) {
+                update(nanoTime.getAsLong() - started, failed);
+            }
+
+            inFlight--;
+
+            while (inFlight < (int) limit && !pending.isEmpty()) {
+                inFlight++;
+                ready.add(pending.poll());
+            }
+        }
+
+        ready.forEach(this::dispatch);
+    }
+
+    /**
+     * Check if a failure indicates a problem with the backend, as opposed to with the query.
+     */
+    static boolean isBackendFailure(final Throwable error) {
+        Throwable cause = error;
+
+        while (cause != null) {
+            if (cause instanceof QuotaViolationException ||
+                cause instanceof CancellationException) {
+                return false;
+            }
+
+            cause = cause.getCause();
+        }
+
+        return true;
+    }
+
+    /**
+     * Update the limit with a new sample. Must be called while holding the lock.
+     */
+    private void update(final long latency, final boolean failed) {
+        final long now = nanoTime.getAsLong();
+
+        if (failed) {
+            backoff(now);
+            return;
+        }
+
+        window[windowSize++] = latency;
+
+        if (windowSize == WINDOW) {
+            windowSize = 0;
+
+            final long[] sorted = window.clone();
+            Arrays.sort(sorted);
+            final long median = sorted[WINDOW / 2];
+
+            if (smoothedLatency < 0D) {
+                smoothedLatency = median;
+            }
+
+            final boolean slow = median > smoothedLatency * config.getLatencyTolerance();
+            smoothedLatency = smoothedLatency * (1D - SMOOTHING) + median * SMOOTHING;
+
+            if (slow) {
+                backoff(now);
+                return;
+            }
+        }
+
+        /* only grow when the current limit is actually being used */
+        if (inFlight * 2 >= limit) {
+            limit = Math.min(config.getMaxLimit(), limit + 1D / limit);
+        }
+    }
+
+    /**
+     * Back off at most once per period, a single overload event is seen by many fetches. Until
+     * there is a latency sample the period is unknown, and the limit only backs off once. Must be
+     * called while holding the lock.
+     */
+    private void backoff(final long now) {
+        if (lastBackoff != Long.MIN_VALUE &&
+            (smoothedLatency < 0D || now - lastBackoff < smoothedLatency)) {
+            return;
+        }
+
+        limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+        lastBackoff = now;
+    }
+
+    private void dispatch(final Runnable runnable) {
+        final Deque<Runnable> queue = DISPATCH.get();
+
+        if (queue != null) {
+            queue.add(runnable);
+            return;
+        }
+
+        final Deque<Runnable> local = new ArrayDeque<>();
+        local.add(runnable);
+        DISPATCH.set(local);
+
+        try {
+            Runnable next;
+
+            while ((next = local.poll()) != null) {
+                next.run();
+            }
+        } finally {
+            DISPATCH.remove();
+        }
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.lifecycle.LifeCycleRegistry;
+import com.spotify.heroic.lifecycle.LifeCycles;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A cache of immutable blocks of points, stored in memory-mapped segment files on local disk.
+ * <p>
+ * Blocks are appended to the newest segment, and located through an in-memory index which is
+ * rebuilt by scanning all segments on startup. When the cache is full, the oldest segment is
+ * evicted as a whole. Blocks which are read from the oldest segment are copied to the newest
+ * one, which approximates LRU eviction without per-block bookkeeping.
+ * <p>
+ * Each record is a header of the block key, the number of points plus one (zero marks the end
+ * of a segment, and -1 a removed block) and a CRC32 of the payload, followed by the points.
+ */
+@Slf4j
+public class DiskBlockCache implements LifeCycles {
+    static final int HEADER_SIZE = 8 + 8 + 4 + 4;
+    static final int POINT_SIZE = 8 + 8;
+
+    private static final int END = 0;
+    private static final int TOMBSTONE = -1;
+    private static final String SUFFIX = ".segment";
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final AsyncFramework async;
+    private final Path path;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final ConcurrentMap<Key, Entry> index = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /* guarded by this */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private volatile boolean ready = false;
+
+    public DiskBlockCache(final AsyncFramework async, final DiskBlockCacheConfig config) {
+        this.async = async;
+        this.path = config.getPath();
+        this.segmentSize = (int) config.getSegmentSize();
+        this.maxSegments = (int) Math.max(2L, config.getMaxSize() / config.getSegmentSize());
+    }
+
+    @Override
+    public void register(final LifeCycleRegistry registry) {
+        registry.start(this::start);
+        registry.stop(this::stop);
+    }
+
+    AsyncFuture<Void> start() {
+        return async.call(() -> {
+            open();
+            return null;
+        });
+    }
+
+    AsyncFuture<Void> stop() {
+        return async.call(() -> {
+            close();
+            return null;
+        });
+    }
+
+    /**
+     * Build the key of a single block.
+     *
+     * @param namespace Namespace which separates blocks from different backends.
+     * @param series Series that the block belongs to.
+     * @param blockStart Start of the block.
+     */
+    public static Key key(final String namespace, final Series series, final long blockStart) {
+        final Hasher hasher = HASH_FUNCTION.newHasher();
+        hasher.putString(namespace, StandardCharsets.UTF_8);
+        hasher.putBytes(series.getHashCode().asBytes());
+        hasher.putLong(blockStart);
+
+        final ByteBuffer bytes = ByteBuffer.wrap(hasher.hash().asBytes());
+        return new Key(bytes.getLong(), bytes.getLong());
+    }
+
+    /**
+     * Get the points of a cached block.
+     *
+     * @return The points of the block, sorted by timestamp, or empty if the block is not cached.
+     */
+    public Optional<List<Point>> get(final Key key) {
+        final Entry entry = index.get(key);
+
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+
+        final MappedByteBuffer buffer = entry.segment.buffer;
+        final List<Point> points = new ArrayList<>(entry.count);
+
+        int offset = entry.offset + HEADER_SIZE;
+
+        for (int i = 0; i < entry.count; i++) {
+            points.add(new Point(buffer.getLong(offset), buffer.getDouble(offset + 8)));
+            offset += POINT_SIZE;
+        }
+
+        /* keep blocks which are still being read from being evicted */
+        if (isOldest(entry.segment)) {
+            put(key, points);
+        }
+
+        return Optional.of(points);
+    }
+
+    /**
+     * Store the points of a block, which must be sorted by timestamp.
+     */
+    public synchronized void put(final Key key, final List<Point> points) {
+        if (!ready) {
+            return;
+        }
+
+        final long size = HEADER_SIZE + (long) POINT_SIZE * points.size();
+
+        if (size > segmentSize) {
+            return;
+        }
+
+        final Segment segment;
+
+        try {
+            segment = reserve((int) size);
+        } catch (final IOException e) {
+            log.error("Failed to allocate cache segment", e);
+            return;
+        }
+
+        final MappedByteBuffer buffer = segment.buffer;
+        final int offset = segment.position;
+
+        int p = offset + HEADER_SIZE;
+
+        for (final Point point : points) {
+            buffer.putLong(p, point.getTimestamp());
+            buffer.putDouble(p + 8, point.getValue());
+            p += POINT_SIZE;
+        }
+
+        /* the header is written last, so that a partially written record is never valid */
+        buffer.putInt(offset + 20, checksum(buffer, offset + HEADER_SIZE, p));
+        buffer.putLong(offset, key.hi);
+        buffer.putLong(offset + 8, key.lo);
+        buffer.putInt(offset + 16, points.size() + 1);
+
+        segment.position = p;
+        index.put(key, new Entry(segment, offset, points.size()));
+    }
+
+    /**
+     * Remove a block from the cache.
+     */
+    public synchronized void invalidate(final Key key) {
+        if (index.remove(key) == null || !ready) {
+            return;
+        }
+
+        final Segment segment;
+
+        try {
+            segment = reserve(HEADER_SIZE);
+        } catch (final IOException e) {
+            log.error("Failed to allocate cache segment", e);
+            return;
+        }
+
+        final int offset = segment.position;
+        segment.buffer.putInt(offset + 20, 0);
+        segment.buffer.putLong(offset, key.hi);
+        segment.buffer.putLong(offset + 8, key.lo);
+        segment.buffer.putInt(offset + 16, TOMBSTONE);
+        segment.position = offset + HEADER_SIZE;
+    }
+
+    /**
+     * Remove all blocks from the cache.
+     */
+    public synchronized void clear() {
+        if (!ready) {
+            return;
+        }
+
+        while (!segments.isEmpty()) {
+            evict(segments.removeFirst());
+        }
+
+        index.clear();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    synchronized void open() throws IOException {
+        Files.createDirectories(path);
+
+        final List<Long> ids = new ArrayList<>();
+
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(path, "*" + SUFFIX)) {
+            for (final Path file : stream) {
+                final String name = file.getFileName().toString();
+
+                try {
+                    ids.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                } catch (final NumberFormatException e) {
+                    log.warn("Ignoring unknown file in cache directory: {}", file);
+                }
+            }
+        }
+
+        ids.sort(Long::compare);
+
+        for (final long id : ids) {
+            final Path file = segmentPath(id);
+
+            if (Files.size(file) != segmentSize) {
+                log.info("Removing cache segment with a different size: {}", file);
+                Files.delete(file);
+                continue;
+            }
+
+            final Segment segment = map(id);
+            segments.addLast(segment);
+            scan(segment);
+        }
+
+        while (segments.size() > maxSegments) {
+            evict(segments.removeFirst());
+        }
+
+        ready = true;
+        log.info("Opened block cache in {} with {} block(s)", path, index.size());
+    }
+
+    synchronized void close() {
+        ready = false;
+        index.clear();
+
+        for (final Segment segment : segments) {
+            flush(segment);
+        }
+
+        segments.clear();
+    }
+
+    /**
+     * Rebuild the index from the records of a segment, stopping at the first invalid record.
+     */
+    private void scan(final Segment segment) {
+        final MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+
+        while (offset + HEADER_SIZE <= segmentSize) {
+            final Key key = new Key(buffer.getLong(offset), buffer.getLong(offset + 8));
+            final int length = buffer.getInt(offset + 16);
+
+            if (length == TOMBSTONE) {
+                index.remove(key);
+                offset += HEADER_SIZE;
+                continue;
+            }
+
+            final long end = offset + HEADER_SIZE + (long) POINT_SIZE * (length - 1);
+
+            if (length == END || length < 0 || end > segmentSize) {
+                break;
+            }
+
+            if (buffer.getInt(offset + 20) != checksum(buffer, offset + HEADER_SIZE, (int) end)) {
+                log.warn("Corrupt record in cache segment {} at offset {}", segment.id, offset);
+                break;
+            }
+
+            index.put(key, new Entry(segment, offset, length - 1));
+            offset = (int) end;
+        }
+
+        segment.position = offset;
+    }
+
+    /**
+     * Find a segment with room for a record of the given size, creating a new segment if the
+     * current one is full.
+     */
+    private Segment reserve(final int size) throws IOException {
+        final Segment last = segments.peekLast();
+
+        if (last != null && last.position + size <= segmentSize) {
+            return last;
+        }
+
+        final Segment segment = map(last == null ? 0L : last.id + 1);
+        segments.addLast(segment);
+
+        while (segments.size() > maxSegments) {
+            evict(segments.removeFirst());
+        }
+
+        return segment;
+    }
+
+    private synchronized boolean isOldest(final Segment segment) {
+        return segments.size() > 1 && segments.peekFirst() == segment;
+    }
+
+    private Segment map(final long id) throws IOException {
+        try (final RandomAccessFile file = new RandomAccessFile(segmentPath(id).toFile(), "rw")) {
+            file.setLength(segmentSize);
+
+            /* the mapping stays valid after the channel has been closed */
+            final MappedByteBuffer buffer =
+                file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(id, buffer);
+        }
+    }
+
+    private void evict(final Segment segment) {
+        index.values().removeIf(entry -> entry.segment == segment);
+
+        try {
+            Files.deleteIfExists(segmentPath(segment.id));
+        } catch (final IOException e) {
+            log.warn("Failed to remove evicted cache segment {}", segment.id, e);
+        }
+    }
+
+    private void flush(final Segment segment) {
+        try {
+            segment.buffer.force();
+        } catch (final Exception e) {
+            log.warn("Failed to flush cache segment {}", segment.id, e);
+        }
+    }
+
+    private Path segmentPath(final long id) {
+        return path.resolve(id + SUFFIX);
+    }
+
+    private static int checksum(final ByteBuffer buffer, final int start, final int end) {
+        final ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.limit(end);
+
+        final CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    @Data
+    public static class Key {
+        private final long hi;
+        private final long lo;
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final Segment segment;
+        private final int offset;
+        private final int count;
+    }
+
+    @RequiredArgsConstructor
+    private static class Segment {
+        private final long id;
+        private final MappedByteBuffer buffer;
+
+        /* guarded by the cache */
+        private int position = 0;
+    }
+}
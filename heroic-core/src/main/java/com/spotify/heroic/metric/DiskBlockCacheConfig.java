@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.spotify.heroic.common.Duration;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+
+/**
+ * Configuration for caching historical points on local disk.
+ *
+ * @see DiskBlockCache
+ */
+@Data
+public class DiskBlockCacheConfig {
+    public static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024 * 1024;
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final Duration DEFAULT_BLOCK_SIZE = Duration.of(1, TimeUnit.DAYS);
+    public static final Duration DEFAULT_MARGIN = Duration.of(1, TimeUnit.HOURS);
+
+    /**
+     * Directory where cache segments are stored.
+     */
+    private final Path path;
+
+    /**
+     * The maximum number of bytes used on disk, when reached the oldest segment is evicted.
+     */
+    private final long maxSize;
+
+    /**
+     * Size in bytes of each memory-mapped segment file.
+     */
+    private final long segmentSize;
+
+    /**
+     * Period of time which is cached as a single block.
+     */
+    private final Duration blockSize;
+
+    /**
+     * Blocks which end less than this long ago are never cached, since they might still receive
+     * writes.
+     */
+    private final Duration margin;
+
+    @JsonCreator
+    public DiskBlockCacheConfig(
+        @JsonProperty("path") Optional<String> path,
+        @JsonProperty("maxSize") Optional<Long> maxSize,
+        @JsonProperty("segmentSize") Optional<Long> segmentSize,
+        @JsonProperty("blockSize") Optional<Duration> blockSize,
+        @JsonProperty("margin") Optional<Duration> margin
+    ) {
+        this.path = Paths.get(path.orElseThrow(() -> new IllegalArgumentException(
+            "path must be specified")));
+        this.maxSize = maxSize.orElse(DEFAULT_MAX_SIZE);
+        this.segmentSize = segmentSize.orElse(DEFAULT_SEGMENT_SIZE);
+        this.blockSize = blockSize.orElse(DEFAULT_BLOCK_SIZE);
+        this.margin = margin.orElse(DEFAULT_MARGIN);
+
+        checkArgument(this.segmentSize > DiskBlockCache.HEADER_SIZE
+                && this.segmentSize <= Integer.MAX_VALUE,
+            "segmentSize must be larger than a record header, and at most 2GB");
+        checkArgument(this.maxSize >= this.segmentSize * 2,
+            "maxSize must be at least two segments");
+        checkArgument(this.blockSize.toMilliseconds() > 0, "blockSize must be positive");
+        checkArgument(this.margin.toMilliseconds() >= 0, "margin must not be negative");
+    }
+}
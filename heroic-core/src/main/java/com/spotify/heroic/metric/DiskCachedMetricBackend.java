@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.QueryOptions;
+import com.spotify.heroic.async.AsyncObservable;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.common.Statistics;
+import com.spotify.heroic.time.Clock;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A metric backend which serves points of blocks that lie fully in the past from a
+ * {@link DiskBlockCache}.
+ * <p>
+ * Blocks at the start of a fetch are read from the cache for as long as they are present, the
+ * rest of the range is fetched from the backend. Fetches are widened to whole blocks, so that
+ * every block that was read completely and that is older than the configured margin can be
+ * cached. Ranges are treated as exclusive of their start and inclusive of their end. The cache is
+ * read and written on the blocking executor.
+ * <p>
+ * Every invalidated block bumps a generation, and a fetch only stores the blocks whose generation
+ * did not change while it was running, so a fetch racing with a write never stores the block as
+ * it was before the write.
+ * <p>
+ * Writes only invalidate the blocks of this node. A write which lands on another replica of the
+ * same backend does not, so a late write into a block older than the margin can be hidden by this
+ * cache until the block is evicted. The margin should therefore cover the latest expected write.
+ */
+@ToString(of = {"backend"})
+@RequiredArgsConstructor
+class DiskCachedMetricBackend implements MetricBackend {
+    private static final QueryTrace.Identifier FETCH =
+        QueryTrace.identifier(DiskCachedMetricBackend.class, "fetch");
+
+    /* number of invalidation generations, blocks whose keys share a stripe share a generation */
+    private static final int GENERATION_STRIPES = 4096;
+
+    private final AsyncFramework async;
+    private final ExecutorService blocking;
+    private final Clock clock;
+    private final DiskBlockCache cache;
+    private final String namespace;
+    private final long blockSize;
+    private final long margin;
+    private final MetricBackend backend;
+
+    private final Object invalidateLock = new Object();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @Override
+    public boolean isReady() {
+        return backend.isReady();
+    }
+
+    @Override
+    public Groups groups() {
+        return backend.groups();
+    }
+
+    @Override
+    public Statistics getStatistics() {
+        return backend.getStatistics();
+    }
+
+    @Override
+    public AsyncFuture<Void> configure() {
+        return backend.configure();
+    }
+
+    @Override
+    public AsyncFuture<WriteMetric> write(final WriteMetric.Request request) {
+        final AsyncFuture<WriteMetric> write = backend.write(request);
+
+        if (request.getData().getType() != MetricType.POINT) {
+            return write;
+        }
+
+        return write.directTransform(result -> {
+            invalidate(request.getSeries(), request.getData().getDataAs(Point.class));
+            return result;
+        });
+    }
+
+    @Override
+    public AsyncFuture<FetchData> fetch(
+        final FetchData.Request request, final FetchQuotaWatcher watcher
+    ) {
+        if (request.getType() != MetricType.POINT) {
+            return backend.fetch(request, watcher);
+        }
+
+        final List<Point> points = Collections.synchronizedList(new ArrayList<>());
+
+        return fetch(request, watcher,
+            metrics -> points.addAll(metrics.getDataAs(Point.class))).directTransform(result -> {
+            final List<Point> sorted;
+
+            synchronized (points) {
+                sorted = new ArrayList<>(points);
+            }
+
+            sorted.sort(Metric.comparator());
+
+            return new FetchData(result, ImmutableList.of(),
+                ImmutableList.of(MetricCollection.points(sorted)));
+        });
+    }
+
+    @Override
+    public AsyncFuture<FetchData.Result> fetch(
+        final FetchData.Request request, final FetchQuotaWatcher watcher,
+        final Consumer<MetricCollection> metricsConsumer
+    ) {
+        final long cutoff = clock.currentTimeMillis() - margin;
+        final long first = blockStart(request.getRange().start());
+
+        /* nothing in the range can be cached */
+        if (request.getType() != MetricType.POINT || first + blockSize > cutoff) {
+            return backend.fetch(request, watcher, metricsConsumer);
+        }
+
+        final QueryTrace.NamedWatch w = QueryTrace.watch(FETCH);
+
+        return async
+            .call(() -> readCached(request, watcher, metricsConsumer, first, cutoff), blocking)
+            .lazyTransform(
+                start -> fetchRemaining(request, watcher, metricsConsumer, start, cutoff, w));
+    }
+
+    /**
+     * Read blocks from the start of a fetch for as long as they are cached.
+     *
+     * @return the start of the first block which is not cached
+     */
+    private long readCached(
+        final FetchData.Request request, final FetchQuotaWatcher watcher,
+        final Consumer<MetricCollection> metricsConsumer, final long first, final long cutoff
+    ) {
+        final DateRange range = request.getRange();
+        final List<Point> cached = new ArrayList<>();
+        long start = first;
+
+        while (start + blockSize <= cutoff && start <= range.end()) {
+            final Optional<List<Point>> block = cache.get(key(request.getSeries(), start));
+
+            if (!block.isPresent()) {
+                break;
+            }
+
+            for (final Point p : block.get()) {
+                if (p.getTimestamp() > range.start() && p.getTimestamp() <= range.end()) {
+                    cached.add(p);
+                }
+            }
+
+            start += blockSize;
+        }
+
+        if (!cached.isEmpty()) {
+            watcher.readData(cached.size());
+            metricsConsumer.accept(MetricCollection.points(cached));
+        }
+
+        return start;
+    }
+
+    private AsyncFuture<FetchData.Result> fetchRemaining(
+        final FetchData.Request request, final FetchQuotaWatcher watcher,
+        final Consumer<MetricCollection> metricsConsumer, final long start, final long cutoff,
+        final QueryTrace.NamedWatch w
+    ) {
+        final DateRange range = request.getRange();
+
+        if (start > range.end()) {
+            return async.resolved(FetchData.result(w.end()));
+        }
+
+        final Series series = request.getSeries();
+        final long end = blockStart(range.end()) + blockSize;
+
+        /* widen the fetch to whole blocks, where those blocks can be cached */
+        final long fetchStart = start + blockSize <= cutoff
+            ? Math.max(0L, start - 1) : Math.max(range.start(), start - 1);
+        final long fetchEnd = end <= cutoff ? end : range.end();
+
+        /* a block which is invalidated while it is being fetched must not be stored */
+        final List<Long> blocks = storableBlocks(fetchStart, fetchEnd, cutoff);
+        final long[] generations = new long[blocks.size()];
+
+        for (int i = 0; i < generations.length; i++) {
+            generations[i] = this.generations.get(stripe(key(series, blocks.get(i))));
+        }
+
+        final List<Point> fetched = Collections.synchronizedList(new ArrayList<>());
+
+        final FetchData.Request fetch =
+            new FetchData.Request(request.getType(), series, new DateRange(fetchStart, fetchEnd),
+                request.getOptions());
+
+        return backend.fetch(fetch, watcher, metrics -> {
+            final List<Point> points = metrics.getDataAs(Point.class);
+            final List<Point> matching = new ArrayList<>(points.size());
+
+            for (final Point p : points) {
+                final long t = p.getTimestamp();
+
+                if (t < cutoff) {
+                    fetched.add(p);
+                }
+
+                if (t > range.start() && t <= range.end() && t >= start) {
+                    matching.add(p);
+                }
+            }
+
+            if (!matching.isEmpty()) {
+                metricsConsumer.accept(MetricCollection.points(matching));
+            }
+        }).directTransform(result -> {
+            if (result.getErrors().isEmpty() && !blocks.isEmpty()) {
+                async.call(() -> {
+                    store(series, blocks, generations, fetched);
+                    return null;
+                }, blocking);
+            }
+
+            return new FetchData.Result(w.end(result.getTrace()), result.getErrors());
+        });
+    }
+
+    @Override
+    public Iterable<BackendEntry> listEntries() {
+        return backend.listEntries();
+    }
+
+    @Override
+    public AsyncObservable<BackendKeySet> streamKeys(
+        final BackendKeyFilter filter, final QueryOptions options
+    ) {
+        return backend.streamKeys(filter, options);
+    }
+
+    @Override
+    public AsyncObservable<BackendKeySet> streamKeysPaged(
+        final BackendKeyFilter filter, final QueryOptions options, final long pageSize
+    ) {
+        return backend.streamKeysPaged(filter, options, pageSize);
+    }
+
+    @Override
+    public AsyncFuture<List<String>> serializeKeyToHex(final BackendKey key) {
+        return backend.serializeKeyToHex(key);
+    }
+
+    @Override
+    public AsyncFuture<List<BackendKey>> deserializeKeyFromHex(final String key) {
+        return backend.deserializeKeyFromHex(key);
+    }
+
+    @Override
+    public AsyncFuture<Void> deleteKey(final BackendKey key, final QueryOptions options) {
+        /* blocks are not indexed by series, so everything has to go */
+        return backend.deleteKey(key, options).directTransform(result -> {
+            cache.clear();
+            return result;
+        });
+    }
+
+    @Override
+    public AsyncFuture<Long> countKey(final BackendKey key, final QueryOptions options) {
+        return backend.countKey(key, options);
+    }
+
+    @Override
+    public AsyncFuture<Long> compact(final Series series, final DateRange range) {
+        return backend.compact(series, range);
+    }
+
+    @Override
+    public AsyncFuture<MetricCollection> fetchRow(final BackendKey key) {
+        return backend.fetchRow(key);
+    }
+
+    @Override
+    public AsyncObservable<MetricCollection> streamRow(final BackendKey key) {
+        return backend.streamRow(key);
+    }
+
+    /**
+     * Starts of the blocks which are fully covered by a fetch, and which lie before the cutoff.
+     */
+    private List<Long> storableBlocks(
+        final long fetchStart, final long fetchEnd, final long cutoff
+    ) {
+        final List<Long> blocks = new ArrayList<>();
+
+        long block = blockStart(fetchStart);
+
+        /* the start of a fetch is exclusive */
+        if (block <= fetchStart) {
+            block += blockSize;
+        }
+
+        for (; block + blockSize <= cutoff && block + blockSize - 1 <= fetchEnd;
+            block += blockSize) {
+            blocks.add(block);
+        }
+
+        return blocks;
+    }
+
+    /**
+     * Store the given blocks, unless they were invalidated since their generation was read.
+     */
+    private void store(
+        final Series series, final List<Long> blocks, final long[] generations,
+        final List<Point> fetched
+    ) {
+        final List<Point> points;
+
+        synchronized (fetched) {
+            points = new ArrayList<>(fetched);
+        }
+
+        points.sort(Metric.comparator());
+
+        int i = 0;
+
+        for (int b = 0; b < blocks.size(); b++) {
+            final long block = blocks.get(b);
+
+            while (i < points.size() && points.get(i).getTimestamp() < block) {
+                i++;
+            }
+
+            final int from = i;
+
+            while (i < points.size() && points.get(i).getTimestamp() < block + blockSize) {
+                i++;
+            }
+
+            final DiskBlockCache.Key key = key(series, block);
+
+            synchronized (invalidateLock) {
+                if (this.generations.get(stripe(key)) != generations[b]) {
+                    continue;
+                }
+
+                cache.put(key, ImmutableList.copyOf(points.subList(from, i)));
+            }
+        }
+    }
+
+    private void invalidate(final Series series, final List<Point> points) {
+        final long cutoff = clock.currentTimeMillis() - margin;
+        final SortedSet<Long> blocks = new TreeSet<>();
+
+        for (final Point p : points) {
+            final long block = blockStart(p.getTimestamp());
+
+            if (block + blockSize <= cutoff) {
+                blocks.add(block);
+            }
+        }
+
+        for (final long block : blocks) {
+            final DiskBlockCache.Key key = key(series, block);
+
+            synchronized (invalidateLock) {
+                generations.incrementAndGet(stripe(key));
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    private static int stripe(final DiskBlockCache.Key key) {
+        return (int) (key.getLo() & (GENERATION_STRIPES - 1));
+    }
+
+    private long blockStart(final long timestamp) {
+        return timestamp - timestamp % blockSize;
+    }
+
+    private DiskBlockCache.Key key(final Series series, final long blockStart) {
+        return DiskBlockCache.key(namespace, series, blockStart);
+    }
+}
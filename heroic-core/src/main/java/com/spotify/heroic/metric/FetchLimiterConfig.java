@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Optional;
+import lombok.Data;
+
+/**
+ * Configuration for adaptive limiting of concurrent fetches against each metric backend.
+ *
+ * @see AdaptiveFetchLimiter
+ */
+@Data
+public class FetchLimiterConfig {
+    public static final int DEFAULT_MIN_LIMIT = 10;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    public static final int DEFAULT_INITIAL_LIMIT = 100;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9D;
+    public static final double DEFAULT_LATENCY_TOLERANCE = 2.0D;
+
+    /**
+     * The lowest number of concurrent fetches that the limit will be reduced to.
+     */
+    private final int minLimit;
+
+    /**
+     * The highest number of concurrent fetches that the limit will grow to.
+     */
+    private final int maxLimit;
+
+    /**
+     * The limit to start with, before any fetches have been observed.
+     */
+    private final int initialLimit;
+
+    /**
+     * Ratio that the limit is multiplied with when the backend is overloaded.
+     */
+    private final double backoffRatio;
+
+    /**
+     * How many times slower than the smoothed latency that the median fetch of a window may be
+     * before the backend is considered to be overloaded.
+     */
+    private final double latencyTolerance;
+
+    @JsonCreator
+    public FetchLimiterConfig(
+        @JsonProperty("minLimit") Optional<Integer> minLimit,
+        @JsonProperty("maxLimit") Optional<Integer> maxLimit,
+        @JsonProperty("initialLimit") Optional<Integer> initialLimit,
+        @JsonProperty("backoffRatio") Optional<Double> backoffRatio,
+        @JsonProperty("latencyTolerance") Optional<Double> latencyTolerance
+    ) {
+        this.minLimit = minLimit.orElse(DEFAULT_MIN_LIMIT);
+        this.maxLimit = maxLimit.orElse(DEFAULT_MAX_LIMIT);
+        this.initialLimit = initialLimit.orElse(DEFAULT_INITIAL_LIMIT);
+        this.backoffRatio = backoffRatio.orElse(DEFAULT_BACKOFF_RATIO);
+        this.latencyTolerance = latencyTolerance.orElse(DEFAULT_LATENCY_TOLERANCE);
+
+        checkArgument(this.minLimit > 0, "minLimit must be positive");
+        checkArgument(this.maxLimit >= this.minLimit, "maxLimit must not be below minLimit");
+        checkArgument(this.initialLimit >= this.minLimit && this.initialLimit <= this.maxLimit,
+            "initialLimit must be between minLimit and maxLimit");
+        checkArgument(this.backoffRatio > 0D && this.backoffRatio < 1D,
+            "backoffRatio must be between 0 and 1");
+        checkArgument(this.latencyTolerance > 1D, "latencyTolerance must be above 1");
+    }
+
+    public static FetchLimiterConfig defaults() {
+        return new FetchLimiterConfig(Optional.empty(), Optional.empty(), Optional.empty(),
+            Optional.empty(), Optional.empty());
+    }
+}
@@ -52,19 +52,30 @@ import com.spotify.heroic.querylogging.QueryLogger;
 import com.spotify.heroic.querylogging.QueryLoggerFactory;
 import com.spotify.heroic.statistics.DataInMemoryReporter;
 import com.spotify.heroic.statistics.MetricBackendReporter;
+import com.spotify.heroic.time.Clock;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.LazyTransform;
 import eu.toolchain.async.StreamCollector;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Named;
 import lombok.RequiredArgsConstructor;
@@ -80,6 +91,8 @@ public class LocalMetricManager implements MetricManager {
         QueryTrace.identifier(LocalMetricManager.class, "query");
     private static final QueryTrace.Identifier FETCH =
         QueryTrace.identifier(LocalMetricManager.class, "fetch");
+    private static final QueryTrace.Identifier FETCH_SKIPPED =
+        QueryTrace.identifier(LocalMetricManager.class, "fetch_skipped");
 
     private final OptionalLimit groupLimit;
     private final OptionalLimit seriesLimit;
@@ -89,10 +102,25 @@ public class LocalMetricManager implements MetricManager {
     private final boolean failOnLimits;
 
     private final AsyncFramework async;
+    private final Clock clock;
     private final GroupSet<MetricBackend> groupSet;
     private final MetadataManager metadata;
     private final MetricBackendReporter reporter;
     private final QueryLogger queryLogger;
+    private final ExecutorService queryExecutor;
+    private final List<RollupConfig> rollups;
+    private final Optional<FetchLimiterConfig> fetchLimiter;
+    private final double preflightFactor;
+
+    /* row density of recent queries per metric key, used to reject oversized queries early */
+    private final RowDensityHistory densityHistory = new RowDensityHistory();
+
+    /* fetch limiters, shared by all queries against the same backend */
+    private final ConcurrentMap<MetricBackend, AdaptiveFetchLimiter> limiters =
+        new ConcurrentHashMap<>();
+
+    /* identical queries in flight at the same time share one execution */
+    private final QueryCoalescer<FullQuery> coalescer;
 
     /**
      * @param groupLimit The maximum amount of groups this manager will allow to be generated.
@@ -101,6 +129,11 @@ public class LocalMetricManager implements MetricManager {
      * may produce.
      * @param dataLimit The maximum number of samples a single query is allowed to fetch.
      * @param fetchParallelism How many fetches that are allowed to be performed in parallel.
+     * @param queryExecutor Executor used to aggregate fetched data.
+     * @param rollups Tiers of rollups that queries may be routed to.
+     * @param fetchLimiter If present, adaptively limit concurrent fetches against each backend.
+     * @param preflightFactor Reject queries before fetching any data if they are estimated to read
+     * more than this many times the data limit. Zero disables the estimate.
      */
     @Inject
     public LocalMetricManager(
@@ -110,8 +143,12 @@ public class LocalMetricManager implements MetricManager {
         @Named("dataLimit") final OptionalLimit dataLimit,
         @Named("fetchParallelism") final int fetchParallelism,
         @Named("failOnLimits") final boolean failOnLimits, final AsyncFramework async,
-        final GroupSet<MetricBackend> groupSet, final MetadataManager metadata,
-        final MetricBackendReporter reporter, final QueryLoggerFactory queryLoggerFactory
+        final Clock clock, final GroupSet<MetricBackend> groupSet, final MetadataManager metadata,
+        final MetricBackendReporter reporter, final QueryLoggerFactory queryLoggerFactory,
+        @Named("query") final ExecutorService queryExecutor,
+        @Named("rollups") final List<RollupConfig> rollups,
+        @Named("fetchLimiter") final Optional<FetchLimiterConfig> fetchLimiter,
+        @Named("preflightFactor") final double preflightFactor
     ) {
         this.groupLimit = groupLimit;
         this.seriesLimit = seriesLimit;
@@ -120,10 +157,20 @@ public class LocalMetricManager implements MetricManager {
         this.fetchParallelism = fetchParallelism;
         this.failOnLimits = failOnLimits;
         this.async = async;
+        this.clock = clock;
         this.groupSet = groupSet;
         this.metadata = metadata;
         this.reporter = reporter;
         this.queryLogger = queryLoggerFactory.create("LocalMetricManager");
+        this.queryExecutor = queryExecutor;
+        /* coarsest resolution first */
+        this.rollups = rollups
+            .stream()
+            .sorted(Comparator.comparingLong(RollupConfig::getResolution).reversed())
+            .collect(Collectors.toList());
+        this.fetchLimiter = fetchLimiter;
+        this.preflightFactor = preflightFactor;
+        this.coalescer = new QueryCoalescer<>(async);
     }
 
     @Override
@@ -136,6 +183,21 @@ public class LocalMetricManager implements MetricManager {
         return new Group(groupSet.useOptionalGroup(group), metadata.useDefaultGroup());
     }
 
+    /**
+     * Run a fetch against the given backend, subject to the adaptive fetch limit if configured.
+     */
+    private <T> AsyncFuture<T> limit(
+        final MetricBackend backend, final Callable<AsyncFuture<T>> fetch
+    ) throws Exception {
+        if (!fetchLimiter.isPresent()) {
+            return fetch.call();
+        }
+
+        return limiters
+            .computeIfAbsent(backend, b -> new AdaptiveFetchLimiter(async, fetchLimiter.get()))
+            .run(fetch);
+    }
+
     @ToString
     private class Group extends AbstractMetricBackend implements MetricBackendGroup {
         private final SelectedGroup<MetricBackend> backends;
@@ -171,6 +233,9 @@ public class LocalMetricManager implements MetricManager {
             private final MetricType source;
             private final boolean slicedFetch;
 
+            /* metric keys of the series read by the query */
+            private volatile Set<String> keys = ImmutableSet.of();
+
             private Transform(
                 final FullQuery.Request request, final boolean failOnLimits,
                 final OptionalLimit seriesLimit, final OptionalLimit groupLimit,
@@ -223,6 +288,25 @@ public class LocalMetricManager implements MetricManager {
                     return async.resolved(FullQuery.empty(namedWatch.end(), limits));
                 }
 
+                final Map<String, Long> seriesPerKey = result
+                    .getSeries()
+                    .stream()
+                    .collect(Collectors.groupingBy(Series::getKey, Collectors.counting()));
+
+                keys = seriesPerKey.keySet();
+
+                final OptionalLong estimate = preflightFactor > 0D
+                    ? densityHistory.estimate(seriesPerKey, range) : OptionalLong.empty();
+
+                if (estimate.isPresent() &&
+                    estimate.getAsLong() / preflightFactor > quotaWatcher.dataLimit) {
+                    return async.resolved(FullQuery.limitsError(namedWatch.end(),
+                        QueryError.fromMessage(String.format(
+                            "query is estimated to read %d samples, which is far more than " +
+                                "what is allowed: %d", estimate.getAsLong(),
+                            quotaWatcher.dataLimit)), ResultLimits.of(ResultLimit.QUOTA)));
+                }
+
                 final AggregationSession session;
                 try {
                     session = aggregation.session(range, quotaWatcher, bucketStrategy);
@@ -269,39 +353,185 @@ public class LocalMetricManager implements MetricManager {
 
                 final List<Callable<AsyncFuture<FetchData.Result>>> fetches = new ArrayList<>();
 
+                final Optional<RollupConfig> rollup = selectRollup();
+
+                if (rollup.isPresent()) {
+                    final Group rollupGroup =
+                        new Group(groupSet.useGroup(rollup.get().getGroup()), metadata);
+                    final long now = clock.currentTimeMillis();
+
+                    for (final Series series : result.getSeries()) {
+                        fetches.add(skipIfViolated(
+                            () -> fetchWithRollups(rollupGroup, rollup.get(), series, now,
+                                collector)));
+                    }
+
+                    return async.eventuallyCollect(fetches, collector, fetchParallelism);
+                }
+
                 /* setup fetches */
                 accept(metricBackend -> {
                     for (final Series series : result.getSeries()) {
-                        if (slicedFetch) {
-                            fetches.add(() -> metricBackend.fetch(
-                                new FetchData.Request(source, series, range, options), quotaWatcher,
-                                mc -> collector.acceptMetricsCollection(series, mc)));
-                        } else {
-                            fetches.add(() -> metricBackend
-                                .fetch(new FetchData.Request(source, series, range, options),
-                                    quotaWatcher)
-                                .directTransform(fetchData -> {
-                                    fetchData.getGroups().forEach(group -> {
-                                        collector.acceptMetricsCollection(series, group);
-                                    });
-                                    return fetchData.getResult();
-                                }));
-                        }
+                        fetches.add(skipIfViolated(
+                            () -> fetchRaw(metricBackend, series, range, collector)));
                     }
                 });
 
                 return async.eventuallyCollect(fetches, collector, fetchParallelism);
             }
+
+            /**
+             * Fetch raw data for a series from a single backend, and feed it to the collector.
+             */
+            private AsyncFuture<FetchData.Result> fetchRaw(
+                final MetricBackend metricBackend, final Series series, final DateRange fetchRange,
+                final ResultCollector collector
+            ) throws Exception {
+                final FetchData.Request request =
+                    new FetchData.Request(source, series, fetchRange, options);
+
+                if (slicedFetch) {
+                    return limit(metricBackend,
+                        () -> quotaWatcher.track(metricBackend.fetch(request, quotaWatcher,
+                            mc -> collector.acceptMetricsCollection(series, mc))));
+                }
+
+                return limit(metricBackend,
+                    () -> quotaWatcher.track(metricBackend.fetch(request, quotaWatcher)))
+                    .lazyTransform(fetchData -> async.call(() -> {
+                        fetchData.getGroups().forEach(group -> {
+                            collector.acceptMetricsCollection(series, group);
+                        });
+                        return fetchData.getResult();
+                    }, queryExecutor));
+            }
+
+            /**
+             * Fetch a series, reading every complete period below its rollup watermark from the
+             * rollup tier, and everything else raw.
+             */
+            private AsyncFuture<FetchData.Result> fetchWithRollups(
+                final Group rollupGroup, final RollupConfig rollup, final Series series,
+                final long now, final ResultCollector collector
+            ) {
+                /* watermarks are timestamped with the end of the range they cover */
+                final DateRange lookup = new DateRange(range.start(), Math.max(range.start(), now));
+
+                return Rollups
+                    .fetchCovered(rollupGroup, series, lookup, options, quotaWatcher)
+                    .lazyTransform(covered -> {
+                        final Optional<Rollups.Split> split =
+                            Rollups.split(range, rollup.getResolution(), covered);
+
+                        final List<AsyncFuture<FetchData.Result>> parts = new ArrayList<>();
+
+                        if (!split.isPresent()) {
+                            for (final MetricBackend b : backends) {
+                                parts.add(fetchRaw(b, series, range, collector));
+                            }
+
+                            return async.collect(parts, FetchData.collectResult(FETCH));
+                        }
+
+                        final Rollups.Split s = split.get();
+
+                        parts.add(quotaWatcher
+                            .track(Rollups.fetch(async, rollupGroup, series, s.getRollups(),
+                                options, quotaWatcher))
+                            .lazyTransform(fetchData -> async.call(() -> {
+                                fetchData.getGroups().forEach(group -> {
+                                    collector.acceptMetricsCollection(series, group);
+                                });
+                                return fetchData.getResult();
+                            }, queryExecutor)));
+
+                        final List<DateRange> raw = new ArrayList<>();
+                        s.getHead().ifPresent(raw::add);
+                        s.getTail().ifPresent(raw::add);
+
+                        for (final DateRange r : raw) {
+                            for (final MetricBackend b : backends) {
+                                parts.add(fetchRaw(b, series, r, collector));
+                            }
+                        }
+
+                        return async.collect(parts, FetchData.collectResult(FETCH));
+                    });
+            }
+
+            /**
+             * Skip the given fetch if the quota has been violated by the time it is started.
+             */
+            private Callable<AsyncFuture<FetchData.Result>> skipIfViolated(
+                final Callable<AsyncFuture<FetchData.Result>> fetch
+            ) {
+                return () -> {
+                    if (!quotaWatcher.mayReadData()) {
+                        return async.resolved(FetchData.result(QueryTrace.of(FETCH_SKIPPED)));
+                    }
+
+                    return fetch.call();
+                };
+            }
+
+            /**
+             * Select the coarsest tier of rollups that the query can be answered from, if any.
+             * <p>
+             * Rollups are aligned to their resolution and timestamped with the start of their
+             * period, so buckets must be start-aligned on a multiple of the resolution. Which part
+             * of the range is actually read from the tier is decided for every series by its
+             * watermark, see {@link #fetchWithRollups}.
+             */
+            private Optional<RollupConfig> selectRollup() {
+                if (source != MetricType.POINT || bucketStrategy != BucketStrategy.START) {
+                    return Optional.empty();
+                }
+
+                for (final RollupConfig rollup : rollups) {
+                    final long resolution = rollup.getResolution();
+
+                    if (range.start() % resolution != 0 ||
+                        !aggregation.rollupCompatible(resolution)) {
+                        continue;
+                    }
+
+                    if (groupSet.useGroup(rollup.getGroup()).isEmpty()) {
+                        continue;
+                    }
+
+                    return Optional.of(rollup);
+                }
+
+                return Optional.empty();
+            }
         }
 
         @Override
         public AsyncFuture<FullQuery> query(final FullQuery.Request request) {
-
-            final QueryOptions options = request.getOptions();
             final QueryContext queryContext = request.getContext();
 
             queryLogger.logIncomingRequestAtNode(queryContext, request);
 
+            final Supplier<AsyncFuture<FullQuery>> execute = () -> execute(request);
+
+            final AsyncFuture<FullQuery> query;
+
+            if (request.getFeatures().hasFeature(Feature.COALESCE_QUERY)) {
+                query = coalescer.coalesce(QueryCoalescer.key(backends.getMembers(), request),
+                    execute);
+            } else {
+                query = execute.get();
+            }
+
+            return query.directTransform(fullQuery -> {
+                queryLogger.logOutgoingResponseAtNode(queryContext, fullQuery);
+                return fullQuery;
+            });
+        }
+
+        private AsyncFuture<FullQuery> execute(final FullQuery.Request request) {
+            final QueryOptions options = request.getOptions();
+
             final DataInMemoryReporter dataInMemoryReporter = reporter.newDataInMemoryReporter();
 
             final QuotaWatcher quotaWatcher = new QuotaWatcher(
@@ -321,7 +551,7 @@ public class LocalMetricManager implements MetricManager {
                 options.getGroupLimit().orElse(LocalMetricManager.this.groupLimit);
 
             // Transform that takes the result from ES metadata lookup to fetch from backend
-            final LazyTransform<FindSeries, FullQuery> transform =
+            final Transform transform =
                 new Transform(request, failOnLimits, seriesLimit, groupLimit, quotaWatcher,
                     dataInMemoryReporter);
 
@@ -331,7 +561,9 @@ public class LocalMetricManager implements MetricManager {
                 .onDone(reporter.reportFindSeries())
                 .lazyTransform(transform)
                 .directTransform(fullQuery -> {
-                    queryLogger.logOutgoingResponseAtNode(queryContext, fullQuery);
+                    fullQuery
+                        .getDataDensity()
+                        .ifPresent(density -> densityHistory.update(transform.keys, density));
                     return fullQuery;
                 })
                 .onDone(reporter.reportQueryMetrics());
@@ -431,6 +663,19 @@ public class LocalMetricManager implements MetricManager {
             });
         }
 
+        @Override
+        public AsyncFuture<Long> compact(final Series series, final DateRange range) {
+            return async.collect(map(b -> b.compact(series, range))).directTransform(result -> {
+                long count = 0;
+
+                for (final long c : result) {
+                    count += c;
+                }
+
+                return count;
+            });
+        }
+
         @Override
         public AsyncFuture<MetricCollection> fetchRow(final BackendKey key) {
             final List<AsyncFuture<MetricCollection>> callbacks = map(b -> b.fetchRow(key));
@@ -610,6 +855,25 @@ public class LocalMetricManager implements MetricManager {
 
         private final LongAdder rowsAccessed = new LongAdder();
 
+        /* outstanding fetches, cancelled as soon as the quota is violated */
+        private final Set<AsyncFuture<?>> outstanding = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean violated = new AtomicBoolean();
+
+        /**
+         * Track an outstanding fetch, so that it can be cancelled if the quota is violated.
+         */
+        <T> AsyncFuture<T> track(final AsyncFuture<T> fetch) {
+            outstanding.add(fetch);
+            fetch.onFinished(() -> outstanding.remove(fetch));
+
+            /* the quota might have been violated while the fetch was being set up */
+            if (violated.get()) {
+                fetch.cancel();
+            }
+
+            return fetch;
+        }
+
         @Override
         public void readData(long n) {
             read.addAndGet(n);
@@ -624,6 +888,11 @@ public class LocalMetricManager implements MetricManager {
             throwIfViolated();
         }
 
+        @Override
+        public void releaseData(final long n) {
+            retained.addAndGet(-n);
+        }
+
         @Override
         public boolean mayReadData() {
             return !isReadQuotaViolated() && !isRetainQuotaViolated();
@@ -656,10 +925,23 @@ public class LocalMetricManager implements MetricManager {
 
         private void throwIfViolated() {
             if (isReadQuotaViolated() || isRetainQuotaViolated()) {
+                if (violated.compareAndSet(false, true)) {
+                    cancelOutstanding();
+                }
+
                 throw new QuotaViolationException();
             }
         }
 
+        /**
+         * Cancel all outstanding fetches, any data they would read will be discarded anyway.
+         */
+        private void cancelOutstanding() {
+            for (final AsyncFuture<?> fetch : ImmutableList.copyOf(outstanding)) {
+                fetch.cancel();
+            }
+        }
+
         boolean isReadQuotaViolated() {
             return read.get() >= dataLimit;
         }
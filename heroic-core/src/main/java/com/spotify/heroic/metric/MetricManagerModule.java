@@ -34,14 +34,18 @@ import com.spotify.heroic.common.ModuleIdBuilder;
 import com.spotify.heroic.common.OptionalLimit;
 import com.spotify.heroic.dagger.CorePrimaryComponent;
 import com.spotify.heroic.lifecycle.LifeCycle;
+import com.spotify.heroic.lifecycle.LifeCycleManager;
 import com.spotify.heroic.statistics.HeroicReporter;
 import com.spotify.heroic.statistics.MetricBackendReporter;
+import com.spotify.heroic.time.Clock;
 import dagger.Module;
 import dagger.Provides;
+import eu.toolchain.async.AsyncFramework;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import javax.inject.Named;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -54,6 +58,7 @@ public class MetricManagerModule {
     public static final int DEFAULT_FETCH_PARALLELISM = 100;
     public static final boolean DEFAULT_FAIL_ON_LIMITS = false;
     public static final long DEFAULT_SMALL_QUERY_THRESHOLD = 200000;
+    public static final double DEFAULT_PREFLIGHT_FACTOR = 0D;
 
     private final List<MetricModule> backends;
     private final Optional<List<String>> defaultBackends;
@@ -93,6 +98,27 @@ public class MetricManagerModule {
      */
     private final long smallQueryThreshold;
 
+    /**
+     * Tiers of rollups which queries may be routed to.
+     */
+    private final List<RollupConfig> rollups;
+
+    /**
+     * If present, concurrent fetches against each backend are adaptively limited.
+     */
+    private final Optional<FetchLimiterConfig> fetchLimiter;
+
+    /**
+     * Reject queries before fetching any data if the row density of recent queries indicate that
+     * they will read more than this many times the data limit. Zero disables the check.
+     */
+    private final double preflightFactor;
+
+    /**
+     * If present, points of blocks which lie fully in the past are cached on local disk.
+     */
+    private final Optional<DiskBlockCacheConfig> blockCache;
+
     @Provides
     @MetricScope
     public MetricBackendReporter reporter(HeroicReporter reporter) {
@@ -128,23 +154,47 @@ public class MetricManagerModule {
         return exposed;
     }
 
+    @Provides
+    @MetricScope
+    public Optional<DiskBlockCache> diskBlockCache(AsyncFramework async) {
+        return blockCache.map(config -> new DiskBlockCache(async, config));
+    }
+
     @Provides
     @MetricScope
     public Set<MetricBackend> backends(
-        List<MetricModule.Exposed> components, MetricBackendReporter reporter
+        List<MetricModule.Exposed> components, MetricBackendReporter reporter,
+        Optional<DiskBlockCache> diskBlockCache, AsyncFramework async,
+        @Named("blocking") ExecutorService blocking, Clock clock
     ) {
-        return ImmutableSet.copyOf(components
-            .stream()
-            .map(MetricModule.Exposed::backend)
-            .map(reporter::decorate)
-            .iterator());
+        final ImmutableSet.Builder<MetricBackend> result = ImmutableSet.builder();
+        final ModuleIdBuilder idBuilder = new ModuleIdBuilder();
+
+        /* components are built in the order of the configured modules, so their ids line up */
+        for (int i = 0; i < components.size(); i++) {
+            final String id = idBuilder.buildId(backends.get(i));
+            final MetricBackend backend = reporter.decorate(components.get(i).backend());
+
+            result.add(diskBlockCache
+                .<MetricBackend>map(
+                    cache -> blockCached(async, blocking, clock, cache, id, backend))
+                .orElse(backend));
+        }
+
+        return result.build();
     }
 
     @Provides
     @MetricScope
     @Named("metric")
-    public LifeCycle metricLife(List<MetricModule.Exposed> components) {
-        return LifeCycle.combined(components.stream().map(MetricModule.Exposed::life));
+    public LifeCycle metricLife(
+        List<MetricModule.Exposed> components, LifeCycleManager manager,
+        Optional<DiskBlockCache> diskBlockCache
+    ) {
+        final List<LifeCycle> life = new ArrayList<>();
+        components.stream().map(MetricModule.Exposed::life).forEach(life::add);
+        diskBlockCache.map(manager::build).ifPresent(life::add);
+        return LifeCycle.combined(life);
     }
 
     @Provides
@@ -196,10 +246,43 @@ public class MetricManagerModule {
         return smallQueryThreshold;
     }
 
+    @Provides
+    @MetricScope
+    @Named("rollups")
+    public List<RollupConfig> rollups() {
+        return rollups;
+    }
+
+    @Provides
+    @MetricScope
+    @Named("fetchLimiter")
+    public Optional<FetchLimiterConfig> fetchLimiter() {
+        return fetchLimiter;
+    }
+
+    @Provides
+    @MetricScope
+    @Named("preflightFactor")
+    public double preflightFactor() {
+        return preflightFactor;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
+    private MetricBackend blockCached(
+        final AsyncFramework async, final ExecutorService blocking, final Clock clock,
+        final DiskBlockCache cache, final String id, final MetricBackend backend
+    ) {
+        final DiskBlockCacheConfig config = blockCache.get();
+
+        /* blocks are kept apart per backend by its module id, groups can be shared by backends,
+         * like when migrating between them */
+        return new DiskCachedMetricBackend(async, blocking, clock, cache, id,
+            config.getBlockSize().toMilliseconds(), config.getMargin().toMilliseconds(), backend);
+    }
+
     @NoArgsConstructor(access = AccessLevel.PRIVATE)
     @AllArgsConstructor
     public static class Builder {
@@ -212,6 +295,10 @@ public class MetricManagerModule {
         private Optional<Integer> fetchParallelism = empty();
         private Optional<Boolean> failOnLimits = empty();
         private Optional<Long> smallQueryThreshold = empty();
+        private Optional<List<RollupConfig>> rollups = empty();
+        private Optional<FetchLimiterConfig> fetchLimiter = empty();
+        private Optional<Double> preflightFactor = empty();
+        private Optional<DiskBlockCacheConfig> blockCache = empty();
 
         public Builder backends(List<MetricModule> backends) {
             this.backends = of(backends);
@@ -258,6 +345,26 @@ public class MetricManagerModule {
             return this;
         }
 
+        public Builder rollups(List<RollupConfig> rollups) {
+            this.rollups = of(rollups);
+            return this;
+        }
+
+        public Builder fetchLimiter(FetchLimiterConfig fetchLimiter) {
+            this.fetchLimiter = of(fetchLimiter);
+            return this;
+        }
+
+        public Builder preflightFactor(double preflightFactor) {
+            this.preflightFactor = of(preflightFactor);
+            return this;
+        }
+
+        public Builder blockCache(DiskBlockCacheConfig blockCache) {
+            this.blockCache = of(blockCache);
+            return this;
+        }
+
         public Builder merge(final Builder o) {
             // @formatter:off
             return new Builder(
@@ -269,7 +376,11 @@ public class MetricManagerModule {
                 dataLimit.orElse(o.dataLimit),
                 pickOptional(fetchParallelism, o.fetchParallelism),
                 pickOptional(failOnLimits, o.failOnLimits),
-                pickOptional(smallQueryThreshold, o.smallQueryThreshold)
+                pickOptional(smallQueryThreshold, o.smallQueryThreshold),
+                mergeOptionalList(o.rollups, rollups),
+                pickOptional(fetchLimiter, o.fetchLimiter),
+                pickOptional(preflightFactor, o.preflightFactor),
+                pickOptional(blockCache, o.blockCache)
             );
             // @formatter:on
         }
@@ -285,7 +396,11 @@ public class MetricManagerModule {
                 dataLimit,
                 fetchParallelism.orElse(DEFAULT_FETCH_PARALLELISM),
                 failOnLimits.orElse(DEFAULT_FAIL_ON_LIMITS),
-                smallQueryThreshold.orElse(DEFAULT_SMALL_QUERY_THRESHOLD)
+                smallQueryThreshold.orElse(DEFAULT_SMALL_QUERY_THRESHOLD),
+                rollups.orElseGet(ImmutableList::of),
+                fetchLimiter,
+                preflightFactor.orElse(DEFAULT_PREFLIGHT_FACTOR),
+                blockCache
             );
             // @formatter:on
         }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.spotify.heroic.ObjectHasher;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.FutureDone;
+import eu.toolchain.async.ResolvableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import lombok.Data;
+
+/**
+ * Lets identical queries which are in flight at the same time share a single execution.
+ * <p>
+ * The first caller for a key starts the execution, every caller that arrives before it completes
+ * receives the same result. Each caller gets its own future, so one caller cancelling does not
+ * affect the others; the shared execution is only cancelled once every caller has cancelled.
+ * Nothing is retained after the execution completes, this is not a cache.
+ *
+ * @param <T> Type of the result.
+ */
+public class QueryCoalescer<T> {
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final AsyncFramework async;
+
+    private final ConcurrentMap<Key, Flight> inFlight = new ConcurrentHashMap<>();
+
+    public QueryCoalescer(final AsyncFramework async) {
+        this.async = async;
+    }
+
+    /**
+     * Build a key for the given request.
+     *
+     * @param scope Whatever the request is executed against, like the selected backends. Must
+     * implement equality.
+     * @param request Request to build key for.
+     * @return a key which is equal for identical requests against the same scope
+     */
+    public static Key key(final Object scope, final FullQuery.Request request) {
+        final Hasher hasher = HASH_FUNCTION.newHasher();
+        request.hashTo(new ObjectHasher(hasher));
+        return new Key(scope, hasher.hash());
+    }
+
+    /**
+     * Join the execution for the given key if one is in flight, or start a new one.
+     *
+     * @param key Key identifying the execution.
+     * @param loader Starts a new execution.
+     * @return a future for the result of the shared execution
+     */
+    public AsyncFuture<T> coalesce(final Key key, final Supplier<AsyncFuture<T>> loader) {
+        while (true) {
+            final Flight existing = inFlight.get(key);
+
+            if (existing != null) {
+                if (existing.join()) {
+                    return existing.follow();
+                }
+
+                /* every caller left and the flight is being torn down, replace it */
+                inFlight.remove(key, existing);
+                continue;
+            }
+
+            final Flight flight = new Flight(async.future());
+
+            if (inFlight.putIfAbsent(key, flight) != null) {
+                continue;
+            }
+
+            flight.result.onFinished(() -> inFlight.remove(key, flight));
+            flight.start(loader);
+            return flight.follow();
+        }
+    }
+
+    /**
+     * Number of distinct executions currently in flight.
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    @Data
+    public static class Key {
+        private final Object scope;
+        private final HashCode hash;
+    }
+
+    private class Flight {
+        private final ResolvableFuture<T> result;
+        /* number of callers waiting for the result, zero once every caller cancelled */
+        private final AtomicInteger callers = new AtomicInteger(1);
+
+        Flight(final ResolvableFuture<T> result) {
+            this.result = result;
+        }
+
+        boolean join() {
+            while (true) {
+                final int current = callers.get();
+
+                if (current <= 0) {
+                    return false;
+                }
+
+                if (callers.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void start(final Supplier<AsyncFuture<T>> loader) {
+            final AsyncFuture<T> loading;
+
+            try {
+                loading = loader.get();
+            } catch (final Exception e) {
+                result.fail(e);
+                return;
+            }
+
+            result.onCancelled(loading::cancel);
+
+            loading.onDone(new FutureDone<T>() {
+                @Override
+                public void failed(final Throwable cause) throws Exception {
+                    result.fail(cause);
+                }
+
+                @Override
+                public void resolved(final T value) throws Exception {
+                    result.resolve(value);
+                }
+
+                @Override
+                public void cancelled() throws Exception {
+                    result.cancel();
+                }
+            });
+        }
+
+        /**
+         * Future for a single caller, which resolves with the shared result.
+         */
+        AsyncFuture<T> follow() {
+            final ResolvableFuture<T> caller = async.future();
+
+            result.onDone(new FutureDone<T>() {
+                @Override
+                public void failed(final Throwable cause) throws Exception {
+                    caller.fail(cause);
+                }
+
+                @Override
+                public void resolved(final T value) throws Exception {
+                    caller.resolve(value);
+                }
+
+                @Override
+                public void cancelled() throws Exception {
+                    caller.cancel();
+                }
+            });
+
+            caller.onCancelled(() -> {
+                if (callers.decrementAndGet() == 0) {
+                    result.cancel();
+                }
+            });
+
+            return caller;
+        }
+    }
+}
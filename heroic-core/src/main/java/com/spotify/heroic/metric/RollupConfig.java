@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.spotify.heroic.common.Duration;
+import lombok.Data;
+
+/**
+ * Configuration for a tier of rollups.
+ * <p>
+ * Rollups for the tier are stored in the metric backends of the given group.
+ */
+@Data
+public class RollupConfig {
+    /**
+     * Group of the metric backends which store the rollups.
+     */
+    private final String group;
+
+    /**
+     * Resolution of the rollups in milliseconds.
+     */
+    private final long resolution;
+
+    @JsonCreator
+    public RollupConfig(
+        @JsonProperty("group") String group, @JsonProperty("resolution") Duration resolution
+    ) {
+        this.group = checkNotNull(group, "group");
+        this.resolution = checkNotNull(resolution, "resolution").toMilliseconds();
+        checkArgument(this.resolution > 0, "resolution must be positive");
+    }
+}
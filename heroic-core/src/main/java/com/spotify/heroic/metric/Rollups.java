@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.QueryOptions;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import lombok.Data;
+
+/**
+ * Utilities for reading and writing rollups.
+ * <p>
+ * A rollup summarizes the samples of a series within aligned periods of a fixed resolution as
+ * spreads. Since backends generally only store points, every statistic of the spread is stored as
+ * a separate series, with the additional tag {@link #ROLLUP_TAG}.
+ * <p>
+ * The ranges which have been rolled up for a series are recorded in a separate watermark series,
+ * as one point for every range. The point is timestamped with the (exclusive) end of the range,
+ * and its value is the start of the range.
+ */
+public final class Rollups {
+    public static final String ROLLUP_TAG = "rollup";
+    public static final String WATERMARK = "watermark";
+
+    private static final QueryTrace.Identifier ROLLUP_FETCH =
+        QueryTrace.identifier(Rollups.class, "fetch");
+
+    private Rollups() {
+    }
+
+    /**
+     * The statistics which make up a rollup.
+     */
+    public enum Stat {
+        COUNT("count"), SUM("sum"), SUM2("sum2"), MIN("min"), MAX("max");
+
+        private final String tag;
+
+        Stat(final String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Build the series which stores the given statistic for a series.
+     */
+    public static Series series(final Series series, final Stat stat) {
+        final Map<String, String> tags = new HashMap<>(series.getTags());
+        tags.put(ROLLUP_TAG, stat.tag());
+        return Series.of(series.getKey(), tags);
+    }
+
+    /**
+     * Build the series which stores the watermarks for a series.
+     */
+    public static Series watermarkSeries(final Series series) {
+        final Map<String, String> tags = new HashMap<>(series.getTags());
+        tags.put(ROLLUP_TAG, WATERMARK);
+        return Series.of(series.getKey(), tags);
+    }
+
+    /**
+     * Summarize the given points into one spread per period of the given resolution.
+     * <p>
+     * Every spread is timestamped with the start of its period.
+     *
+     * @param points Points to summarize, sorted by timestamp.
+     * @param resolution Resolution in milliseconds.
+     */
+    public static List<Spread> rollup(final List<Point> points, final long resolution) {
+        final List<Spread> spreads = new ArrayList<>();
+
+        long period = Long.MIN_VALUE;
+        long count = 0;
+        double sum = 0D;
+        double sum2 = 0D;
+        double min = Double.NaN;
+        double max = Double.NaN;
+
+        for (final Point p : points) {
+            if (!p.valid()) {
+                continue;
+            }
+
+            final long current = Math.floorDiv(p.getTimestamp(), resolution) * resolution;
+
+            if (current != period) {
+                if (count > 0) {
+                    spreads.add(new Spread(period, count, sum, sum2, min, max));
+                }
+
+                period = current;
+                count = 0;
+                sum = 0D;
+                sum2 = 0D;
+                min = Double.POSITIVE_INFINITY;
+                max = Double.NEGATIVE_INFINITY;
+            }
+
+            final double v = p.getValue();
+
+            count += 1;
+            sum += v;
+            sum2 += v * v;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+
+        if (count > 0) {
+            spreads.add(new Spread(period, count, sum, sum2, min, max));
+        }
+
+        return spreads;
+    }
+
+    /**
+     * Split spreads into one list of points for every statistic.
+     */
+    public static Map<Stat, List<Point>> split(final List<Spread> spreads) {
+        final Map<Stat, List<Point>> stats = new EnumMap<>(Stat.class);
+
+        for (final Stat stat : Stat.values()) {
+            stats.put(stat, new ArrayList<>(spreads.size()));
+        }
+
+        for (final Spread s : spreads) {
+            final long t = s.getTimestamp();
+            stats.get(Stat.COUNT).add(new Point(t, s.getCount()));
+            stats.get(Stat.SUM).add(new Point(t, s.getSum()));
+            stats.get(Stat.SUM2).add(new Point(t, s.getSum2()));
+            stats.get(Stat.MIN).add(new Point(t, s.getMin()));
+            stats.get(Stat.MAX).add(new Point(t, s.getMax()));
+        }
+
+        return stats;
+    }
+
+    /**
+     * Join points for every statistic into spreads.
+     * <p>
+     * Periods which are not present for every statistic are incomplete, and are ignored.
+     */
+    public static List<Spread> join(final Map<Stat, List<Point>> stats) {
+        final Map<Stat, Map<Long, Double>> values = new EnumMap<>(Stat.class);
+
+        for (final Stat stat : Stat.values()) {
+            final Map<Long, Double> byTime = new HashMap<>();
+
+            for (final Point p : stats.getOrDefault(stat, ImmutableList.of())) {
+                byTime.put(p.getTimestamp(), p.getValue());
+            }
+
+            values.put(stat, byTime);
+        }
+
+        final TreeMap<Long, Spread> spreads = new TreeMap<>();
+
+        for (final Map.Entry<Long, Double> e : values.get(Stat.COUNT).entrySet()) {
+            final long t = e.getKey();
+
+            final Double sum = values.get(Stat.SUM).get(t);
+            final Double sum2 = values.get(Stat.SUM2).get(t);
+            final Double min = values.get(Stat.MIN).get(t);
+            final Double max = values.get(Stat.MAX).get(t);
+
+            if (sum == null || sum2 == null || min == null || max == null) {
+                continue;
+            }
+
+            spreads.put(t, new Spread(t, e.getValue().longValue(), sum, sum2, min, max));
+        }
+
+        return ImmutableList.copyOf(spreads.values());
+    }
+
+    /**
+     * Find the end of the rolled up range which starts at or before the given timestamp.
+     * <p>
+     * Overlapping and adjacent ranges are merged.
+     *
+     * @param covered Ranges which have been rolled up, start inclusive and end exclusive.
+     * @param from Timestamp to find the covered range for.
+     * @return The exclusive end of the covered range, or {@code from} if it is not covered.
+     */
+    public static long coveredUntil(final List<DateRange> covered, final long from) {
+        final List<DateRange> sorted = new ArrayList<>(covered);
+        sorted.sort(Comparator.comparingLong(DateRange::start));
+
+        long end = from;
+
+        for (final DateRange r : sorted) {
+            if (r.start() > end) {
+                break;
+            }
+
+            end = Math.max(end, r.end());
+        }
+
+        return end;
+    }
+
+    /**
+     * Split a fetch range into the part which can be read from rollups, and the parts before and
+     * after it which have to be read raw.
+     * <p>
+     * Like all fetches, ranges are start exclusive and end inclusive. A rollup covers the samples
+     * of its whole period, so only periods which are completely contained in the range and below
+     * the watermark are read from rollups.
+     *
+     * @param range Range to fetch.
+     * @param resolution Resolution of the rollups.
+     * @param covered Ranges which have been rolled up.
+     * @return The split range, or empty if no complete period can be read from rollups.
+     */
+    public static Optional<Split> split(
+        final DateRange range, final long resolution, final List<DateRange> covered
+    ) {
+        /* first period which starts after the (exclusive) start of the range */
+        final long first = (Math.floorDiv(range.start(), resolution) + 1) * resolution;
+        /* end of the last period which is contained in the range */
+        final long last = Math.floorDiv(range.end() + 1, resolution) * resolution;
+        final long end = Math.min(last, coveredUntil(covered, first));
+
+        if (end - first < resolution) {
+            return Optional.empty();
+        }
+
+        final Optional<DateRange> head = first - 1 > range.start() ? Optional.of(
+            new DateRange(range.start(), first - 1)) : Optional.empty();
+        final Optional<DateRange> tail = end - 1 < range.end() ? Optional.of(
+            new DateRange(end - 1, range.end())) : Optional.empty();
+
+        return Optional.of(
+            new Split(head, new DateRange(first - 1, end - resolution), tail));
+    }
+
+    /**
+     * Fetch the ranges which have been rolled up for a series.
+     *
+     * @param range Range in which to look for the end of rolled up ranges.
+     */
+    public static AsyncFuture<List<DateRange>> fetchCovered(
+        final MetricBackend backend, final Series series, final DateRange range,
+        final QueryOptions options, final FetchQuotaWatcher watcher
+    ) {
+        return backend
+            .fetch(new FetchData.Request(MetricType.POINT, watermarkSeries(series), range,
+                options), watcher)
+            .directTransform(fetch -> {
+                final List<DateRange> covered = new ArrayList<>();
+
+                for (final MetricCollection g : fetch.getGroups()) {
+                    for (final Point p : g.getDataAs(Point.class)) {
+                        final long start = (long) p.getValue();
+
+                        if (start >= 0 && start <= p.getTimestamp()) {
+                            covered.add(new DateRange(start, p.getTimestamp()));
+                        }
+                    }
+                }
+
+                return covered;
+            });
+    }
+
+    /**
+     * Record that a range has been rolled up for a series.
+     *
+     * @param covered Range which has been rolled up, start inclusive and end exclusive.
+     */
+    public static AsyncFuture<WriteMetric> writeWatermark(
+        final MetricBackend backend, final Series series, final DateRange covered
+    ) {
+        return backend.write(new WriteMetric.Request(watermarkSeries(series),
+            MetricCollection.points(
+                ImmutableList.of(new Point(covered.end(), (double) covered.start())))));
+    }
+
+    /**
+     * Fetch the rollups of a series.
+     *
+     * @return A fetch with a single group of spreads.
+     */
+    public static AsyncFuture<FetchData> fetch(
+        final AsyncFramework async, final MetricBackend backend, final Series series,
+        final DateRange range, final QueryOptions options, final FetchQuotaWatcher watcher
+    ) {
+        final List<AsyncFuture<StatFetch>> fetches = new ArrayList<>();
+
+        for (final Stat stat : Stat.values()) {
+            fetches.add(backend
+                .fetch(new FetchData.Request(MetricType.POINT, series(series, stat), range,
+                    options), watcher)
+                .directTransform(fetch -> new StatFetch(stat, fetch)));
+        }
+
+        return async.collect(fetches).directTransform(results -> {
+            final Map<Stat, List<Point>> stats = new EnumMap<>(Stat.class);
+            final List<FetchData.Result> parts = new ArrayList<>();
+            final List<Long> times = new ArrayList<>();
+
+            for (final StatFetch r : results) {
+                final List<Point> points = new ArrayList<>();
+
+                for (final MetricCollection g : r.getFetch().getGroups()) {
+                    points.addAll(g.getDataAs(Point.class));
+                }
+
+                stats.put(r.getStat(), points);
+                parts.add(r.getFetch().getResult());
+                times.addAll(r.getFetch().getTimes());
+            }
+
+            final FetchData.Result result =
+                FetchData.collectResult(ROLLUP_FETCH).collect(parts);
+
+            return new FetchData(result, times,
+                ImmutableList.of(MetricCollection.spreads(join(stats))));
+        });
+    }
+
+    /**
+     * Write rollups for a series.
+     */
+    public static AsyncFuture<WriteMetric> write(
+        final AsyncFramework async, final MetricBackend backend, final Series series,
+        final List<Spread> spreads
+    ) {
+        final List<AsyncFuture<WriteMetric>> writes = new ArrayList<>();
+
+        for (final Map.Entry<Stat, List<Point>> e : split(spreads).entrySet()) {
+            writes.add(backend.write(new WriteMetric.Request(series(series, e.getKey()),
+                MetricCollection.points(e.getValue()))));
+        }
+
+        return async.collect(writes, WriteMetric.reduce());
+    }
+
+    /**
+     * A fetch range split by {@link #split(DateRange, long, List)}.
+     */
+    @Data
+    public static class Split {
+        /**
+         * Range to read raw before the rollups.
+         */
+        private final Optional<DateRange> head;
+
+        /**
+         * Range to read rollups for.
+         */
+        private final DateRange rollups;
+
+        /**
+         * Range to read raw after the rollups.
+         */
+        private final Optional<DateRange> tail;
+    }
+
+    @Data
+    private static class StatFetch {
+        private final Stat stat;
+        private final FetchData fetch;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Histogram;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps track of the row density observed by recent queries for every metric key, to estimate how
+ * much data a query will read before any of it is fetched.
+ * <p>
+ * Densities are measured in samples per mega-second, the same unit that is reported in the data
+ * density of a {@link FullQuery}. Only queries which read a single metric key are used to update
+ * the history, since the density of a query over several keys can not be attributed to them.
+ */
+class RowDensityHistory {
+    /* weight of the density of a new query */
+    static final double SMOOTHING = 0.1D;
+
+    /* number of queries to observe for a key before providing estimates */
+    static final int WARMUP = 5;
+
+    /* number of keys to keep history for */
+    static final long MAX_KEYS = 10000L;
+
+    private final Cache<String, Density> densities =
+        CacheBuilder.newBuilder().maximumSize(MAX_KEYS).build();
+
+    /**
+     * Update the history with the data density of a completed query.
+     *
+     * @param keys Metric keys read by the query.
+     * @param dataDensity Data density of the query.
+     */
+    void update(final Set<String> keys, final Histogram dataDensity) {
+        if (keys.size() != 1) {
+            return;
+        }
+
+        final String key = keys.iterator().next();
+
+        dataDensity.getMedian().ifPresent(median -> {
+            try {
+                densities.get(key, Density::new).update(median);
+            } catch (final ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Estimate the number of samples that the given series will contain in the range.
+     *
+     * @param seriesPerKey Number of series for every metric key.
+     * @return The estimate, or empty if not enough queries have been observed for every key.
+     */
+    OptionalLong estimate(final Map<String, Long> seriesPerKey, final DateRange range) {
+        double total = 0D;
+
+        for (final Map.Entry<String, Long> e : seriesPerKey.entrySet()) {
+            final Density density = densities.getIfPresent(e.getKey());
+
+            if (density == null) {
+                return OptionalLong.empty();
+            }
+
+            final OptionalDouble perMegaSecond = density.get();
+
+            if (!perMegaSecond.isPresent()) {
+                return OptionalLong.empty();
+            }
+
+            total += perMegaSecond.getAsDouble() * range.diff() / 1_000_000_000D * e.getValue();
+        }
+
+        return OptionalLong.of((long) Math.min(Long.MAX_VALUE, total));
+    }
+
+    private static class Density {
+        private double density = 0D;
+        private int observed = 0;
+
+        synchronized void update(final double median) {
+            density = observed == 0 ? median : density * (1D - SMOOTHING) + median * SMOOTHING;
+            observed++;
+        }
+
+        synchronized OptionalDouble get() {
+            if (observed < WARMUP) {
+                return OptionalDouble.empty();
+            }
+
+            return OptionalDouble.of(density);
+        }
+    }
+}
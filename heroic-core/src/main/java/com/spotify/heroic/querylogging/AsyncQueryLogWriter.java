@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotify.heroic.lifecycle.LifeCycleRegistry;
+import com.spotify.heroic.lifecycle.LifeCycles;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serializes and writes query log events on a dedicated thread.
+ * <p>
+ * Events are handed over through a bounded {@link RingBuffer}. If the buffer is full, events are
+ * dropped and counted instead of blocking the query thread. The number of dropped events is
+ * periodically reported to the regular log.
+ */
+@Slf4j
+public class AsyncQueryLogWriter implements LifeCycles {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AsyncFramework async;
+    private final Consumer<String> queryLog;
+    private final ObjectMapper objectMapper;
+    private final RingBuffer<Event> buffer;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean running = false;
+    private volatile Thread thread = null;
+
+    public AsyncQueryLogWriter(
+        final AsyncFramework async, final Consumer<String> queryLog,
+        final ObjectMapper objectMapper, final int queueSize
+    ) {
+        this.async = async;
+        this.queryLog = queryLog;
+        this.objectMapper = objectMapper;
+        this.buffer = new RingBuffer<>(queueSize);
+    }
+
+    @Override
+    public void register(final LifeCycleRegistry registry) {
+        registry.start(this::start);
+        registry.stop(this::stop);
+    }
+
+    /**
+     * Enqueue an event to be written.
+     *
+     * @return {@code true} if the event was enqueued, {@code false} if it was dropped
+     */
+    public boolean enqueue(final Event event) {
+        if (buffer.offer(event)) {
+            return true;
+        }
+
+        dropped.increment();
+        return false;
+    }
+
+    AsyncFuture<Void> start() {
+        running = true;
+
+        final Thread thread = new Thread(this::run);
+        thread.setName("query-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+
+        this.thread = thread;
+        return async.resolved();
+    }
+
+    AsyncFuture<Void> stop() {
+        running = false;
+
+        final Thread thread = this.thread;
+
+        if (thread == null) {
+            return async.resolved();
+        }
+
+        return async.call(() -> {
+            LockSupport.unpark(thread);
+            thread.join();
+            return null;
+        });
+    }
+
+    void run() {
+        long lastReport = System.nanoTime();
+
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+
+            final long now = System.nanoTime();
+
+            if (now - lastReport >= REPORT_INTERVAL_NANOS) {
+                reportDropped();
+                lastReport = now;
+            }
+        }
+
+        /* write everything that was enqueued before shutting down */
+        drain();
+        reportDropped();
+    }
+
+    /**
+     * Write all events currently in the buffer.
+     *
+     * @return {@code true} if at least one event was written
+     */
+    boolean drain() {
+        boolean any = false;
+        Event event;
+
+        while ((event = buffer.poll()) != null) {
+            write(event);
+            any = true;
+        }
+
+        return any;
+    }
+
+    private void write(final Event event) {
+        try {
+            final QueryContext context = event.getContext();
+
+            final Slf4jQueryLogger.MessageFormat<Object> message =
+                new Slf4jQueryLogger.MessageFormat<>(event.getComponent(), context.getQueryId(),
+                    context.getClientContext(), context.getHttpContext(), event.getType(),
+                    event.getData());
+
+            final String timestamp = Instant.ofEpochMilli(event.getTimestamp()).toString();
+            final Slf4jQueryLogger.LogFormat logFormat =
+                new Slf4jQueryLogger.LogFormat(timestamp, message);
+
+            queryLog.accept(objectMapper.writeValueAsString(logFormat));
+        } catch (final Exception e) {
+            log.error("Failed while trying to log query", e);
+        }
+    }
+
+    private void reportDropped() {
+        final long dropped = this.dropped.sumThenReset();
+
+        if (dropped > 0) {
+            log.warn("Dropped {} query log event(s) since the queue was full", dropped);
+        }
+    }
+
+    /**
+     * A query log event.
+     * <p>
+     * The data is a summary which is built before the event is enqueued, so that buffered events
+     * don't keep whole requests and responses alive. Only serialization happens on the writer
+     * thread.
+     */
+    @Data
+    public static class Event {
+        private final long timestamp;
+        private final String component;
+        private final QueryContext context;
+        private final String type;
+        private final Object data;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging;
+
+import com.spotify.heroic.Query;
+import com.spotify.heroic.metric.FullQuery;
+import com.spotify.heroic.metric.QueryMetrics;
+import com.spotify.heroic.metric.QueryMetricsResponse;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A query logger which summarizes events and hands them over to an {@link AsyncQueryLogWriter},
+ * which takes care of serializing and writing them.
+ * <p>
+ * Queries are sampled by their id, so that all events for a sampled query are logged, on every
+ * node that it passes through.
+ */
+@RequiredArgsConstructor
+public class AsyncQueryLogger implements QueryLogger {
+    private static final long SAMPLE_MASK = (1L << 53) - 1;
+    private static final double SAMPLE_SCALE = 1.0D / (1L << 53);
+
+    private final AsyncQueryLogWriter writer;
+    private final String component;
+    private final double sampleRate;
+    private final Map<String, Double> clientSampleRates;
+
+    @Override
+    public void logHttpQueryText(final QueryContext context, final String query) {
+        enqueue(context, "http-query-text", () -> query);
+    }
+
+    @Override
+    public void logHttpQueryJson(final QueryContext context, final QueryMetrics query) {
+        enqueue(context, "http-query-json", () -> query);
+    }
+
+    @Override
+    public void logQuery(final QueryContext context, final Query query) {
+        enqueue(context, "query", () -> query);
+    }
+
+    @Override
+    public void logOutgoingRequestToShards(
+        final QueryContext context, final FullQuery.Request request
+    ) {
+        enqueue(context, "outgoing-request-to-shards", request::summarize);
+    }
+
+    @Override
+    public void logIncomingRequestAtNode(
+        final QueryContext context, final FullQuery.Request request
+    ) {
+        enqueue(context, "incoming-request-at-node", request::summarize);
+    }
+
+    @Override
+    public void logOutgoingResponseAtNode(final QueryContext context, final FullQuery response) {
+        enqueue(context, "outgoing-response-at-node", response::summarize);
+    }
+
+    @Override
+    public void logIncomingResponseFromShard(
+        final QueryContext context, final FullQuery response
+    ) {
+        enqueue(context, "incoming-response-from-shard", response::summarize);
+    }
+
+    @Override
+    public void logFinalResponse(
+        final QueryContext context, final QueryMetricsResponse queryMetricsResponse
+    ) {
+        enqueue(context, "final-response", queryMetricsResponse::summarize);
+    }
+
+    private void enqueue(final QueryContext context, final String type, final Supplier<?> data) {
+        if (!isSampled(context)) {
+            return;
+        }
+
+        /* only summaries are buffered, never the full request or response */
+        writer.enqueue(
+            new AsyncQueryLogWriter.Event(System.currentTimeMillis(), component, context, type,
+                data.get()));
+    }
+
+    boolean isSampled(final QueryContext context) {
+        final double rate = context
+            .getHttpContext()
+            .flatMap(HttpContext::getClientId)
+            .map(clientSampleRates::get)
+            .orElse(sampleRate);
+
+        if (rate >= 1.0D) {
+            return true;
+        }
+
+        if (rate <= 0.0D) {
+            return false;
+        }
+
+        final UUID queryId = context.getQueryId();
+        return (queryId.getLeastSignificantBits() & SAMPLE_MASK) * SAMPLE_SCALE < rate;
+    }
+}
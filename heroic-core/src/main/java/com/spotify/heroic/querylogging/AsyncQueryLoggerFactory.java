@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2017 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging;
+
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+@QueryLoggingScope
+public class AsyncQueryLoggerFactory implements QueryLoggerFactory {
+    private final AsyncQueryLogWriter writer;
+    private final double sampleRate;
+    private final Map<String, Double> clientSampleRates;
+
+    @Inject
+    public AsyncQueryLoggerFactory(
+        AsyncQueryLogWriter writer, @Named("sampleRate") double sampleRate,
+        @Named("clientSampleRates") Map<String, Double> clientSampleRates
+    ) {
+        this.writer = writer;
+        this.sampleRate = sampleRate;
+        this.clientSampleRates = clientSampleRates;
+    }
+
+    @Override
+    public AsyncQueryLogger create(String component) {
+        return new AsyncQueryLogger(writer, component, sampleRate, clientSampleRates);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.dagger.PrimaryComponent;
+import com.spotify.heroic.lifecycle.LifeCycle;
+import com.spotify.heroic.lifecycle.LifeCycleManager;
+import dagger.Module;
+import dagger.Provides;
+import eu.toolchain.async.AsyncFramework;
+import java.util.Map;
+import java.util.Optional;
+import javax.inject.Named;
+import javax.ws.rs.core.MediaType;
+import lombok.Data;
+
+/**
+ * Query logging which performs serialization and writing on a dedicated thread.
+ * <p>
+ * Writes to the same slf4j logger as {@link Slf4jQueryLoggingModule}, but never blocks the query
+ * thread. Events are dropped if more than {@code queueSize} are pending, and queries can be
+ * sampled, either with a default rate or per client id.
+ */
+@Data
+@Module
+public class AsyncQueryLoggingModule implements QueryLoggingModule {
+    public static final int DEFAULT_QUEUE_SIZE = 16384;
+    public static final double DEFAULT_SAMPLE_RATE = 1.0D;
+
+    private final Optional<String> name;
+    private final Optional<String> level;
+    private final Optional<Integer> queueSize;
+    private final Optional<Double> sampleRate;
+    private final Optional<Map<String, Double>> clientSampleRates;
+
+    @QueryLoggingScope
+    @Provides
+    public AsyncQueryLogWriter writer(
+        final AsyncFramework async, @Named(MediaType.APPLICATION_JSON) final ObjectMapper mapper
+    ) {
+        return new AsyncQueryLogWriter(async, Slf4jQueryLoggingModule.buildLogger(name, level),
+            mapper, queueSize.orElse(DEFAULT_QUEUE_SIZE));
+    }
+
+    @QueryLoggingScope
+    @Provides
+    @Named("sampleRate")
+    public double sampleRate() {
+        return sampleRate.orElse(DEFAULT_SAMPLE_RATE);
+    }
+
+    @QueryLoggingScope
+    @Provides
+    @Named("clientSampleRates")
+    public Map<String, Double> clientSampleRates() {
+        return clientSampleRates.map(ImmutableMap::copyOf).orElseGet(ImmutableMap::of);
+    }
+
+    @QueryLoggingScope
+    @Provides
+    @Named("queryLogging")
+    public LifeCycle life(final LifeCycleManager manager, final AsyncQueryLogWriter writer) {
+        return manager.build(writer);
+    }
+
+    @Override
+    public AsyncQueryLoggingComponent component(PrimaryComponent primary) {
+        return DaggerAsyncQueryLoggingComponent
+            .builder()
+            .primaryComponent(primary)
+            .asyncQueryLoggingModule(this)
+            .build();
+    }
+}
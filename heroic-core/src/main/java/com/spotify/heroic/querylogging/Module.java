@@ -32,6 +32,7 @@ public class Module implements HeroicModule {
 
         return () -> {
             config.registerType("slf4j", Slf4jQueryLoggingModule.class);
+            config.registerType("async", AsyncQueryLoggingModule.class);
         };
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.querylogging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer ring buffer.
+ * <p>
+ * Every slot carries a sequence number which tells producers and consumers if the slot is ready to
+ * be written to, or read from, for a given position. Operations never block, {@link #offer(Object)}
+ * fails if the buffer is full, and {@link #poll()} returns {@code null} if the buffer is empty.
+ *
+ * @param <T> type of the buffered values
+ */
+public class RingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> values;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public RingBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity
+            : Integer.highestOneBit(capacity) << 1;
+
+        this.mask = size - 1;
+        this.values = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Offer a value to the buffer.
+     *
+     * @return {@code true} if the value was added, {@code false} if the buffer is full
+     */
+    public boolean offer(final T value) {
+        long position = head.get();
+
+        while (true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    values.lazySet(index, value);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+
+            position = head.get();
+        }
+    }
+
+    /**
+     * Poll a value from the buffer.
+     *
+     * @return the oldest value in the buffer, or {@code null} if the buffer is empty
+     */
+    public T poll() {
+        long position = tail.get();
+
+        while (true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - (position + 1);
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    final T value = values.get(index);
+                    values.lazySet(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return value;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+
+            position = tail.get();
+        }
+    }
+
+    /**
+     * The capacity of the buffer, which is the requested capacity rounded up to a power of two.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -139,7 +139,7 @@ public class Slf4jQueryLogger implements QueryLogger {
     }
 
     @Data
-    public class LogFormat {
+    public static class LogFormat {
         @JsonProperty("@timestamp")
         private final String timestamp;
         @JsonProperty("@message")
@@ -147,7 +147,7 @@ public class Slf4jQueryLogger implements QueryLogger {
     }
 
     @Data
-    public class MessageFormat<T> {
+    public static class MessageFormat<T> {
         private final String component;
         private final UUID queryId;
         private final Optional<JsonNode> clientContext;
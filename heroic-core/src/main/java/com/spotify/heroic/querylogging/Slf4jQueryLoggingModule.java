@@ -37,6 +37,8 @@ import org.slf4j.event.Level;
 @Data
 @Module
 public class Slf4jQueryLoggingModule implements QueryLoggingModule {
+    public static final String DEFAULT_NAME = "com.spotify.heroic.query_logging";
+
     private final Optional<String> name;
     private final Optional<String> level;
 
@@ -44,12 +46,13 @@ public class Slf4jQueryLoggingModule implements QueryLoggingModule {
     @Provides
     @Named("logger")
     public Consumer<String> logger() {
-        final String name = this.name.orElse("com.spotify.heroic.query_logging");
-        final Level level = this.level.map(Level::valueOf).orElse(TRACE);
+        return buildLogger(name, level);
+    }
 
-        final Logger logger = LoggerFactory.getLogger(name);
+    static Consumer<String> buildLogger(final Optional<String> name, final Optional<String> level) {
+        final Logger logger = LoggerFactory.getLogger(name.orElse(DEFAULT_NAME));
 
-        switch (level) {
+        switch (level.map(Level::valueOf).orElse(TRACE)) {
             case INFO:
                 return logger::info;
             default:
@@ -35,6 +35,7 @@ import com.spotify.heroic.metric.BackendKeyFilter;
 import com.spotify.heroic.shell.task.AnalyticsDumpFetchSeries;
 import com.spotify.heroic.shell.task.AnalyticsReportFetchSeries;
 import com.spotify.heroic.shell.task.BackendKeyArgument;
+import com.spotify.heroic.shell.task.Compact;
 import com.spotify.heroic.shell.task.Configure;
 import com.spotify.heroic.shell.task.CountData;
 import com.spotify.heroic.shell.task.DataMigrate;
@@ -58,8 +59,10 @@ import com.spotify.heroic.shell.task.MetadataWrite;
 import com.spotify.heroic.shell.task.ParseQuery;
 import com.spotify.heroic.shell.task.Pause;
 import com.spotify.heroic.shell.task.Query;
+import com.spotify.heroic.shell.task.QueryReplay;
 import com.spotify.heroic.shell.task.ReadWriteTest;
 import com.spotify.heroic.shell.task.Refresh;
+import com.spotify.heroic.shell.task.Rollup;
 import com.spotify.heroic.shell.task.Resume;
 import com.spotify.heroic.shell.task.SerializeKey;
 import com.spotify.heroic.shell.task.Statistics;
@@ -129,12 +132,15 @@ public final class Tasks {
         shellTask(SuggestTagValues::setup, SuggestTagValues.class);
         shellTask(SuggestTagKeyCount::setup, SuggestTagKeyCount.class);
         shellTask(SuggestPerformance::setup, SuggestPerformance.class);
+        shellTask(QueryReplay::setup, QueryReplay.class);
         shellTask(Query::setup, Query.class);
         shellTask(ReadWriteTest::setup, ReadWriteTest.class);
         shellTask(Pause::setup, Pause.class);
         shellTask(Resume::setup, Resume.class);
         shellTask(IngestionFilter::setup, IngestionFilter.class);
         shellTask(DataMigrate::setup, DataMigrate.class);
+        shellTask(Rollup::setup, Rollup.class);
+        shellTask(Compact::setup, Compact.class);
         shellTask(ParseQuery::setup, ParseQuery.class);
         shellTask(AnalyticsReportFetchSeries::setup, AnalyticsReportFetchSeries.class);
         shellTask(AnalyticsDumpFetchSeries::setup, AnalyticsDumpFetchSeries.class);
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.shell.task;
+
+import com.spotify.heroic.async.AsyncObserver;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.OptionalLimit;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.dagger.CoreComponent;
+import com.spotify.heroic.filter.Filter;
+import com.spotify.heroic.grammar.QueryParser;
+import com.spotify.heroic.metadata.FindSeries;
+import com.spotify.heroic.metadata.FindSeriesStream;
+import com.spotify.heroic.metadata.MetadataManager;
+import com.spotify.heroic.metric.MetricBackendGroup;
+import com.spotify.heroic.metric.MetricManager;
+import com.spotify.heroic.shell.ShellIO;
+import com.spotify.heroic.shell.ShellTask;
+import com.spotify.heroic.shell.TaskName;
+import com.spotify.heroic.shell.TaskParameters;
+import com.spotify.heroic.shell.TaskUsage;
+import com.spotify.heroic.shell.Tasks;
+import com.spotify.heroic.time.Clock;
+import dagger.Component;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.StreamCollector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import lombok.Getter;
+import lombok.ToString;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+@TaskUsage("Compact stored data into the most compact format supported by the backends")
+@TaskName("compact")
+public class Compact implements ShellTask {
+    private final Clock clock;
+    private final MetricManager metrics;
+    private final MetadataManager metadata;
+    private final QueryParser parser;
+    private final AsyncFramework async;
+
+    @Inject
+    public Compact(
+        Clock clock, MetricManager metrics, MetadataManager metadata, QueryParser parser,
+        AsyncFramework async
+    ) {
+        this.clock = clock;
+        this.metrics = metrics;
+        this.metadata = metadata;
+        this.parser = parser;
+        this.async = async;
+    }
+
+    @Override
+    public TaskParameters params() {
+        return new Parameters();
+    }
+
+    @Override
+    public AsyncFuture<Void> run(final ShellIO io, final TaskParameters base) throws Exception {
+        final Parameters params = (Parameters) base;
+        final long now = clock.currentTimeMillis();
+
+        /* recent data is still being written, leave it alone by default */
+        final long end = params.end
+            .map(t -> Tasks.parseInstant(t, now))
+            .orElseGet(() -> now - TimeUnit.MILLISECONDS.convert(1, TimeUnit.DAYS));
+        final long start = params.start
+            .map(t -> Tasks.parseInstant(t, now))
+            .orElseGet(() -> end - TimeUnit.MILLISECONDS.convert(7, TimeUnit.DAYS));
+
+        final DateRange range = new DateRange(start, end);
+        final Filter filter = Tasks.setupFilter(parser, params);
+        final MetricBackendGroup group = metrics.useOptionalGroup(params.group);
+
+        final AtomicLong series = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong compacted = new AtomicLong();
+
+        final ResolvableFuture<Void> future = async.future();
+
+        metadata
+            .useDefaultGroup()
+            .findSeriesStream(new FindSeries.Request(filter, range, params.limit))
+            .observe(new AsyncObserver<FindSeriesStream>() {
+                @Override
+                public AsyncFuture<Void> observe(final FindSeriesStream value) {
+                    final List<Callable<AsyncFuture<Long>>> compactions = new ArrayList<>();
+
+                    for (final Series s : value.getSeries()) {
+                        compactions.add(() -> group.compact(s, range));
+                    }
+
+                    return async.eventuallyCollect(compactions, new StreamCollector<Long, Void>() {
+                        @Override
+                        public void resolved(final Long result) {
+                            series.incrementAndGet();
+                            compacted.addAndGet(result);
+                        }
+
+                        @Override
+                        public void failed(final Throwable cause) {
+                            failed.incrementAndGet();
+                            io.out().println("Compaction failed: " + cause);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            failed.incrementAndGet();
+                        }
+
+                        @Override
+                        public Void end(
+                            final int resolved, final int failed, final int cancelled
+                        ) {
+                            io.out().println(String.format("%d series, %d cells compacted",
+                                series.get(), compacted.get()));
+                            io.out().flush();
+                            return null;
+                        }
+                    }, params.parallelism);
+                }
+
+                @Override
+                public void cancel() {
+                    future.cancel();
+                }
+
+                @Override
+                public void fail(final Throwable cause) {
+                    future.fail(cause);
+                }
+
+                @Override
+                public void end() {
+                    io.out().println(
+                        String.format("Done: %d series, %d failed, %d cells compacted",
+                            series.get(), failed.get(), compacted.get()));
+                    future.resolve(null);
+                }
+            });
+
+        return future;
+    }
+
+    @ToString
+    private static class Parameters extends Tasks.QueryParamsBase {
+        @Option(name = "-g", aliases = {"--group"}, usage = "Backend group to compact",
+            metaVar = "<group>")
+        private Optional<String> group = Optional.empty();
+
+        @Option(name = "--start", usage = "Start date (default: seven days before end)",
+            metaVar = "<datetime>")
+        private Optional<String> start = Optional.empty();
+
+        @Option(name = "--end", usage = "End date (default: one day ago)", metaVar = "<datetime>")
+        private Optional<String> end = Optional.empty();
+
+        @Option(name = "--parallelism", usage = "Number of series to compact in parallel",
+            metaVar = "<number>")
+        private int parallelism = 20;
+
+        @Option(name = "--limit", usage = "Limit the number of series to compact")
+        @Getter
+        private OptionalLimit limit = OptionalLimit.empty();
+
+        @Argument
+        @Getter
+        private List<String> query = new ArrayList<>();
+    }
+
+    public static Compact setup(final CoreComponent core) {
+        return DaggerCompact_C.builder().coreComponent(core).build().task();
+    }
+
+    @Component(dependencies = CoreComponent.class)
+    interface C {
+        Compact task();
+    }
+}
@@ -49,20 +49,36 @@ import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.ResolvableFuture;
 import lombok.Data;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+/**
+ * Migrate data from one backend group to another.
+ * <p>
+ * The token range being migrated can be partitioned into a number of sub-ranges which are migrated
+ * by independent workers. Progress for each range is periodically written to a checkpoint file (if
+ * configured), allowing an interrupted migration to resume where it left off. Since writing the
+ * same data twice is idempotent, resuming is conservative and might re-migrate a few keys.
+ */
 @TaskUsage("Migrate data from one backend to another")
 @TaskName("data-migrate")
 public class DataMigrate implements ShellTask {
@@ -71,6 +87,9 @@ public class DataMigrate implements ShellTask {
     public static final long ALLOWED_ERRORS = 5;
     public static final long ALLOWED_FAILED_KEYS = 100;
 
+    public static final long CHECKPOINT_INTERVAL_MILLIS = 1000;
+    public static final double LATENCY_BACKOFF = 0.9D;
+
     private final QueryParser parser;
     private final MetricManager metric;
     private final AsyncFramework async;
@@ -107,22 +126,52 @@ public class DataMigrate implements ShellTask {
 
         final BackendKeyFilter keyFilter = Tasks.setupKeyFilter(params, mapper);
 
-        final ResolvableFuture<Void> future = async.future();
+        final List<Range> ranges = setupRanges(io, params);
+        final Checkpointer checkpointer = new Checkpointer(params.checkpoint, ranges);
+
+        final ThroughputController throughput = new ThroughputController(params.parallelism,
+            params.targetLatency.map(TimeUnit.MILLISECONDS::toNanos));
 
         /* all errors seen */
         final ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
 
-        final AsyncObservable<BackendKeySet> observable;
+        final Progress progress = new Progress(io);
+
+        final List<Range> pendingRanges = new ArrayList<>();
 
-        if (params.keysPaged) {
-            observable = from.streamKeysPaged(keyFilter, options.build(), params.keysPageSize);
-        } else {
-            observable = from.streamKeys(keyFilter, options.build());
+        for (final Range range : ranges) {
+            if (!range.isDone()) {
+                pendingRanges.add(range);
+            }
         }
 
-        observable.observe(new KeyObserver(io, params, filter, from, to, future, errors));
+        final List<AsyncFuture<Void>> workers = new ArrayList<>();
+
+        for (final Range range : pendingRanges) {
+            final ResolvableFuture<Void> future = async.future();
+
+            final BackendKeyFilter rangeFilter = range.apply(keyFilter);
+
+            final AsyncObservable<BackendKeySet> observable;
+
+            if (params.keysPaged) {
+                observable =
+                    from.streamKeysPaged(rangeFilter, options.build(), params.keysPageSize);
+            } else {
+                observable = from.streamKeys(rangeFilter, options.build());
+            }
+
+            observable.observe(
+                new KeyObserver(io, params, filter, from, to, future, errors, range, progress,
+                    checkpointer, throughput, pendingRanges.size()));
+
+            workers.add(future);
+        }
 
-        return future.directTransform(v -> {
+        final AsyncFuture<Void> all =
+            async.collectAndDiscard(workers).onFinished(checkpointer::write);
+
+        return all.directTransform(v -> {
             io.out().println();
 
             if (!errors.isEmpty()) {
@@ -139,6 +188,64 @@ public class DataMigrate implements ShellTask {
         });
     }
 
+    /**
+     * Setup the ranges to migrate, either by loading them from an existing checkpoint, or by
+     * partitioning the configured token range.
+     */
+    private List<Range> setupRanges(final ShellIO io, final Parameters params) throws IOException {
+        if (params.checkpoint.isPresent() && Files.exists(params.checkpoint.get())) {
+            final Checkpoint checkpoint =
+                mapper.readValue(params.checkpoint.get().toFile(), Checkpoint.class);
+
+            final List<Range> ranges = new ArrayList<>();
+
+            for (final Checkpoint.RangeState state : checkpoint.getRanges()) {
+                ranges.add(new Range(state.getStart(), state.getEnd(), state.getResume(),
+                    state.isDone()));
+            }
+
+            io.out().println("Resuming from checkpoint: " + params.checkpoint.get());
+            io.out().flush();
+            return ranges;
+        }
+
+        return partition(params.startToken(), params.endToken(), params.ranges);
+    }
+
+    /**
+     * Partition the given token range into the given number of ranges of equal size.
+     * <p>
+     * Absent bounds are unbounded, but are partitioned as if they were the smallest or largest
+     * possible token.
+     */
+    static List<Range> partition(
+        final Optional<Long> start, final Optional<Long> end, final int count
+    ) {
+        final List<Range> ranges = new ArrayList<>();
+
+        if (count <= 1) {
+            ranges.add(new Range(start, end, Optional.empty(), false));
+            return ranges;
+        }
+
+        final BigInteger first = BigInteger.valueOf(start.orElse(Long.MIN_VALUE));
+        final BigInteger last = BigInteger.valueOf(end.orElse(Long.MAX_VALUE));
+        final BigInteger span = last.subtract(first);
+        final BigInteger n = BigInteger.valueOf(count);
+
+        Optional<Long> previous = start;
+
+        for (int i = 1; i < count; i++) {
+            final long boundary =
+                first.add(span.multiply(BigInteger.valueOf(i)).divide(n)).longValueExact();
+            ranges.add(new Range(previous, Optional.of(boundary), Optional.empty(), false));
+            previous = Optional.of(boundary);
+        }
+
+        ranges.add(new Range(previous, end, Optional.empty(), false));
+        return ranges;
+    }
+
     @Data
     class KeyObserver implements AsyncObserver<BackendKeySet> {
         final ShellIO io;
@@ -148,6 +255,11 @@ public class DataMigrate implements ShellTask {
         final MetricBackend to;
         final ResolvableFuture<Void> future;
         final ConcurrentLinkedQueue<Throwable> errors;
+        final Range range;
+        final Progress progress;
+        final Checkpointer checkpointer;
+        final ThroughputController throughput;
+        final int workers;
 
         final Object lock = new Object();
 
@@ -156,35 +268,31 @@ public class DataMigrate implements ShellTask {
          */
         volatile boolean done = false;
 
+        /**
+         * set if streaming keys failed or was cancelled, in which case the range is not complete.
+         */
+        volatile boolean incomplete = false;
+
         int pending = 0;
         ResolvableFuture<Void> next = null;
 
         /* a queue of the next keys to migrate */
         final ConcurrentLinkedQueue<BackendKey> current = new ConcurrentLinkedQueue<>();
 
-        /* the total number of keys migrated */
-        final AtomicLong total = new AtomicLong();
-
-        /* the total number of failed keys */
-        final AtomicLong failedKeys = new AtomicLong();
-
-        /* the total number of keys */
-        final AtomicLong totalKeys = new AtomicLong();
-
         @Override
         public AsyncFuture<Void> observe(final BackendKeySet set) {
             if (next != null) {
                 return async.failed(new RuntimeException("next future is still set"));
             }
 
-            failedKeys.addAndGet(set.getFailedKeys());
-            totalKeys.addAndGet(set.getFailedKeys() + set.getKeys().size());
+            progress.failedKeys.addAndGet(set.getFailedKeys());
+            progress.totalKeys.addAndGet(set.getFailedKeys() + set.getKeys().size());
 
             if (errors.size() > ALLOWED_ERRORS) {
                 return async.failed(new RuntimeException("too many failed migrations"));
             }
 
-            if (failedKeys.get() > ALLOWED_FAILED_KEYS) {
+            if (progress.failedKeys.get() > ALLOWED_FAILED_KEYS) {
                 return async.failed(new RuntimeException("too many failed keys"));
             }
 
@@ -196,13 +304,19 @@ public class DataMigrate implements ShellTask {
                 return async.resolved();
             }
 
+            for (final BackendKey key : set.getKeys()) {
+                range.received(key);
+            }
+
             current.addAll(set.getKeys());
 
             synchronized (lock) {
                 next = async.future();
 
+                final int window = window();
+
                 while (true) {
-                    if (pending >= params.parallelism) {
+                    if (pending >= window) {
                         break;
                     }
 
@@ -216,7 +330,7 @@ public class DataMigrate implements ShellTask {
                     streamOne(k);
                 }
 
-                if (pending < params.parallelism) {
+                if (pending < window) {
                     return async.resolved();
                 }
 
@@ -224,27 +338,37 @@ public class DataMigrate implements ShellTask {
             }
         }
 
+        /**
+         * The number of requests this worker is currently permitted to have in flight.
+         */
+        int window() {
+            return Math.max(1, throughput.limit() / workers);
+        }
+
         void streamOne(final BackendKey key) {
             if (!filter.apply(key.getSeries())) {
-                endOne(key);
+                endOne(key, false);
                 return;
             }
 
             from
                 .streamRow(key)
-                .observe(new RowObserver(errors, to, future, key, () -> done, this::endOneRuntime));
+                .observe(new RowObserver(errors, to, future, key, throughput, () -> done,
+                    this::endOneRuntime));
         }
 
-        void endOneRuntime(final BackendKey key) {
+        void endOneRuntime(final BackendKey key, final boolean failed) {
             try {
-                endOne(key);
+                endOne(key, failed);
             } catch (final Exception e) {
                 throw new RuntimeException(e);
             }
         }
 
-        void endOne(final BackendKey key) {
-            streamDot(io, key, total.incrementAndGet());
+        void endOne(final BackendKey key, final boolean failed) {
+            range.completed(key, failed);
+            progress.streamDot(key);
+            checkpointer.maybeWrite();
 
             // opportunistically pick up the next available task without locking (if available).
             final BackendKey k = current.poll();
@@ -273,6 +397,7 @@ public class DataMigrate implements ShellTask {
                 io.out().println("Cancelled when reading keys");
             }
 
+            incomplete = true;
             end();
         }
 
@@ -284,6 +409,7 @@ public class DataMigrate implements ShellTask {
                 io.out().flush();
             }
 
+            incomplete = true;
             end();
         }
 
@@ -297,27 +423,11 @@ public class DataMigrate implements ShellTask {
 
         void checkFinished() {
             if (done && pending == 0) {
-                future.resolve(null);
-            }
-        }
-
-        void streamDot(final ShellIO io, final BackendKey key, final long n) {
-            if (n % LINES == 0) {
-                synchronized (io) {
-                    try {
-                        io.out().println(" failedKeys: " + failedKeys.get() + ", last: " +
-                            mapper.writeValueAsString(key));
-                    } catch (JsonProcessingException e) {
-                        throw new RuntimeException(e);
-                    }
-
-                    io.out().flush();
-                }
-            } else if (n % DOTS == 0) {
-                synchronized (io) {
-                    io.out().print(".");
-                    io.out().flush();
+                if (!incomplete) {
+                    range.finished();
                 }
+
+                future.resolve(null);
             }
         }
     }
@@ -328,8 +438,11 @@ public class DataMigrate implements ShellTask {
         final MetricBackend to;
         final ResolvableFuture<Void> future;
         final BackendKey key;
+        final ThroughputController throughput;
         final Supplier<Boolean> done;
-        final Consumer<BackendKey> end;
+        final BiConsumer<BackendKey, Boolean> end;
+
+        volatile boolean failed = false;
 
         @Override
         public AsyncFuture<Void> observe(MetricCollection value) {
@@ -337,28 +450,276 @@ public class DataMigrate implements ShellTask {
                 return async.cancelled();
             }
 
+            final long start = System.nanoTime();
+
             final AsyncFuture<Void> write = to
                 .write(new WriteMetric.Request(key.getSeries(), value))
                 .directTransform(v -> null);
 
+            write.onFinished(() -> throughput.record(System.nanoTime() - start));
+
             future.bind(write);
             return write;
         }
 
         @Override
         public void cancel() {
+            failed = true;
             end();
         }
 
         @Override
         public void fail(Throwable cause) {
             errors.add(cause);
+            failed = true;
             end();
         }
 
         @Override
         public void end() {
-            end.accept(key);
+            end.accept(key, failed);
+        }
+    }
+
+    /**
+     * Progress reporting, shared by all workers.
+     */
+    @RequiredArgsConstructor
+    class Progress {
+        final ShellIO io;
+
+        /* the total number of keys migrated */
+        final AtomicLong total = new AtomicLong();
+
+        /* the total number of failed keys */
+        final AtomicLong failedKeys = new AtomicLong();
+
+        /* the total number of keys */
+        final AtomicLong totalKeys = new AtomicLong();
+
+        void streamDot(final BackendKey key) {
+            final long n = total.incrementAndGet();
+
+            if (n % LINES == 0) {
+                synchronized (io) {
+                    try {
+                        io.out().println(" failedKeys: " + failedKeys.get() + ", last: " +
+                            mapper.writeValueAsString(key));
+                    } catch (JsonProcessingException e) {
+                        throw new RuntimeException(e);
+                    }
+
+                    io.out().flush();
+                }
+            } else if (n % DOTS == 0) {
+                synchronized (io) {
+                    io.out().print(".");
+                    io.out().flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Periodically writes the state of all ranges to the checkpoint file, if configured.
+     */
+    @RequiredArgsConstructor
+    class Checkpointer {
+        final Optional<Path> path;
+        final List<Range> ranges;
+
+        long lastWrite = System.currentTimeMillis();
+
+        synchronized void maybeWrite() {
+            final long now = System.currentTimeMillis();
+
+            if (now - lastWrite < CHECKPOINT_INTERVAL_MILLIS) {
+                return;
+            }
+
+            lastWrite = now;
+            write();
+        }
+
+        synchronized void write() {
+            if (!path.isPresent()) {
+                return;
+            }
+
+            final List<Checkpoint.RangeState> states = new ArrayList<>();
+
+            for (final Range range : ranges) {
+                states.add(range.state());
+            }
+
+            final Path target = path.get();
+            final Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+
+            try {
+                mapper.writeValue(temporary.toFile(), new Checkpoint(states));
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } catch (final IOException e) {
+                throw new RuntimeException("Failed to write checkpoint: " + target, e);
+            }
+        }
+    }
+
+    /**
+     * Controls the number of write requests in flight.
+     * <p>
+     * Without a target latency the limit is static. With a target latency, the limit is
+     * increased additively while writes are faster than the target, and decreased
+     * multiplicatively (at most once per target latency interval) when they are slower.
+     */
+    static class ThroughputController {
+        private final int max;
+        private final Optional<Long> targetNanos;
+
+        private double limit;
+        private long lastDecrease = 0;
+
+        ThroughputController(final int max, final Optional<Long> targetNanos) {
+            this.max = Math.max(1, max);
+            this.targetNanos = targetNanos;
+            this.limit = this.max;
+        }
+
+        synchronized int limit() {
+            return (int) limit;
+        }
+
+        synchronized void record(final long latencyNanos) {
+            if (!targetNanos.isPresent()) {
+                return;
+            }
+
+            final long target = targetNanos.get();
+
+            if (latencyNanos <= target) {
+                limit = Math.min(max, limit + 1.0D / limit);
+                return;
+            }
+
+            final long now = System.nanoTime();
+
+            if (now - lastDecrease < target) {
+                return;
+            }
+
+            lastDecrease = now;
+            limit = Math.max(1.0D, limit * LATENCY_BACKOFF);
+        }
+    }
+
+    /**
+     * A range of tokens being migrated, and its progress.
+     * <p>
+     * Keys are streamed in token order, so every key with a token smaller than the smallest token
+     * which is still outstanding has been migrated.
+     */
+    static class Range {
+        @Getter
+        private final Optional<Long> start;
+        @Getter
+        private final Optional<Long> end;
+
+        private Optional<Long> resume;
+        private boolean done;
+
+        /* tokens of keys which have been received but not completed, with their number of keys */
+        private final TreeMap<Long, Integer> outstanding = new TreeMap<>();
+        private Optional<Long> lastCompleted = Optional.empty();
+        private Optional<Long> firstFailed = Optional.empty();
+
+        Range(
+            final Optional<Long> start, final Optional<Long> end, final Optional<Long> resume,
+            final boolean done
+        ) {
+            this.start = start;
+            this.end = end;
+            this.resume = resume;
+            this.done = done;
+        }
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Limit the given filter to this range.
+         */
+        synchronized BackendKeyFilter apply(final BackendKeyFilter filter) {
+            BackendKeyFilter result = filter;
+
+            final Optional<Long> first = resume.isPresent() ? resume : start;
+
+            if (first.isPresent()) {
+                result = result.withStart(BackendKeyFilter.gteToken(first.get()));
+            }
+
+            if (end.isPresent()) {
+                result = result.withEnd(BackendKeyFilter.ltToken(end.get()));
+            }
+
+            return result;
+        }
+
+        synchronized void received(final BackendKey key) {
+            key.getToken().ifPresent(token -> outstanding.merge(token, 1, Integer::sum));
+        }
+
+        synchronized void completed(final BackendKey key, final boolean failed) {
+            if (!key.getToken().isPresent()) {
+                return;
+            }
+
+            final long token = key.getToken().get();
+
+            outstanding.computeIfPresent(token, (k, v) -> v > 1 ? v - 1 : null);
+
+            if (failed && (!firstFailed.isPresent() || token < firstFailed.get())) {
+                firstFailed = Optional.of(token);
+            }
+
+            if (!lastCompleted.isPresent() || token > lastCompleted.get()) {
+                lastCompleted = Optional.of(token);
+            }
+        }
+
+        synchronized void finished() {
+            if (!firstFailed.isPresent()) {
+                done = true;
+            }
+        }
+
+        synchronized Checkpoint.RangeState state() {
+            Optional<Long> watermark =
+                outstanding.isEmpty() ? lastCompleted : Optional.of(outstanding.firstKey());
+
+            if (firstFailed.isPresent() &&
+                (!watermark.isPresent() || firstFailed.get() < watermark.get())) {
+                watermark = firstFailed;
+            }
+
+            if (watermark.isPresent()) {
+                resume = watermark;
+            }
+
+            return new Checkpoint.RangeState(start, end, resume, done);
+        }
+    }
+
+    @Data
+    public static class Checkpoint {
+        private final List<RangeState> ranges;
+
+        @Data
+        public static class RangeState {
+            private final Optional<Long> start;
+            private final Optional<Long> end;
+            private final Optional<Long> resume;
+            private final boolean done;
         }
     }
 
@@ -392,13 +753,36 @@ public class DataMigrate implements ShellTask {
         private boolean tracing = false;
 
         @Option(name = "--parallelism",
-            usage = "The number of migration requests to send in parallel (default: 100)",
-            metaVar = "<number>")
+            usage = "The max number of migration requests to send in parallel, shared by all " +
+                "ranges (default: 100)", metaVar = "<number>")
         private int parallelism = Runtime.getRuntime().availableProcessors() * 4;
 
+        @Option(name = "--ranges",
+            usage = "Partition the token range into the given number of ranges, which are " +
+                "migrated in parallel (default: 1)", metaVar = "<number>")
+        private int ranges = 1;
+
+        @Option(name = "--checkpoint",
+            usage = "File to store progress in, an existing checkpoint will be resumed",
+            metaVar = "<file>")
+        private Optional<Path> checkpoint = Optional.empty();
+
+        @Option(name = "--target-latency",
+            usage = "Adapt the number of parallel requests to keep write latency below the " +
+                "given number of milliseconds", metaVar = "<ms>")
+        private Optional<Long> targetLatency = Optional.empty();
+
         @Argument
         @Getter
         private List<String> query = new ArrayList<String>();
+
+        Optional<Long> startToken() {
+            return Optional.ofNullable(startToken);
+        }
+
+        Optional<Long> endToken() {
+            return Optional.ofNullable(endToken);
+        }
     }
 
     public static DataMigrate setup(final CoreComponent core) {
@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.shell.task;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotify.heroic.QueryManager;
+import com.spotify.heroic.common.OptionalLimit;
+import com.spotify.heroic.dagger.CoreComponent;
+import com.spotify.heroic.metric.QueryMetrics;
+import com.spotify.heroic.querylogging.QueryContext;
+import com.spotify.heroic.shell.AbstractShellTaskParams;
+import com.spotify.heroic.shell.ShellIO;
+import com.spotify.heroic.shell.ShellTask;
+import com.spotify.heroic.shell.TaskName;
+import com.spotify.heroic.shell.TaskParameters;
+import com.spotify.heroic.shell.TaskUsage;
+import dagger.Component;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import javax.inject.Inject;
+import javax.inject.Named;
+import lombok.Data;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Replays queries recorded by the query log against a group.
+ * <p>
+ * Queries are issued with their original relative timing (optionally sped up), and their latency
+ * and error rate is compared with what was originally recorded for the same query id.
+ */
+@TaskUsage("Replay queries from a query log and compare latencies and errors")
+@TaskName("query-replay")
+@Slf4j
+public class QueryReplay implements ShellTask {
+    public static final String QUERY = "query";
+    public static final String HTTP_QUERY_JSON = "http-query-json";
+    public static final String HTTP_QUERY_TEXT = "http-query-text";
+    public static final String FINAL_RESPONSE = "final-response";
+
+    private final QueryManager query;
+    private final ObjectMapper mapper;
+    private final AsyncFramework async;
+
+    @Inject
+    public QueryReplay(
+        QueryManager query, @Named("application/json") ObjectMapper mapper, AsyncFramework async
+    ) {
+        this.query = query;
+        this.mapper = mapper;
+        this.async = async;
+    }
+
+    @Override
+    public TaskParameters params() {
+        return new Parameters();
+    }
+
+    @Override
+    public AsyncFuture<Void> run(final ShellIO io, final TaskParameters base) throws Exception {
+        final Parameters params = (Parameters) base;
+
+        if (params.concurrency <= 0) {
+            throw new IllegalArgumentException("--concurrency must be positive");
+        }
+
+        if (params.speed < 0D) {
+            throw new IllegalArgumentException("--speed must not be negative");
+        }
+
+        final List<LoggedQuery> queries;
+
+        try (final InputStream input = open(io, params.file)) {
+            queries = readLog(input, params.type, params.limit);
+        }
+
+        if (queries.isEmpty()) {
+            io.out().println("No " + params.type + " records found in " + params.file);
+            return async.resolved();
+        }
+
+        final QueryManager.Group group = query.useOptionalGroup(params.group);
+        final Semaphore permits = new Semaphore(params.concurrency);
+
+        final List<AsyncFuture<Replayed>> replays = new ArrayList<>();
+
+        final long first = queries.get(0).getTimestamp().toEpochMilli();
+        final long start = System.nanoTime();
+
+        for (final LoggedQuery q : queries) {
+            if (params.speed > 0D) {
+                final long offset = (long) ((q.getTimestamp().toEpochMilli() - first) /
+                    params.speed * TimeUnit.MILLISECONDS.toNanos(1));
+                final long delay = start + offset - System.nanoTime();
+
+                if (delay > 0) {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                }
+            }
+
+            permits.acquire();
+
+            final long issued = System.nanoTime();
+
+            final AsyncFuture<Replayed> replay;
+
+            try {
+                replay = group
+                    .query(q.getQuery(), QueryContext.empty())
+                    .directTransform(
+                        r -> new Replayed(q, System.nanoTime() - issued, !r.getErrors().isEmpty()))
+                    .catchFailed(e -> {
+                        log.debug("Replayed query {} failed", q.getQueryId(), e);
+                        return new Replayed(q, System.nanoTime() - issued, true);
+                    });
+            } catch (final Exception e) {
+                permits.release();
+                throw e;
+            }
+
+            replays.add(replay.onFinished(permits::release));
+        }
+
+        return async.collect(replays).directTransform(results -> {
+            if (params.output.isPresent()) {
+                writeOutput(io, params.output.get(), results);
+            }
+
+            summarize(io.out(), results);
+            return null;
+        });
+    }
+
+    /**
+     * Read all replayable records of the given type, together with the original outcome of each
+     * query if it was recorded.
+     *
+     * @return queries, sorted by the time they were originally issued
+     */
+    List<LoggedQuery> readLog(final InputStream input, final String type, final OptionalLimit limit)
+        throws IOException {
+        final Map<String, LoggedQuery> queries = new LinkedHashMap<>();
+        final Map<String, Instant> responded = new HashMap<>();
+        final Map<String, Boolean> failed = new HashMap<>();
+
+        int skipped = 0;
+
+        final BufferedReader reader =
+            new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            /* records might be embedded in a log line with a prefix */
+            final int index = line.indexOf('{');
+
+            if (index < 0) {
+                continue;
+            }
+
+            final JsonNode record;
+
+            try {
+                record = mapper.readTree(line.substring(index));
+            } catch (final IOException e) {
+                skipped++;
+                continue;
+            }
+
+            final JsonNode message = record.path("@message");
+            final String recordType = message.path("type").asText();
+            final String queryId = message.path("queryId").asText();
+
+            if (queryId.isEmpty() || !record.hasNonNull("@timestamp")) {
+                continue;
+            }
+
+            final Instant timestamp = Instant.parse(record.get("@timestamp").asText());
+
+            if (FINAL_RESPONSE.equals(recordType)) {
+                responded.put(queryId, timestamp);
+                failed.put(queryId, message.path("data").path("errors").size() > 0);
+                continue;
+            }
+
+            if (!type.equals(recordType) || queries.containsKey(queryId)) {
+                continue;
+            }
+
+            if (limit.isGreaterOrEqual(queries.size())) {
+                continue;
+            }
+
+            try {
+                queries.put(queryId, new LoggedQuery(queryId, timestamp,
+                    toQuery(recordType, message.path("data")), Optional.empty(),
+                    Optional.empty()));
+            } catch (final Exception e) {
+                log.debug("Failed to convert record for query {}", queryId, e);
+                skipped++;
+            }
+        }
+
+        if (skipped > 0) {
+            log.warn("Skipped {} record(s) which could not be parsed", skipped);
+        }
+
+        return queries
+            .values()
+            .stream()
+            .map(q -> new LoggedQuery(q.getQueryId(), q.getTimestamp(), q.getQuery(),
+                Optional.ofNullable(responded.get(q.getQueryId())).map(
+                    t -> TimeUnit.MILLISECONDS.toNanos(
+                        t.toEpochMilli() - q.getTimestamp().toEpochMilli())),
+                Optional.ofNullable(failed.get(q.getQueryId()))))
+            .sorted(Comparator.comparing(LoggedQuery::getTimestamp))
+            .collect(Collectors.toList());
+    }
+
+    private com.spotify.heroic.Query toQuery(final String type, final JsonNode data)
+        throws IOException {
+        switch (type) {
+            case QUERY:
+                return mapper.treeToValue(data, com.spotify.heroic.Query.class);
+            case HTTP_QUERY_JSON:
+                return mapper
+                    .treeToValue(data, QueryMetrics.class)
+                    .toQueryBuilder(query::newQueryFromString)
+                    .build();
+            case HTTP_QUERY_TEXT:
+                return query.newQueryFromString(data.asText()).build();
+            default:
+                throw new IllegalArgumentException("Unsupported record type: " + type);
+        }
+    }
+
+    private void writeOutput(final ShellIO io, final Path path, final List<Replayed> results)
+        throws IOException {
+        try (final PrintWriter out = new PrintWriter(
+            new OutputStreamWriter(io.newOutputStream(path), StandardCharsets.UTF_8))) {
+            for (final Replayed r : results) {
+                final LoggedQuery q = r.getQuery();
+
+                out.println(mapper.writeValueAsString(
+                    new ReplayOutput(q.getQueryId(), q.getTimestamp().toString(),
+                        q.getOriginalLatency().map(QueryReplay::millis), millis(r.getLatency()),
+                        r.delta().map(QueryReplay::millis), q.getOriginalError(),
+                        r.isError())));
+            }
+        }
+    }
+
+    private void summarize(final PrintWriter out, final List<Replayed> results) {
+        final long errors = results.stream().filter(Replayed::isError).count();
+
+        final List<Boolean> originalErrors = results
+            .stream()
+            .map(r -> r.getQuery().getOriginalError())
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList());
+
+        final long originalFailed = originalErrors.stream().filter(e -> e).count();
+
+        out.println(String.format("Replayed %d queries", results.size()));
+        out.println(String.format("  errors (replay): %d (%.2f%%)", errors,
+            percent(errors, results.size())));
+
+        if (!originalErrors.isEmpty()) {
+            out.println(String.format("  errors (original): %d of %d recorded (%.2f%%)",
+                originalFailed, originalErrors.size(),
+                percent(originalFailed, originalErrors.size())));
+        }
+
+        printPercentiles(out, "latency (replay)",
+            results.stream().map(Replayed::getLatency).collect(Collectors.toList()));
+
+        printPercentiles(out, "latency (original)", results
+            .stream()
+            .map(r -> r.getQuery().getOriginalLatency())
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList()));
+
+        printPercentiles(out, "delta (replay - original)", results
+            .stream()
+            .map(Replayed::delta)
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList()));
+
+        out.flush();
+    }
+
+    private void printPercentiles(
+        final PrintWriter out, final String what, final List<Long> nanos
+    ) {
+        if (nanos.isEmpty()) {
+            return;
+        }
+
+        final List<Long> sorted = new ArrayList<>(nanos);
+        Collections.sort(sorted);
+
+        out.println(String.format(
+            "  %s (n=%d): p50=%.2fms p90=%.2fms p99=%.2fms min=%.2fms max=%.2fms", what,
+            sorted.size(), millis(percentile(sorted, 0.5D)), millis(percentile(sorted, 0.9D)),
+            millis(percentile(sorted, 0.99D)), millis(sorted.get(0)),
+            millis(sorted.get(sorted.size() - 1))));
+    }
+
+    static long percentile(final List<Long> sorted, final double q) {
+        final int index = (int) Math.ceil(q * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+
+    private static double percent(final long part, final long total) {
+        return total == 0 ? 0D : 100D * part / total;
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / 1e6D;
+    }
+
+    private InputStream open(final ShellIO io, final Path file) throws IOException {
+        final InputStream input = io.newInputStream(file);
+
+        // unpack gzip.
+        if (!file.getFileName().toString().endsWith(".gz")) {
+            return input;
+        }
+
+        return new GZIPInputStream(input);
+    }
+
+    @Data
+    static class LoggedQuery {
+        private final String queryId;
+        private final Instant timestamp;
+        private final com.spotify.heroic.Query query;
+        /* latency from the replayed record until the final response was logged, if it was */
+        private final Optional<Long> originalLatency;
+        private final Optional<Boolean> originalError;
+    }
+
+    @Data
+    static class Replayed {
+        private final LoggedQuery query;
+        private final long latency;
+        private final boolean error;
+
+        Optional<Long> delta() {
+            return query.getOriginalLatency().map(original -> latency - original);
+        }
+    }
+
+    @Data
+    public static class ReplayOutput {
+        private final String queryId;
+        private final String timestamp;
+        private final Optional<Double> originalMs;
+        private final double replayMs;
+        private final Optional<Double> deltaMs;
+        private final Optional<Boolean> originalError;
+        private final boolean error;
+    }
+
+    @ToString
+    private static class Parameters extends AbstractShellTaskParams {
+        @Option(name = "-g", aliases = {"--group"}, usage = "Backend group to use",
+            metaVar = "<group>")
+        private Optional<String> group = Optional.empty();
+
+        @Option(name = "-f", aliases = {"--file"}, usage = "Query log to replay (may be gzipped)",
+            metaVar = "<file>")
+        private Path file = Paths.get("query.log");
+
+        @Option(name = "-t", aliases = {"--type"},
+            usage = "Type of record to replay: query, http-query-json or http-query-text " +
+                "(default: query)", metaVar = "<type>")
+        private String type = QUERY;
+
+        @Option(name = "--speed",
+            usage = "Speed multiplier for the original timing, 0 replays as fast as the " +
+                "concurrency allows (default: 1)", metaVar = "<multiplier>")
+        private double speed = 1D;
+
+        @Option(name = "-c", aliases = {"--concurrency"},
+            usage = "Maximum number of queries in flight (default: 10)", metaVar = "<number>")
+        private int concurrency = 10;
+
+        @Option(name = "-l", aliases = {"--limit"}, usage = "Limit the number of queries replayed",
+            metaVar = "<int>")
+        private OptionalLimit limit = OptionalLimit.empty();
+
+        @Option(name = "-o", aliases = {"--output"},
+            usage = "Write per-query results as JSON lines to this file", metaVar = "<file>")
+        private Optional<Path> output = Optional.empty();
+    }
+
+    public static QueryReplay setup(final CoreComponent core) {
+        return DaggerQueryReplay_C.builder().coreComponent(core).build().task();
+    }
+
+    @Component(dependencies = CoreComponent.class)
+    interface C {
+        QueryReplay task();
+    }
+}
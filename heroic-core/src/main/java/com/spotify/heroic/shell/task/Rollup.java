@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.shell.task;
+
+import com.spotify.heroic.QueryOptions;
+import com.spotify.heroic.async.AsyncObserver;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Duration;
+import com.spotify.heroic.common.OptionalLimit;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.dagger.CoreComponent;
+import com.spotify.heroic.filter.Filter;
+import com.spotify.heroic.grammar.QueryParser;
+import com.spotify.heroic.metadata.FindSeries;
+import com.spotify.heroic.metadata.FindSeriesStream;
+import com.spotify.heroic.metadata.MetadataManager;
+import com.spotify.heroic.metric.FetchData;
+import com.spotify.heroic.metric.FetchQuotaWatcher;
+import com.spotify.heroic.metric.Metric;
+import com.spotify.heroic.metric.MetricBackendGroup;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.MetricManager;
+import com.spotify.heroic.metric.MetricType;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.Rollups;
+import com.spotify.heroic.metric.Spread;
+import com.spotify.heroic.metric.WriteMetric;
+import com.spotify.heroic.shell.ShellIO;
+import com.spotify.heroic.shell.ShellTask;
+import com.spotify.heroic.shell.TaskName;
+import com.spotify.heroic.shell.TaskParameters;
+import com.spotify.heroic.shell.TaskUsage;
+import com.spotify.heroic.shell.Tasks;
+import com.spotify.heroic.time.Clock;
+import dagger.Component;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.StreamCollector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import lombok.Getter;
+import lombok.ToString;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+@TaskUsage("Compute rollups for a range of data, and write them to a rollup group")
+@TaskName("rollup")
+public class Rollup implements ShellTask {
+    private final Clock clock;
+    private final MetricManager metrics;
+    private final MetadataManager metadata;
+    private final QueryParser parser;
+    private final AsyncFramework async;
+
+    @Inject
+    public Rollup(
+        Clock clock, MetricManager metrics, MetadataManager metadata, QueryParser parser,
+        AsyncFramework async
+    ) {
+        this.clock = clock;
+        this.metrics = metrics;
+        this.metadata = metadata;
+        this.parser = parser;
+        this.async = async;
+    }
+
+    @Override
+    public TaskParameters params() {
+        return new Parameters();
+    }
+
+    @Override
+    public AsyncFuture<Void> run(final ShellIO io, final TaskParameters base) throws Exception {
+        final Parameters params = (Parameters) base;
+        final long now = clock.currentTimeMillis();
+
+        final long resolution = Duration.parseDuration(params.resolution).toMilliseconds();
+
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("--resolution must be positive");
+        }
+
+        final long start = params.start
+            .map(t -> Tasks.parseInstant(t, now))
+            .orElseGet(() -> now - TimeUnit.MILLISECONDS.convert(1, TimeUnit.DAYS));
+        final long end = params.end.map(t -> Tasks.parseInstant(t, now)).orElse(now);
+
+        /* only complete periods are rolled up, start inclusive and end exclusive */
+        final DateRange range = new DateRange(Math.floorDiv(start, resolution) * resolution,
+            Math.floorDiv(end, resolution) * resolution);
+
+        if (range.isEmpty()) {
+            throw new IllegalArgumentException("Range does not contain a complete period");
+        }
+
+        final Filter filter = Tasks.setupFilter(parser, params);
+
+        final MetricBackendGroup source = metrics.useOptionalGroup(params.group);
+        final MetricBackendGroup target = metrics.useGroup(params.target);
+        final QueryOptions options = QueryOptions.builder().build();
+
+        final AtomicLong series = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong rollups = new AtomicLong();
+
+        final ResolvableFuture<Void> future = async.future();
+
+        metadata
+            .useDefaultGroup()
+            .findSeriesStream(new FindSeries.Request(filter, range, params.limit))
+            .observe(new AsyncObserver<FindSeriesStream>() {
+                @Override
+                public AsyncFuture<Void> observe(final FindSeriesStream value) {
+                    final List<Callable<AsyncFuture<Integer>>> writes = new ArrayList<>();
+
+                    for (final Series s : value.getSeries()) {
+                        writes.add(() -> rollup(source, target, s, range, resolution, options));
+                    }
+
+                    return async.eventuallyCollect(writes, new StreamCollector<Integer, Void>() {
+                        @Override
+                        public void resolved(final Integer result) {
+                            series.incrementAndGet();
+                            rollups.addAndGet(result);
+                        }
+
+                        @Override
+                        public void failed(final Throwable cause) {
+                            failed.incrementAndGet();
+                            io.out().println("Rollup failed: " + cause);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            failed.incrementAndGet();
+                        }
+
+                        @Override
+                        public Void end(
+                            final int resolved, final int failed, final int cancelled
+                        ) {
+                            io.out().println(String.format("%d series, %d rollups written",
+                                series.get(), rollups.get()));
+                            io.out().flush();
+                            return null;
+                        }
+                    }, params.parallelism);
+                }
+
+                @Override
+                public void cancel() {
+                    future.cancel();
+                }
+
+                @Override
+                public void fail(final Throwable cause) {
+                    future.fail(cause);
+                }
+
+                @Override
+                public void end() {
+                    io.out().println(
+                        String.format("Done: %d series, %d failed, %d rollups written",
+                            series.get(), failed.get(), rollups.get()));
+                    future.resolve(null);
+                }
+            });
+
+        return future;
+    }
+
+    /**
+     * Roll up a single series, and advance its watermark once every rollup has been written.
+     */
+    private AsyncFuture<Integer> rollup(
+        final MetricBackendGroup source, final MetricBackendGroup target, final Series series,
+        final DateRange range, final long resolution, final QueryOptions options
+    ) {
+        /* fetches are start exclusive and end inclusive */
+        final DateRange fetchRange =
+            new DateRange(Math.max(range.start() - 1, 0), range.end() - 1);
+
+        return source
+            .fetch(new FetchData.Request(MetricType.POINT, series, fetchRange, options),
+                FetchQuotaWatcher.NO_QUOTA)
+            .lazyTransform(fetch -> {
+                final List<Point> points = new ArrayList<>();
+
+                for (final MetricCollection g : fetch.getGroups()) {
+                    points.addAll(g.getDataAs(Point.class));
+                }
+
+                points.sort(Metric.comparator());
+
+                final List<Spread> spreads = Rollups.rollup(points, resolution);
+
+                final AsyncFuture<Void> written;
+
+                if (spreads.isEmpty()) {
+                    written = async.resolved();
+                } else {
+                    written = Rollups.write(async, target, series, spreads).directTransform(
+                        this::checkErrors);
+                }
+
+                return written
+                    .lazyTransform(ignore -> Rollups.writeWatermark(target, series, range))
+                    .directTransform(this::checkErrors)
+                    .directTransform(ignore -> spreads.size());
+            });
+    }
+
+    private Void checkErrors(final WriteMetric write) {
+        if (!write.getErrors().isEmpty()) {
+            throw new RuntimeException("Failed to write rollups: " + write.getErrors());
+        }
+
+        return null;
+    }
+
+    @ToString
+    private static class Parameters extends Tasks.QueryParamsBase {
+        @Option(name = "-g", aliases = {"--group"}, usage = "Backend group to read data from",
+            metaVar = "<group>")
+        private Optional<String> group = Optional.empty();
+
+        @Option(name = "-t", aliases = {"--target"}, required = true,
+            usage = "Backend group to write rollups to", metaVar = "<group>")
+        private String target;
+
+        @Option(name = "-r", aliases = {"--resolution"}, required = true,
+            usage = "Resolution of the rollups (e.g. 1m, 1h)", metaVar = "<duration>")
+        private String resolution;
+
+        @Option(name = "--start", usage = "Start date (default: one day ago)",
+            metaVar = "<datetime>")
+        private Optional<String> start = Optional.empty();
+
+        @Option(name = "--end", usage = "End date (default: now)", metaVar = "<datetime>")
+        private Optional<String> end = Optional.empty();
+
+        @Option(name = "--parallelism", usage = "Number of series to roll up in parallel",
+            metaVar = "<number>")
+        private int parallelism = 20;
+
+        @Option(name = "--limit", usage = "Limit the number of series to roll up")
+        @Getter
+        private OptionalLimit limit = OptionalLimit.empty();
+
+        @Argument
+        @Getter
+        private List<String> query = new ArrayList<>();
+    }
+
+    public static Rollup setup(final CoreComponent core) {
+        return DaggerRollup_C.builder().coreComponent(core).build().task();
+    }
+
+    @Component(dependencies = CoreComponent.class)
+    interface C {
+        Rollup task();
+    }
+}
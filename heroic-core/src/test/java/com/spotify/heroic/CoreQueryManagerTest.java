@@ -5,6 +5,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.spotify.heroic.aggregation.AggregationFactory;
 import com.spotify.heroic.cache.QueryCache;
 import com.spotify.heroic.cluster.ClusterManager;
@@ -54,7 +55,7 @@ public class CoreQueryManagerTest {
 
         manager = new CoreQueryManager(Features.empty(), async, Clock.system(), cluster, parser,
             queryCache, aggregations, OptionalLimit.empty(), smallQueryThreshold, queryReporter,
-            Optional.empty(), queryLoggerFactory);
+            Optional.empty(), queryLoggerFactory, MoreExecutors.newDirectExecutorService());
     }
 
     @Test
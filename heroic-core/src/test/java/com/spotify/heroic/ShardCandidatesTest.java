@@ -0,0 +1,117 @@
+package com.spotify.heroic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.filter.AndFilter;
+import com.spotify.heroic.filter.Filter;
+import com.spotify.heroic.filter.MatchKeyFilter;
+import com.spotify.heroic.filter.MatchTagFilter;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.QueryResult;
+import com.spotify.heroic.metric.QueryResultPart;
+import com.spotify.heroic.metric.QueryTrace;
+import com.spotify.heroic.metric.ResultLimits;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.Test;
+
+public class ShardCandidatesTest {
+    private final Map<String, String> a = ImmutableMap.of("host", "a");
+    private final Map<String, String> b = ImmutableMap.of("host", "b");
+    private final Map<String, String> c = ImmutableMap.of("host", "c");
+
+    @Test
+    public void testShardLocalGroups() {
+        final ShardedResultGroup first = group("1", a, 1.0);
+        final ShardedResultGroup second = group("2", b, 2.0);
+
+        final ShardCandidates candidates =
+            ShardCandidates.of(ImmutableList.of(part(first), part(second, placeholder("2", c))));
+
+        assertEquals(ImmutableSet.of(), candidates.getSpanning());
+        assertEquals(ImmutableList.of(first), candidates.getParts().get(0).getGroups());
+        assertEquals(ImmutableList.of(second), candidates.getParts().get(1).getGroups());
+        assertEquals(ImmutableList.of(ImmutableList.of(second.getMetrics())),
+            candidates.getTruncated());
+    }
+
+    @Test
+    public void testSpanningGroupsAreRefined() {
+        final ShardedResultGroup first = group("1", a, 3.0);
+        final ShardedResultGroup second = group("2", c, 2.0);
+
+        /* the second shard discarded its part of group a */
+        final ShardCandidates candidates = ShardCandidates.of(ImmutableList.of(
+            part(first, placeholder("1", b)), part(second, placeholder("2", a))));
+
+        assertEquals(ImmutableSet.of(a), candidates.getSpanning());
+        assertEquals(ImmutableList.of(), candidates.getParts().get(0).getGroups());
+        assertEquals(ImmutableList.of(second), candidates.getParts().get(1).getGroups());
+
+        final Filter filter = new MatchKeyFilter("cpu");
+
+        assertEquals(
+            new AndFilter(ImmutableList.of(filter, new MatchTagFilter("host", "a"))).optimize(),
+            candidates.refinement(filter));
+
+        final ShardedResultGroup refined = group("", a, 5.0);
+
+        final List<QueryResultPart> parts = candidates.withRefined(
+            new QueryResult(new DateRange(0L, 1000L), ImmutableList.of(refined, group("", b, 9.0)),
+                ImmutableList.of(), QueryTrace.PASSIVE, ResultLimits.of(), 0L, Optional.empty()));
+
+        assertEquals(3, parts.size());
+        assertEquals(ImmutableList.of(refined), parts.get(2).getGroups());
+
+        final List<MetricCollection> seen = new ArrayList<>();
+
+        assertTrue(candidates.covers((exact, truncated) -> {
+            seen.addAll(exact);
+            assertEquals(ImmutableList.of(ImmutableList.of(first.getMetrics()),
+                ImmutableList.of(second.getMetrics())), truncated);
+            return true;
+        }, parts));
+
+        assertEquals(ImmutableList.of(second.getMetrics(), refined.getMetrics()), seen);
+        assertFalse(candidates.covers((exact, truncated) -> false, parts));
+    }
+
+    @Test
+    public void testRefineEverythingForEmptyKey() {
+        final ShardCandidates candidates = ShardCandidates.of(ImmutableList.of(
+            part(group("1", ImmutableMap.of(), 1.0)), part(group("2", ImmutableMap.of(), 2.0))));
+
+        final Filter filter = new MatchKeyFilter("cpu");
+        assertEquals(filter, candidates.refinement(filter));
+    }
+
+    private QueryResultPart part(final ShardedResultGroup... groups) {
+        return new QueryResultPart(ImmutableList.copyOf(groups), ImmutableList.of(),
+            QueryTrace.PASSIVE, ResultLimits.of(), 0L);
+    }
+
+    private ShardedResultGroup group(
+        final String shard, final Map<String, String> key, final double value
+    ) {
+        return new ShardedResultGroup(ImmutableMap.of("shard", shard), key,
+            ImmutableSet.of(Series.of("cpu", key)),
+            MetricCollection.points(ImmutableList.of(new Point(0L, value), new Point(10L, value))),
+            10L);
+    }
+
+    private ShardedResultGroup placeholder(final String shard, final Map<String, String> key) {
+        return new ShardedResultGroup(ImmutableMap.of("shard", shard), key, ImmutableSet.of(),
+            MetricCollection.empty(), 10L);
+    }
+}
@@ -0,0 +1,143 @@
+package com.spotify.heroic.cache.memcached;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.ResultLimit;
+import com.spotify.heroic.metric.ResultLimits;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import com.spotify.heroic.metric.Spread;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import net.jpountz.lz4.LZ4Factory;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachedResultSerializerTest {
+    private CachedResultSerializer serializer;
+
+    @Before
+    public void setup() {
+        serializer = new CachedResultSerializer(new ObjectMapper());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final Series a = Series.of("cpu", ImmutableMap.of("host", "a", "role", "db"));
+        final Series b = Series.of("cpu", ImmutableMap.of("host", "b", "role", "db"));
+
+        final List<Point> points = new ArrayList<>();
+
+        for (long t = 0; t < 100; t++) {
+            points.add(new Point(1000L + t * 60L, t * 0.5D));
+        }
+
+        /* a gap in the cadence */
+        points.add(new Point(1000L + 200L * 60L, Double.NaN));
+
+        final ShardedResultGroup pointGroup =
+            new ShardedResultGroup(ImmutableMap.of("site", "lon"), ImmutableMap.of("role", "db"),
+                ImmutableSet.of(a, b), MetricCollection.points(points), 60L);
+
+        /* timestamps which are not aligned to the cadence */
+        final ShardedResultGroup spreadGroup =
+            new ShardedResultGroup(ImmutableMap.of("site", "lon"), ImmutableMap.of("role", "db"),
+                ImmutableSet.of(a), MetricCollection.spreads(
+                ImmutableList.of(new Spread(7L, 2L, 3D, 5D, 1D, 2D),
+                    new Spread(5L, 1L, 1D, 1D, 1D, 1D))), 60L);
+
+        final MemcachedQueryCache.CachedResult result =
+            new MemcachedQueryCache.CachedResult(new DateRange(1000L, 20000L),
+                ImmutableList.of(pointGroup, spreadGroup), 4242L,
+                ResultLimits.of(ResultLimit.SERIES, ResultLimit.QUOTA), 123456L);
+
+        assertEquals(result, serializer.deserialize(serializer.serialize(result)));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        final MemcachedQueryCache.CachedResult result =
+            new MemcachedQueryCache.CachedResult(new DateRange(0L, 0L), ImmutableList.of(), 0L,
+                ResultLimits.of(), 0L);
+
+        assertEquals(result, serializer.deserialize(serializer.serialize(result)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectOtherVersion() throws Exception {
+        final byte[] bytes = serializer.serialize(
+            new MemcachedQueryCache.CachedResult(new DateRange(0L, 0L), ImmutableList.of(), 0L,
+                ResultLimits.of(), 0L));
+
+        bytes[0] = (byte) (CachedResultSerializer.VERSION + 1);
+        serializer.deserialize(bytes);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectCorruptLength() throws Exception {
+        final byte[] bytes = serializer.serialize(
+            new MemcachedQueryCache.CachedResult(new DateRange(0L, 0L), ImmutableList.of(), 0L,
+                ResultLimits.of(), 0L));
+
+        /* claim a larger uncompressed size than the payload decompresses to */
+        bytes[4] = (byte) (bytes[4] + 1);
+        serializer.deserialize(bytes);
+    }
+
+    @Test
+    public void testLongString() throws Exception {
+        final String value = Strings.repeat("x", 100000);
+
+        final ShardedResultGroup group =
+            new ShardedResultGroup(ImmutableMap.of(), ImmutableMap.of("tag", value),
+                ImmutableSet.of(Series.of("cpu", ImmutableMap.of("tag", value))),
+                MetricCollection.points(ImmutableList.of(new Point(0L, 1D))), 60L);
+
+        final MemcachedQueryCache.CachedResult result =
+            new MemcachedQueryCache.CachedResult(new DateRange(0L, 0L), ImmutableList.of(group),
+                0L, ResultLimits.of(), 0L);
+
+        assertEquals(result, serializer.deserialize(serializer.serialize(result)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectCountBeyondInput() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream raw = new DataOutputStream(bytes);
+
+        /* range, expiry, sample size and limits */
+        raw.writeLong(0L);
+        raw.writeLong(0L);
+        raw.writeLong(0L);
+        raw.writeByte(0);
+        raw.writeByte(0);
+
+        /* a group count of Integer.MAX_VALUE, with nothing following it */
+        raw.write(new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07});
+        raw.flush();
+
+        serializer.deserialize(compress(bytes.toByteArray()));
+    }
+
+    private byte[] compress(final byte[] raw) {
+        final byte[] compressed = LZ4Factory.fastestInstance().fastCompressor().compress(raw);
+        final byte[] bytes = new byte[5 + compressed.length];
+
+        bytes[0] = (byte) CachedResultSerializer.VERSION;
+        ByteBuffer.wrap(bytes, 1, 4).putInt(raw.length);
+        System.arraycopy(compressed, 0, bytes, 5, compressed.length);
+        return bytes;
+    }
+}
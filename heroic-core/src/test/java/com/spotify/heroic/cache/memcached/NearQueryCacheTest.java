@@ -0,0 +1,95 @@
+package com.spotify.heroic.cache.memcached;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.MetricCollection;
+import com.spotify.heroic.metric.Point;
+import com.spotify.heroic.metric.ResultLimits;
+import com.spotify.heroic.metric.ShardedResultGroup;
+import com.spotify.heroic.statistics.QueryCacheReporter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NearQueryCacheTest {
+    private long now;
+    private QueryCacheReporter reporter;
+    private NearQueryCache cache;
+
+    @Before
+    public void setup() {
+        now = 10000L;
+        reporter = mock(QueryCacheReporter.class);
+        cache = new NearQueryCache(() -> now, reporter, 1024L * 1024);
+    }
+
+    @Test
+    public void testHitUntilExpired() {
+        final MemcachedQueryCache.CachedResult result = result(0, now + 60000L);
+
+        assertEquals(Optional.empty(), cache.get("a"));
+
+        cache.put("a", result);
+
+        now += 59000L;
+        assertEquals(Optional.of(result), cache.get("a"));
+
+        now += 1000L;
+        assertEquals(Optional.empty(), cache.get("a"));
+        assertEquals(0, cache.size());
+
+        verify(reporter, times(1)).reportHit(NearQueryCache.TIER);
+        verify(reporter, times(2)).reportMiss(NearQueryCache.TIER);
+    }
+
+    @Test
+    public void testIgnoreExpired() {
+        cache.put("a", result(0, now));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictBySize() {
+        final MemcachedQueryCache.CachedResult result = result(100, now + 60000L);
+        final NearQueryCache small = new NearQueryCache(() -> now, reporter,
+            NearQueryCache.estimateSize(result) - 1);
+
+        small.put("a", result);
+
+        assertEquals(Optional.empty(), small.get("a"));
+        verify(reporter).reportEviction(NearQueryCache.TIER);
+    }
+
+    @Test
+    public void testEstimateSizeGrowsWithPoints() {
+        assertTrue(NearQueryCache.estimateSize(result(100, 0L)) >
+            NearQueryCache.estimateSize(result(10, 0L)));
+    }
+
+    private MemcachedQueryCache.CachedResult result(final int count, final long expires) {
+        final List<Point> points = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            points.add(new Point(i * 10L, i));
+        }
+
+        final ShardedResultGroup group =
+            new ShardedResultGroup(ImmutableMap.of(), ImmutableMap.of("host", "a"),
+                ImmutableSet.of(Series.of("cpu", ImmutableMap.of("host", "a"))),
+                MetricCollection.points(points), 10L);
+
+        return new MemcachedQueryCache.CachedResult(new DateRange(0L, 1000L),
+            ImmutableList.of(group), 0L, ResultLimits.of(), expires);
+    }
+}
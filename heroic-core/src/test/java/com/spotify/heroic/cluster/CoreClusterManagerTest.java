@@ -1,8 +1,11 @@
 package com.spotify.heroic.cluster;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -10,11 +13,14 @@ import static org.mockito.Mockito.verify;
 import com.google.common.collect.ImmutableSet;
 import com.spotify.heroic.HeroicConfiguration;
 import com.spotify.heroic.HeroicContext;
+import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.scheduler.Scheduler;
 import com.spotify.heroic.statistics.QueryReporter;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
+import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -60,7 +66,8 @@ public class CoreClusterManagerTest {
         final boolean useLocal = true;
 
         manager = spy(new CoreClusterManager(async, discovery, localMetadata, protocols, scheduler,
-            useLocal, options, local, context, ImmutableSet.of(), reporter));
+            useLocal, options, local, context, ImmutableSet.of(), reporter, 4,
+            Duration.of(5, TimeUnit.MINUTES)));
     }
 
     @Test
@@ -71,4 +78,22 @@ public class CoreClusterManagerTest {
         verify(reporter, times(0)).reportClusterNodeRpcError();
         verify(reporter, times(0)).reportClusterNodeRpcCancellation();
     }
+
+    @Test
+    public void probeNewOrStaleOrDeadNodes() throws Exception {
+        final URI uri = URI.create("grpc://localhost:1394");
+        final long maxAge = TimeUnit.MINUTES.toNanos(5);
+
+        final ClusterNode node = mock(ClusterNode.class);
+        doReturn(true).when(node).isAlive();
+
+        assertTrue(manager.needsProbe(uri, node, 0L));
+
+        manager.lastProbe.put(uri, 1000L);
+        assertFalse(manager.needsProbe(uri, node, 1000L + maxAge - 1));
+        assertTrue(manager.needsProbe(uri, node, 1000L + maxAge));
+
+        doReturn(false).when(node).isAlive();
+        assertTrue(manager.needsProbe(uri, node, 1000L));
+    }
 }
@@ -0,0 +1,54 @@
+package com.spotify.heroic.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import eu.toolchain.async.AsyncFramework;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import org.junit.Test;
+
+public class NodeRegistryTest {
+    private final Map<String, String> shard = ImmutableMap.of("shard", "a");
+
+    private ClusterNode node(final boolean alive, final OptionalLong roundTripTime) {
+        final NodeMetadata metadata = mock(NodeMetadata.class);
+        doReturn(shard).when(metadata).getTags();
+
+        final ClusterNode node = mock(ClusterNode.class);
+        doReturn(metadata).when(node).metadata();
+        doReturn(alive).when(node).isAlive();
+        doReturn(roundTripTime).when(node).roundTripTime();
+        return node;
+    }
+
+    @Test
+    public void testPreferAliveNode() {
+        final ClusterNode dead = node(false, OptionalLong.of(1L));
+        final ClusterNode alive = node(true, OptionalLong.of(1000L));
+
+        final NodeRegistry registry =
+            new NodeRegistry(mock(AsyncFramework.class), ImmutableList.of(dead, alive), 2);
+
+        assertEquals(Optional.of(alive), registry.getNodeInShardButNotWithId(shard, n -> false));
+    }
+
+    @Test
+    public void testFallbackToFastestDeadNode() {
+        final ClusterNode unknown = node(false, OptionalLong.empty());
+        final ClusterNode slow = node(false, OptionalLong.of(1000L));
+        final ClusterNode fast = node(false, OptionalLong.of(10L));
+
+        final NodeRegistry registry = new NodeRegistry(mock(AsyncFramework.class),
+            ImmutableList.of(unknown, slow, fast), 3);
+
+        assertEquals(Optional.of(fast), registry.getNodeInShardButNotWithId(shard, n -> false));
+        assertEquals(Optional.of(slow),
+            registry.getNodeInShardButNotWithId(shard, n -> n == fast));
+        assertEquals(Optional.empty(), registry.getNodeInShardButNotWithId(shard, n -> true));
+    }
+}
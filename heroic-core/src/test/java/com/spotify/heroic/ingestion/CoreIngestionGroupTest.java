@@ -12,14 +12,18 @@ import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.FutureDone;
 import eu.toolchain.async.FutureFinished;
+import eu.toolchain.async.LazyTransform;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
@@ -28,6 +32,7 @@ import static java.util.Optional.empty;
 import static java.util.Optional.of;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
@@ -42,6 +47,8 @@ public class CoreIngestionGroupTest {
     @Mock
     private AsyncFramework async;
     @Mock
+    private ExecutorService executor;
+    @Mock
     private Supplier<Filter> filterSupplier;
     @Mock
     private Supplier<DateRange> rangeSupplier;
@@ -70,6 +77,8 @@ public class CoreIngestionGroupTest {
     @Mock
     private AsyncFuture<Ingestion> other;
     @Mock
+    private AsyncFuture<AsyncFuture<Ingestion>> dispatched;
+    @Mock
     private Series series;
     @Mock
     private DateRange range;
@@ -98,7 +107,7 @@ public class CoreIngestionGroupTest {
     ) {
         // @formatter:off
         final CoreIngestionGroup group = new CoreIngestionGroup(
-            async, filterSupplier, writePermits, reporter, ingested,
+            async, executor, filterSupplier, writePermits, reporter, ingested,
             metric, metadata, suggest
         );
         // @formatter:on
@@ -110,10 +119,15 @@ public class CoreIngestionGroupTest {
     public void testWriteSome() throws Exception {
         final CoreIngestionGroup group = setupIngestionGroup(empty(), empty(), empty());
 
+        final ArgumentCaptor<Callable> callable = ArgumentCaptor.forClass(Callable.class);
+
         doReturn(expected).when(group).syncWrite(request);
         doReturn(other).when(async).resolved(any(Ingestion.class));
+        doReturn(dispatched).when(async).call(callable.capture(), eq(executor));
+        doReturn(expected).when(dispatched).lazyTransform(any(LazyTransform.class));
 
         assertEquals(expected, group.write(request));
+        assertEquals(expected, callable.getValue().call());
 
         verify(async, never()).resolved(any(Ingestion.class));
         verify(ingested).increment();
@@ -0,0 +1,172 @@
+package com.spotify.heroic.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.spotify.heroic.common.QuotaViolationException;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.TinyAsync;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntToLongFunction;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveFetchLimiterTest {
+    private final AtomicLong now = new AtomicLong();
+
+    private AsyncFramework async;
+    private List<ResolvableFuture<Integer>> started;
+
+    @Before
+    public void setup() {
+        async = TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+        started = new ArrayList<>();
+    }
+
+    @Test
+    public void testQueuesAboveLimit() throws Exception {
+        final AdaptiveFetchLimiter limiter = limiter(2);
+
+        final List<AsyncFuture<Integer>> results = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            results.add(limiter.run(this::fetch));
+        }
+
+        assertEquals(2, started.size());
+        assertEquals(2, limiter.inFlight());
+        assertEquals(2, limiter.pending());
+
+        now.addAndGet(1000L);
+        started.get(0).resolve(42);
+
+        assertEquals(42, (int) results.get(0).get());
+        assertEquals(3, started.size());
+        assertEquals(2, limiter.inFlight());
+        assertEquals(1, limiter.pending());
+    }
+
+    @Test
+    public void testBackoffOnFailure() {
+        final AdaptiveFetchLimiter limiter = limiter(10);
+
+        limiter.run(this::fetch);
+        started.get(0).fail(new RuntimeException("overloaded"));
+
+        assertEquals(9, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    public void testBackoffOnceBeforeFirstWindow() {
+        final AdaptiveFetchLimiter limiter = limiter(10);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.run(this::fetch);
+            now.addAndGet(1000L);
+            started.get(i).fail(new RuntimeException("overloaded"));
+        }
+
+        assertEquals(9, limiter.limit());
+    }
+
+    @Test
+    public void testCancelStopsFetch() {
+        final AdaptiveFetchLimiter limiter = limiter(1);
+
+        final AsyncFuture<Integer> result = limiter.run(this::fetch);
+        limiter.run(this::fetch);
+        assertEquals(1, limiter.pending());
+
+        result.cancel();
+
+        assertTrue(started.get(0).isCancelled());
+        assertEquals(2, started.size());
+        assertEquals(1, limiter.inFlight());
+        assertEquals(0, limiter.pending());
+    }
+
+    @Test
+    public void testNoBackoffOnQuotaViolation() {
+        final AdaptiveFetchLimiter limiter = limiter(10);
+
+        limiter.run(this::fetch);
+        started.get(0).fail(new RuntimeException(new QuotaViolationException()));
+
+        limiter.run(this::fetch);
+        started.get(1).cancel();
+
+        assertEquals(10, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    public void testBackoffOnLatency() {
+        final AdaptiveFetchLimiter limiter = limiter(10);
+
+        window(limiter, i -> 1000L);
+        assertEquals(10, limiter.limit());
+
+        window(limiter, i -> 10000L);
+        assertEquals(9, limiter.limit());
+    }
+
+    /**
+     * A few slow fetches, like the ones reading a lot of data, are not a sign of overload.
+     */
+    @Test
+    public void testNoBackoffOnSingleSlowFetch() {
+        final AdaptiveFetchLimiter limiter = limiter(10);
+
+        window(limiter, i -> 1000L);
+        window(limiter, i -> i == 0 ? 100000L : 1000L);
+
+        assertEquals(10, limiter.limit());
+    }
+
+    @Test
+    public void testGrowsWhenUtilized() {
+        final AdaptiveFetchLimiter limiter = limiter(2);
+
+        for (int i = 0; i < 20; i++) {
+            limiter.run(this::fetch);
+            limiter.run(this::fetch);
+            now.addAndGet(1000L);
+            started.get(i * 2).resolve(1);
+            started.get(i * 2 + 1).resolve(1);
+        }
+
+        assertTrue(limiter.limit() > 2);
+    }
+
+    /**
+     * Run a full window of fetches one after another, with the given latencies.
+     */
+    private void window(final AdaptiveFetchLimiter limiter, final IntToLongFunction latency) {
+        for (int i = 0; i < AdaptiveFetchLimiter.WINDOW; i++) {
+            limiter.run(this::fetch);
+            now.addAndGet(latency.applyAsLong(i));
+            started.get(started.size() - 1).resolve(1);
+        }
+    }
+
+    private AsyncFuture<Integer> fetch() {
+        final ResolvableFuture<Integer> future = async.future();
+        started.add(future);
+        return future;
+    }
+
+    private AdaptiveFetchLimiter limiter(final int initialLimit) {
+        final FetchLimiterConfig config =
+            new FetchLimiterConfig(Optional.of(1), Optional.of(100), Optional.of(initialLimit),
+                Optional.of(0.9D), Optional.of(2.0D));
+
+        return new AdaptiveFetchLimiter(async, config, now::get);
+    }
+}
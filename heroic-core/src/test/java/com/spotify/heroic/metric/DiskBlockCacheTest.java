@@ -0,0 +1,128 @@
+package com.spotify.heroic.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.spotify.heroic.common.Series;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskBlockCacheTest {
+    private static final long SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Series series = Series.of("foo");
+    private final List<Point> points = ImmutableList.of(new Point(1L, 1D), new Point(2L, 2D));
+
+    private AsyncFramework async;
+    private DiskBlockCache cache;
+
+    @Before
+    public void setup() throws Exception {
+        async = TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+        cache = open();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        cache.stop().get();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        final DiskBlockCache.Key key = DiskBlockCache.key("a", series, 0L);
+
+        assertEquals(Optional.empty(), cache.get(key));
+
+        cache.put(key, points);
+        cache.put(DiskBlockCache.key("a", series, 10L), ImmutableList.of());
+
+        assertEquals(Optional.of(points), cache.get(key));
+        assertEquals(Optional.of(ImmutableList.of()),
+            cache.get(DiskBlockCache.key("a", series, 10L)));
+        assertEquals(Optional.empty(), cache.get(DiskBlockCache.key("b", series, 0L)));
+        assertEquals(2, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        final DiskBlockCache.Key a = DiskBlockCache.key("a", series, 0L);
+        final DiskBlockCache.Key b = DiskBlockCache.key("a", series, 10L);
+
+        cache.put(a, points);
+        cache.put(b, points);
+        cache.invalidate(b);
+        cache.stop().get();
+
+        cache = open();
+
+        assertEquals(1, cache.size());
+        assertEquals(Optional.of(points), cache.get(a));
+        assertEquals(Optional.empty(), cache.get(b));
+    }
+
+    @Test
+    public void testEvictOldestSegment() {
+        /* a record with 30 points is 504 bytes, so only two of them fit in each segment */
+        final List<Point> block = ImmutableList.copyOf(
+            LongStream.range(0L, 30L).mapToObj(t -> new Point(t, t)).iterator());
+
+        for (long i = 0; i < 7; i++) {
+            cache.put(DiskBlockCache.key("a", series, i), block);
+        }
+
+        /* the cache holds at most three segments */
+        assertEquals(Optional.empty(), cache.get(DiskBlockCache.key("a", series, 0L)));
+        assertEquals(Optional.of(block), cache.get(DiskBlockCache.key("a", series, 2L)));
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testPromoteFromOldestSegment() {
+        final List<Point> block = ImmutableList.copyOf(
+            LongStream.range(0L, 30L).mapToObj(t -> new Point(t, t)).iterator());
+
+        for (long i = 0; i < 6; i++) {
+            cache.put(DiskBlockCache.key("a", series, i), block);
+        }
+
+        /* reading a block from the oldest segment copies it to the newest */
+        assertEquals(Optional.of(block), cache.get(DiskBlockCache.key("a", series, 0L)));
+
+        cache.put(DiskBlockCache.key("a", series, 6L), block);
+
+        assertEquals(Optional.of(block), cache.get(DiskBlockCache.key("a", series, 0L)));
+        assertFalse(cache.get(DiskBlockCache.key("a", series, 1L)).isPresent());
+    }
+
+    @Test
+    public void testClear() {
+        cache.put(DiskBlockCache.key("a", series, 0L), points);
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(Optional.empty(), cache.get(DiskBlockCache.key("a", series, 0L)));
+    }
+
+    private DiskBlockCache open() throws Exception {
+        final DiskBlockCache cache = new DiskBlockCache(async,
+            new DiskBlockCacheConfig(Optional.of(folder.getRoot().toString()),
+                Optional.of(SEGMENT_SIZE * 3), Optional.of(SEGMENT_SIZE), Optional.empty(),
+                Optional.empty()));
+        cache.start().get();
+        return cache;
+    }
+}
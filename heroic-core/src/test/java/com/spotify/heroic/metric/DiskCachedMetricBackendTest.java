@@ -0,0 +1,185 @@
+package com.spotify.heroic.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.spotify.heroic.QueryOptions;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.TinyAsync;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskCachedMetricBackendTest {
+    private static final long NOW = 100L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Series series = Series.of("foo");
+
+    private AsyncFramework async;
+    private MetricBackend delegate;
+    private DiskBlockCache cache;
+    private DiskCachedMetricBackend backend;
+
+    /* ranges that were fetched from the delegate */
+    private List<DateRange> fetched;
+
+    /* runs while the delegate is fetching */
+    private Runnable duringFetch;
+
+    @Before
+    public void setup() throws Exception {
+        async = TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+        delegate = mock(MetricBackend.class);
+        fetched = new ArrayList<>();
+        duringFetch = () -> {
+        };
+
+        cache = new DiskBlockCache(async,
+            new DiskBlockCacheConfig(Optional.of(folder.getRoot().toString()),
+                Optional.of(1024L * 1024), Optional.of(64L * 1024), Optional.empty(),
+                Optional.empty()));
+        cache.start().get();
+
+        backend = new DiskCachedMetricBackend(async, MoreExecutors.newDirectExecutorService(),
+            () -> NOW, cache, "test", 10L, 0L, delegate);
+
+        /* the delegate has one point at every millisecond */
+        doAnswer(invocation -> {
+            final FetchData.Request request = (FetchData.Request) invocation.getArguments()[0];
+            @SuppressWarnings("unchecked") final Consumer<MetricCollection> consumer =
+                (Consumer<MetricCollection>) invocation.getArguments()[2];
+
+            final DateRange range = request.getRange();
+            fetched.add(range);
+
+            final List<Point> points = new ArrayList<>();
+
+            for (long t = range.start() + 1; t <= range.end(); t++) {
+                points.add(new Point(t, t));
+            }
+
+            consumer.accept(MetricCollection.points(points));
+            duringFetch.run();
+            return async.resolved(FetchData.result(QueryTrace.of(QueryTrace.identifier("f"))));
+        }).when(delegate).fetch(any(), any(), any());
+
+        doAnswer(invocation -> async.resolved(WriteMetric.of()))
+            .when(delegate)
+            .write(any());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        cache.stop().get();
+    }
+
+    @Test
+    public void testHistoricalBlocksAreCached() throws Exception {
+        assertEquals(points(16L, 35L), fetch(15L, 35L));
+        assertEquals(ImmutableList.of(new DateRange(9L, 40L)), fetched);
+        assertEquals(3, cache.size());
+
+        assertEquals(points(16L, 35L), fetch(15L, 35L));
+        assertEquals(1, fetched.size());
+    }
+
+    @Test
+    public void testFetchAfterCachedPrefix() throws Exception {
+        fetch(15L, 25L);
+        fetched.clear();
+
+        assertEquals(points(16L, 45L), fetch(15L, 45L));
+        assertEquals(ImmutableList.of(new DateRange(29L, 50L)), fetched);
+    }
+
+    @Test
+    public void testFetchDataIsCached() throws Exception {
+        final FetchData.Request request =
+            new FetchData.Request(MetricType.POINT, series, new DateRange(15L, 35L),
+                QueryOptions.defaults());
+
+        backend.fetch(request, FetchQuotaWatcher.NO_QUOTA).get();
+        fetched.clear();
+
+        final FetchData data = backend.fetch(request, FetchQuotaWatcher.NO_QUOTA).get();
+        assertEquals(points(16L, 35L), data.getGroups().get(0).getDataAs(Point.class));
+        assertEquals(ImmutableList.of(), fetched);
+    }
+
+    @Test
+    public void testRecentDataIsNotCached() throws Exception {
+        assertEquals(points(101L, 110L), fetch(100L, 110L));
+        assertEquals(ImmutableList.of(new DateRange(100L, 110L)), fetched);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testWriteInvalidates() throws Exception {
+        fetch(15L, 35L);
+        fetched.clear();
+
+        backend
+            .write(new WriteMetric.Request(series,
+                MetricCollection.points(ImmutableList.of(new Point(25L, 1D)))))
+            .get();
+
+        assertEquals(points(16L, 35L), fetch(15L, 35L));
+        assertEquals(ImmutableList.of(new DateRange(19L, 40L)), fetched);
+    }
+
+    @Test
+    public void testWriteDuringFetchIsNotCached() throws Exception {
+        /* the write resolves immediately, since everything runs on the calling thread */
+        duringFetch = () -> backend.write(new WriteMetric.Request(series,
+            MetricCollection.points(ImmutableList.of(new Point(25L, 1D)))));
+
+        fetch(15L, 35L);
+        duringFetch = () -> {
+        };
+        fetched.clear();
+
+        assertEquals(points(16L, 35L), fetch(15L, 35L));
+        assertEquals(ImmutableList.of(new DateRange(19L, 40L)), fetched);
+    }
+
+    private List<Point> fetch(final long start, final long end) throws Exception {
+        final List<Point> points = new ArrayList<>();
+
+        final FetchData.Request request =
+            new FetchData.Request(MetricType.POINT, series, new DateRange(start, end),
+                QueryOptions.defaults());
+
+        backend
+            .fetch(request, FetchQuotaWatcher.NO_QUOTA,
+                metrics -> points.addAll(metrics.getDataAs(Point.class)))
+            .get();
+
+        points.sort(Metric.comparator());
+        return points;
+    }
+
+    private List<Point> points(final long start, final long end) {
+        final List<Point> points = new ArrayList<>();
+
+        for (long t = start; t <= end; t++) {
+            points.add(new Point(t, t));
+        }
+
+        return points;
+    }
+}
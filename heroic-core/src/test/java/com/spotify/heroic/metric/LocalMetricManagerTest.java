@@ -13,10 +13,12 @@ import com.spotify.heroic.metadata.MetadataManager;
 import com.spotify.heroic.querylogging.QueryLogger;
 import com.spotify.heroic.querylogging.QueryLoggerFactory;
 import com.spotify.heroic.statistics.MetricBackendReporter;
+import com.spotify.heroic.time.Clock;
 import eu.toolchain.async.AsyncFramework;
 import eu.toolchain.async.AsyncFuture;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -48,6 +50,9 @@ public class LocalMetricManagerTest {
     @Mock
     private AsyncFuture<FetchData> fetchDataFuture;
 
+    @Mock
+    private ExecutorService queryExecutor;
+
     @Before
     public void setup() {
         final OptionalLimit groupLimit = OptionalLimit.empty();
@@ -66,8 +71,9 @@ public class LocalMetricManagerTest {
         when(queryLoggerFactory.create(any())).thenReturn(queryLogger);
 
         manager = new LocalMetricManager(groupLimit, seriesLimit, aggregationLimit, dataLimit,
-            fetchParallelism, failOnLimits, async, groupSet, metadata, reporter,
-            queryLoggerFactory);
+            fetchParallelism, failOnLimits, async, Clock.system(), groupSet, metadata, reporter,
+            queryLoggerFactory, queryExecutor, Collections.emptyList(), Optional.empty(),
+            MetricManagerModule.DEFAULT_PREFLIGHT_FACTOR);
     }
 
     @Test
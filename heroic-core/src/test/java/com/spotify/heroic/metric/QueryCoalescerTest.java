@@ -0,0 +1,119 @@
+package com.spotify.heroic.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.spotify.heroic.QueryOptions;
+import com.spotify.heroic.aggregation.EmptyInstance;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Features;
+import com.spotify.heroic.filter.TrueFilter;
+import com.spotify.heroic.querylogging.QueryContext;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.ResolvableFuture;
+import eu.toolchain.async.TinyAsync;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryCoalescerTest {
+    private AsyncFramework async;
+    private QueryCoalescer<Integer> coalescer;
+    private List<ResolvableFuture<Integer>> started;
+
+    @Before
+    public void setup() {
+        async = TinyAsync.builder().executor(MoreExecutors.newDirectExecutorService()).build();
+        coalescer = new QueryCoalescer<>(async);
+        started = new ArrayList<>();
+    }
+
+    @Test
+    public void testSharedExecution() throws Exception {
+        final QueryCoalescer.Key key = QueryCoalescer.key("a", request(0L));
+
+        final AsyncFuture<Integer> first = coalescer.coalesce(key, this::load);
+        final AsyncFuture<Integer> second = coalescer.coalesce(key, this::load);
+
+        assertEquals(1, started.size());
+        assertEquals(1, coalescer.size());
+
+        started.get(0).resolve(42);
+
+        assertEquals(42, (int) first.get());
+        assertEquals(42, (int) second.get());
+        assertEquals(0, coalescer.size());
+
+        /* a completed execution is not reused */
+        coalescer.coalesce(key, this::load);
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void testCancelOneCaller() throws Exception {
+        final QueryCoalescer.Key key = QueryCoalescer.key("a", request(0L));
+
+        final AsyncFuture<Integer> first = coalescer.coalesce(key, this::load);
+        final AsyncFuture<Integer> second = coalescer.coalesce(key, this::load);
+
+        first.cancel();
+
+        assertTrue(first.isCancelled());
+        assertFalse(started.get(0).isDone());
+
+        started.get(0).resolve(42);
+        assertEquals(42, (int) second.get());
+    }
+
+    @Test
+    public void testCancelAllCallers() {
+        final QueryCoalescer.Key key = QueryCoalescer.key("a", request(0L));
+
+        final AsyncFuture<Integer> first = coalescer.coalesce(key, this::load);
+        final AsyncFuture<Integer> second = coalescer.coalesce(key, this::load);
+
+        first.cancel();
+        second.cancel();
+
+        assertTrue(started.get(0).isCancelled());
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void testFailureIsShared() {
+        final QueryCoalescer.Key key = QueryCoalescer.key("a", request(0L));
+
+        final AsyncFuture<Integer> first = coalescer.coalesce(key, this::load);
+        final AsyncFuture<Integer> second = coalescer.coalesce(key, this::load);
+
+        started.get(0).fail(new RuntimeException("boom"));
+
+        assertTrue(first.isFailed());
+        assertTrue(second.isFailed());
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void testKey() {
+        assertEquals(QueryCoalescer.key("a", request(0L)), QueryCoalescer.key("a", request(0L)));
+        assertNotEquals(QueryCoalescer.key("a", request(0L)), QueryCoalescer.key("b", request(0L)));
+        assertNotEquals(QueryCoalescer.key("a", request(0L)), QueryCoalescer.key("a", request(1L)));
+    }
+
+    private AsyncFuture<Integer> load() {
+        final ResolvableFuture<Integer> future = async.future();
+        started.add(future);
+        return future;
+    }
+
+    private FullQuery.Request request(final long start) {
+        return new FullQuery.Request(MetricType.POINT, TrueFilter.get(),
+            new DateRange(start, 1000L), EmptyInstance.INSTANCE, QueryOptions.defaults(),
+            QueryContext.empty(), Features.empty());
+    }
+}
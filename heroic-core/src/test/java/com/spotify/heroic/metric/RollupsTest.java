@@ -0,0 +1,92 @@
+package com.spotify.heroic.metric;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.Test;
+
+public class RollupsTest {
+    @Test
+    public void testRollup() {
+        final List<Point> points = ImmutableList.of(new Point(0, 1D), new Point(5, 3D),
+            new Point(10, 2D), new Point(25, Double.NaN), new Point(29, 4D));
+
+        final List<Spread> spreads = Rollups.rollup(points, 10);
+
+        assertEquals(ImmutableList.of(new Spread(0, 2, 4D, 10D, 1D, 3D),
+            new Spread(10, 1, 2D, 4D, 2D, 2D), new Spread(20, 1, 4D, 16D, 4D, 4D)), spreads);
+    }
+
+    @Test
+    public void testSplitJoin() {
+        final List<Spread> spreads =
+            ImmutableList.of(new Spread(0, 2, 4D, 10D, 1D, 3D), new Spread(10, 1, 2D, 4D, 2D, 2D));
+
+        assertEquals(spreads, Rollups.join(Rollups.split(spreads)));
+    }
+
+    @Test
+    public void testJoinIgnoresIncompletePeriods() {
+        final Map<Rollups.Stat, List<Point>> stats = Rollups.split(
+            ImmutableList.of(new Spread(0, 2, 4D, 10D, 1D, 3D), new Spread(10, 1, 2D, 4D, 2D, 2D)));
+
+        stats.put(Rollups.Stat.MAX, ImmutableList.of(new Point(0, 3D)));
+
+        assertEquals(ImmutableList.of(new Spread(0, 2, 4D, 10D, 1D, 3D)), Rollups.join(stats));
+    }
+
+    @Test
+    public void testCoveredUntil() {
+        final List<DateRange> covered =
+            ImmutableList.of(new DateRange(20, 40), new DateRange(0, 20), new DateRange(50, 60));
+
+        assertEquals(40, Rollups.coveredUntil(covered, 10));
+        assertEquals(40, Rollups.coveredUntil(covered, 0));
+        assertEquals(45, Rollups.coveredUntil(covered, 45));
+        assertEquals(60, Rollups.coveredUntil(covered, 50));
+    }
+
+    @Test
+    public void testSplit() {
+        final List<DateRange> covered = ImmutableList.of(new DateRange(0, 100));
+
+        /* fetches are start exclusive, so the period at 0 has to be read raw */
+        assertEquals(Optional.of(
+            new Rollups.Split(Optional.of(new DateRange(0, 9)), new DateRange(9, 40),
+                Optional.of(new DateRange(49, 55)))), Rollups.split(new DateRange(0, 55), 10,
+            covered));
+
+        /* only the part below the watermark is read from rollups */
+        assertEquals(Optional.of(
+            new Rollups.Split(Optional.of(new DateRange(0, 9)), new DateRange(9, 90),
+                Optional.of(new DateRange(99, 200)))), Rollups.split(new DateRange(0, 200), 10,
+            covered));
+
+        /* the last period is only read from rollups if the range includes all of it */
+        assertEquals(Optional.of(
+            new Rollups.Split(Optional.of(new DateRange(0, 9)), new DateRange(9, 40),
+                Optional.empty())), Rollups.split(new DateRange(0, 49), 10, covered));
+        assertEquals(Optional.of(
+            new Rollups.Split(Optional.of(new DateRange(0, 9)), new DateRange(9, 40),
+                Optional.of(new DateRange(49, 50)))), Rollups.split(new DateRange(0, 50), 10,
+            covered));
+
+        assertEquals(Optional.empty(), Rollups.split(new DateRange(0, 15), 10, covered));
+        assertEquals(Optional.empty(),
+            Rollups.split(new DateRange(100, 200), 10, covered));
+    }
+
+    @Test
+    public void testSeries() {
+        final Series s = Series.of("foo", ImmutableMap.of("a", "b"));
+
+        assertEquals(Series.of("foo", ImmutableMap.of("a", "b", Rollups.ROLLUP_TAG, "sum")),
+            Rollups.series(s, Rollups.Stat.SUM));
+    }
+}
@@ -0,0 +1,75 @@
+package com.spotify.heroic.metric;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Histogram;
+import java.util.OptionalLong;
+import org.junit.Test;
+
+public class RowDensityHistoryTest {
+    private final DateRange range = new DateRange(0L, 1000000L);
+
+    @Test
+    public void testNoEstimateDuringWarmup() {
+        final RowDensityHistory history = new RowDensityHistory();
+
+        for (int i = 0; i < RowDensityHistory.WARMUP - 1; i++) {
+            history.update(ImmutableSet.of("a"), density(1000000L));
+        }
+
+        assertEquals(OptionalLong.empty(), history.estimate(ImmutableMap.of("a", 10L), range));
+    }
+
+    @Test
+    public void testEstimate() {
+        final RowDensityHistory history = new RowDensityHistory();
+
+        for (int i = 0; i < RowDensityHistory.WARMUP; i++) {
+            history.update(ImmutableSet.of("a"), density(1000000L));
+            history.update(ImmutableSet.of("b"), density(2000000L));
+        }
+
+        /* one sample per second, for 1000 seconds and 10 series */
+        assertEquals(OptionalLong.of(10000L), history.estimate(ImmutableMap.of("a", 10L), range));
+
+        assertEquals(OptionalLong.of(50000L),
+            history.estimate(ImmutableMap.of("a", 10L, "b", 20L), range));
+    }
+
+    /**
+     * Densities are not shared between keys, and keys without history are not estimated.
+     */
+    @Test
+    public void testEstimatePerKey() {
+        final RowDensityHistory history = new RowDensityHistory();
+
+        for (int i = 0; i < RowDensityHistory.WARMUP; i++) {
+            history.update(ImmutableSet.of("a"), density(1000000L));
+            history.update(ImmutableSet.of("b", "c"), density(1000000L));
+        }
+
+        assertEquals(OptionalLong.empty(), history.estimate(ImmutableMap.of("b", 10L), range));
+        assertEquals(OptionalLong.empty(),
+            history.estimate(ImmutableMap.of("a", 10L, "c", 10L), range));
+    }
+
+    @Test
+    public void testIgnoresEmptyDensity() {
+        final RowDensityHistory history = new RowDensityHistory();
+
+        for (int i = 0; i < RowDensityHistory.WARMUP; i++) {
+            history.update(ImmutableSet.of("a"), Histogram.empty());
+        }
+
+        assertEquals(OptionalLong.empty(), history.estimate(ImmutableMap.of("a", 10L), range));
+    }
+
+    private Histogram density(final long perMegaSecond) {
+        final Histogram.Builder builder = Histogram.builder();
+        builder.add(perMegaSecond);
+        return builder.build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.spotify.heroic.querylogging;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.metric.FullQuery;
+import eu.toolchain.async.AsyncFramework;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncQueryLoggerTest {
+    @Mock
+    public Consumer<String> logger;
+
+    @Mock
+    public AsyncFramework async;
+
+    private ObjectMapper mapper;
+    private AsyncQueryLogWriter writer;
+    private QueryContext queryContext;
+
+    @Before
+    public void setup() throws Exception {
+        mapper = mock(ObjectMapper.class);
+        when(mapper.writeValueAsString(any())).thenReturn("");
+
+        writer = new AsyncQueryLogWriter(async, logger, mapper, 4);
+        queryContext = QueryContext.empty();
+    }
+
+    @Test
+    public void testWrittenOnDrain() {
+        final AsyncQueryLogger queryLogger =
+            new AsyncQueryLogger(writer, "<component>", 1.0D, ImmutableMap.of());
+
+        queryLogger.logHttpQueryText(queryContext, "");
+        verify(logger, never()).accept(any(String.class));
+
+        assertTrue(writer.drain());
+        verify(logger, times(1)).accept(any(String.class));
+    }
+
+    @Test
+    public void testSummarizedOnEnqueue() {
+        final AsyncQueryLogger queryLogger =
+            new AsyncQueryLogger(writer, "<component>", 1.0D, ImmutableMap.of());
+
+        final FullQuery.Request request = mock(FullQuery.Request.class);
+        queryLogger.logIncomingRequestAtNode(queryContext, request);
+        verify(request, times(1)).summarize();
+
+        writer.drain();
+        verify(request, times(1)).summarize();
+    }
+
+    @Test
+    public void testDropsWhenFull() {
+        final AsyncQueryLogger queryLogger =
+            new AsyncQueryLogger(writer, "<component>", 1.0D, ImmutableMap.of());
+
+        for (int i = 0; i < 8; i++) {
+            queryLogger.logHttpQueryText(queryContext, "");
+        }
+
+        writer.drain();
+        verify(logger, times(4)).accept(any(String.class));
+    }
+
+    @Test
+    public void testSampling() {
+        final HttpContext httpContext =
+            new HttpContext("address", "host", "address", Optional.empty(), Optional.of("client"));
+
+        final AsyncQueryLogger queryLogger =
+            new AsyncQueryLogger(writer, "<component>", 1.0D, ImmutableMap.of("client", 0.0D));
+
+        assertTrue(queryLogger.isSampled(queryContext));
+        assertFalse(queryLogger.isSampled(
+            new QueryContext(UUID.randomUUID(), Optional.empty(), Optional.of(httpContext))));
+
+        final AsyncQueryLogger never =
+            new AsyncQueryLogger(writer, "<component>", 0.0D, ImmutableMap.of());
+
+        never.logHttpQueryText(queryContext, "");
+        assertFalse(writer.drain());
+    }
+}
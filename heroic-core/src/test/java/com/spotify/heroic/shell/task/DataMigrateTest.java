@@ -0,0 +1,89 @@
+package com.spotify.heroic.shell.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.metric.BackendKey;
+import com.spotify.heroic.metric.MetricType;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Test;
+
+public class DataMigrateTest {
+    @Test
+    public void testPartition() {
+        final List<DataMigrate.Range> ranges =
+            DataMigrate.partition(Optional.empty(), Optional.empty(), 4);
+
+        assertEquals(4, ranges.size());
+        assertEquals(Optional.empty(), ranges.get(0).getStart());
+        assertEquals(Optional.empty(), ranges.get(3).getEnd());
+
+        for (int i = 1; i < ranges.size(); i++) {
+            assertEquals(ranges.get(i - 1).getEnd(), ranges.get(i).getStart());
+        }
+
+        assertEquals(Optional.of(-1L), ranges.get(1).getEnd());
+    }
+
+    @Test
+    public void testPartitionBounded() {
+        final List<DataMigrate.Range> ranges =
+            DataMigrate.partition(Optional.of(0L), Optional.of(100L), 2);
+
+        assertEquals(Optional.of(0L), ranges.get(0).getStart());
+        assertEquals(Optional.of(50L), ranges.get(0).getEnd());
+        assertEquals(Optional.of(50L), ranges.get(1).getStart());
+        assertEquals(Optional.of(100L), ranges.get(1).getEnd());
+    }
+
+    @Test
+    public void testRangeResume() {
+        final DataMigrate.Range range =
+            new DataMigrate.Range(Optional.empty(), Optional.empty(), Optional.empty(), false);
+
+        final BackendKey a = key(10L);
+        final BackendKey b = key(20L);
+        final BackendKey c = key(30L);
+
+        range.received(a);
+        range.received(b);
+        range.received(c);
+
+        range.completed(a, false);
+        range.completed(c, false);
+        assertEquals(Optional.of(20L), range.state().getResume());
+
+        range.completed(b, false);
+        assertEquals(Optional.of(30L), range.state().getResume());
+
+        range.finished();
+        assertTrue(range.state().isDone());
+    }
+
+    @Test
+    public void testRangeFailed() {
+        final DataMigrate.Range range =
+            new DataMigrate.Range(Optional.empty(), Optional.empty(), Optional.empty(), false);
+
+        final BackendKey a = key(10L);
+        final BackendKey b = key(20L);
+
+        range.received(a);
+        range.received(b);
+        range.completed(a, true);
+        range.completed(b, false);
+
+        range.finished();
+
+        final DataMigrate.Checkpoint.RangeState state = range.state();
+        assertEquals(Optional.of(10L), state.getResume());
+        assertFalse(state.isDone());
+    }
+
+    private static BackendKey key(final long token) {
+        return new BackendKey(Series.of("key"), 0L, MetricType.POINT, Optional.of(token));
+    }
+}
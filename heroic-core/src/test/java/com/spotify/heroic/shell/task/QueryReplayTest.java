@@ -0,0 +1,88 @@
+package com.spotify.heroic.shell.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.QueryBuilder;
+import com.spotify.heroic.QueryManager;
+import com.spotify.heroic.common.OptionalLimit;
+import eu.toolchain.async.AsyncFramework;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryReplayTest {
+    private static final String LOG = String.join("\n",
+        "12:00:00.300 INFO query - {\"@timestamp\":\"2017-01-01T12:00:00.300Z\"," +
+            "\"@message\":{\"queryId\":\"b\",\"type\":\"http-query-text\",\"data\":\"b\"}}",
+        "{\"@timestamp\":\"2017-01-01T12:00:00.100Z\"," +
+            "\"@message\":{\"queryId\":\"a\",\"type\":\"http-query-text\",\"data\":\"a\"}}",
+        "{\"@timestamp\":\"2017-01-01T12:00:00.150Z\"," +
+            "\"@message\":{\"queryId\":\"a\",\"type\":\"query\",\"data\":{}}}",
+        "not a record",
+        "{\"@timestamp\":\"2017-01-01T12:00:00.350Z\"," +
+            "\"@message\":{\"queryId\":\"a\",\"type\":\"final-response\"," +
+            "\"data\":{\"errors\":[{\"type\":\"error\"}]}}}",
+        "{\"@timestamp\":\"2017-01-01T12:00:00.400Z\"," +
+            "\"@message\":{\"queryId\":\"c\",\"type\":\"http-query-text\",\"data\":\"c\"}}");
+
+    private QueryReplay task;
+
+    @Before
+    public void setup() {
+        final QueryManager query = mock(QueryManager.class);
+        doReturn(new QueryBuilder()).when(query).newQueryFromString(anyString());
+        task = new QueryReplay(query, new ObjectMapper(), mock(AsyncFramework.class));
+    }
+
+    private List<QueryReplay.LoggedQuery> read(final OptionalLimit limit) throws Exception {
+        return task.readLog(new ByteArrayInputStream(LOG.getBytes(StandardCharsets.UTF_8)),
+            QueryReplay.HTTP_QUERY_TEXT, limit);
+    }
+
+    @Test
+    public void testReadLog() throws Exception {
+        final List<QueryReplay.LoggedQuery> queries = read(OptionalLimit.empty());
+
+        assertEquals(3, queries.size());
+
+        final QueryReplay.LoggedQuery a = queries.get(0);
+        assertEquals("a", a.getQueryId());
+        assertEquals(Optional.of(TimeUnit.MILLISECONDS.toNanos(250)), a.getOriginalLatency());
+        assertEquals(Optional.of(true), a.getOriginalError());
+
+        final QueryReplay.LoggedQuery b = queries.get(1);
+        assertEquals("b", b.getQueryId());
+        assertEquals(Optional.empty(), b.getOriginalLatency());
+        assertEquals(Optional.empty(), b.getOriginalError());
+
+        assertEquals("c", queries.get(2).getQueryId());
+    }
+
+    @Test
+    public void testReadLogLimit() throws Exception {
+        final List<QueryReplay.LoggedQuery> queries = read(OptionalLimit.of(2));
+
+        assertEquals(2, queries.size());
+        assertEquals("a", queries.get(0).getQueryId());
+        assertEquals("b", queries.get(1).getQueryId());
+    }
+
+    @Test
+    public void testPercentile() {
+        final List<Long> sorted = ImmutableList.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+
+        assertEquals(5L, QueryReplay.percentile(sorted, 0.5D));
+        assertEquals(9L, QueryReplay.percentile(sorted, 0.9D));
+        assertEquals(10L, QueryReplay.percentile(sorted, 0.99D));
+        assertEquals(1L, QueryReplay.percentile(sorted, 0D));
+    }
+}
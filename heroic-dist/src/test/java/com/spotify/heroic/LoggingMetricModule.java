@@ -1,7 +1,9 @@
 package com.spotify.heroic;
 
 import com.spotify.heroic.async.AsyncObservable;
+import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.Series;
 import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.dagger.PrimaryComponent;
 import com.spotify.heroic.instrumentation.OperationsLog;
@@ -135,6 +137,13 @@ class LoggingMetricModule implements MetricModule {
             return delegate.countKey(key, options);
         }
 
+        @Override
+        public AsyncFuture<Long> compact(
+            final Series series, final DateRange range
+        ) {
+            return delegate.compact(series, range);
+        }
+
         @Override
         public AsyncFuture<MetricCollection> fetchRow(
             final BackendKey key
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the intervals between operations for an open-loop arrival process.
+ * <p>
+ * Arrivals are scheduled independently of when earlier operations complete, so a slow system
+ * causes queueing that shows up in the measured latencies instead of silently lowering the
+ * offered load.
+ */
+public class Arrivals {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Distribution distribution;
+    private final double meanIntervalNanos;
+    private final Random random;
+
+    public Arrivals(final Distribution distribution, final double rate, final Random random) {
+        checkArgument(rate > 0D, "rate must be positive");
+        this.distribution = distribution;
+        this.meanIntervalNanos = NANOS_PER_SECOND / rate;
+        this.random = random;
+    }
+
+    /**
+     * Get the interval until the next arrival.
+     *
+     * @return the interval in nanoseconds
+     */
+    public double nextInterval() {
+        switch (distribution) {
+            case UNIFORM:
+                return meanIntervalNanos;
+            case POISSON:
+                return -Math.log(1D - random.nextDouble()) * meanIntervalNanos;
+            default:
+                throw new IllegalStateException("Unsupported distribution: " + distribution);
+        }
+    }
+
+    public enum Distribution {
+        /**
+         * Operations are issued at a fixed interval.
+         */
+        UNIFORM,
+        /**
+         * Operations are issued with exponentially distributed intervals, modelling independent
+         * clients.
+         */
+        POISSON;
+
+        @JsonCreator
+        public static Distribution fromString(final String value) {
+            return valueOf(value.toUpperCase());
+        }
+    }
+}
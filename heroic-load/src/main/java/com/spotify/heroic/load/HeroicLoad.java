@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import com.spotify.heroic.HeroicLogging;
+import com.spotify.heroic.HeroicMappers;
+import com.spotify.heroic.args4j.CmdLine;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Boots an in-process cluster and runs a workload against it.
+ * <p>
+ * Usage: {@code heroic-load [options] [workload.yml]}
+ */
+@Slf4j
+public class HeroicLoad {
+    public static void main(final String[] args) throws Exception {
+        HeroicLogging.configure();
+
+        final Parameters params = new Parameters();
+        final CmdLineParser parser = CmdLine.createParser(params);
+
+        try {
+            parser.parseArgument(args);
+        } catch (final CmdLineException e) {
+            log.error("Error parsing arguments", e);
+            System.exit(1);
+            return;
+        }
+
+        if (params.help) {
+            parser.printUsage(System.out);
+            System.exit(0);
+            return;
+        }
+
+        final Workload workload = override(loadWorkload(params.workload), params);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(params.threads);
+        final LoadCluster cluster = LoadCluster.start(workload.getNodes());
+
+        final List<StageReport> reports;
+
+        try {
+            final Random random = params.seed.map(Random::new).orElseGet(Random::new);
+            reports = new LoadRunner(cluster, workload, executor, params.maxInFlight, random).run();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            cluster.stop();
+        }
+
+        final LoadReporter reporter = new LoadReporter();
+        reporter.summary(System.out, reports);
+
+        if (params.histograms.isPresent()) {
+            reporter.histograms(params.histograms.get(), reports);
+        }
+
+        System.exit(0);
+    }
+
+    private static Workload loadWorkload(final Optional<Path> path) throws Exception {
+        if (!path.isPresent()) {
+            return Workload.defaults();
+        }
+
+        try (final InputStream input = Files.newInputStream(path.get())) {
+            return HeroicMappers.config().readValue(input, Workload.class);
+        }
+    }
+
+    private static Workload override(final Workload workload, final Parameters params) {
+        return new Workload(Optional.of(params.nodes.orElse(workload.getNodes())),
+            Optional.of(params.series.orElse(workload.getSeries())),
+            Optional.of(workload.getGenerator()), Optional.of(workload.getStages()));
+    }
+
+    @ToString
+    @Data
+    public static class Parameters {
+        @Option(name = "-h", aliases = {"--help"}, help = true, usage = "Display help")
+        private boolean help = false;
+
+        @Option(name = "-n", aliases = {"--nodes"}, usage = "Number of nodes to boot",
+            metaVar = "<number>")
+        private Optional<Integer> nodes = Optional.empty();
+
+        @Option(name = "-s", aliases = {"--series"},
+            usage = "Number of distinct series to write to", metaVar = "<number>")
+        private Optional<Integer> series = Optional.empty();
+
+        @Option(name = "-t", aliases = {"--threads"},
+            usage = "Number of threads issuing operations (default: number of processors)",
+            metaVar = "<number>")
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        @Option(name = "--max-in-flight",
+            usage = "Drop arrivals while this many operations of a kind are outstanding " +
+                "(default: 10000)", metaVar = "<number>")
+        private int maxInFlight = 10000;
+
+        @Option(name = "--seed", usage = "Seed for randomized arrivals", metaVar = "<seed>")
+        private Optional<Long> seed = Optional.empty();
+
+        @Option(name = "--histograms",
+            usage = "Write full latency distributions (.hgrm) to this directory",
+            metaVar = "<dir>")
+        private Optional<Path> histograms = Optional.empty();
+
+        @Argument(metaVar = "<workload>", usage = "Workload to run (default: built-in)")
+        private Optional<Path> workload = Optional.empty();
+    }
+}
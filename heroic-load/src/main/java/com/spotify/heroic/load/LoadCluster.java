@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.heroic.HeroicConfig;
+import com.spotify.heroic.HeroicCore;
+import com.spotify.heroic.HeroicCoreInstance;
+import com.spotify.heroic.HeroicModules;
+import com.spotify.heroic.cluster.ClusterManagerModule;
+import com.spotify.heroic.cluster.discovery.simple.StaticListDiscoveryModule;
+import com.spotify.heroic.dagger.CoreComponent;
+import com.spotify.heroic.profile.MemoryProfile;
+import com.spotify.heroic.rpc.jvm.JvmRpcContext;
+import com.spotify.heroic.rpc.jvm.JvmRpcProtocolModule;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A cluster of Heroic instances running in the current JVM.
+ * <p>
+ * Instances talk to each other over the JVM RPC protocol and store everything in memory, so no
+ * external services are required.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LoadCluster {
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @Getter
+    private final List<HeroicCoreInstance> instances;
+
+    /**
+     * Boot and connect the given number of nodes.
+     *
+     * @param nodes Number of nodes to boot.
+     * @return a started cluster where every node has discovered every other node.
+     */
+    public static LoadCluster start(final int nodes) throws Exception {
+        final JvmRpcContext context = new JvmRpcContext();
+
+        final List<URI> uris = new ArrayList<>();
+
+        for (int i = 0; i < nodes; i++) {
+            uris.add(URI.create("jvm://node" + i));
+        }
+
+        final List<HeroicCoreInstance> instances = new ArrayList<>();
+
+        for (final URI uri : uris) {
+            instances.add(HeroicCore
+                .builder()
+                .setupShellServer(false)
+                .setupService(false)
+                .oneshot(true)
+                .configFragment(HeroicConfig
+                    .builder()
+                    .cluster(ClusterManagerModule
+                        .builder()
+                        .tags(ImmutableMap.of("shard", uri.getHost()))
+                        .protocols(ImmutableList.of(JvmRpcProtocolModule
+                            .builder()
+                            .context(context)
+                            .bindName(uri.getHost())
+                            .build()))
+                        .discovery(new StaticListDiscoveryModule(uris))))
+                .profile(new MemoryProfile())
+                .modules(HeroicModules.ALL_MODULES)
+                .build()
+                .newInstance());
+        }
+
+        final LoadCluster cluster = new LoadCluster(ImmutableList.copyOf(instances));
+
+        for (final HeroicCoreInstance instance : instances) {
+            instance.start().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        cluster.all(c -> c.clusterManager().refresh()).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        for (final HeroicCoreInstance instance : instances) {
+            final int visible = instance.inject(c -> c.clusterManager().getNodes().size());
+
+            if (visible != nodes) {
+                throw new IllegalStateException(
+                    "Expected " + nodes + " visible nodes, but got " + visible);
+            }
+        }
+
+        log.info("Started {} node(s)", nodes);
+        return cluster;
+    }
+
+    /**
+     * Shut down all nodes in the cluster.
+     */
+    public void stop() throws Exception {
+        for (final HeroicCoreInstance instance : instances) {
+            instance.shutdown().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private AsyncFuture<Void> all(final Function<CoreComponent, AsyncFuture<Void>> action) {
+        final AsyncFramework async = instances.get(0).inject(CoreComponent::async);
+        return async.collectAndDiscard(
+            instances.stream().map(i -> i.inject(action)).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Formats the outcome of a load test.
+ */
+public class LoadReporter {
+    private static final double MICROS_PER_MILLI = 1000D;
+    private static final double BYTES_PER_MEGABYTE = 1024D * 1024D;
+
+    private static final String HEADER_FORMAT =
+        "%-16s %-6s %10s %10s %8s %8s %9s %9s %9s %9s %9s%n";
+    private static final String ROW_FORMAT =
+        "%-16s %-6s %10.1f %10d %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n";
+
+    /**
+     * Print a summary table with throughput, latency percentiles and allocation rate per stage.
+     */
+    public void summary(final PrintStream out, final List<StageReport> reports) {
+        out.printf(HEADER_FORMAT, "stage", "op", "ops/s", "ok", "errors", "dropped", "p50 ms",
+            "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        for (final StageReport stage : reports) {
+            for (final OperationReport op : stage.getOperations()) {
+                out.printf(ROW_FORMAT, stage.getName(), op.getName(), op.throughput(), op.getOk(),
+                    op.getErrors(), op.getDropped(), op.percentile(50D), op.percentile(90D),
+                    op.percentile(99D), op.percentile(99.9D), op.max());
+            }
+        }
+
+        out.println();
+
+        for (final StageReport stage : reports) {
+            final double rate = stage.allocationRate();
+
+            if (rate < 0D) {
+                out.printf("%-16s allocation rate: unavailable%n", stage.getName());
+                continue;
+            }
+
+            out.printf("%-16s allocation rate: %.1f MB/s%n", stage.getName(),
+                rate / BYTES_PER_MEGABYTE);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Write the full latency distribution of every operation in HdrHistogram's percentile
+     * format, one file per stage and operation.
+     */
+    public void histograms(final Path directory, final List<StageReport> reports)
+        throws IOException {
+        Files.createDirectories(directory);
+
+        for (final StageReport stage : reports) {
+            for (final OperationReport op : stage.getOperations()) {
+                final Path path = directory.resolve(stage.getName() + "-" + op.getName() + ".hgrm");
+
+                try (final OutputStream output = Files.newOutputStream(path);
+                     final PrintStream out = new PrintStream(output, false, "UTF-8")) {
+                    op.getLatencies().outputPercentileDistribution(out, MICROS_PER_MILLI);
+                }
+            }
+        }
+    }
+}
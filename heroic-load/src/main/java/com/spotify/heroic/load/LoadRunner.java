@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.HeroicCoreInstance;
+import com.spotify.heroic.Query;
+import com.spotify.heroic.QueryDateRange;
+import com.spotify.heroic.QueryManager;
+import com.spotify.heroic.common.DateRange;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.dagger.CoreComponent;
+import com.spotify.heroic.generator.Generator;
+import com.spotify.heroic.ingestion.Ingestion;
+import com.spotify.heroic.ingestion.IngestionComponent;
+import com.spotify.heroic.ingestion.IngestionManager;
+import com.spotify.heroic.querylogging.QueryContext;
+import eu.toolchain.async.AsyncFuture;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the stages of a workload against a cluster.
+ */
+@Slf4j
+public class LoadRunner {
+    public static final String WRITE = "write";
+    public static final String QUERY = "query";
+
+    private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private final Workload workload;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Random random;
+
+    private final List<IngestionManager> ingestionManagers;
+    private final List<QueryManager> queryManagers;
+    private final Generator generator;
+    private final List<Series> series;
+
+    private final AtomicLong writeIndex = new AtomicLong();
+    private final AtomicLong queryIndex = new AtomicLong();
+
+    public LoadRunner(
+        final LoadCluster cluster, final Workload workload, final ExecutorService executor,
+        final int maxInFlight, final Random random
+    ) {
+        this.workload = workload;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.random = random;
+
+        final List<HeroicCoreInstance> instances = cluster.getInstances();
+
+        this.ingestionManagers = instances
+            .stream()
+            .map(i -> i.inject(IngestionComponent::ingestionManager))
+            .collect(Collectors.toList());
+        this.queryManagers = instances
+            .stream()
+            .map(i -> i.inject(CoreComponent::queryManager))
+            .collect(Collectors.toList());
+
+        final HeroicCoreInstance first = instances.get(0);
+
+        this.generator = first
+            .inject(CoreComponent::generatorManager)
+            .findGenerator(workload.getGenerator())
+            .orElseThrow(() -> new IllegalArgumentException(
+                "No such generator: " + workload.getGenerator()));
+        this.series = ImmutableList.copyOf(
+            first.inject(CoreComponent::metadataGenerator).generate(workload.getSeries()));
+    }
+
+    public List<StageReport> run() throws Exception {
+        final List<StageReport> reports = new ArrayList<>();
+
+        for (final Stage stage : workload.getStages()) {
+            reports.add(runStage(stage));
+        }
+
+        return reports;
+    }
+
+    private StageReport runStage(final Stage stage) throws Exception {
+        log.info("Running stage {} for {}", stage.getName(), stage.getDuration().toDSL());
+
+        final List<OperationRecorder> recorders = new ArrayList<>();
+        final List<OpenLoopDriver> drivers = new ArrayList<>();
+
+        final long start = System.nanoTime();
+        final long end =
+            start + TimeUnit.MILLISECONDS.toNanos(stage.getDuration().toMilliseconds());
+
+        if (stage.getWriteRate() > 0D) {
+            final OperationRecorder recorder = new OperationRecorder(WRITE);
+            recorders.add(recorder);
+            drivers.add(new OpenLoopDriver(
+                new Arrivals(stage.getArrivals(), stage.getWriteRate(), random), start, end,
+                () -> write(stage), recorder, executor, maxInFlight));
+        }
+
+        if (stage.getQueryRate() > 0D) {
+            final OperationRecorder recorder = new OperationRecorder(QUERY);
+            recorders.add(recorder);
+            drivers.add(new OpenLoopDriver(
+                new Arrivals(stage.getArrivals(), stage.getQueryRate(), random), start, end,
+                () -> query(stage), recorder, executor, maxInFlight));
+        }
+
+        final Optional<Long> allocatedBefore = allocatedBytes();
+
+        final List<Thread> threads = new ArrayList<>();
+
+        for (final OpenLoopDriver driver : drivers) {
+            final Thread thread = new Thread(driver);
+            thread.setName("heroic-load-" + stage.getName() + "-" + threads.size());
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final long drainEnd = System.nanoTime() + DRAIN_TIMEOUT;
+
+        while (drivers.stream().anyMatch(d -> d.inFlight() > 0)) {
+            if (System.nanoTime() - drainEnd >= 0) {
+                log.warn("{}: operations still in flight after the stage ended",
+                    stage.getName());
+                break;
+            }
+
+            Thread.sleep(10);
+        }
+
+        final long elapsed = System.nanoTime() - start;
+
+        final Optional<Long> allocated = allocatedBefore.flatMap(
+            before -> allocatedBytes().map(after -> Math.max(0L, after - before)));
+
+        final List<OperationReport> operations =
+            recorders.stream().map(r -> r.report(elapsed)).collect(Collectors.toList());
+
+        return new StageReport(stage.getName(), elapsed, allocated, operations);
+    }
+
+    private AsyncFuture<Boolean> write(final Stage stage) {
+        final long index = writeIndex.getAndIncrement();
+        final Series s = series.get((int) (index % series.size()));
+        final IngestionManager manager =
+            ingestionManagers.get((int) (index % ingestionManagers.size()));
+
+        final long now = System.currentTimeMillis();
+        final DateRange range = new DateRange(now - stage.getWriteWindow().toMilliseconds(), now);
+
+        return manager
+            .useDefaultGroup()
+            .write(new Ingestion.Request(s, generator.generate(s, range)))
+            .directTransform(result -> result.getErrors().isEmpty());
+    }
+
+    private AsyncFuture<Boolean> query(final Stage stage) {
+        final long index = queryIndex.getAndIncrement();
+        final String q = stage.getQueries().get((int) (index % stage.getQueries().size()));
+        final QueryManager manager = queryManagers.get((int) (index % queryManagers.size()));
+
+        final Query query = manager
+            .newQueryFromString(q)
+            .rangeIfAbsent(Optional.of(new QueryDateRange.Relative(TimeUnit.MILLISECONDS,
+                stage.getQueryRange().toMilliseconds())))
+            .build();
+
+        return manager
+            .useDefaultGroup()
+            .query(query, QueryContext.empty())
+            .directTransform(result -> result.getErrors().isEmpty());
+    }
+
+    /**
+     * Total number of bytes allocated by all live threads.
+     * <p>
+     * Allocations by threads that terminate during a stage are not accounted for, the core
+     * executors are long-lived so this is a close approximation.
+     */
+    private static Optional<Long> allocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return Optional.empty();
+        }
+
+        final com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+
+        if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled()) {
+            return Optional.empty();
+        }
+
+        long total = 0L;
+
+        for (final long allocated : sun.getThreadAllocatedBytes(sun.getAllThreadIds())) {
+            /* -1 for threads which are no longer alive */
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+
+        return Optional.of(total);
+    }
+}
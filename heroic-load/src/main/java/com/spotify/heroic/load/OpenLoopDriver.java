@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import eu.toolchain.async.AsyncFuture;
+import eu.toolchain.async.FutureDone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Issues a single kind of operation according to an open-loop arrival process.
+ * <p>
+ * Every operation has an intended start time given by the arrival process, and its latency is
+ * measured from that time rather than from when it was actually issued. This way time spent
+ * queueing behind a saturated system is part of the reported latency (avoiding coordinated
+ * omission).
+ */
+@Slf4j
+public class OpenLoopDriver implements Runnable {
+    private final Arrivals arrivals;
+    private final long start;
+    private final long end;
+    private final Supplier<AsyncFuture<Boolean>> operation;
+    private final OperationRecorder recorder;
+    private final Executor executor;
+    private final int maxInFlight;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param arrivals Arrival process to follow.
+     * @param start Start of the run, in {@link System#nanoTime()} time.
+     * @param end End of the run, in {@link System#nanoTime()} time.
+     * @param operation Operation to issue, the resolved value indicates if it was successful.
+     * @param recorder Recorder for outcomes.
+     * @param executor Executor that operations are issued on.
+     * @param maxInFlight Maximum number of outstanding operations, arrivals beyond this are
+     * dropped.
+     */
+    public OpenLoopDriver(
+        final Arrivals arrivals, final long start, final long end,
+        final Supplier<AsyncFuture<Boolean>> operation, final OperationRecorder recorder,
+        final Executor executor, final int maxInFlight
+    ) {
+        this.arrivals = arrivals;
+        this.start = start;
+        this.end = end;
+        this.operation = operation;
+        this.recorder = recorder;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void run() {
+        double next = start;
+
+        while (true) {
+            next += arrivals.nextInterval();
+
+            final long intended = (long) next;
+
+            if (intended - end >= 0) {
+                break;
+            }
+
+            long now;
+
+            while ((now = System.nanoTime()) - intended < 0) {
+                LockSupport.parkNanos(intended - now);
+
+                if (Thread.interrupted()) {
+                    return;
+                }
+            }
+
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                recorder.dropped();
+                continue;
+            }
+
+            executor.execute(() -> issue(intended));
+        }
+    }
+
+    /**
+     * Number of operations that have been issued but not completed.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void issue(final long intended) {
+        final AsyncFuture<Boolean> future;
+
+        try {
+            future = operation.get();
+        } catch (final Exception e) {
+            log.debug("Operation failed to start", e);
+            recorder.failure(System.nanoTime() - intended);
+            inFlight.decrementAndGet();
+            return;
+        }
+
+        future.onDone(new FutureDone<Boolean>() {
+            @Override
+            public void failed(final Throwable cause) {
+                log.debug("Operation failed", cause);
+                recorder.failure(System.nanoTime() - intended);
+                inFlight.decrementAndGet();
+            }
+
+            @Override
+            public void resolved(final Boolean ok) {
+                final long latency = System.nanoTime() - intended;
+
+                if (ok) {
+                    recorder.success(latency);
+                } else {
+                    recorder.failure(latency);
+                }
+
+                inFlight.decrementAndGet();
+            }
+
+            @Override
+            public void cancelled() {
+                recorder.failure(System.nanoTime() - intended);
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Records the outcome and latency of a single kind of operation during a stage.
+ * <p>
+ * Latencies are recorded in microseconds and are safe to record from any thread.
+ */
+public class OperationRecorder {
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String name;
+    private final Recorder latencies = new Recorder(SIGNIFICANT_DIGITS);
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public OperationRecorder(final String name) {
+        this.name = name;
+    }
+
+    public void success(final long latencyNanos) {
+        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        ok.increment();
+    }
+
+    public void failure(final long latencyNanos) {
+        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        errors.increment();
+    }
+
+    /**
+     * Record an operation that was never issued since too many operations were in flight.
+     */
+    public void dropped() {
+        dropped.increment();
+    }
+
+    public OperationReport report(final long elapsedNanos) {
+        return new OperationReport(name, latencies.getIntervalHistogram(), ok.sum(), errors.sum(),
+            dropped.sum(), elapsedNanos);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+import org.HdrHistogram.Histogram;
+
+/**
+ * The outcome of a single kind of operation during a stage.
+ */
+@Data
+public class OperationReport {
+    private final String name;
+    /* latencies in microseconds, measured from the intended start of each operation */
+    private final Histogram latencies;
+    private final long ok;
+    private final long errors;
+    private final long dropped;
+    private final long elapsedNanos;
+
+    /**
+     * Completed operations per second.
+     */
+    public double throughput() {
+        if (elapsedNanos <= 0) {
+            return 0D;
+        }
+
+        return (ok + errors) / ((double) elapsedNanos / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Latency at the given percentile, in milliseconds.
+     */
+    public double percentile(final double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000D;
+    }
+
+    /**
+     * Maximum latency, in milliseconds.
+     */
+    public double max() {
+        return latencies.getMaxValue() / 1000D;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.common.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+
+/**
+ * A single stage of a workload.
+ * <p>
+ * Every stage runs for a fixed duration and issues writes and queries at independent, open-loop
+ * arrival rates. Results are reported separately for each stage.
+ */
+@Data
+public class Stage {
+    public static final Duration DEFAULT_DURATION = Duration.of(1, TimeUnit.MINUTES);
+    public static final double DEFAULT_WRITE_RATE = 100D;
+    public static final double DEFAULT_QUERY_RATE = 10D;
+    public static final Duration DEFAULT_WRITE_WINDOW = Duration.of(1, TimeUnit.MINUTES);
+    public static final Duration DEFAULT_QUERY_RANGE = Duration.of(1, TimeUnit.HOURS);
+    public static final List<String> DEFAULT_QUERIES = ImmutableList.of("average(1m)");
+
+    private final String name;
+    private final Duration duration;
+    /* writes per second */
+    private final double writeRate;
+    /* queries per second */
+    private final double queryRate;
+    /* the time window that each write generates data for */
+    private final Duration writeWindow;
+    private final Duration queryRange;
+    /* queries to issue, picked round-robin */
+    private final List<String> queries;
+    private final Arrivals.Distribution arrivals;
+
+    @JsonCreator
+    public Stage(
+        @JsonProperty("name") Optional<String> name,
+        @JsonProperty("duration") Optional<Duration> duration,
+        @JsonProperty("writeRate") Optional<Double> writeRate,
+        @JsonProperty("queryRate") Optional<Double> queryRate,
+        @JsonProperty("writeWindow") Optional<Duration> writeWindow,
+        @JsonProperty("queryRange") Optional<Duration> queryRange,
+        @JsonProperty("queries") Optional<List<String>> queries,
+        @JsonProperty("arrivals") Optional<Arrivals.Distribution> arrivals
+    ) {
+        this.name = name.orElse("default");
+        this.duration = duration.orElse(DEFAULT_DURATION);
+        this.writeRate = writeRate.orElse(DEFAULT_WRITE_RATE);
+        this.queryRate = queryRate.orElse(DEFAULT_QUERY_RATE);
+        this.writeWindow = writeWindow.orElse(DEFAULT_WRITE_WINDOW);
+        this.queryRange = queryRange.orElse(DEFAULT_QUERY_RANGE);
+        this.queries = queries.orElse(DEFAULT_QUERIES);
+        this.arrivals = arrivals.orElse(Arrivals.Distribution.UNIFORM);
+
+        checkArgument(this.duration.toMilliseconds() > 0, "duration must be positive");
+        checkArgument(this.writeRate >= 0D, "writeRate must be non-negative");
+        checkArgument(this.queryRate >= 0D, "queryRate must be non-negative");
+        checkArgument(this.queryRate == 0D || !this.queries.isEmpty(),
+            "queries must not be empty when queryRate is set");
+    }
+
+    public static Stage defaults() {
+        return new Stage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+}
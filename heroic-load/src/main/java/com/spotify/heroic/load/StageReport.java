@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+
+/**
+ * The outcome of a single stage.
+ */
+@Data
+public class StageReport {
+    private final String name;
+    private final long elapsedNanos;
+    /* bytes allocated by live threads during the stage, or empty if not supported by the JVM */
+    private final Optional<Long> allocatedBytes;
+    private final List<OperationReport> operations;
+
+    /**
+     * Allocation rate in bytes per second, or a negative value if unknown.
+     */
+    public double allocationRate() {
+        if (!allocatedBytes.isPresent() || elapsedNanos <= 0) {
+            return -1D;
+        }
+
+        return allocatedBytes.get() / ((double) elapsedNanos / TimeUnit.SECONDS.toNanos(1));
+    }
+}
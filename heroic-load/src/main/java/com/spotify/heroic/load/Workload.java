@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.load;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Optional;
+import lombok.Data;
+
+/**
+ * Describes the cluster to boot and the stages to run against it.
+ */
+@Data
+public class Workload {
+    public static final int DEFAULT_NODES = 2;
+    public static final int DEFAULT_SERIES = 1000;
+    public static final String DEFAULT_GENERATOR = "sine";
+
+    /* number of in-process nodes to boot */
+    private final int nodes;
+    /* number of distinct series that writes are spread over */
+    private final int series;
+    /* name of the metric generator used to produce written data */
+    private final String generator;
+    private final List<Stage> stages;
+
+    @JsonCreator
+    public Workload(
+        @JsonProperty("nodes") Optional<Integer> nodes,
+        @JsonProperty("series") Optional<Integer> series,
+        @JsonProperty("generator") Optional<String> generator,
+        @JsonProperty("stages") Optional<List<Stage>> stages
+    ) {
+        this.nodes = nodes.orElse(DEFAULT_NODES);
+        this.series = series.orElse(DEFAULT_SERIES);
+        this.generator = generator.orElse(DEFAULT_GENERATOR);
+        this.stages = stages.orElseGet(() -> ImmutableList.of(Stage.defaults()));
+
+        checkArgument(this.nodes > 0, "nodes must be positive");
+        checkArgument(this.series > 0, "series must be positive");
+        checkArgument(!this.stages.isEmpty(), "stages must not be empty");
+    }
+
+    public static Workload defaults() {
+        return new Workload(Optional.empty(), Optional.empty(), Optional.empty(),
+            Optional.empty());
+    }
+}
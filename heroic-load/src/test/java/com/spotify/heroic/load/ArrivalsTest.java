@@ -0,0 +1,44 @@
+package com.spotify.heroic.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class ArrivalsTest {
+    @Test
+    public void testUniform() {
+        final Arrivals arrivals = new Arrivals(Arrivals.Distribution.UNIFORM, 4D, new Random(0));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(250_000_000D, arrivals.nextInterval(), 0D);
+        }
+    }
+
+    @Test
+    public void testPoissonMean() {
+        final Arrivals arrivals = new Arrivals(Arrivals.Distribution.POISSON, 1000D, new Random(0));
+
+        final int count = 100_000;
+        double sum = 0D;
+
+        for (int i = 0; i < count; i++) {
+            final double interval = arrivals.nextInterval();
+            assertTrue(interval >= 0D);
+            sum += interval;
+        }
+
+        assertEquals(1_000_000D, sum / count, 20_000D);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroRate() {
+        new Arrivals(Arrivals.Distribution.UNIFORM, 0D, new Random(0));
+    }
+
+    @Test
+    public void testDistributionFromString() {
+        assertEquals(Arrivals.Distribution.POISSON, Arrivals.Distribution.fromString("poisson"));
+    }
+}
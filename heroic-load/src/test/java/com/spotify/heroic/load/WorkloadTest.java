@@ -0,0 +1,48 @@
+package com.spotify.heroic.load;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.heroic.HeroicMappers;
+import com.spotify.heroic.common.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class WorkloadTest {
+    @Test
+    public void testDefaults() {
+        final Workload workload = Workload.defaults();
+
+        assertEquals(Workload.DEFAULT_NODES, workload.getNodes());
+        assertEquals(ImmutableList.of(Stage.defaults()), workload.getStages());
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        final String yaml = "nodes: 3\n" +
+            "stages:\n" +
+            "  - name: ingest\n" +
+            "    duration: 30s\n" +
+            "    writeRate: 500\n" +
+            "    queryRate: 0\n" +
+            "  - name: mixed\n" +
+            "    queries: [\"sum(10m) by host\"]\n" +
+            "    arrivals: poisson\n";
+
+        final Workload workload = HeroicMappers.config().readValue(yaml, Workload.class);
+
+        assertEquals(3, workload.getNodes());
+        assertEquals(Workload.DEFAULT_SERIES, workload.getSeries());
+        assertEquals(2, workload.getStages().size());
+
+        final Stage ingest = workload.getStages().get(0);
+        assertEquals("ingest", ingest.getName());
+        assertEquals(Duration.of(30, TimeUnit.SECONDS), ingest.getDuration());
+        assertEquals(500D, ingest.getWriteRate(), 0D);
+        assertEquals(0D, ingest.getQueryRate(), 0D);
+
+        final Stage mixed = workload.getStages().get(1);
+        assertEquals(ImmutableList.of("sum(10m) by host"), mixed.getQueries());
+        assertEquals(Arrivals.Distribution.POISSON, mixed.getArrivals());
+    }
+}
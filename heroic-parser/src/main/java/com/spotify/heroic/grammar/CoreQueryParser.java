@@ -21,6 +21,10 @@
 
 package com.spotify.heroic.grammar;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.spotify.heroic.filter.Filter;
 import com.spotify.heroic.metric.MetricType;
 import lombok.Data;
@@ -30,6 +34,7 @@ import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
@@ -39,15 +44,45 @@ import java.util.Optional;
 import java.util.function.Function;
 
 public class CoreQueryParser implements QueryParser {
+    /**
+     * Maximum number of distinct statements to keep parsed.
+     */
+    public static final long DEFAULT_CACHE_SIZE = 10000;
+
+    /* parsed statements by query text, expressions are immutable and independent of scope */
+    private final Cache<String, List<Expression>> cache;
+
     @Inject
     public CoreQueryParser() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    @VisibleForTesting
+    CoreQueryParser(final long cacheSize) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
     }
 
     @Override
     public List<Expression> parse(String statements) {
-        return parse(HeroicQueryParser::statements, statements)
-            .pop(QueryListener.Statements.class)
-            .getExpressions();
+        final List<Expression> cached = cache.getIfPresent(statements);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        /* parse errors are not cached, and are thrown as-is */
+        final List<Expression> expressions = ImmutableList.copyOf(
+            parse(HeroicQueryParser::statements, statements)
+                .pop(QueryListener.Statements.class)
+                .getExpressions());
+
+        cache.put(statements, expressions);
+        return expressions;
+    }
+
+    @VisibleForTesting
+    long cacheSize() {
+        return cache.size();
     }
 
     @Override
@@ -82,8 +117,13 @@ public class CoreQueryParser implements QueryParser {
 
         final ParserRuleContext context;
 
+        /* SLL prediction is much cheaper and is sufficient for almost every input, only fall back
+         * to full LL prediction if it fails. Errors are reported by the LL stage, since SLL might
+         * reject valid input */
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
         try {
-            context = op.apply(parser);
+            context = parseWithFallback(op, parser, tokens);
         } catch (final ParseCancellationException e) {
             if (!(e.getCause() instanceof RecognitionException)) {
                 throw e;
@@ -107,6 +147,20 @@ public class CoreQueryParser implements QueryParser {
         return listener;
     }
 
+    private ParserRuleContext parseWithFallback(
+        final Function<HeroicQueryParser, ParserRuleContext> op, final HeroicQueryParser parser,
+        final CommonTokenStream tokens
+    ) {
+        try {
+            return op.apply(parser);
+        } catch (final ParseCancellationException e) {
+            tokens.seek(0);
+            parser.reset();
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return op.apply(parser);
+        }
+    }
+
     private ParseException toParseException(final RecognitionException e) {
         final Token token = e.getOffendingToken();
 
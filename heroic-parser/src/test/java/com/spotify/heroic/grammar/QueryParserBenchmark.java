@@ -0,0 +1,66 @@
+package com.spotify.heroic.grammar;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Parse throughput of {@link CoreQueryParser}, with and without the statement cache.
+ * <p>
+ * Run with: {@code mvn -pl heroic-parser test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=com.spotify.heroic.grammar.QueryParserBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryParserBenchmark {
+    @Param({
+        "average(10m) from points",
+        "average(10m) by host from points where $key = system and role = heroic",
+        "let $a = sum(1m) by site from points(1h) where $key = requests and what = \"rate\";"
+            + " $a | max(10m)",
+        "* from points(2h) where $key = cpu and (host ^ \"db\" or host ~ \"web-[0-9]+\")"
+            + " and !(role = test)"
+    })
+    public String query;
+
+    private CoreQueryParser uncached;
+    private CoreQueryParser cached;
+
+    @Setup
+    public void setup() {
+        uncached = new CoreQueryParser(0);
+        cached = new CoreQueryParser(CoreQueryParser.DEFAULT_CACHE_SIZE);
+    }
+
+    @Benchmark
+    public List<Expression> parseUncached() {
+        return uncached.parse(query);
+    }
+
+    @Benchmark
+    public List<Expression> parseCached() {
+        return cached.parse(query);
+    }
+
+    public static void main(final String[] argv) throws RunnerException {
+        new Runner(
+            new OptionsBuilder().include(QueryParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
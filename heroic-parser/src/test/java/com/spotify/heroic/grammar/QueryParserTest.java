@@ -38,6 +38,8 @@ import static com.spotify.heroic.grammar.Expression.range;
 import static com.spotify.heroic.grammar.Expression.reference;
 import static com.spotify.heroic.grammar.Expression.string;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 @RunWith(MockitoJUnitRunner.class)
 public class QueryParserTest {
@@ -196,6 +198,35 @@ public class QueryParserTest {
         parser.parseQuery("~ from points");
     }
 
+    @Test
+    public void testCachedStatements() {
+        final CoreQueryParser parser = new CoreQueryParser(1);
+        final String query = "average(10m) from points where foo = bar";
+
+        final List<Expression> first = parser.parse(query);
+
+        assertSame(first, parser.parse(query));
+        assertEquals(1, parser.cacheSize());
+
+        parser.parse("sum(10m) from points");
+        assertEquals(1, parser.cacheSize());
+        assertEquals(first, parser.parse(query));
+    }
+
+    @Test
+    public void testInvalidStatementsAreNotCached() {
+        final CoreQueryParser parser = new CoreQueryParser(10);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                parser.parse("~ from points");
+                fail("expected parse exception");
+            } catch (final ParseException e) {
+                assertEquals(0, parser.cacheSize());
+            }
+        }
+    }
+
     @Test
     public void testParseDateTime() {
         final Expression.Scope scope = new DefaultScope(0L);
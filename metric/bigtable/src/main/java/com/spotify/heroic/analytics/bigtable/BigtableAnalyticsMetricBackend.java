@@ -23,7 +23,9 @@ package com.spotify.heroic.analytics.bigtable;
 
 import com.spotify.heroic.QueryOptions;
 import com.spotify.heroic.async.AsyncObservable;
+import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.Series;
 import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.metric.BackendEntry;
 import com.spotify.heroic.metric.BackendKey;
@@ -128,6 +130,11 @@ class BigtableAnalyticsMetricBackend implements MetricBackend {
         return backend.countKey(key, options);
     }
 
+    @Override
+    public AsyncFuture<Long> compact(Series series, DateRange range) {
+        return backend.compact(series, range);
+    }
+
     @Override
     public AsyncFuture<MetricCollection> fetchRow(BackendKey key) {
         return backend.fetchRow(key);
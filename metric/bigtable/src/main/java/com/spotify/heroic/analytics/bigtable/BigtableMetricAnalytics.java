@@ -141,9 +141,9 @@ public class BigtableMetricAnalytics implements MetricAnalytics, LifeCycles {
                 final long value = row.getFamily(hitsColumnFamily).map(family -> {
                     final Family.LatestCellValueColumn col =
                         family.latestCellValue().iterator().next();
-                    final ByteBuffer buf = ByteBuffer.wrap(col.getValue().toByteArray());
+                    final ByteBuffer buf = col.getValue().asReadOnlyByteBuffer();
                     buf.order(ByteOrder.BIG_ENDIAN);
-                    return buf.getLong();
+                    return buf.getLong(buf.position());
                 }).orElse(0L);
 
                 return new SeriesHit(k.getSeries(), value);
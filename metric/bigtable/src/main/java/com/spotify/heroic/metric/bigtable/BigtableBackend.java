@@ -28,8 +28,8 @@ import com.google.cloud.bigtable.grpc.scanner.FlatRow;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.RequestTimer;
@@ -64,9 +64,6 @@ import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.Managed;
 import eu.toolchain.async.RetryPolicy;
 import eu.toolchain.async.RetryResult;
-import eu.toolchain.serializer.BytesSerialWriter;
-import eu.toolchain.serializer.Serializer;
-import eu.toolchain.serializer.SerializerFramework;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -74,6 +71,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import javax.inject.Inject;
@@ -97,17 +96,19 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
 
     public static final String POINTS = "points";
     public static final String EVENTS = "events";
+    public static final String BLOCKS = "blocks";
     public static final long PERIOD = 0x100000000L;
 
     private final AsyncFramework async;
-    private final SerializerFramework serializer;
-    private final Serializer<RowKey> rowKeySerializer;
+    private final RowKeyCache rowKeys;
     private final Managed<BigtableConnection> connection;
     private final Groups groups;
     private final String table;
     private final boolean configure;
     private final MetricBackendReporter reporter;
     private final ObjectMapper mapper;
+    private final boolean blockCompression;
+    private final long blockSize;
 
     private static final TypeReference<Map<String, String>> PAYLOAD_TYPE =
         new TypeReference<Map<String, String>>() {
@@ -117,22 +118,25 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
 
     @Inject
     public BigtableBackend(
-        final AsyncFramework async, @Named("common") final SerializerFramework serializer,
-        final Serializer<RowKey> rowKeySerializer, final Managed<BigtableConnection> connection,
-        final Groups groups, @Named("table") final String table,
+        final AsyncFramework async, final RowKeyCache rowKeys,
+        final Managed<BigtableConnection> connection, final Groups groups,
+        @Named("table") final String table,
         @Named("configure") final boolean configure, MetricBackendReporter reporter,
-        @Named("application/json") ObjectMapper mapper
+        @Named("application/json") ObjectMapper mapper,
+        @Named("blockCompression") final boolean blockCompression,
+        @Named("blockSize") final long blockSize
     ) {
         super(async);
         this.async = async;
-        this.serializer = serializer;
-        this.rowKeySerializer = rowKeySerializer;
+        this.rowKeys = rowKeys;
         this.connection = connection;
         this.groups = groups;
         this.table = table;
         this.configure = configure;
         this.reporter = reporter;
         this.mapper = mapper;
+        this.blockCompression = blockCompression;
+        this.blockSize = blockSize;
     }
 
     @Override
@@ -179,6 +183,13 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
                     return admin.createColumnFamily(metrics, EVENTS);
                 })));
 
+                if (blockCompression) {
+                    families.add(async.call(() -> metrics.getColumnFamily(BLOCKS).orElseGet(() -> {
+                        log.info("Creating missing column family: " + BLOCKS);
+                        return admin.createColumnFamily(metrics, BLOCKS);
+                    })));
+                }
+
                 return async.collectAndDiscard(families);
             });
     }
@@ -271,6 +282,157 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         });
     }
 
+    /**
+     * Rewrite raw points in the given range into compressed blocks.
+     * <p>
+     * Only blocks which are entirely covered by the range are compacted. Every block is written in
+     * the same row mutation that deletes the raw cells it replaces, so readers never observe a
+     * point twice, or not at all.
+     */
+    @Override
+    public AsyncFuture<Long> compact(final Series series, final DateRange range) {
+        if (!blockCompression) {
+            return async.resolved(0L);
+        }
+
+        return connection.doto(c -> {
+            final BigtableDataClient client = c.dataClient();
+            final List<AsyncFuture<Long>> compactions = new ArrayList<>();
+
+            final long start = base(range.getStart());
+            final long end = base(range.getEnd());
+
+            for (long base = start; base <= end; base += PERIOD) {
+                /* round the start up to the next block, to only compact complete blocks */
+                final long first =
+                    Math.max(blockStart(base, range.getStart() - 1) + blockSize, base);
+                final long last = Math.min(blockStart(base, range.getEnd()), base + PERIOD);
+
+                if (first >= last) {
+                    continue;
+                }
+
+                compactions.add(compactRow(client, new RowKey(series, base), first, last));
+            }
+
+            return async.collect(compactions).directTransform(counts -> {
+                long count = 0L;
+
+                for (final long n : counts) {
+                    count += n;
+                }
+
+                return count;
+            });
+        });
+    }
+
+    /**
+     * Compact all blocks in the given row which start in [first, last).
+     */
+    private AsyncFuture<Long> compactRow(
+        final BigtableDataClient client, final RowKey rowKey, final long first, final long last
+    ) throws IOException {
+        final long base = rowKey.getBase();
+        final ByteString rowKeyBytes = rowKeys.serialize(rowKey);
+
+        final ByteString startKey = serializeOffset(offset(first));
+        final ByteString endKey = serializeOffset(offset(last - 1));
+
+        final AsyncFuture<List<FlatRow>> raw = client.readRows(table, ReadRowsRequest
+            .builder()
+            .rowKey(rowKeyBytes)
+            .filter(RowFilter.chain(Arrays.asList(RowFilter
+                .newColumnRangeBuilder(POINTS)
+                .startQualifierClosed(startKey)
+                .endQualifierClosed(endKey)
+                .build(), RowFilter.onlyLatestCell())))
+            .build());
+
+        final AsyncFuture<List<FlatRow>> blocks = client.readRows(table, ReadRowsRequest
+            .builder()
+            .rowKey(rowKeyBytes)
+            .filter(RowFilter.chain(Arrays.asList(RowFilter
+                .newColumnRangeBuilder(BLOCKS)
+                .startQualifierClosed(startKey)
+                .endQualifierClosed(endKey)
+                .build(), RowFilter.onlyLatestCell())))
+            .build());
+
+        return raw.lazyTransform(rawRows -> blocks.lazyTransform(blockRows -> {
+            /* raw cells of every block, keyed by block start */
+            final Map<Long, List<FlatRow.Cell>> cells = new TreeMap<>();
+
+            for (final FlatRow row : rawRows) {
+                for (final FlatRow.Cell cell : row.getCells()) {
+                    final long timestamp = base + deserializeOffset(cell.getQualifier());
+                    cells
+                        .computeIfAbsent(blockStart(base, timestamp), k -> new ArrayList<>())
+                        .add(cell);
+                }
+            }
+
+            if (cells.isEmpty()) {
+                return async.resolved(0L);
+            }
+
+            final Map<Long, List<Point>> existing = new HashMap<>();
+
+            for (final FlatRow row : blockRows) {
+                for (final FlatRow.Cell cell : row.getCells()) {
+                    existing.put(base + deserializeOffset(cell.getQualifier()),
+                        PointBlockCodec.decode(cell.getValue()));
+                }
+            }
+
+            final List<AsyncFuture<Void>> writes = new ArrayList<>();
+            Mutations.Builder builder = Mutations.builder();
+            long count = 0L;
+
+            for (final Map.Entry<Long, List<FlatRow.Cell>> e : cells.entrySet()) {
+                final long blockStart = e.getKey();
+                final List<FlatRow.Cell> blockCells = e.getValue();
+
+                if (blockCells.size() >= MAX_BATCH_SIZE) {
+                    log.warn("{}: too many cells to compact block at {}", rowKey, blockStart);
+                    continue;
+                }
+
+                /* each block and its deletes must fit in a single mutation */
+                if (builder.size() > 0 && builder.size() + blockCells.size() >= MAX_BATCH_SIZE) {
+                    writes.add(client.mutateRow(table, rowKeyBytes, builder.build()));
+                    builder = Mutations.builder();
+                }
+
+                final List<Point> points = new ArrayList<>();
+
+                for (final FlatRow.Cell cell : blockCells) {
+                    points.add(new Point(base + deserializeOffset(cell.getQualifier()),
+                        deserializeValue(cell.getValue())));
+                }
+
+                final List<Point> merged = mergeRawOverBlocks(points,
+                    existing.getOrDefault(blockStart, ImmutableList.of()));
+
+                builder.setCell(BLOCKS, serializeOffset(offset(blockStart)),
+                    PointBlockCodec.encode(merged));
+
+                for (final FlatRow.Cell cell : blockCells) {
+                    builder.deleteCell(POINTS, cell.getQualifier());
+                }
+
+                count += blockCells.size();
+            }
+
+            if (builder.size() > 0) {
+                writes.add(client.mutateRow(table, rowKeyBytes, builder.build()));
+            }
+
+            final long compacted = count;
+            return async.collectAndDiscard(writes).directTransform(v -> compacted);
+        }));
+    }
+
     @Override
     public Iterable<BackendEntry> listEntries() {
         return ImmutableList.of();
@@ -356,14 +518,14 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         final RequestTimer<WriteMetric> timer = WriteMetric.timer();
 
         for (final Pair<RowKey, Mutations> e : saved) {
-            final ByteString rowKeyBytes = serialize(e.getKey(), rowKeySerializer);
+            final ByteString rowKeyBytes = rowKeys.serialize(e.getKey());
             writes.add(client
                 .mutateRow(table, rowKeyBytes, e.getValue())
                 .directTransform(result -> timer.end()));
         }
 
         for (final Map.Entry<RowKey, Mutations.Builder> e : building.entrySet()) {
-            final ByteString rowKeyBytes = serialize(e.getKey(), rowKeySerializer);
+            final ByteString rowKeyBytes = rowKeys.serialize(e.getKey());
             writes.add(client
                 .mutateRow(table, rowKeyBytes, e.getValue().build())
                 .directTransform(result -> timer.end()));
@@ -391,7 +553,7 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
 
         final RequestTimer<WriteMetric> timer = WriteMetric.timer();
 
-        final ByteString rowKeyBytes = serialize(rowKey, rowKeySerializer);
+        final ByteString rowKeyBytes = rowKeys.serialize(rowKey);
         return client
             .mutateRow(table, rowKeyBytes, builder.build())
             .directTransform(result -> timer.end());
@@ -416,28 +578,29 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
                     .build(), RowFilter.onlyLatestCell())))
                 .build());
 
-            final Function<FlatRow.Cell, Metric> transform =
-                cell -> p.deserialize(cell.getQualifier(), cell.getValue());
+            final AsyncFuture<List<Point>> readBlocks = readBlocks(client, p, watcher);
 
             final QueryTrace.NamedWatch w = QueryTrace.watch(FETCH_SEGMENT);
 
-            fetches.add(readRows.directTransform(result -> {
-                final List<Iterable<Metric>> points = new ArrayList<>();
+            fetches.add(readRows.lazyTransform(result -> readBlocks.directTransform(blocks -> {
+                final List<Iterable<? extends Metric>> points = new ArrayList<>();
 
                 for (final FlatRow row : result) {
                     watcher.readData(row.getCells().size());
-                    points.add(Iterables.transform(row.getCells(), transform));
+                    points.add(p.deserialize(row.getCells()));
                 }
 
                 final QueryTrace trace = w.end();
                 final ImmutableList<Long> times = ImmutableList.of(trace.getElapsed());
-                final List<Metric> data =
-                    ImmutableList.copyOf(Iterables.mergeSorted(points, Metric.comparator()));
+                final List<Metric> data = mergeRawOverBlocks(
+                    ImmutableList.copyOf(Iterables.mergeSorted(points, Metric.comparator())),
+                    blocks);
+
                 final List<MetricCollection> groups =
                     ImmutableList.of(MetricCollection.build(type, data));
 
                 return FetchData.of(trace, times, groups);
-            }));
+            })));
         }
 
         return async.collect(fetches, FetchData.collect(FETCH)).directTransform(result -> {
@@ -467,17 +630,33 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
                     .build(), RowFilter.onlyLatestCell())))
                 .build());
 
-            final Function<FlatRow.Cell, Metric> transform =
-                cell -> p.deserialize(cell.getQualifier(), cell.getValue());
+            final AsyncFuture<List<Point>> readBlocks = readBlocks(client, p, watcher);
+
+            fetches.add(readRows.lazyTransform(result -> readBlocks.directTransform(blocks -> {
+                if (blocks.isEmpty()) {
+                    for (final FlatRow row : result) {
+                        watcher.readData(row.getCells().size());
+                        final List<Metric> metrics = p.deserialize(row.getCells());
+                        metricsConsumer.accept(MetricCollection.build(type, metrics));
+                    }
+
+                    return FetchData.result(fs.end());
+                }
+
+                /* raw cells which were written after compaction might overlap with blocks */
+                final List<Iterable<? extends Metric>> points = new ArrayList<>();
 
-            fetches.add(readRows.directTransform(result -> {
                 for (final FlatRow row : result) {
                     watcher.readData(row.getCells().size());
-                    final List<Metric> metrics = Lists.transform(row.getCells(), transform);
-                    metricsConsumer.accept(MetricCollection.build(type, metrics));
+                    points.add(p.deserialize(row.getCells()));
                 }
+
+                final List<Metric> metrics = mergeRawOverBlocks(
+                    ImmutableList.copyOf(Iterables.mergeSorted(points, Metric.comparator())),
+                    blocks);
+                metricsConsumer.accept(MetricCollection.build(type, metrics));
                 return FetchData.result(fs.end());
-            }));
+            })));
         }
         return async.collect(fetches, FetchData.collectResult(FETCH)).directTransform(result -> {
             watcher.accessedRows(prepared.size());
@@ -485,11 +664,45 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         });
     }
 
-    <T> ByteString serialize(T rowKey, Serializer<T> serializer) throws IOException {
-        try (final BytesSerialWriter writer = this.serializer.writeBytes()) {
-            serializer.serialize(writer, rowKey);
-            return ByteString.copyFrom(writer.toByteArray());
+    /**
+     * Read and decode the points of all compressed blocks that overlap with a prepared query.
+     */
+    private AsyncFuture<List<Point>> readBlocks(
+        final BigtableDataClient client, final PreparedQuery p, final FetchQuotaWatcher watcher
+    ) {
+        if (!p.blocksStart.isPresent()) {
+            return async.resolved(ImmutableList.of());
         }
+
+        final AsyncFuture<List<FlatRow>> readRows = client.readRows(table, ReadRowsRequest
+            .builder()
+            .rowKey(p.request.getRowKey())
+            .filter(RowFilter.chain(Arrays.asList(RowFilter
+                .newColumnRangeBuilder(BLOCKS)
+                .startQualifierClosed(p.blocksStart.get())
+                .endQualifierClosed(p.request.getEndQualifierClosed())
+                .build(), RowFilter.onlyLatestCell())))
+            .build());
+
+        return readRows.directTransform(result -> {
+            final List<Point> points = new ArrayList<>();
+
+            for (final FlatRow row : result) {
+                for (final FlatRow.Cell cell : row.getCells()) {
+                    for (final Point point : PointBlockCodec.decode(cell.getValue())) {
+                        final long t = point.getTimestamp();
+
+                        /* same bounds as the column range used for raw cells */
+                        if (t > p.range.start() && t <= p.range.end()) {
+                            points.add(point);
+                        }
+                    }
+                }
+            }
+
+            watcher.readData(points.size());
+            return points;
+        });
     }
 
     static long base(long timestamp) {
@@ -500,6 +713,51 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         return timestamp % PERIOD;
     }
 
+    /**
+     * Get the start of the compressed block that the given timestamp belongs to.
+     * <p>
+     * Blocks are aligned to the base of their row, so the last block of every row is truncated.
+     */
+    long blockStart(long base, long timestamp) {
+        final long offset = timestamp - base;
+        return base + offset - Math.floorMod(offset, blockSize);
+    }
+
+    /**
+     * Merge raw cells with points decoded from compacted blocks, both sorted by timestamp.
+     * <p>
+     * A raw cell with the same timestamp as a compacted point was written after compaction, so it
+     * takes precedence.
+     */
+    static <T extends Metric> List<T> mergeRawOverBlocks(
+        final List<? extends T> raw, final List<? extends T> blocks
+    ) {
+        final List<T> result = new ArrayList<>(raw.size() + blocks.size());
+
+        int r = 0;
+        int b = 0;
+
+        while (r < raw.size() && b < blocks.size()) {
+            final long rt = raw.get(r).getTimestamp();
+            final long bt = blocks.get(b).getTimestamp();
+
+            if (rt <= bt) {
+                result.add(raw.get(r++));
+
+                /* the raw cell was written after the block was compacted */
+                if (rt == bt) {
+                    b++;
+                }
+            } else {
+                result.add(blocks.get(b++));
+            }
+        }
+
+        result.addAll(raw.subList(r, raw.size()));
+        result.addAll(blocks.subList(b, blocks.size()));
+        return result;
+    }
+
     List<PreparedQuery> ranges(
         final Series series, final DateRange range, final String columnFamily,
         final BiFunction<Long, ByteString, Metric> deserializer
@@ -517,13 +775,24 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
             }
 
             final RowKey key = new RowKey(series, base);
-            final ByteString keyBlob = serialize(key, rowKeySerializer);
+            final ByteString keyBlob = rowKeys.serialize(key);
             final ByteString startKey = serializeOffset(offset(modified.start()));
             final ByteString endKey = serializeOffset(offset(modified.end()));
 
             final ReadRowRangeRequest request =
                 new ReadRowRangeRequest(keyBlob, columnFamily, startKey, endKey);
-            bases.add(new PreparedQuery(request, deserializer, base));
+
+            /* the block containing the start of the range might contain matching points */
+            final Optional<ByteString> blocksStart;
+
+            if (blockCompression && POINTS.equals(columnFamily)) {
+                final long blockStart = blockStart(base, modified.start());
+                blocksStart = Optional.of(serializeOffset(offset(blockStart)));
+            } else {
+                blocksStart = Optional.empty();
+            }
+
+            bases.add(new PreparedQuery(request, blocksStart, modified, deserializer, base));
         }
 
         return bases;
@@ -532,19 +801,19 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
     ByteString serializeValue(double value) {
         final ByteBuffer buffer =
             ByteBuffer.allocate(Double.BYTES).putLong(Double.doubleToLongBits(value));
-        return ByteString.copyFrom(buffer.array());
+        return UnsafeByteOperations.unsafeWrap(buffer.array());
     }
 
     ByteString serializeEvent(Event event) {
         try {
-            return ByteString.copyFrom(mapper.writeValueAsBytes(event.getPayload()));
+            return UnsafeByteOperations.unsafeWrap(mapper.writeValueAsBytes(event.getPayload()));
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
     }
 
     static double deserializeValue(ByteString value) {
-        return Double.longBitsToDouble(ByteBuffer.wrap(value.toByteArray()).getLong());
+        return Double.longBitsToDouble(readLong(value, 0, Double.BYTES));
     }
 
     /**
@@ -572,29 +841,54 @@ public class BigtableBackend extends AbstractMetricBackend implements LifeCycles
         bytes[1] = (byte) ((offset >> 16) & 0xff);
         bytes[2] = (byte) ((offset >> 8) & 0xff);
         bytes[3] = (byte) ((offset >> 0) & 0xff);
-        return ByteString.copyFrom(bytes);
+        return UnsafeByteOperations.unsafeWrap(bytes);
     }
 
     static long deserializeOffset(ByteString value) {
-        final byte[] bytes = value.toByteArray();
+        return readLong(value, 0, 4);
+    }
+
+    /**
+     * Read a big-endian integer of the given width straight out of a byte string.
+     * <p>
+     * Cells handed out by the client are views into the response buffer, so this avoids copying
+     * every qualifier and value into a temporary array before decoding it.
+     */
+    static long readLong(final ByteString value, final int offset, final int width) {
+        if (value.size() < offset + width) {
+            throw new IllegalArgumentException(
+                "expected at least " + (offset + width) + " bytes, but got " + value.size());
+        }
 
-        // @formatter:off
-        return ((long) (bytes[0] & 0xff) << 24) +
-               ((long) (bytes[1] & 0xff) << 16) +
-               ((long) (bytes[2] & 0xff) << 8) +
-               ((long) (bytes[3] & 0xff) << 0);
-        // @formatter:on
+        long result = 0L;
+
+        for (int i = offset; i < offset + width; i++) {
+            result = (result << 8) | (value.byteAt(i) & 0xffL);
+        }
+
+        return result;
     }
 
     @RequiredArgsConstructor
     private static final class PreparedQuery {
         private final ReadRowRangeRequest request;
+        private final Optional<ByteString> blocksStart;
+        private final DateRange range;
         private final BiFunction<Long, ByteString, Metric> deserializer;
         private final long base;
 
-        private Metric deserialize(final ByteString qualifier, final ByteString value) {
-            final long timestamp = base + deserializeOffset(qualifier);
-            return deserializer.apply(timestamp, value);
+        /**
+         * Eagerly decode all cells of a row, each cell is decoded exactly once.
+         */
+        private List<Metric> deserialize(final List<FlatRow.Cell> cells) {
+            final List<Metric> metrics = new ArrayList<>(cells.size());
+
+            for (final FlatRow.Cell cell : cells) {
+                final long timestamp = base + deserializeOffset(cell.getQualifier());
+                metrics.add(deserializer.apply(timestamp, cell.getValue()));
+            }
+
+            return metrics;
         }
     }
 }
@@ -27,6 +27,7 @@ import static java.util.Optional.of;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.spotify.heroic.ExtraParameters;
+import com.spotify.heroic.common.Duration;
 import com.spotify.heroic.common.DynamicModuleId;
 import com.spotify.heroic.common.Groups;
 import com.spotify.heroic.common.ModuleId;
@@ -45,7 +46,9 @@ import eu.toolchain.async.AsyncFuture;
 import eu.toolchain.async.Managed;
 import eu.toolchain.async.ManagedSetup;
 import eu.toolchain.serializer.Serializer;
+import eu.toolchain.serializer.SerializerFramework;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Named;
 import lombok.Data;
 
@@ -63,6 +66,9 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
     public static final boolean DEFAULT_DISABLE_BULK_MUTATIONS = false;
     public static final int DEFAULT_FLUSH_INTERVAL_SECONDS = 2;
     public static final boolean DEFAULT_FAKE = false;
+    public static final long DEFAULT_ROW_KEY_CACHE_SIZE = 100000;
+    public static final boolean DEFAULT_BLOCK_COMPRESSION = false;
+    public static final Duration DEFAULT_BLOCK_SIZE = Duration.of(2, TimeUnit.HOURS);
 
     private final Optional<String> id;
     private final Groups groups;
@@ -75,6 +81,9 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
     private final int flushIntervalSeconds;
     private final Optional<Integer> batchSize;
     private final boolean fake;
+    private final long rowKeyCacheSize;
+    private final boolean blockCompression;
+    private final Duration blockSize;
 
     @JsonCreator
     public BigtableMetricModule(
@@ -87,7 +96,10 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
         @JsonProperty("disableBulkMutations") Optional<Boolean> disableBulkMutations,
         @JsonProperty("flushIntervalSeconds") Optional<Integer> flushIntervalSeconds,
         @JsonProperty("batchSize") Optional<Integer> batchSize,
-        @JsonProperty("fake") Optional<Boolean> fake
+        @JsonProperty("fake") Optional<Boolean> fake,
+        @JsonProperty("rowKeyCacheSize") Optional<Long> rowKeyCacheSize,
+        @JsonProperty("blockCompression") Optional<Boolean> blockCompression,
+        @JsonProperty("blockSize") Optional<Duration> blockSize
     ) {
         this.id = id;
         this.groups = groups.orElseGet(Groups::empty).or(DEFAULT_GROUP);
@@ -100,6 +112,16 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
         this.flushIntervalSeconds = flushIntervalSeconds.orElse(DEFAULT_FLUSH_INTERVAL_SECONDS);
         this.batchSize = batchSize;
         this.fake = fake.orElse(DEFAULT_FAKE);
+        this.rowKeyCacheSize = rowKeyCacheSize.orElse(DEFAULT_ROW_KEY_CACHE_SIZE);
+        this.blockCompression = blockCompression.orElse(DEFAULT_BLOCK_COMPRESSION);
+        this.blockSize = blockSize.orElse(DEFAULT_BLOCK_SIZE);
+
+        final long blockSizeMillis = this.blockSize.toMilliseconds();
+
+        if (blockSizeMillis <= 0 || blockSizeMillis > BigtableBackend.PERIOD) {
+            throw new IllegalArgumentException("blockSize: must be positive and at most " +
+                BigtableBackend.PERIOD + "ms");
+        }
     }
 
     @Override
@@ -177,12 +199,35 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
                 params.contains(BIGTABLE_CONFIGURE_PARAM) || configure;
         }
 
+        @Provides
+        @BigtableScope
+        @Named("blockCompression")
+        public boolean blockCompression() {
+            return blockCompression;
+        }
+
+        @Provides
+        @BigtableScope
+        @Named("blockSize")
+        public long blockSize() {
+            return blockSize.toMilliseconds();
+        }
+
         @Provides
         @BigtableScope
         public Serializer<RowKey> rowKeySerializer() {
             return new MetricsRowKeySerializer();
         }
 
+        @Provides
+        @BigtableScope
+        public RowKeyCache rowKeyCache(
+            @Named("common") final SerializerFramework serializer,
+            final Serializer<RowKey> rowKeySerializer
+        ) {
+            return new RowKeyCache(serializer, rowKeySerializer, rowKeyCacheSize);
+        }
+
         @Provides
         @BigtableScope
         public Groups groups() {
@@ -217,6 +262,9 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
         private Optional<Integer> flushIntervalSeconds = empty();
         private Optional<Integer> batchSize = empty();
         private Optional<Boolean> fake = empty();
+        private Optional<Long> rowKeyCacheSize = empty();
+        private Optional<Boolean> blockCompression = empty();
+        private Optional<Duration> blockSize = empty();
 
         public Builder id(String id) {
             this.id = of(id);
@@ -273,9 +321,25 @@ public final class BigtableMetricModule implements MetricModule, DynamicModuleId
             return this;
         }
 
+        public Builder rowKeyCacheSize(final long rowKeyCacheSize) {
+            this.rowKeyCacheSize = of(rowKeyCacheSize);
+            return this;
+        }
+
+        public Builder blockCompression(final boolean blockCompression) {
+            this.blockCompression = of(blockCompression);
+            return this;
+        }
+
+        public Builder blockSize(final Duration blockSize) {
+            this.blockSize = of(blockSize);
+            return this;
+        }
+
         public BigtableMetricModule build() {
             return new BigtableMetricModule(id, groups, project, instance, table, credentials,
-                configure, disableBulkMutations, flushIntervalSeconds, batchSize, fake);
+                configure, disableBulkMutations, flushIntervalSeconds, batchSize, fake,
+                rowKeyCacheSize, blockCompression, blockSize);
         }
     }
 }
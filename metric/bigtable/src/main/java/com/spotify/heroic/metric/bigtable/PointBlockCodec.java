@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric.bigtable;
+
+import com.google.protobuf.ByteString;
+import com.spotify.heroic.metric.Point;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compressed encoding for a block of points.
+ * <p>
+ * Follows the scheme described in <em>Gorilla: A Fast, Scalable, In-Memory Time Series
+ * Database</em>. Timestamps are encoded as a delta-of-delta with a variable-length prefix, and
+ * values as the XOR against the previous value, storing only the meaningful bits.
+ * <p>
+ * A block starts with a one byte version, followed by the number of points as a 32-bit integer.
+ * The first point is stored uncompressed.
+ */
+final class PointBlockCodec {
+    static final int VERSION = 1;
+
+    private PointBlockCodec() {
+    }
+
+    /**
+     * Encode the given points.
+     *
+     * @param points Points to encode, sorted by timestamp.
+     * @return The encoded block.
+     */
+    static ByteString encode(final List<Point> points) {
+        final BitWriter out = new BitWriter();
+
+        out.write(VERSION, 8);
+        out.write(points.size(), 32);
+
+        if (points.isEmpty()) {
+            return out.toByteString();
+        }
+
+        final Point first = points.get(0);
+
+        long previousTimestamp = first.getTimestamp();
+        long previousDelta = 0L;
+        long previousValue = Double.doubleToRawLongBits(first.getValue());
+        int previousLeading = -1;
+        int previousTrailing = 0;
+
+        out.write(previousTimestamp, 64);
+        out.write(previousValue, 64);
+
+        for (int i = 1; i < points.size(); i++) {
+            final Point p = points.get(i);
+
+            final long delta = p.getTimestamp() - previousTimestamp;
+            final long deltaOfDelta = delta - previousDelta;
+
+            if (deltaOfDelta == 0) {
+                out.write(0b0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                out.write(0b10, 2);
+                out.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                out.write(0b110, 3);
+                out.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                out.write(0b1110, 4);
+                out.write(deltaOfDelta + 2047, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(deltaOfDelta, 64);
+            }
+
+            previousTimestamp = p.getTimestamp();
+            previousDelta = delta;
+
+            final long value = Double.doubleToRawLongBits(p.getValue());
+            final long xor = value ^ previousValue;
+            previousValue = value;
+
+            if (xor == 0) {
+                out.write(0b0, 1);
+                continue;
+            }
+
+            /* leading zeros are stored in five bits */
+            final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            final int trailing = Long.numberOfTrailingZeros(xor);
+
+            if (previousLeading >= 0 && leading >= previousLeading &&
+                trailing >= previousTrailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                continue;
+            }
+
+            final int meaningful = 64 - leading - trailing;
+
+            out.write(0b11, 2);
+            out.write(leading, 5);
+            out.write(meaningful - 1, 6);
+            out.write(xor >>> trailing, meaningful);
+
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+
+        return out.toByteString();
+    }
+
+    /**
+     * Decode the given block.
+     *
+     * @param block Block to decode.
+     * @return The decoded points, sorted by timestamp.
+     * @throws IllegalArgumentException if the block is malformed.
+     */
+    static List<Point> decode(final ByteString block) {
+        final BitReader in = new BitReader(block.asReadOnlyByteBuffer());
+
+        final int version = (int) in.read(8);
+
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported block version: " + version);
+        }
+
+        final int size = (int) in.read(32);
+
+        if (size < 0) {
+            throw new IllegalArgumentException("Illegal block size: " + size);
+        }
+
+        final List<Point> points = new ArrayList<>(size);
+
+        if (size == 0) {
+            return points;
+        }
+
+        long timestamp = in.read(64);
+        long delta = 0L;
+        long value = in.read(64);
+        int leading = 0;
+        int trailing = 0;
+
+        points.add(new Point(timestamp, Double.longBitsToDouble(value)));
+
+        for (int i = 1; i < size; i++) {
+            final long deltaOfDelta;
+
+            if (!in.readBit()) {
+                deltaOfDelta = 0L;
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.read(7) - 63;
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.read(9) - 255;
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.read(12) - 2047;
+            } else {
+                deltaOfDelta = in.read(64);
+            }
+
+            delta += deltaOfDelta;
+            timestamp += delta;
+
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.read(5);
+                    final int meaningful = (int) in.read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+
+                value ^= in.read(64 - leading - trailing) << trailing;
+            }
+
+            points.add(new Point(timestamp, Double.longBitsToDouble(value)));
+        }
+
+        return points;
+    }
+
+    private static final class BitWriter {
+        private byte[] bytes = new byte[64];
+        private int position = 0;
+
+        /**
+         * Write the given number of low-order bits of the value, most significant bit first.
+         */
+        void write(final long value, final int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                writeBit(((value >>> i) & 1L) != 0);
+            }
+        }
+
+        void writeBit(final boolean bit) {
+            final int index = position >>> 3;
+
+            if (index >= bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+
+            if (bit) {
+                bytes[index] |= (byte) (0x80 >>> (position & 7));
+            }
+
+            position++;
+        }
+
+        ByteString toByteString() {
+            return ByteString.copyFrom(bytes, 0, (position + 7) >>> 3);
+        }
+    }
+
+    private static final class BitReader {
+        /* a read-only view of the block, decoded with absolute gets to avoid copying it */
+        private final ByteBuffer bytes;
+        private final int start;
+        private int position = 0;
+
+        BitReader(final ByteBuffer bytes) {
+            this.bytes = bytes;
+            this.start = bytes.position();
+        }
+
+        long read(final int bits) {
+            long value = 0L;
+
+            for (int i = 0; i < bits; i++) {
+                value = (value << 1) | (readBit() ? 1L : 0L);
+            }
+
+            return value;
+        }
+
+        boolean readBit() {
+            final int index = position >>> 3;
+
+            if (index >= bytes.remaining()) {
+                throw new IllegalArgumentException("Block is truncated");
+            }
+
+            final boolean bit = (bytes.get(start + index) & (0x80 >>> (position & 7))) != 0;
+            position++;
+            return bit;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.metric.bigtable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import com.spotify.heroic.common.Series;
+import eu.toolchain.serializer.BytesSerialWriter;
+import eu.toolchain.serializer.Serializer;
+import eu.toolchain.serializer.SerializerFramework;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Serializes row keys, caching the serialized series prefix of each key.
+ * <p>
+ * A row key is serialized as the series, followed by the base as a fixed-width, big-endian
+ * 64-bit value. Only the base differs between the row keys of a series, so it is appended to the
+ * cached prefix instead of serializing the full series for every row.
+ */
+public class RowKeyCache {
+    private final SerializerFramework serializer;
+    private final Serializer<RowKey> rowKeySerializer;
+    private final Cache<Series, byte[]> prefixes;
+
+    public RowKeyCache(
+        final SerializerFramework serializer, final Serializer<RowKey> rowKeySerializer,
+        final long maximumSize
+    ) {
+        this.serializer = serializer;
+        this.rowKeySerializer = rowKeySerializer;
+        this.prefixes = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    public ByteString serialize(final RowKey rowKey) throws IOException {
+        final byte[] prefix = prefix(rowKey.getSeries());
+        final byte[] bytes = Arrays.copyOf(prefix, prefix.length + Long.BYTES);
+
+        final long base = rowKey.getBase();
+
+        for (int i = 0; i < Long.BYTES; i++) {
+            bytes[prefix.length + i] = (byte) (base >>> (56 - i * 8));
+        }
+
+        /* the array is never modified after this point, so it is safe to wrap without copying */
+        return UnsafeByteOperations.unsafeWrap(bytes);
+    }
+
+    private byte[] prefix(final Series series) throws IOException {
+        try {
+            return prefixes.get(series, () -> serializePrefix(series));
+        } catch (final ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private byte[] serializePrefix(final Series series) throws IOException {
+        try (final BytesSerialWriter writer = serializer.writeBytes()) {
+            rowKeySerializer.serialize(writer, new RowKey(series, 0L));
+            final byte[] full = writer.toByteArray();
+            return Arrays.copyOf(full, full.length - Long.BYTES);
+        }
+    }
+}
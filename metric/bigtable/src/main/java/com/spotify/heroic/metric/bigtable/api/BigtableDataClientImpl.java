@@ -200,6 +200,8 @@ public class BigtableDataClientImpl implements BigtableDataClient {
             }
         });
 
+        /* abort the request if the result is no longer needed */
+        future.onCancelled(() -> request.cancel(true));
         return future;
     }
 
@@ -205,6 +205,25 @@ public class FakeBigtableConnection implements BigtableConnection {
                             }
 
                             rowStorage.runSetCell(setCell);
+                            break;
+                        case DELETE_FROM_COLUMN:
+                            final Mutation.DeleteFromColumn deleteFromColumn =
+                                mutation.getDeleteFromColumn();
+                            final ColumnFamily deleteFamily = columnFamilies.get(
+                                Pair.of(table, deleteFromColumn.getFamilyName()));
+
+                            if (deleteFamily == null) {
+                                throw new IllegalArgumentException(
+                                    "no such column family: " + deleteFromColumn.getFamilyName());
+                            }
+
+                            final RowStorage deleteStorage =
+                                rows.get(Pair.of(rowKey, deleteFamily));
+
+                            if (deleteStorage != null) {
+                                deleteStorage.runDeleteFromColumn(deleteFromColumn);
+                            }
+
                             break;
                         default:
                             throw new IllegalArgumentException(
@@ -258,6 +277,10 @@ public class FakeBigtableConnection implements BigtableConnection {
             storage.put(setCell.getColumnQualifier(), setCell.getValue());
         }
 
+        void runDeleteFromColumn(final Mutation.DeleteFromColumn deleteFromColumn) {
+            storage.remove(deleteFromColumn.getColumnQualifier());
+        }
+
         FlatRow readRows(
             final ByteString rowKey, final ColumnFamily columnFamily, final ReadRowsRequest request,
             final Function<ByteString, Boolean> matchesColumn
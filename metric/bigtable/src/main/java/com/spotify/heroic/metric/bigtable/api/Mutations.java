@@ -67,6 +67,20 @@ public class Mutations {
             return this;
         }
 
+        public Builder deleteCell(String family, ByteString columnQualifier) {
+            final com.google.bigtable.v2.Mutation.DeleteFromColumn.Builder deleteFromColumn =
+                com.google.bigtable.v2.Mutation.DeleteFromColumn
+                    .newBuilder()
+                    .setFamilyName(family)
+                    .setColumnQualifier(columnQualifier);
+
+            mutations.add(com.google.bigtable.v2.Mutation
+                .newBuilder()
+                .setDeleteFromColumn(deleteFromColumn)
+                .build());
+            return this;
+        }
+
         public Mutations build() {
             return new Mutations(ImmutableList.copyOf(mutations));
         }
@@ -1,8 +1,11 @@
 package com.spotify.heroic.metric.bigtable;
 
+import com.google.common.collect.ImmutableList;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.ByteString.ByteIterator;
+import com.spotify.heroic.metric.Point;
 import eu.toolchain.serializer.HexUtils;
+import java.util.List;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -20,6 +23,49 @@ public class BigtableBackendTest {
         checkSmaller(0x1000000L, 0xffffffffL);
     }
 
+    /**
+     * Points which are overwritten after their block has been compacted are read from raw cells.
+     */
+    @Test
+    public void testOverwriteAfterCompaction() {
+        final List<Point> blocks =
+            ImmutableList.of(new Point(1L, 1D), new Point(2L, 2D), new Point(4L, 4D));
+        final List<Point> raw = ImmutableList.of(new Point(2L, 20D), new Point(3L, 30D),
+            new Point(4L, 40D), new Point(5L, 50D));
+
+        assertEquals(ImmutableList.of(new Point(1L, 1D), new Point(2L, 20D), new Point(3L, 30D),
+            new Point(4L, 40D), new Point(5L, 50D)),
+            BigtableBackend.mergeRawOverBlocks(raw, blocks));
+
+        assertEquals(blocks, BigtableBackend.mergeRawOverBlocks(ImmutableList.of(), blocks));
+        assertEquals(raw, BigtableBackend.mergeRawOverBlocks(raw, ImmutableList.of()));
+    }
+
+    @Test
+    public void testDeserializeFromView() {
+        final ByteString offset = ByteString
+            .copyFrom(new byte[]{0x7f, 0x01, 0x02, 0x03, (byte) 0xff, 0x7f})
+            .substring(1, 5);
+
+        assertEquals(0x010203ffL, BigtableBackend.deserializeOffset(offset));
+
+        final double value = -42.125D;
+        final long bits = Double.doubleToLongBits(value);
+        final byte[] bytes = new byte[10];
+
+        for (int i = 0; i < Double.BYTES; i++) {
+            bytes[i + 1] = (byte) (bits >>> (56 - i * 8));
+        }
+
+        assertEquals(value,
+            BigtableBackend.deserializeValue(ByteString.copyFrom(bytes).substring(1, 9)), 0D);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeserializeTruncated() {
+        BigtableBackend.deserializeValue(ByteString.copyFrom(new byte[]{0x01, 0x02}));
+    }
+
     private void checkSmaller(final long s, final long l) {
         assertEquals(BigtableBackend.offset(s), s);
         assertEquals(BigtableBackend.offset(l), l);
@@ -0,0 +1,83 @@
+package com.spotify.heroic.metric.bigtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import com.spotify.heroic.metric.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class PointBlockCodecTest {
+    @Test
+    public void testEmpty() {
+        assertEquals(ImmutableList.of(), roundTrip(ImmutableList.of()));
+    }
+
+    @Test
+    public void testSingle() {
+        final List<Point> points = ImmutableList.of(new Point(1234L, 42D));
+        assertEquals(points, roundTrip(points));
+    }
+
+    @Test
+    public void testRegular() {
+        final List<Point> points = new ArrayList<>();
+
+        for (int i = 0; i < 720; i++) {
+            points.add(new Point(1000000L + i * 10000L, 100D));
+        }
+
+        final ByteString block = PointBlockCodec.encode(points);
+
+        assertEquals(points, PointBlockCodec.decode(block));
+        /* header, first point, first delta, and two bits for every following point */
+        assertTrue(block.size() <= 5 + 16 + 9 + 720 / 4);
+    }
+
+    @Test
+    public void testIrregular() {
+        final Random random = new Random(0x42);
+        final List<Point> points = new ArrayList<>();
+
+        long timestamp = 0L;
+
+        for (int i = 0; i < 1000; i++) {
+            /* mix small jitter with large gaps to exercise every delta-of-delta bucket */
+            timestamp += 1 + (i % 10 == 0 ? random.nextInt(1000000) : random.nextInt(100));
+            points.add(new Point(timestamp, random.nextGaussian() * 1000D));
+        }
+
+        assertEquals(points, roundTrip(points));
+    }
+
+    @Test
+    public void testSpecialValues() {
+        final List<Point> points = ImmutableList.of(new Point(0L, 0D), new Point(1L, -0D),
+            new Point(2L, Double.NaN), new Point(3L, Double.POSITIVE_INFINITY),
+            new Point(4L, Double.NEGATIVE_INFINITY), new Point(5L, Double.MIN_VALUE),
+            new Point(6L, Double.MAX_VALUE), new Point(7L, 1D), new Point(8L, 1D));
+
+        assertEquals(points, roundTrip(points));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedVersion() {
+        PointBlockCodec.decode(ByteString.copyFrom(new byte[]{(byte) 0xff, 0, 0, 0, 0}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        final ByteString block = PointBlockCodec.encode(
+            ImmutableList.of(new Point(0L, 1D), new Point(10L, 2D), new Point(25L, 3D)));
+
+        PointBlockCodec.decode(block.substring(0, block.size() - 2));
+    }
+
+    private List<Point> roundTrip(final List<Point> points) {
+        return PointBlockCodec.decode(PointBlockCodec.encode(points));
+    }
+}
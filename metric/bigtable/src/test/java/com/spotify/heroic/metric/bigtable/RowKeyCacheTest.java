@@ -0,0 +1,39 @@
+package com.spotify.heroic.metric.bigtable;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.ByteString;
+import com.spotify.heroic.common.Series;
+import eu.toolchain.serializer.BytesSerialWriter;
+import eu.toolchain.serializer.Serializer;
+import eu.toolchain.serializer.SerializerFramework;
+import eu.toolchain.serializer.TinySerializer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RowKeyCacheTest {
+    private final SerializerFramework serializerFramework = TinySerializer.builder().build();
+    private final Serializer<RowKey> serializer = new MetricsRowKeySerializer();
+
+    private final Series a = Series.of("key", ImmutableMap.of("from", "123", "to", "4567"));
+    private final Series b = Series.of("other", ImmutableMap.of("åäö", "value"));
+
+    @Test
+    public void testSameAsSerializer() throws Exception {
+        final RowKeyCache cache = new RowKeyCache(serializerFramework, serializer, 1);
+
+        for (final Series s : new Series[]{a, b, a}) {
+            for (final long base : new long[]{0L, 1L, BigtableBackend.PERIOD, Long.MAX_VALUE}) {
+                final RowKey rowKey = new RowKey(s, base);
+                assertEquals(expected(rowKey), cache.serialize(rowKey));
+            }
+        }
+    }
+
+    private ByteString expected(final RowKey rowKey) throws Exception {
+        try (final BytesSerialWriter writer = serializerFramework.writeBytes()) {
+            serializer.serialize(writer, rowKey);
+            return ByteString.copyFrom(writer.toByteArray());
+        }
+    }
+}
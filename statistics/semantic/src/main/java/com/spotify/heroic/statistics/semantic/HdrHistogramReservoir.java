@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.statistics.semantic;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+/**
+ * A reservoir backed by an HdrHistogram {@link Recorder}.
+ * <p>
+ * Updates are wait-free and never contend with each other. Every snapshot swaps out the interval
+ * histogram, so a snapshot covers exactly the values recorded since the previous one, with every
+ * value accounted for instead of a sample of them.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+    /**
+     * Significant digits of recorded values, values are accurate to within 1%.
+     */
+    public static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    /* number of values recorded since the last snapshot */
+    private final LongAdder count = new LongAdder();
+
+    /* histogram handed back to the recorder on the next swap */
+    private Histogram recycled = null;
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, count.sum());
+    }
+
+    @Override
+    public void update(final long value) {
+        /* negative values can't be recorded, and only happen if the clock goes backwards */
+        recorder.recordValue(Math.max(0L, value));
+        count.increment();
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        final Histogram interval = recorder.getIntervalHistogram(recycled);
+        count.reset();
+        final HdrSnapshot snapshot = new HdrSnapshot(interval.copy());
+        recycled = interval;
+        return snapshot;
+    }
+
+    static class HdrSnapshot extends Snapshot {
+        private final Histogram histogram;
+
+        HdrSnapshot(final Histogram histogram) {
+            super(new long[0]);
+            this.histogram = histogram;
+        }
+
+        @Override
+        public double getValue(final double quantile) {
+            if (quantile < 0D || quantile > 1D || Double.isNaN(quantile)) {
+                throw new IllegalArgumentException(quantile + " is not in [0..1]");
+            }
+
+            return histogram.getValueAtPercentile(quantile * 100D);
+        }
+
+        /**
+         * Expand the histogram into every recorded value, this is expensive and only intended for
+         * reporters which insist on the raw values.
+         */
+        @Override
+        public long[] getValues() {
+            final long[] values = new long[size()];
+            int i = 0;
+
+            for (final HistogramIterationValue v : histogram.recordedValues()) {
+                final long value = histogram.highestEquivalentValue(v.getValueIteratedTo());
+
+                for (long c = 0; c < v.getCountAtValueIteratedTo() && i < values.length; c++) {
+                    values[i++] = value;
+                }
+            }
+
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, histogram.getTotalCount());
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getTotalCount() == 0 ? 0L : histogram.getMaxValue();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getTotalCount() == 0 ? 0D : histogram.getMean();
+        }
+
+        @Override
+        public long getMin() {
+            return histogram.getTotalCount() == 0 ? 0L : histogram.getMinValue();
+        }
+
+        @Override
+        public double getStdDev() {
+            return histogram.getTotalCount() == 0 ? 0D : histogram.getStdDeviation();
+        }
+
+        @Override
+        public void dump(final OutputStream output) {
+            try (final PrintWriter out = new PrintWriter(
+                new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (final long value : getValues()) {
+                    out.printf("%d%n", value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.statistics.semantic;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricBuilder;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+
+/**
+ * A registry where every timer and histogram is backed by an {@link HdrHistogramReservoir}.
+ */
+public class HdrSemanticMetricRegistry extends SemanticMetricRegistry {
+    @Override
+    public Timer timer(final MetricId name) {
+        return getOrAdd(name, HistogramBuilder.HDR_TIMER);
+    }
+
+    @Override
+    public Histogram histogram(final MetricId name) {
+        return getOrAdd(name, HistogramBuilder.HDR_HISTOGRAM);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Metric> T getOrAdd(
+        final MetricId name, final SemanticMetricBuilder<T> builder
+    ) {
+        if (builder == HistogramBuilder.HISTOGRAM) {
+            return (T) super.getOrAdd(name, HistogramBuilder.HDR_HISTOGRAM);
+        }
+
+        return super.getOrAdd(name, builder);
+    }
+}
@@ -25,6 +25,7 @@ import com.codahale.metrics.Clock;
 import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
 import com.spotify.metrics.core.SemanticMetricBuilder;
 import java.util.concurrent.TimeUnit;
 
@@ -42,4 +43,26 @@ public class HistogramBuilder {
                 return Histogram.class.isInstance(metric);
             }
         };
+
+    public static final SemanticMetricBuilder<Histogram> HDR_HISTOGRAM =
+        new SemanticMetricBuilder<Histogram>() {
+            public Histogram newMetric() {
+                return new Histogram(new HdrHistogramReservoir());
+            }
+
+            public boolean isInstance(Metric metric) {
+                return Histogram.class.isInstance(metric);
+            }
+        };
+
+    public static final SemanticMetricBuilder<Timer> HDR_TIMER =
+        new SemanticMetricBuilder<Timer>() {
+            public Timer newMetric() {
+                return new Timer(new HdrHistogramReservoir());
+            }
+
+            public boolean isInstance(Metric metric) {
+                return Timer.class.isInstance(metric);
+            }
+        };
 }
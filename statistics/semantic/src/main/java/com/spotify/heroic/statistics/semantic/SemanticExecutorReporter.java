@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.statistics.semantic;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.spotify.heroic.statistics.ExecutorReporter;
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+@ToString(of = {"base"})
+public class SemanticExecutorReporter implements ExecutorReporter {
+    private static final String COMPONENT = "executor";
+
+    private final SemanticMetricRegistry registry;
+    private final MetricId base;
+
+    private final Histogram queueWait;
+    private final Meter rejected;
+
+    public SemanticExecutorReporter(final SemanticMetricRegistry registry, final String name) {
+        this.registry = registry;
+        this.base = MetricId.build().tagged("component", COMPONENT, "executor", name);
+
+        queueWait = registry.histogram(
+            base.tagged("what", "queue-wait-time", "unit", Units.MILLISECOND));
+        rejected = registry.meter(base.tagged("what", "rejected", "unit", Units.DROP));
+    }
+
+    @Override
+    public void registerQueueDepth(final LongSupplier queueDepth) {
+        registry.register(base.tagged("what", "queue-depth", "unit", Units.TASK),
+            (Gauge<Long>) queueDepth::getAsLong);
+    }
+
+    @Override
+    public void reportQueueWait(final long waitNanos) {
+        queueWait.update(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    @Override
+    public void reportRejected() {
+        rejected.mark();
+    }
+}
@@ -25,10 +25,12 @@ import com.spotify.heroic.statistics.QueryReporter;
 import com.spotify.heroic.statistics.AnalyticsReporter;
 import com.spotify.heroic.statistics.ClusteredManager;
 import com.spotify.heroic.statistics.ConsumerReporter;
+import com.spotify.heroic.statistics.ExecutorReporter;
 import com.spotify.heroic.statistics.HeroicReporter;
 import com.spotify.heroic.statistics.IngestionManagerReporter;
 import com.spotify.heroic.statistics.MetadataBackendReporter;
 import com.spotify.heroic.statistics.MetricBackendReporter;
+import com.spotify.heroic.statistics.QueryCacheReporter;
 import com.spotify.heroic.statistics.SuggestBackendReporter;
 import com.spotify.metrics.core.SemanticMetricRegistry;
 import lombok.RequiredArgsConstructor;
@@ -80,6 +82,16 @@ public class SemanticHeroicReporter implements HeroicReporter {
         return new SemanticQueryReporter(registry);
     }
 
+    @Override
+    public QueryCacheReporter newQueryCache() {
+        return new SemanticQueryCacheReporter(registry);
+    }
+
+    @Override
+    public ExecutorReporter newExecutor(String name) {
+        return new SemanticExecutorReporter(registry, name);
+    }
+
     @Override
     public void registerShards(Set<Map<String, String>> knownShards) {
         final Set<ClusteredManager> clustered;
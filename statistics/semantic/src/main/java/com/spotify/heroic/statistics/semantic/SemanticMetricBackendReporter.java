@@ -26,7 +26,9 @@ import com.codahale.metrics.Histogram;
 import com.google.common.base.Stopwatch;
 import com.spotify.heroic.QueryOptions;
 import com.spotify.heroic.async.AsyncObservable;
+import com.spotify.heroic.common.DateRange;
 import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.Series;
 import com.spotify.heroic.common.Statistics;
 import com.spotify.heroic.metric.BackendEntry;
 import com.spotify.heroic.metric.BackendKey;
@@ -61,6 +63,7 @@ public class SemanticMetricBackendReporter implements MetricBackendReporter {
     private final FutureReporter deleteKey;
     private final FutureReporter countKey;
     private final FutureReporter fetchRow;
+    private final FutureReporter compact;
 
     private final FutureReporter findSeries;
     private final FutureReporter queryMetrics;
@@ -98,6 +101,8 @@ public class SemanticMetricBackendReporter implements MetricBackendReporter {
             base.tagged("what", "count-key", "unit", Units.QUERY));
         this.fetchRow = new SemanticFutureReporter(registry,
             base.tagged("what", "fetch-row", "unit", Units.QUERY));
+        this.compact = new SemanticFutureReporter(registry,
+            base.tagged("what", "compact", "unit", Units.WRITE));
 
         this.findSeries = new SemanticFutureReporter(registry,
             base.tagged("what", "find-series", "unit", Units.QUERY));
@@ -280,6 +285,11 @@ public class SemanticMetricBackendReporter implements MetricBackendReporter {
             return delegate.countKey(key, options).onDone(countKey.setup());
         }
 
+        @Override
+        public AsyncFuture<Long> compact(final Series series, final DateRange range) {
+            return delegate.compact(series, range).onDone(compact.setup());
+        }
+
         @Override
         public AsyncFuture<MetricCollection> fetchRow(final BackendKey key) {
             return delegate.fetchRow(key).onDone(fetchRow.setup());
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.statistics.semantic;
+
+import com.codahale.metrics.Meter;
+import com.spotify.heroic.statistics.QueryCacheReporter;
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.ToString;
+
+@ToString(of = {})
+public class SemanticQueryCacheReporter implements QueryCacheReporter {
+    private static final String COMPONENT = "query-cache";
+
+    private final SemanticMetricRegistry registry;
+    private final MetricId id;
+
+    /* meters are created on first use, since tiers depend on the configured cache */
+    private final ConcurrentMap<MetricId, Meter> meters = new ConcurrentHashMap<>();
+
+    public SemanticQueryCacheReporter(SemanticMetricRegistry registry) {
+        this.registry = registry;
+        this.id = MetricId.build().tagged("component", COMPONENT);
+    }
+
+    @Override
+    public void reportHit(final String tier) {
+        meter(tier, "hit").mark();
+    }
+
+    @Override
+    public void reportMiss(final String tier) {
+        meter(tier, "miss").mark();
+    }
+
+    @Override
+    public void reportEviction(final String tier) {
+        meter(tier, "eviction").mark();
+    }
+
+    private Meter meter(final String tier, final String what) {
+        return meters.computeIfAbsent(id.tagged("what", what, "tier", tier, "unit", Units.COUNT),
+            registry::meter);
+    }
+}
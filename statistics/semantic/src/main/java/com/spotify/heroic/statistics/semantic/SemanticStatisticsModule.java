@@ -22,6 +22,7 @@
 package com.spotify.heroic.statistics.semantic;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.spotify.heroic.common.ServiceInfo;
 import com.spotify.heroic.dagger.EarlyComponent;
 import com.spotify.heroic.lifecycle.LifeCycle;
@@ -40,12 +41,21 @@ import dagger.Provides;
 import eu.toolchain.async.AsyncFramework;
 
 import java.io.IOException;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
 @Module
 public class SemanticStatisticsModule implements StatisticsModule {
+    private final Reservoir reservoir;
+
+    /**
+     * @param reservoir Reservoir backing timers and histograms, defaults to {@code sliding}.
+     */
     @JsonCreator
-    public SemanticStatisticsModule() {
+    public SemanticStatisticsModule(
+        @JsonProperty("reservoir") final Optional<Reservoir> reservoir
+    ) {
+        this.reservoir = reservoir.orElse(Reservoir.SLIDING);
     }
 
     @Override
@@ -60,6 +70,10 @@ public class SemanticStatisticsModule implements StatisticsModule {
     @Provides
     @SemanticStatisticsScope
     public SemanticMetricRegistry registry() {
+        if (reservoir == Reservoir.HDR) {
+            return new HdrSemanticMetricRegistry();
+        }
+
         return new SemanticMetricRegistry();
     }
 
@@ -110,4 +124,20 @@ public class SemanticStatisticsModule implements StatisticsModule {
     public HeroicReporter reporter(SemanticMetricRegistry registry) {
         return new SemanticHeroicReporter(registry);
     }
+
+    public enum Reservoir {
+        /**
+         * Exponentially decaying samples, with min and max corrected over a sliding window.
+         */
+        SLIDING,
+        /**
+         * Every recorded value, in an HdrHistogram which is swapped out on every report.
+         */
+        HDR;
+
+        @JsonCreator
+        public static Reservoir fromString(final String value) {
+            return valueOf(value.toUpperCase());
+        }
+    }
 }
@@ -36,4 +36,5 @@ final class Units {
     public static final String COUNT = "count";
     public static final String SAMPLE = "sample";
     public static final String RATIO = "%";
+    public static final String TASK = "task";
 }
@@ -0,0 +1,60 @@
+package com.spotify.heroic.statistics.semantic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.codahale.metrics.Snapshot;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HdrHistogramReservoirTest {
+    private HdrHistogramReservoir reservoir;
+
+    @Before
+    public void setup() {
+        reservoir = new HdrHistogramReservoir();
+    }
+
+    @Test
+    public void testSnapshot() {
+        for (long i = 1; i <= 100; i++) {
+            reservoir.update(i);
+        }
+
+        assertEquals(100, reservoir.size());
+
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(100, snapshot.size());
+        assertEquals(1L, snapshot.getMin());
+        assertEquals(100L, snapshot.getMax());
+        assertEquals(50.5D, snapshot.getMean(), 0.5D);
+        assertEquals(50D, snapshot.getMedian(), 1D);
+        assertEquals(99D, snapshot.get99thPercentile(), 1D);
+    }
+
+    @Test
+    public void testSnapshotCoversInterval() {
+        reservoir.update(10L);
+        reservoir.getSnapshot();
+
+        reservoir.update(20L);
+        reservoir.update(-5L);
+
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertArrayEquals(new long[]{0L, 20L}, snapshot.getValues());
+        assertEquals(0, reservoir.size());
+        assertEquals(0, reservoir.getSnapshot().size());
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(0, snapshot.size());
+        assertEquals(0L, snapshot.getMin());
+        assertEquals(0L, snapshot.getMax());
+        assertEquals(0D, snapshot.getMean(), 0D);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.suggest.memory;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A prefix trie where every node carries a posting list of the values indexed below it.
+ * <p>
+ * Nodes and posting lists are concurrent structures, so lookups never block and never observe a
+ * partially constructed node. Values are posted on every node up to {@code maxPrefix} characters
+ * deep, and on the node terminating the word, which mirrors the prefix expansion done by
+ * {@link MemoryBackend#analyze(String)}.
+ *
+ * @param <T> type of values stored in the posting lists.
+ */
+class ConcurrentPrefixTrie<T> {
+    private final Node<T> root = new Node<>();
+    private final int maxPrefix;
+
+    ConcurrentPrefixTrie(final int maxPrefix) {
+        this.maxPrefix = maxPrefix;
+    }
+
+    /**
+     * Index the given value under the given word, and all of its prefixes.
+     */
+    public void insert(final String word, final T value) {
+        final int length = word.length();
+
+        Node<T> node = root;
+
+        for (int i = 0; i < length; i++) {
+            node = node.child(word.charAt(i));
+
+            final int depth = i + 1;
+
+            if (depth < maxPrefix || depth == length) {
+                node.postings.add(value);
+            }
+        }
+    }
+
+    /**
+     * Lookup the posting list of all values indexed under the given prefix.
+     *
+     * @return An unmodifiable live view of the posting list, empty if nothing matches.
+     */
+    public Set<T> lookup(final String prefix) {
+        Node<T> node = root;
+
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.get(prefix.charAt(i));
+
+            if (node == null) {
+                return Collections.emptySet();
+            }
+        }
+
+        return Collections.unmodifiableSet(node.postings);
+    }
+
+    private static class Node<T> {
+        private final ConcurrentMap<Character, Node<T>> children = new ConcurrentHashMap<>(4);
+        private final Set<T> postings = ConcurrentHashMap.newKeySet(4);
+
+        Node<T> child(final char c) {
+            final Node<T> existing = children.get(c);
+
+            if (existing != null) {
+                return existing;
+            }
+
+            return children.computeIfAbsent(c, ignore -> new Node<>());
+        }
+    }
+}
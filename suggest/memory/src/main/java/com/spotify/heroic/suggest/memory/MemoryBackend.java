@@ -65,6 +65,8 @@ import java.util.stream.Stream;
 public class MemoryBackend implements SuggestBackend, Grouped {
     private static final float SCORE = 1.0f;
 
+    static final int MAX_PREFIX = 20;
+
     private final SortedMap<String, Set<String>> keys = new TreeMap<>();
     private final SortedMap<String, Set<TagId>> tagKeys = new TreeMap<>();
     private final SortedMap<String, Set<TagId>> tagValues = new TreeMap<>();
@@ -281,6 +283,21 @@ public class MemoryBackend implements SuggestBackend, Grouped {
     private static final Pattern p = Pattern.compile("([^a-zA-Z0-9]+|(?<=[a-z0-9])(?=[A-Z]))");
 
     static Set<String> analyze(final String input) {
+        final Set<String> output = new HashSet<>();
+
+        for (final String l : tokenize(input)) {
+            output.add(l);
+            output.addAll(prefix(l));
+        }
+
+        return output;
+    }
+
+    /**
+     * Split the input into lower-cased words, on non-alphanumeric characters and camel-case
+     * boundaries.
+     */
+    static Set<String> tokenize(final String input) {
         if (input.isEmpty()) {
             return ImmutableSet.of();
         }
@@ -296,7 +313,6 @@ public class MemoryBackend implements SuggestBackend, Grouped {
             }
 
             output.add(l);
-            output.addAll(prefix(l));
         }
 
         return output;
@@ -305,7 +321,7 @@ public class MemoryBackend implements SuggestBackend, Grouped {
     private static Collection<String> prefix(final String input) {
         final Set<String> prefixes = new HashSet<>(36);
 
-        for (int i = 1; i < Math.min(input.length(), 20); i++) {
+        for (int i = 1; i < Math.min(input.length(), MAX_PREFIX); i++) {
             prefixes.add(input.substring(0, i));
         }
 
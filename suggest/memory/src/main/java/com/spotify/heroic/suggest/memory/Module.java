@@ -38,6 +38,7 @@ public class Module implements HeroicModule {
 
         return () -> {
             config.registerType("memory", MemorySuggestModule.class);
+            config.registerType("memory-trie", TrieMemorySuggestModule.class);
         };
     }
 
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.heroic.suggest.memory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.spotify.heroic.common.Grouped;
+import com.spotify.heroic.common.Groups;
+import com.spotify.heroic.common.OptionalLimit;
+import com.spotify.heroic.common.Series;
+import com.spotify.heroic.filter.AndFilter;
+import com.spotify.heroic.filter.FalseFilter;
+import com.spotify.heroic.filter.Filter;
+import com.spotify.heroic.filter.HasTagFilter;
+import com.spotify.heroic.filter.MatchKeyFilter;
+import com.spotify.heroic.filter.MatchTagFilter;
+import com.spotify.heroic.filter.OrFilter;
+import com.spotify.heroic.filter.StartsWithFilter;
+import com.spotify.heroic.filter.TrueFilter;
+import com.spotify.heroic.suggest.KeySuggest;
+import com.spotify.heroic.suggest.SuggestBackend;
+import com.spotify.heroic.suggest.TagKeyCount;
+import com.spotify.heroic.suggest.TagSuggest;
+import com.spotify.heroic.suggest.TagValueSuggest;
+import com.spotify.heroic.suggest.TagValuesSuggest;
+import com.spotify.heroic.suggest.WriteSuggest;
+import com.spotify.heroic.suggest.memory.MemoryBackend.TagId;
+import eu.toolchain.async.AsyncFramework;
+import eu.toolchain.async.AsyncFuture;
+import lombok.ToString;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory suggest backend where reads never block writes.
+ * <p>
+ * Keys, tag keys and tag values are indexed in {@link ConcurrentPrefixTrie}s, and series are
+ * indexed in posting lists by key, tag key and tag, which are used to narrow down the set of
+ * series a filter has to be applied to. A series is published by adding it to {@link #series}
+ * once all of its postings have been written, and reads ignore any series which has not been
+ * published yet.
+ */
+@MemoryScope
+@ToString(of = {})
+public class TrieMemoryBackend implements SuggestBackend, Grouped {
+    private static final float SCORE = 1.0f;
+
+    private final ConcurrentPrefixTrie<String> keys =
+        new ConcurrentPrefixTrie<>(MemoryBackend.MAX_PREFIX);
+    private final ConcurrentPrefixTrie<TagId> tagKeys =
+        new ConcurrentPrefixTrie<>(MemoryBackend.MAX_PREFIX);
+    private final ConcurrentPrefixTrie<TagId> tagValues =
+        new ConcurrentPrefixTrie<>(MemoryBackend.MAX_PREFIX);
+
+    private final ConcurrentMap<String, Set<Series>> byKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Series>> byTagKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TagId, Set<Series>> byTag = new ConcurrentHashMap<>();
+
+    /**
+     * Series which have been claimed by a writer.
+     */
+    private final Set<Series> indexed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Series which have been fully indexed and are visible to readers.
+     */
+    private final Set<Series> series = ConcurrentHashMap.newKeySet();
+
+    private final Groups groups;
+    private final AsyncFramework async;
+
+    @Inject
+    public TrieMemoryBackend(final Groups groups, final AsyncFramework async) {
+        this.groups = groups;
+        this.async = async;
+    }
+
+    @Override
+    public AsyncFuture<Void> configure() {
+        return async.resolved();
+    }
+
+    @Override
+    public AsyncFuture<TagValuesSuggest> tagValuesSuggest(TagValuesSuggest.Request request) {
+        final Map<String, Set<String>> counts = new HashMap<>();
+
+        final OptionalLimit groupLimit = request.getGroupLimit();
+
+        try (final Stream<TagId> tags = lookupTags(request.getFilter())) {
+            tags.forEach(id -> {
+                final Set<String> c = counts.computeIfAbsent(id.getKey(), k -> new HashSet<>());
+
+                if (groupLimit.isGreaterOrEqual(c.size())) {
+                    return;
+                }
+
+                c.add(id.getValue());
+            });
+        }
+
+        final List<TagValuesSuggest.Suggestion> suggestions = ImmutableList.copyOf(request
+            .getLimit()
+            .limitStream(counts.entrySet().stream())
+            .map(e -> new TagValuesSuggest.Suggestion(e.getKey(),
+                ImmutableSortedSet.copyOf(e.getValue()), false))
+            .iterator());
+
+        return async.resolved(TagValuesSuggest.of(suggestions, false));
+    }
+
+    @Override
+    public AsyncFuture<TagKeyCount> tagKeyCount(final TagKeyCount.Request request) {
+        final Map<String, Set<String>> counts = new HashMap<>();
+
+        try (final Stream<TagId> tags = lookupTags(request.getFilter())) {
+            tags.forEach(
+                id -> counts.computeIfAbsent(id.getKey(), k -> new HashSet<>()).add(id.getValue()));
+        }
+
+        final List<TagKeyCount.Suggestion> suggestions = ImmutableList.copyOf(request
+            .getLimit()
+            .limitStream(counts.entrySet().stream())
+            .map(e -> new TagKeyCount.Suggestion(e.getKey(), (long) e.getValue().size(),
+                Optional.empty()))
+            .iterator());
+
+        return async.resolved(TagKeyCount.of(suggestions, false));
+    }
+
+    @Override
+    public AsyncFuture<TagSuggest> tagSuggest(final TagSuggest.Request request) {
+        final List<Set<TagId>> postings = new ArrayList<>();
+
+        request.getKey().ifPresent(k -> postings.addAll(lookupWords(tagKeys, k)));
+        request.getValue().ifPresent(v -> postings.addAll(lookupWords(tagValues, v)));
+
+        final Set<TagId> ids = matching(postings, request.getFilter(), this::lookupTags);
+
+        final List<TagSuggest.Suggestion> suggestions = ImmutableList.copyOf(
+            ImmutableSortedSet.copyOf(request
+                .getLimit()
+                .limitStream(ids.stream())
+                .map(id -> new TagSuggest.Suggestion(SCORE, id.getKey(), id.getValue()))
+                .iterator()));
+
+        return async.resolved(TagSuggest.of(suggestions));
+    }
+
+    @Override
+    public AsyncFuture<KeySuggest> keySuggest(final KeySuggest.Request request) {
+        final List<Set<String>> postings = new ArrayList<>();
+
+        request.getKey().ifPresent(k -> postings.addAll(lookupWords(keys, k)));
+
+        final Set<String> ids = matching(postings, request.getFilter(), this::lookupKeys);
+
+        final List<KeySuggest.Suggestion> suggestions = ImmutableList.copyOf(request
+            .getLimit()
+            .limitStream(ids.stream())
+            .map(d -> new KeySuggest.Suggestion(SCORE, d))
+            .iterator());
+
+        return async.resolved(KeySuggest.of(suggestions));
+    }
+
+    @Override
+    public AsyncFuture<TagValueSuggest> tagValueSuggest(final TagValueSuggest.Request request) {
+        try (final Stream<TagId> ids = lookupTags(request.getFilter())) {
+            final List<String> values = request
+                .getLimit()
+                .limitStream(request
+                    .getKey()
+                    .map(k -> ids.filter(id -> id.getKey().equals(k)))
+                    .orElse(ids))
+                .map(TagId::getValue)
+                .collect(Collectors.toList());
+
+            return async.resolved(TagValueSuggest.of(values, false));
+        }
+    }
+
+    @Override
+    public AsyncFuture<WriteSuggest> write(final WriteSuggest.Request request) {
+        final Series s = request.getSeries();
+
+        /* series are immutable, so a series only has to be indexed once */
+        if (!indexed.add(s)) {
+            return async.resolved(WriteSuggest.of());
+        }
+
+        post(byKey, s.getKey(), s);
+
+        for (final String t : MemoryBackend.tokenize(s.getKey())) {
+            keys.insert(t, s.getKey());
+        }
+
+        for (final Map.Entry<String, String> tag : s.getTags().entrySet()) {
+            final TagId id = new TagId(tag.getKey(), tag.getValue());
+
+            post(byTagKey, tag.getKey(), s);
+            post(byTag, id, s);
+
+            for (final String t : MemoryBackend.tokenize(tag.getKey())) {
+                tagKeys.insert(t, id);
+            }
+
+            for (final String t : MemoryBackend.tokenize(tag.getValue())) {
+                tagValues.insert(t, id);
+            }
+        }
+
+        series.add(s);
+        return async.resolved(WriteSuggest.of());
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public Groups groups() {
+        return groups;
+    }
+
+    private <K> void post(final ConcurrentMap<K, Set<Series>> index, final K key, final Series s) {
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(s);
+    }
+
+    /**
+     * Lookup the posting lists for all words in the given input.
+     */
+    private <T> List<Set<T>> lookupWords(final ConcurrentPrefixTrie<T> trie, final String input) {
+        return MemoryBackend
+            .tokenize(input)
+            .stream()
+            .map(trie::lookup)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Intersect the given posting lists with the documents matching the filter.
+     * <p>
+     * The intersection starts with the smallest posting list, and only materializes the documents
+     * matching the filter when the filter actually restricts anything.
+     */
+    private <T> Set<T> matching(
+        final List<Set<T>> postings, final Filter filter,
+        final Function<Filter, Stream<T>> lookup
+    ) {
+        final boolean all = filter instanceof TrueFilter;
+
+        if (postings.isEmpty()) {
+            try (final Stream<T> docs = lookup.apply(filter)) {
+                return docs.collect(Collectors.toSet());
+            }
+        }
+
+        postings.sort(Comparator.comparingInt(Set::size));
+
+        final Set<T> ids = new HashSet<>(postings.get(0));
+
+        for (final Set<T> p : postings.subList(1, postings.size())) {
+            ids.retainAll(p);
+        }
+
+        if (all || ids.isEmpty()) {
+            return ids;
+        }
+
+        try (final Stream<T> docs = lookup.apply(filter)) {
+            ids.retainAll(docs.collect(Collectors.toSet()));
+        }
+
+        return ids;
+    }
+
+    private Stream<String> lookupKeys(final Filter filter) {
+        if (filter instanceof TrueFilter) {
+            return byKey.keySet().stream();
+        }
+
+        return lookupSeries(filter).map(Series::getKey).distinct();
+    }
+
+    private Stream<TagId> lookupTags(final Filter filter) {
+        if (filter instanceof TrueFilter) {
+            return byTag.keySet().stream();
+        }
+
+        return lookupSeries(filter)
+            .flatMap(s -> s.getTags().entrySet().stream())
+            .map(e -> new TagId(e.getKey(), e.getValue()))
+            .distinct();
+    }
+
+    private Stream<Series> lookupSeries(final Filter filter) {
+        final Optional<Collection<Series>> candidates = filter.visit(candidates());
+
+        return candidates
+            .map(c -> c.stream().filter(series::contains))
+            .orElseGet(series::stream)
+            .filter(filter::apply);
+    }
+
+    /**
+     * Build a visitor which resolves a filter into a superset of the series it matches, using the
+     * posting lists.
+     * <p>
+     * An empty result means that the filter could not be resolved through the posting lists, and
+     * that all series have to be considered.
+     */
+    private Filter.Visitor<Optional<Collection<Series>>> candidates() {
+        return new Filter.Visitor<Optional<Collection<Series>>>() {
+            @Override
+            public Optional<Collection<Series>> visitFalse(final FalseFilter f) {
+                return Optional.of(Collections.emptySet());
+            }
+
+            @Override
+            public Optional<Collection<Series>> visitMatchKey(final MatchKeyFilter matchKey) {
+                return Optional.of(
+                    byKey.getOrDefault(matchKey.getValue(), Collections.emptySet()));
+            }
+
+            @Override
+            public Optional<Collection<Series>> visitMatchTag(final MatchTagFilter matchTag) {
+                final TagId id = new TagId(matchTag.getTag(), matchTag.getValue());
+                return Optional.of(byTag.getOrDefault(id, Collections.emptySet()));
+            }
+
+            @Override
+            public Optional<Collection<Series>> visitHasTag(final HasTagFilter hasTag) {
+                return Optional.of(byTagKey.getOrDefault(hasTag.getTag(), Collections.emptySet()));
+            }
+
+            @Override
+            public Optional<Collection<Series>> visitStartsWith(
+                final StartsWithFilter startsWith
+            ) {
+                return Optional.of(
+                    byTagKey.getOrDefault(startsWith.getTag(), Collections.emptySet()));
+            }
+
+            @Override
+            public Optional<Collection<Series>> visitAnd(final AndFilter and) {
+                final List<Collection<Series>> parts = new ArrayList<>();
+
+                for (final Filter f : and.terms()) {
+                    f.visit(this).ifPresent(parts::add);
+                }
+
+                if (parts.isEmpty()) {
+                    return Optional.empty();
+                }
+
+                parts.sort(Comparator.comparingInt(Collection::size));
+
+                final Collection<Series> smallest = parts.get(0);
+                final List<Collection<Series>> rest = parts.subList(1, parts.size());
+
+                return Optional.of(smallest
+                    .stream()
+                    .filter(s -> rest.stream().allMatch(p -> p.contains(s)))
+                    .collect(Collectors.toList()));
+            }
+
+            @Override
+            public Optional<Collection<Series>> visitOr(final OrFilter or) {
+                final Set<Series> union = new HashSet<>();
+
+                for (final Filter f : or.terms()) {
+                    final Optional<Collection<Series>> part = f.visit(this);
+
+                    if (!part.isPresent()) {
+                        return Optional.empty();
+                    }
+
+                    union.addAll(part.get());
+                }
+
+                return Optional.of(union);
+            }
+
+            @Override
+            public Optional<Collection<Series>> defaultAction(final Filter filter) {
+                return Optional.empty();
+            }
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.spotify.heroic.suggest.memory;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConcurrentPrefixTrieTest {
+    @Test
+    public void testLookup() {
+        final ConcurrentPrefixTrie<String> trie = new ConcurrentPrefixTrie<>(20);
+
+        trie.insert("hello", "a");
+        trie.insert("help", "b");
+
+        assertEquals(ImmutableSet.of("a", "b"), trie.lookup("hel"));
+        assertEquals(ImmutableSet.of("a"), trie.lookup("hello"));
+        assertEquals(ImmutableSet.of("b"), trie.lookup("help"));
+        assertEquals(ImmutableSet.of(), trie.lookup("helper"));
+        assertEquals(ImmutableSet.of(), trie.lookup("world"));
+    }
+
+    @Test
+    public void testMaxPrefix() {
+        final ConcurrentPrefixTrie<String> trie = new ConcurrentPrefixTrie<>(3);
+
+        trie.insert("hello", "a");
+
+        assertEquals(ImmutableSet.of("a"), trie.lookup("he"));
+        assertEquals(ImmutableSet.of(), trie.lookup("hel"));
+        assertEquals(ImmutableSet.of(), trie.lookup("hell"));
+        assertEquals(ImmutableSet.of("a"), trie.lookup("hello"));
+    }
+}
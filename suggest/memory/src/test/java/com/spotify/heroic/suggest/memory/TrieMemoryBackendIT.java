@@ -0,0 +1,11 @@
+package com.spotify.heroic.suggest.memory;
+
+import com.spotify.heroic.suggest.SuggestModule;
+import com.spotify.heroic.test.AbstractSuggestBackendIT;
+
+public class TrieMemoryBackendIT extends AbstractSuggestBackendIT {
+    @Override
+    protected SuggestModule setupModule() {
+        return TrieMemorySuggestModule.builder().build();
+    }
+}